@@ -131,6 +131,17 @@ public class AndroidSqlTransaction implements ISqlTransaction {
         return 0;
     }
 
+    public int[] flushWithUpdateCounts() {
+        return new int[0];
+    }
+
+    public void setBatchSize(int batchSize) {
+    }
+
+    public int getBatchSize() {
+        return 1;
+    }
+
     public int queryForInt(String sql, Object... args) {
         return sqlTemplate.queryForObject(database, sql, Integer.class, args);
     }
@@ -0,0 +1,209 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.jumpmind.db.model.Column;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.CsvUtils;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+
+/**
+ * Generates reproducible rows for the benchmarks. The same seed, row width, LOB
+ * size and transaction shape always produce the same data, so results from
+ * different releases can be compared.
+ */
+public class BenchmarkDataSet {
+
+    public static final long SEED = 3141592653L;
+
+    public static final String TABLE_NAME = "bench_table";
+
+    public static final String CHANNEL_ID = "bench";
+
+    /**
+     * How captured rows are grouped into transactions.
+     */
+    public enum TransactionShape {
+        /** Every row belongs to the same transaction */
+        SINGLE,
+        /** Consecutive rows are committed in small transactions of {@link BenchmarkDataSet#SMALL_TRANSACTION_SIZE} rows */
+        SMALL,
+        /** Rows from {@link BenchmarkDataSet#INTERLEAVED_TRANSACTIONS} concurrent transactions are interleaved */
+        INTERLEAVED
+    }
+
+    public static final int SMALL_TRANSACTION_SIZE = 10;
+
+    public static final int INTERLEAVED_TRANSACTIONS = 8;
+
+    protected static final char[] CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ,\"'\\\n"
+            .toCharArray();
+
+    protected int rowCount;
+
+    protected int columnCount;
+
+    protected int lobSize;
+
+    protected TransactionShape transactionShape;
+
+    protected Table table;
+
+    protected List<String[]> rows;
+
+    protected List<String> transactionIds;
+
+    public BenchmarkDataSet(int rowCount, int columnCount, int lobSize, TransactionShape transactionShape) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.lobSize = lobSize;
+        this.transactionShape = transactionShape;
+        this.table = buildTable();
+        this.rows = buildRows();
+        this.transactionIds = buildTransactionIds();
+    }
+
+    protected Table buildTable() {
+        Table table = new Table(TABLE_NAME);
+        table.addColumn(new Column("id", true, Types.INTEGER, 0, 0));
+        for (int i = 1; i < columnCount; i++) {
+            table.addColumn(new Column("col_" + i, false, Types.VARCHAR, 64, 0));
+        }
+        if (lobSize > 0) {
+            table.addColumn(new Column("lob_value", false, Types.CLOB, 0, 0));
+        }
+        return table;
+    }
+
+    protected List<String[]> buildRows() {
+        Random random = new Random(SEED);
+        int width = table.getColumnCount();
+        List<String[]> rows = new ArrayList<String[]>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            String[] row = new String[width];
+            row[0] = Integer.toString(i + 1);
+            for (int j = 1; j < columnCount; j++) {
+                row[j] = random.nextInt(20) == 0 ? null : randomString(random, 1 + random.nextInt(48));
+            }
+            if (lobSize > 0) {
+                row[width - 1] = randomString(random, lobSize);
+            }
+            rows.add(row);
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    protected List<String> buildTransactionIds() {
+        List<String> transactionIds = new ArrayList<String>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            switch (transactionShape) {
+                case SINGLE:
+                    transactionIds.add("1");
+                    break;
+                case SMALL:
+                    transactionIds.add(Integer.toString(i / SMALL_TRANSACTION_SIZE));
+                    break;
+                case INTERLEAVED:
+                default:
+                    /*
+                     * each block of rows has INTERLEAVED_TRANSACTIONS
+                     * transactions open at once that take turns writing rows
+                     */
+                    int blockSize = INTERLEAVED_TRANSACTIONS * SMALL_TRANSACTION_SIZE;
+                    int block = i / blockSize;
+                    transactionIds.add(Integer.toString(block * INTERLEAVED_TRANSACTIONS + i % INTERLEAVED_TRANSACTIONS));
+                    break;
+            }
+        }
+        return Collections.unmodifiableList(transactionIds);
+    }
+
+    protected static String randomString(Random random, int length) {
+        char[] value = new char[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = CHARS[random.nextInt(CHARS.length)];
+        }
+        return new String(value);
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public List<String[]> getRows() {
+        return rows;
+    }
+
+    public String getTransactionId(int rowIndex) {
+        return transactionIds.get(rowIndex);
+    }
+
+    public List<CsvData> getCsvData(DataEventType eventType) {
+        List<CsvData> datas = new ArrayList<CsvData>(rowCount);
+        for (String[] row : rows) {
+            if (eventType == DataEventType.DELETE) {
+                datas.add(new CsvData(eventType, new String[] { row[0] }, null));
+            } else if (eventType == DataEventType.UPDATE) {
+                datas.add(new CsvData(eventType, new String[] { row[0] }, row));
+            } else {
+                datas.add(new CsvData(eventType, row));
+            }
+        }
+        return datas;
+    }
+
+    public List<Data> getData() {
+        List<Data> datas = new ArrayList<Data>(rowCount);
+        Date createTime = new Date(SEED);
+        for (int i = 0; i < rowCount; i++) {
+            String[] row = rows.get(i);
+            datas.add(new Data(i + 1, row[0], CsvUtils.escapeCsvData(row), DataEventType.INSERT, TABLE_NAME, createTime,
+                    null, CHANNEL_ID, getTransactionId(i), null));
+        }
+        return datas;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getLobSize() {
+        return lobSize;
+    }
+
+    public TransactionShape getTransactionShape() {
+        return transactionShape;
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import java.sql.SQLException;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.jumpmind.db.model.Database;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.platform.JdbcDatabasePlatformFactory;
+import org.jumpmind.db.sql.SqlException;
+import org.jumpmind.db.sql.SqlTemplateSettings;
+
+/**
+ * Embedded H2 database used by the benchmarks that need a real platform.
+ */
+public class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    public static IDatabasePlatform createPlatform(String name) {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl(String.format("jdbc:h2:mem:%s", name));
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        return JdbcDatabasePlatformFactory.createNewPlatformInstance(dataSource, new SqlTemplateSettings(), true,
+                false);
+    }
+
+    public static void createTable(IDatabasePlatform platform, Table table) {
+        Database database = new Database();
+        database.addTable(table);
+        platform.createDatabase(database, true, false);
+        platform.resetCachedTableModel();
+    }
+
+    /**
+     * The in-memory database is dropped once the last pooled connection is
+     * closed.
+     */
+    public static void close(IDatabasePlatform platform) {
+        try {
+            platform.<BasicDataSource> getDataSource().close();
+        } catch (SQLException e) {
+            throw new SqlException(e);
+        }
+    }
+
+    public static void truncateTable(IDatabasePlatform platform, Table table) {
+        platform.getSqlTemplate().update(
+                String.format("delete from %s", table.getQualifiedTableName(platform.getDatabaseInfo().getDelimiterToken(),
+                        platform.getDatabaseInfo().getCatalogSeparator(), platform.getDatabaseInfo().getSchemaSeparator())));
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jumpmind.symmetric.transport.ConcurrentConnectionManager;
+import org.jumpmind.symmetric.transport.IConcurrentConnectionManager.ReservationType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reserve and release cycles against {@link ConcurrentConnectionManager} from
+ * a growing number of threads, each acting as its own node pulling from the
+ * same pool. With a small pool most reservations are rejected, which
+ * exercises the admission path under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentConnectionManagerBenchmark {
+
+    static final String POOL_ID = "pull";
+
+    @Param({ "10000", "8" })
+    public int maxPoolSize;
+
+    protected ConcurrentConnectionManager manager;
+
+    protected AtomicInteger nodeIds = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Node {
+
+        protected String nodeId;
+
+        @Setup
+        public void setup(ConcurrentConnectionManagerBenchmark benchmark) {
+            nodeId = String.valueOf(benchmark.nodeIds.incrementAndGet());
+        }
+    }
+
+    @Setup
+    public void setup() {
+        manager = new ConcurrentConnectionManager(null, null) {
+            @Override
+            protected int getMaxPoolSize() {
+                return maxPoolSize;
+            }
+
+            @Override
+            protected long getReservationTimeout() {
+                return 60000;
+            }
+        };
+    }
+
+    protected boolean reserveAndRelease(Node node) {
+        if (manager.reserveConnection(node.nodeId, POOL_ID, ReservationType.HARD)) {
+            return manager.releaseConnection(node.nodeId, POOL_ID);
+        }
+        return false;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean reserveAndRelease1Thread(Node node) {
+        return reserveAndRelease(node);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean reserveAndRelease4Threads(Node node) {
+        return reserveAndRelease(node);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean reserveAndRelease16Threads(Node node) {
+        return reserveAndRelease(node);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean reserveAndRelease64Threads(Node node) {
+        return reserveAndRelease(node);
+    }
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.symmetric.benchmark.BenchmarkDataSet.TransactionShape;
+import org.jumpmind.symmetric.csv.CsvReader;
+import org.jumpmind.symmetric.csv.CsvWriter;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.CsvRow;
+import org.jumpmind.symmetric.io.data.CsvUtils;
+import org.jumpmind.symmetric.io.data.reader.ProtocolTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tokenizing and escaping of row data with the generic {@link CsvReader} and
+ * {@link CsvWriter}, configured the way {@link CsvUtils} configures them for
+ * the protocol, and tokenizing with the {@link ProtocolTokenizer}. The row
+ * benchmarks read one column of each row the way a router does, by parsing
+ * the whole row or through a lazily indexed {@link CsvRow}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvBenchmark {
+
+    @Param({ "1000" })
+    public int rowCount;
+
+    @Param({ "10", "50", "200" })
+    public int columnCount;
+
+    @Param({ "0", "4096" })
+    public int lobSize;
+
+    protected List<String[]> rows;
+
+    protected String csv;
+
+    protected List<String> rowData;
+
+    @Setup
+    public void setup() throws IOException {
+        rows = new BenchmarkDataSet(rowCount, columnCount, lobSize, TransactionShape.SINGLE).getRows();
+        StringWriter out = new StringWriter();
+        CsvWriter writer = newCsvWriter(out);
+        for (String[] row : rows) {
+            writer.writeRecord(row, true);
+        }
+        writer.close();
+        csv = out.toString();
+        rowData = new ArrayList<String>(rows.size());
+        for (String[] row : rows) {
+            rowData.add(CsvUtils.escapeCsvData(row));
+        }
+    }
+
+    protected CsvWriter newCsvWriter(StringWriter out) {
+        CsvWriter writer = new CsvWriter(out, ',');
+        writer.setEscapeMode(CsvWriter.ESCAPE_MODE_BACKSLASH);
+        writer.setRecordDelimiter('\n');
+        writer.setTextQualifier('"');
+        writer.setUseTextQualifier(true);
+        writer.setForceQualifier(true);
+        writer.setNullString("$(null)");
+        return writer;
+    }
+
+    @Benchmark
+    public int write() throws IOException {
+        StringWriter out = new StringWriter(csv.length());
+        CsvWriter writer = newCsvWriter(out);
+        for (String[] row : rows) {
+            writer.writeRecord(row, true);
+        }
+        writer.close();
+        return out.getBuffer().length();
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws IOException {
+        CsvReader reader = CsvUtils.getCsvReader(new StringReader(csv));
+        while (reader.readRecord()) {
+            blackhole.consume(reader.getValues());
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    public void readWithProtocolTokenizer(Blackhole blackhole) throws IOException {
+        ProtocolTokenizer tokenizer = new ProtocolTokenizer(new StringReader(csv));
+        while (tokenizer.readRecord()) {
+            blackhole.consume(tokenizer.getValues());
+        }
+        tokenizer.close();
+    }
+
+    @Benchmark
+    public void getColumnFromParsedRow(Blackhole blackhole) {
+        for (String row : rowData) {
+            CsvData data = new CsvData();
+            data.putCsvData(CsvData.ROW_DATA, row);
+            blackhole.consume(data.getParsedData(CsvData.ROW_DATA)[1]);
+        }
+    }
+
+    @Benchmark
+    public void getColumnFromCsvRow(Blackhole blackhole) {
+        for (String row : rowData) {
+            CsvData data = new CsvData();
+            data.putCsvData(CsvData.ROW_DATA, row);
+            blackhole.consume(data.getCsvRow(CsvData.ROW_DATA).get(1));
+        }
+    }
+
+    @Benchmark
+    public void escapeRow(Blackhole blackhole) {
+        for (String[] row : rows) {
+            blackhole.consume(CsvUtils.escapeCsvData(row));
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlReadCursor;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.symmetric.AbstractSymmetricEngine;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.benchmark.BenchmarkDataSet.TransactionShape;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataGap;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.model.ProcessInfoKey;
+import org.jumpmind.symmetric.route.ChannelRouterContext;
+import org.jumpmind.symmetric.route.DataGapRouteReader;
+import org.jumpmind.symmetric.route.DefaultBatchAlgorithm;
+import org.jumpmind.symmetric.route.NonTransactionalBatchAlgorithm;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.impl.DataService;
+import org.jumpmind.symmetric.service.impl.RouterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading captured data for routing with {@link DataGapRouteReader}. The
+ * database is replaced with an in-memory cursor so that the benchmark measures
+ * the peek ahead and transaction grouping logic for one channel of a
+ * {@link RouterService#routeData(boolean)} pass.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataGapRouteReaderBenchmark {
+
+    @Param({ "100000" })
+    public int rowCount;
+
+    @Param({ "100", "1000", "10000" })
+    public int peekAheadWindow;
+
+    @Param({ "SINGLE", "SMALL", "INTERLEAVED" })
+    public TransactionShape transactionShape;
+
+    @Param({ DefaultBatchAlgorithm.NAME, NonTransactionalBatchAlgorithm.NAME })
+    public String batchAlgorithm;
+
+    protected List<Data> datas;
+
+    protected ISymmetricEngine engine;
+
+    protected NodeChannel nodeChannel;
+
+    @Setup
+    public void setup() {
+        datas = new BenchmarkDataSet(rowCount, 10, 0, transactionShape).getData();
+
+        nodeChannel = new NodeChannel(BenchmarkDataSet.CHANNEL_ID);
+        nodeChannel.setMaxDataToRoute(rowCount);
+        nodeChannel.setBatchAlgorithm(batchAlgorithm);
+
+        IParameterService parameterService = mock(IParameterService.class);
+        when(parameterService.getEngineName()).thenReturn("benchmark");
+        when(parameterService.is(ParameterConstants.SYNCHRONIZE_ALL_JOBS)).thenReturn(true);
+        when(parameterService.getInt(ParameterConstants.ROUTING_PEEK_AHEAD_MEMORY_THRESHOLD)).thenReturn(50);
+        when(parameterService.getInt(ParameterConstants.ROUTING_PEEK_AHEAD_WINDOW)).thenReturn(peekAheadWindow);
+
+        IStatisticManager statisticManager = mock(IStatisticManager.class);
+        when(statisticManager.newProcessInfo((ProcessInfoKey) any())).thenAnswer(new Answer<ProcessInfo>() {
+            public ProcessInfo answer(InvocationOnMock invocation) {
+                return new ProcessInfo();
+            }
+        });
+
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        when(sqlTemplate.queryForCursor((String) any(), (ISqlRowMapper<?>) any(), (Object[]) any(), (int[]) any()))
+                .thenAnswer(new Answer<ISqlReadCursor<Data>>() {
+                    public ISqlReadCursor<Data> answer(InvocationOnMock invocation) {
+                        return new ListReadCursor(datas);
+                    }
+                });
+
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+
+        ISymmetricDialect symmetricDialect = mock(AbstractSymmetricDialect.class);
+        when(symmetricDialect.supportsTransactionId()).thenReturn(true);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+
+        engine = mock(AbstractSymmetricEngine.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getStatisticManager()).thenReturn(statisticManager);
+        when(engine.getNodeService()).thenReturn(mock(INodeService.class));
+        when(engine.getDataService()).thenReturn(mock(DataService.class));
+        when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
+        when(engine.getExtensionService()).thenReturn(mock(IExtensionService.class));
+        RouterService routerService = new RouterService(engine);
+        when(engine.getRouterService()).thenReturn(routerService);
+    }
+
+    @Benchmark
+    public int read() throws Exception {
+        ChannelRouterContext context = new ChannelRouterContext("00000", nodeChannel, mock(ISqlTransaction.class),
+                null);
+        List<DataGap> dataGaps = new ArrayList<DataGap>();
+        dataGaps.add(new DataGap(0, Long.MAX_VALUE));
+        context.setDataGaps(dataGaps);
+        DataGapRouteReader reader = new DataGapRouteReader(context, engine);
+        reader.run();
+        return reader.getDataQueue().size();
+    }
+
+    static class ListReadCursor implements ISqlReadCursor<Data> {
+
+        Iterator<Data> iterator;
+
+        public ListReadCursor(List<Data> list) {
+            this.iterator = list.iterator();
+        }
+
+        public Data next() {
+            if (iterator.hasNext()) {
+                return iterator.next();
+            }
+            return null;
+        }
+
+        public void close() {
+        }
+    }
+
+}
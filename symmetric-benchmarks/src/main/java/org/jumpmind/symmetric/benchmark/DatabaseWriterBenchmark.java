@@ -0,0 +1,141 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.benchmark.BenchmarkDataSet.TransactionShape;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.IDataWriter;
+import org.jumpmind.symmetric.io.data.writer.DatabaseWriterSettings;
+import org.jumpmind.symmetric.io.data.writer.DefaultDatabaseWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a batch into an embedded H2 database with {@link DefaultDatabaseWriter}.
+ * Each invocation loads one batch of {@link #rowCount} rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseWriterBenchmark {
+
+    @Param({ "1000" })
+    public int rowCount;
+
+    @Param({ "10", "50" })
+    public int columnCount;
+
+    @Param({ "0", "4096" })
+    public int lobSize;
+
+    @Param({ "INSERT", "UPDATE", "DELETE" })
+    public DataEventType eventType;
+
+    protected IDatabasePlatform platform;
+
+    protected Table table;
+
+    protected List<CsvData> inserts;
+
+    protected List<CsvData> datas;
+
+    protected long batchId;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        BenchmarkDataSet dataSet = new BenchmarkDataSet(rowCount, columnCount, lobSize, TransactionShape.SINGLE);
+        platform = BenchmarkDatabase.createPlatform("writer");
+        table = dataSet.getTable();
+        BenchmarkDatabase.createTable(platform, table.copy());
+        inserts = dataSet.getCsvData(DataEventType.INSERT);
+        datas = dataSet.getCsvData(eventType);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        BenchmarkDatabase.truncateTable(platform, table);
+        if (eventType != DataEventType.INSERT) {
+            writeBatch(inserts);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDatabase.close(platform);
+    }
+
+    protected IDataWriter newWriter() {
+        return new DefaultDatabaseWriter(platform, new DatabaseWriterSettings());
+    }
+
+    protected long writeBatch(List<CsvData> datas) {
+        IDataWriter writer = newWriter();
+        Batch batch = new Batch(BatchType.LOAD, ++batchId, BenchmarkDataSet.CHANNEL_ID, BinaryEncoding.BASE64,
+                "00000", "00001", false);
+        writer.open(new DataContext(batch));
+        try {
+            writer.start(batch);
+            if (writer.start(table)) {
+                for (CsvData data : datas) {
+                    writer.write(data);
+                }
+                writer.end(table);
+            }
+            writer.end(batch, false);
+        } catch (RuntimeException ex) {
+            writer.end(batch, true);
+            throw ex;
+        } finally {
+            writer.close();
+        }
+        return batch.getBatchId();
+    }
+
+    @Benchmark
+    public long write() {
+        return writeBatch(datas);
+    }
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.benchmark.BenchmarkDataSet.TransactionShape;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.reader.ProtocolDataReader;
+import org.jumpmind.symmetric.io.data.writer.ProtocolDataWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Serializing a batch with {@link ProtocolDataWriter} and parsing it back with
+ * {@link ProtocolDataReader}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtocolBenchmark {
+
+    @Param({ "1000" })
+    public int rowCount;
+
+    @Param({ "10", "50", "200" })
+    public int columnCount;
+
+    @Param({ "0", "4096" })
+    public int lobSize;
+
+    @Param({ "INSERT", "UPDATE" })
+    public DataEventType eventType;
+
+    protected Table table;
+
+    protected List<CsvData> datas;
+
+    protected String protocol;
+
+    protected long batchId;
+
+    @Setup
+    public void setup() {
+        BenchmarkDataSet dataSet = new BenchmarkDataSet(rowCount, columnCount, lobSize, TransactionShape.SINGLE);
+        table = dataSet.getTable();
+        datas = dataSet.getCsvData(eventType);
+        protocol = writeBatch();
+    }
+
+    protected String writeBatch() {
+        StringWriter out = new StringWriter();
+        ProtocolDataWriter writer = new ProtocolDataWriter("00000", out, false, false, false);
+        Batch batch = new Batch(BatchType.EXTRACT, ++batchId, BenchmarkDataSet.CHANNEL_ID, BinaryEncoding.BASE64,
+                "00000", "00001", false);
+        writer.open(new DataContext(batch));
+        writer.start(batch);
+        writer.start(table);
+        for (CsvData data : datas) {
+            writer.write(data);
+        }
+        writer.end(table);
+        writer.end(batch, false);
+        writer.close();
+        return out.toString();
+    }
+
+    protected void readBatch(String protocol, Blackhole blackhole) {
+        ProtocolDataReader reader = new ProtocolDataReader(BatchType.LOAD, "00001", protocol);
+        reader.open(new DataContext(reader));
+        while (reader.nextBatch() != null) {
+            while (reader.nextTable() != null) {
+                CsvData data = null;
+                while ((data = reader.nextData()) != null) {
+                    blackhole.consume(data.getParsedData(CsvData.ROW_DATA));
+                }
+            }
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    public String write() {
+        return writeBatch();
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) {
+        readBatch(protocol, blackhole);
+    }
+
+    @Benchmark
+    public void roundTrip(Blackhole blackhole) {
+        readBatch(writeBatch(), blackhole);
+    }
+
+}
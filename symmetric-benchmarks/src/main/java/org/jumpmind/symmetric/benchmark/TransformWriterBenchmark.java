@@ -0,0 +1,167 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.benchmark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.util.BinaryEncoding;
+import org.jumpmind.symmetric.benchmark.BenchmarkDataSet.TransactionShape;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.transform.BshColumnTransform;
+import org.jumpmind.symmetric.io.data.transform.ColumnPolicy;
+import org.jumpmind.symmetric.io.data.transform.ConstantColumnTransform;
+import org.jumpmind.symmetric.io.data.transform.CopyColumnTransform;
+import org.jumpmind.symmetric.io.data.transform.IColumnTransform;
+import org.jumpmind.symmetric.io.data.transform.LeftColumnTransform;
+import org.jumpmind.symmetric.io.data.transform.TransformColumn;
+import org.jumpmind.symmetric.io.data.transform.TransformPoint;
+import org.jumpmind.symmetric.io.data.transform.TransformTable;
+import org.jumpmind.symmetric.io.data.transform.ValueMapColumnTransform;
+import org.jumpmind.symmetric.io.data.writer.TransformWriter;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Running a batch through {@link TransformWriter} with an implied column policy
+ * where every non key column is transformed with {@link #transformType}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformWriterBenchmark {
+
+    @Param({ "1000" })
+    public int rowCount;
+
+    @Param({ "10", "50" })
+    public int columnCount;
+
+    @Param({ "INSERT", "UPDATE" })
+    public DataEventType eventType;
+
+    @Param({ CopyColumnTransform.NAME, ConstantColumnTransform.NAME, LeftColumnTransform.NAME,
+            ValueMapColumnTransform.NAME, BshColumnTransform.NAME })
+    public String transformType;
+
+    protected IDatabasePlatform platform;
+
+    protected Table table;
+
+    protected List<CsvData> datas;
+
+    protected Map<String, IColumnTransform<?>> columnTransforms;
+
+    protected TransformTable transformTable;
+
+    protected long batchId;
+
+    @Setup
+    public void setup() {
+        BenchmarkDataSet dataSet = new BenchmarkDataSet(rowCount, columnCount, 0, TransactionShape.SINGLE);
+        table = dataSet.getTable();
+        datas = dataSet.getCsvData(eventType);
+        platform = BenchmarkDatabase.createPlatform("transform");
+
+        columnTransforms = new HashMap<String, IColumnTransform<?>>();
+        columnTransforms.put(CopyColumnTransform.NAME, new CopyColumnTransform());
+        columnTransforms.put(ConstantColumnTransform.NAME, new ConstantColumnTransform());
+        columnTransforms.put(LeftColumnTransform.NAME, new LeftColumnTransform());
+        columnTransforms.put(ValueMapColumnTransform.NAME, new ValueMapColumnTransform());
+        columnTransforms.put(BshColumnTransform.NAME, new BshColumnTransform(mock(IParameterService.class)));
+
+        transformTable = new TransformTable(table.getName(), table.getName() + "_target", TransformPoint.LOAD,
+                new TransformColumn("id", "id", true));
+        transformTable.setTransformId("bench");
+        transformTable.setColumnPolicy(ColumnPolicy.SPECIFIED);
+        String[] columnNames = table.getColumnNames();
+        for (int i = 1; i < columnNames.length; i++) {
+            TransformColumn column = new TransformColumn(columnNames[i], columnNames[i], false, transformType,
+                    getTransformExpression());
+            column.setTransformId(transformTable.getTransformId());
+            transformTable.addTransformColumn(column);
+        }
+    }
+
+    protected String getTransformExpression() {
+        if (ConstantColumnTransform.NAME.equals(transformType)) {
+            return "constant";
+        } else if (LeftColumnTransform.NAME.equals(transformType)) {
+            return "10";
+        } else if (ValueMapColumnTransform.NAME.equals(transformType)) {
+            return "a=A b=B c=C *=*";
+        } else if (BshColumnTransform.NAME.equals(transformType)) {
+            return "return currentValue == null ? null : currentValue.toUpperCase();";
+        } else {
+            return null;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkDatabase.close(platform);
+    }
+
+    @Benchmark
+    public long transform() {
+        CountingDataWriter target = new CountingDataWriter();
+        TransformWriter writer = new TransformWriter(platform, TransformPoint.LOAD, target, columnTransforms,
+                transformTable);
+        Batch batch = new Batch(BatchType.LOAD, ++batchId, BenchmarkDataSet.CHANNEL_ID, BinaryEncoding.BASE64,
+                "00000", "00001", false);
+        writer.open(new DataContext(batch));
+        writer.start(batch);
+        if (writer.start(table)) {
+            for (CsvData data : datas) {
+                writer.write(data);
+            }
+            writer.end(table);
+        }
+        writer.end(batch, false);
+        writer.close();
+        return target.getRowCount();
+    }
+
+}
@@ -22,8 +22,11 @@ package org.jumpmind.symmetric.db.mysql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jumpmind.db.model.Table;
 import org.jumpmind.db.platform.IDatabasePlatform;
 import org.jumpmind.db.platform.PermissionType;
 import org.jumpmind.db.sql.ISqlTransaction;
@@ -36,6 +39,7 @@ import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.db.SequenceIdentifier;
+import org.jumpmind.symmetric.db.TablePartition;
 import org.jumpmind.symmetric.model.Trigger;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.symmetric.util.SymmetricUtils;
@@ -298,4 +302,30 @@ public class MySqlSymmetricDialect extends AbstractSymmetricDialect implements I
         PermissionType[] permissions = { PermissionType.CREATE_TABLE, PermissionType.DROP_TABLE, PermissionType.CREATE_TRIGGER, PermissionType.DROP_TRIGGER, PermissionType.CREATE_ROUTINE};
         return permissions;
     }
+
+    @Override
+    public boolean supportsPartitionPurge() {
+        return true;
+    }
+
+    @Override
+    public List<TablePartition> getTablePartitions(String tableName) {
+        Table table = platform.getTableFromCache(null, null, tableName, false);
+        if (table != null) {
+            String catalog = StringUtils.isBlank(table.getCatalog()) ? platform.getDefaultCatalog() : table.getCatalog();
+            return getTablePartitionsByHighValue("select partition_name, partition_description as high_value " +
+                    "from information_schema.partitions where table_schema = ? and table_name = ? " +
+                    "and partition_method = 'RANGE' order by partition_ordinal_position", catalog, table.getName());
+        }
+        return new ArrayList<TablePartition>(0);
+    }
+
+    @Override
+    public void dropTablePartition(String tableName, TablePartition partition) {
+        Table table = platform.getTableFromCache(null, null, tableName, false);
+        String quote = platform.getDatabaseInfo().getDelimiterToken();
+        platform.getSqlTemplate().update(String.format("alter table %s drop partition %s%s%s",
+                table.getQualifiedTableName(quote, platform.getDatabaseInfo().getCatalogSeparator(),
+                        platform.getDatabaseInfo().getSchemaSeparator()), quote, partition.getName(), quote));
+    }
 }
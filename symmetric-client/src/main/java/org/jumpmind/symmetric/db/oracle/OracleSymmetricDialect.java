@@ -23,7 +23,9 @@ package org.jumpmind.symmetric.db.oracle;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -41,6 +43,7 @@ import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.db.SequenceIdentifier;
+import org.jumpmind.symmetric.db.TablePartition;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.model.Channel;
 import org.jumpmind.symmetric.model.Trigger;
@@ -457,4 +460,29 @@ public class OracleSymmetricDialect extends AbstractSymmetricDialect implements
         return permissions;
     }
 
+    @Override
+    public boolean supportsPartitionPurge() {
+        return true;
+    }
+
+    @Override
+    public List<TablePartition> getTablePartitions(String tableName) {
+        Table table = platform.getTableFromCache(null, null, tableName, false);
+        if (table != null) {
+            String schema = isBlank(table.getSchema()) ? platform.getDefaultSchema() : table.getSchema();
+            return getTablePartitionsByHighValue("select partition_name, high_value from all_tab_partitions " +
+                    "where table_owner = ? and table_name = ? order by partition_position", schema, table.getName());
+        }
+        return new ArrayList<TablePartition>(0);
+    }
+
+    @Override
+    public void dropTablePartition(String tableName, TablePartition partition) {
+        Table table = platform.getTableFromCache(null, null, tableName, false);
+        String quote = platform.getDatabaseInfo().getDelimiterToken();
+        platform.getSqlTemplate().update(String.format("alter table %s drop partition %s%s%s update indexes",
+                table.getQualifiedTableName(quote, platform.getDatabaseInfo().getCatalogSeparator(),
+                        platform.getDatabaseInfo().getSchemaSeparator()), quote, partition.getName(), quote));
+    }
+
 }
@@ -21,17 +21,26 @@
 package org.jumpmind.symmetric.db.postgresql;
 
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.jumpmind.db.model.Table;
 import org.jumpmind.db.platform.IDatabasePlatform;
 import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.db.sql.SqlException;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.db.SequenceIdentifier;
+import org.jumpmind.symmetric.db.TablePartition;
 import org.jumpmind.symmetric.model.Trigger;
 import org.jumpmind.symmetric.service.IParameterService;
 
@@ -54,6 +63,13 @@ public class PostgreSqlSymmetricDialect extends AbstractSymmetricDialect impleme
 
     static final String SQL_SELECT_TRANSACTIONS = "select min(a.xact_start) from pg_stat_activity a join pg_catalog.pg_locks l on l.pid = a.pid  where l.mode = 'RowExclusiveLock'";
 
+    static final String SQL_SELECT_PARTITIONS = "select c.relname as partition_name, pg_get_expr(c.relpartbound, c.oid) as partition_bound " +
+            "from pg_inherits i join pg_class c on c.oid = i.inhrelid join pg_class p on p.oid = i.inhparent " +
+            "join pg_namespace n on n.oid = p.relnamespace where p.relname = ? and n.nspname = ? and p.relkind = 'p'";
+
+    static final Pattern PARTITION_RANGE_BOUND = Pattern.compile("FOR VALUES FROM \\('?([^')]+)'?\\) TO \\('?([^')]+)'?\\)", 
+            Pattern.CASE_INSENSITIVE);
+
     private Boolean supportsTransactionId = null;
         
     public PostgreSqlSymmetricDialect(IParameterService parameterService, IDatabasePlatform platform) {
@@ -281,4 +297,86 @@ public class PostgreSqlSymmetricDialect extends AbstractSymmetricDialect impleme
         return platform.getSqlTemplate().queryForLong("select last_value from " + getSequenceName(identifier) + "_seq");
     }
 
+    @Override
+    public boolean supportsPartitionPurge() {
+        return true;
+    }
+
+    @Override
+    public List<TablePartition> getTablePartitions(String tableName) {
+        List<TablePartition> partitions = new ArrayList<TablePartition>();
+        Table table = platform.getTableFromCache(null, null, tableName, false);
+        if (table != null) {
+            String schema = table.getSchema() == null ? platform.getDefaultSchema() : table.getSchema();
+            List<Row> rows = null;
+            try {
+                rows = platform.getSqlTemplate().query(SQL_SELECT_PARTITIONS, new Object[] { table.getName(), schema });
+            } catch (SqlException e) {
+                log.debug("Declarative partitions are not available: {}", e.getMessage());
+                return partitions;
+            }
+            for (Row row : rows) {
+                try {
+                    TablePartition partition = parsePartitionBound(row.getString("partition_name"), row.getString("partition_bound"));
+                    if (partition != null) {
+                        partitions.add(partition);
+                    }
+                } catch (NumberFormatException e) {
+                    log.debug("Partition {} is not bounded by an id: {}", row.getString("partition_name"), 
+                            row.getString("partition_bound"));
+                    return new ArrayList<TablePartition>(0);
+                }
+            }
+            Collections.sort(partitions, new Comparator<TablePartition>() {
+                public int compare(TablePartition o1, TablePartition o2) {
+                    return Long.compare(o1.getMinId(), o2.getMinId());
+                }
+            });
+        }
+        return partitions;
+    }
+
+    /*
+     * Parse a partition bound of "FOR VALUES FROM (x) TO (y)" into the inclusive range of ids,
+     * returning null when the partition is not a range partition
+     */
+    static TablePartition parsePartitionBound(String name, String bound) {
+        Matcher matcher = PARTITION_RANGE_BOUND.matcher(bound);
+        if (matcher.find()) {
+            long minId = matcher.group(1).equalsIgnoreCase("MINVALUE") ? Long.MIN_VALUE : Long.parseLong(matcher.group(1));
+            long maxId = matcher.group(2).equalsIgnoreCase("MAXVALUE") ? Long.MAX_VALUE : Long.parseLong(matcher.group(2)) - 1;
+            return new TablePartition(name, minId, maxId);
+        }
+        return null;
+    }
+
+    @Override
+    public void dropTablePartition(String tableName, TablePartition partition) {
+        Table table = platform.getTableFromCache(null, null, tableName, false);
+        String quote = platform.getDatabaseInfo().getDelimiterToken();
+        String schema = table.getSchema() == null ? platform.getDefaultSchema() : table.getSchema();
+        String prefix = schema == null ? "" : quote + schema + quote + ".";
+        /*
+         * Detach and drop together, so a failed drop does not leave the rows in
+         * a table the delete purge no longer sees
+         */
+        ISqlTransaction transaction = null;
+        try {
+            transaction = platform.getSqlTemplate().startSqlTransaction();
+            transaction.execute(String.format("alter table %s%s%s%s detach partition %s%s%s%s", prefix, quote, 
+                    table.getName(), quote, prefix, quote, partition.getName(), quote));
+            transaction.execute(String.format("drop table %s%s%s%s", prefix, quote, partition.getName(), quote));
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            if (transaction != null) {
+                transaction.close();
+            }
+        }
+    }
+
 }
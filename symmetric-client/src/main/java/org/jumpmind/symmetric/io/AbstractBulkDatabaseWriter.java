@@ -76,6 +76,12 @@ public abstract class AbstractBulkDatabaseWriter extends DynamicDefaultDatabaseW
         super.write(data);
     }
     
+    @Override
+    protected boolean isUseJdbcBatch() {
+        /* bulk writers manage the batch mode of the transaction themselves */
+        return false;
+    }
+
     protected abstract void bulkWrite(CsvData data);
 
 }
@@ -0,0 +1,91 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.jmx;
+
+import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.ext.ISymmetricEngineAware;
+import org.jumpmind.symmetric.statistic.MetricFamily;
+import org.jumpmind.symmetric.statistic.MetricsRegistry;
+import org.jumpmind.symmetric.statistic.Timer;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "The management interface for node metrics")
+public class MetricsManagementService implements IBuiltInExtensionPoint, ISymmetricEngineAware {
+
+    private MetricsRegistry metrics;
+
+    public MetricsManagementService() {
+    }
+
+    public void setSymmetricEngine(ISymmetricEngine engine) {
+        this.metrics = engine.getStatisticManager().getMetrics();
+    }
+
+    @ManagedAttribute(description = "All metrics in the Prometheus text format")
+    public String getMetricsText() {
+        return metrics.toPrometheusText();
+    }
+
+    @ManagedAttribute(description = "Checks if latency timers are being recorded")
+    public boolean isEnabled() {
+        return metrics.isEnabled();
+    }
+
+    @ManagedOperation(description = "Get a latency quantile in seconds for a timer")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "name", description = "The name of the timer, like symmetric_route_seconds"),
+            @ManagedOperationParameter(name = "labelValues", description = "Comma separated label values, like a channel id"),
+            @ManagedOperationParameter(name = "quantile", description = "The quantile between 0 and 1, like 0.99") })
+    public double getTimerSecondsAtQuantile(String name, String labelValues, double quantile) {
+        Timer timer = getTimer(name, labelValues);
+        return timer != null ? timer.getSecondsAtQuantile(quantile) : 0;
+    }
+
+    @ManagedOperation(description = "Get the number of durations recorded by a timer")
+    @ManagedOperationParameters({
+            @ManagedOperationParameter(name = "name", description = "The name of the timer, like symmetric_route_seconds"),
+            @ManagedOperationParameter(name = "labelValues", description = "Comma separated label values, like a channel id") })
+    public long getTimerCount(String name, String labelValues) {
+        Timer timer = getTimer(name, labelValues);
+        return timer != null ? timer.getCount() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Timer getTimer(String name, String labelValues) {
+        MetricFamily<?> family = metrics.getFamily(name);
+        if (family == null || family.getType() != MetricFamily.Type.SUMMARY) {
+            return null;
+        }
+        MetricFamily<Timer> timers = (MetricFamily<Timer>) family;
+        String[] values = labelValues == null ? new String[0] : labelValues.split(",", -1);
+        if (family.getLabelNames().length == 2) {
+            return timers.get(values.length > 0 ? values[0].trim() : "", values.length > 1 ? values[1].trim() : "");
+        } else {
+            return timers.get(values.length > 0 ? values[0].trim() : "");
+        }
+    }
+
+}
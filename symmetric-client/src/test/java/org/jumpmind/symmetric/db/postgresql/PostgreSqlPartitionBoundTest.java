@@ -0,0 +1,66 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db.postgresql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.jumpmind.symmetric.db.TablePartition;
+import org.junit.Test;
+
+public class PostgreSqlPartitionBoundTest {
+
+    @Test
+    public void testBoundedRange() {
+        TablePartition partition = PostgreSqlSymmetricDialect.parsePartitionBound("sym_data_p1", 
+                "FOR VALUES FROM ('1000') TO ('2000')");
+        assertEquals("sym_data_p1", partition.getName());
+        assertEquals(1000, partition.getMinId());
+        assertEquals(1999, partition.getMaxId());
+    }
+
+    @Test
+    public void testUnquotedRange() {
+        TablePartition partition = PostgreSqlSymmetricDialect.parsePartitionBound("p", "FOR VALUES FROM (5) TO (10)");
+        assertEquals(5, partition.getMinId());
+        assertEquals(9, partition.getMaxId());
+    }
+
+    @Test
+    public void testUnboundedRange() {
+        TablePartition partition = PostgreSqlSymmetricDialect.parsePartitionBound("p", 
+                "FOR VALUES FROM (MINVALUE) TO (MAXVALUE)");
+        assertEquals(Long.MIN_VALUE, partition.getMinId());
+        assertEquals(Long.MAX_VALUE, partition.getMaxId());
+    }
+
+    @Test
+    public void testNotRangePartition() {
+        assertNull(PostgreSqlSymmetricDialect.parsePartitionBound("p", "FOR VALUES IN ('a', 'b')"));
+        assertNull(PostgreSqlSymmetricDialect.parsePartitionBound("p", "DEFAULT"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testNotBoundedById() {
+        PostgreSqlSymmetricDialect.parsePartitionBound("p", "FOR VALUES FROM ('2020-01-01') TO ('2021-01-01')");
+    }
+
+}
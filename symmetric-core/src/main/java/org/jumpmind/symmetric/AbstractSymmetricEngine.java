@@ -129,7 +129,9 @@ import org.jumpmind.symmetric.service.impl.StatisticService;
 import org.jumpmind.symmetric.service.impl.TransformService;
 import org.jumpmind.symmetric.service.impl.TriggerRouterService;
 import org.jumpmind.symmetric.service.impl.UpdateService;
+import org.jumpmind.symmetric.statistic.IGaugeSource;
 import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.symmetric.statistic.MetricsRegistry;
 import org.jumpmind.symmetric.transport.ConcurrentConnectionManager;
 import org.jumpmind.symmetric.transport.IConcurrentConnectionManager;
 import org.jumpmind.symmetric.transport.ITransportManager;
@@ -360,6 +362,7 @@ abstract public class AbstractSymmetricEngine implements ISymmetricEngine {
         this.clusterService = createClusterService();
         this.statisticService = new StatisticService(parameterService, symmetricDialect);
         this.statisticManager = createStatisticManager();
+        registerStagingMetrics();
         this.concurrentConnectionManager = new ConcurrentConnectionManager(parameterService,
                 statisticManager);
         this.purgeService = new PurgeService(parameterService, symmetricDialect, clusterService,
@@ -458,6 +461,20 @@ abstract public class AbstractSymmetricEngine implements ISymmetricEngine {
 
     abstract protected IStatisticManager createStatisticManager();
 
+    protected void registerStagingMetrics() {
+        MetricsRegistry metrics = statisticManager.getMetrics();
+        metrics.getStagingMemoryGauges().get().setSource(new IGaugeSource() {
+            public double getValue() {
+                return stagingManager.getMemoryBufferSize();
+            }
+        });
+        metrics.getStagingMemoryBudgetGauges().get().setSource(new IGaugeSource() {
+            public double getValue() {
+                return stagingManager.getMemoryBudget();
+            }
+        });
+    }
+
     abstract protected ISymmetricDialect createSymmetricDialect();
 
     protected ISymmetricDialect createTargetDialect() {
@@ -165,6 +165,8 @@ final public class ParameterConstants {
     public final static String INITIAL_LOAD_CONCAT_CSV_IN_SQL_ENABLED = "initial.load.concat.csv.in.sql.enabled";
     public final static String INITIAL_LOAD_USE_COLUMN_TEMPLATES_ENABLED = "initial.load.use.column.templates.enabled";
     public final static String INITIAL_LOAD_EXTRACT_THREAD_COUNT_PER_SERVER = "initial.load.extract.thread.per.server.count";
+    public final static String INITIAL_LOAD_EXTRACT_SPLIT_ROWS = "initial.load.extract.split.rows";
+    public final static String INITIAL_LOAD_EXTRACT_SPLIT_MAX_COUNT = "initial.load.extract.split.max.count";
     public final static String INITIAL_LOAD_EXTRACT_TIMEOUT_MS = "initial.load.extract.timeout.ms";
     public final static String INITIAL_LOAD_EXTRACT_USE_TWO_PASS_LOB = "initial.load.extract.use.two.pass.lob";
     public final static String INITIAL_LOAD_EXTRACT_JOB_START = "start.initial.load.extract.job";
@@ -179,6 +181,10 @@ final public class ParameterConstants {
     public final static String EXTRACT_CHECK_ROW_SIZE = "extract.check.row.size";
     public final static String EXTRACT_ROW_MAX_LENGTH = "extract.row.max.length";
     public final static String EXTRACT_ROW_CAPTURE_TIME = "extract.row.capture.time";
+    public final static String EXTRACT_PIPELINE_ENABLED = "extract.pipeline.enabled";
+    public final static String EXTRACT_PIPELINE_QUEUE_SIZE = "extract.pipeline.queue.size";
+    public final static String EXTRACT_PIPELINE_MAX_THREADS = "extract.pipeline.max.threads";
+    public final static String EXTRACT_PARALLEL_BATCHES = "extract.parallel.batches";
     
     public final static String CREATE_TABLE_WITHOUT_DEFAULTS = "create.table.without.defaults";
     public final static String CREATE_TABLE_WITHOUT_FOREIGN_KEYS = "create.table.without.foreign.keys";
@@ -217,6 +223,17 @@ final public class ParameterConstants {
     public final static String ROUTING_USE_FAST_GAP_DETECTOR = "routing.use.fast.gap.detector";
     public final static String ROUTING_DETECT_INVALID_GAPS = "routing.detect.invalid.gaps";
     public final static String ROUTING_QUERY_CHANNELS_FIRST = "routing.query.channels.first";
+    public final static String ROUTING_PARALLEL_THREADS = "routing.parallel.threads";
+    public final static String ROUTING_SUBSELECT_CACHE_ENABLED = "routing.subselect.cache.enabled";
+    public final static String ROUTING_SUBSELECT_CACHE_MAX_ENTRIES = "routing.subselect.cache.max.entries";
+    public final static String ROUTING_SUBSELECT_CACHE_TTL_MS = "routing.subselect.cache.ttl.ms";
+    public final static String ROUTING_SUBSELECT_BATCH_SIZE = "routing.subselect.batch.size";
+
+    public final static String ROUTING_LOOKUP_TABLE_CACHE_ENABLED = "routing.lookup.table.cache.enabled";
+
+    public final static String ROUTING_LOOKUP_TABLE_CACHE_MAX_AGE_MS = "routing.lookup.table.cache.max.age.ms";
+
+    public final static String ROUTING_LOOKUP_TABLE_CACHE_MAX_ROWS = "routing.lookup.table.cache.max.rows";
     public final static String ROUTING_MAX_GAP_CHANGES = "routing.max.gap.changes";
     public final static String ROUTING_USE_COMMON_GROUPS = "routing.use.common.groups";
     public final static String ROUTING_USE_NON_COMMON_FOR_INCOMING = "routing.use.non.common.for.incoming";
@@ -235,7 +252,12 @@ final public class ParameterConstants {
     public final static String DATA_LOADER_NUM_OF_ACK_RETRIES = "num.of.ack.retries";
     public final static String DATA_LOADER_SEND_ACK_KEEPALIVE = "send.ack.keepalive.ms";
     public final static String DATA_LOADER_TIME_BETWEEN_ACK_RETRIES = "time.between.ack.retries.ms";
+    public final static String ACKNOWLEDGE_BULK_SIZE = "acknowledge.bulk.size";
     public final static String DATA_LOADER_MAX_ROWS_BEFORE_COMMIT = "dataloader.max.rows.before.commit";
+    public final static String DATA_LOADER_USE_JDBC_BATCH = "dataloader.use.jdbc.batch";
+    public final static String DATA_LOADER_JDBC_BATCH_SIZE = "dataloader.jdbc.batch.size";
+    public final static String DATA_LOADER_PARALLEL_CHANNELS = "dataloader.parallel.channels";
+    public final static String DATA_LOADER_PARALLEL_THREADS = "dataloader.parallel.threads";
     public final static String DATA_LOADER_CREATE_TABLE_ALTER_TO_MATCH_DB_CASE = "dataloader.create.table.alter.to.match.db.case";
     public final static String DATA_LOADER_TEXT_COLUMN_EXPRESSION = "dataloader.text.column.expression";
     public final static String DATA_LOADER_SLEEP_TIME_AFTER_EARLY_COMMIT = "dataloader.sleep.time.after.early.commit";
@@ -347,6 +369,9 @@ final public class ParameterConstants {
     public final static String PURGE_MAX_LINGERING_BATCHES_READ = "job.purge.max.lingering.batches.read";
     public final static String PURGE_FIRST_PASS = "job.purge.first.pass";
     public final static String PURGE_FIRST_PASS_OUTSTANDING_BATCHES_THRESHOLD = "job.purge.first.pass.outstanding.batches.threshold";
+    public final static String PURGE_TARGET_DELETE_MS = "job.purge.target.delete.ms";
+    public final static String PURGE_THREADS = "job.purge.threads";
+    public final static String PURGE_DROP_PARTITIONS = "job.purge.drop.partitions";
     
     public final static String JMX_LINE_FEED = "jmx.line.feed";
 
@@ -376,6 +401,12 @@ final public class ParameterConstants {
 
     public final static String STATISTIC_RECORD_COUNT_THRESHOLD = "statistic.record.count.threshold";
 
+    public final static String METRICS_ENABLED = "metrics.enabled";
+
+    public final static String METRICS_HTTP_ENABLED = "metrics.http.enabled";
+
+    public final static String METRICS_HTTP_AUTH = "metrics.http.auth";
+
     public final static String CURRENT_ACTIVITY_HISTORY_KEEP_COUNT = "statistic.activity.history.keep.count";
 
     public final static String STORES_UPPERCASE_NAMES_IN_CATALOG = "stores.uppercase.names.in.catalog";
@@ -407,8 +438,14 @@ final public class ParameterConstants {
     public final static String BSH_LOAD_FILTER_HANDLES_MISSING_TABLES = "bsh.load.filter.handles.missing.tables";
     
     public final static String BSH_TRANSFORM_GLOBAL_SCRIPT = "bsh.transform.global.script";
+    public final static String BSH_TRANSFORM_COMPILE_ENABLED = "bsh.transform.compile.enabled";
     public final static String BSH_EXTENSION_GLOBAL_SCRIPT = "bsh.extension.global.script";
     
+    public final static String TRANSFORM_LOOKUP_CACHE_ENABLED = "transform.lookup.cache.enabled";
+    public final static String TRANSFORM_LOOKUP_CACHE_MAX_ENTRIES = "transform.lookup.cache.max.entries";
+    public final static String TRANSFORM_LOOKUP_CACHE_TTL_MS = "transform.lookup.cache.ttl.ms";
+    public final static String TRANSFORM_LOOKUP_CACHE_PRELOAD_MAX_ROWS = "transform.lookup.cache.preload.max.rows";
+    
     public final static String MSSQL_ROW_LEVEL_LOCKS_ONLY = "mssql.allow.only.row.level.locks.on.runtime.tables";
     public final static String MSSQL_USE_NTYPES_FOR_SYNC = "mssql.use.ntypes.for.sync";
     public final static String MSSQL_LOCK_ESCALATION_DISABLED = "mssql.lock.escalation.disabled";
@@ -481,6 +518,14 @@ final public class ParameterConstants {
     
     public final static String STAGING_LOW_SPACE_THRESHOLD_MEGABYTES = "staging.low.space.threshold.megabytes";
 
+    public final static String STAGING_MEMORY_BUFFER_OFF_HEAP = "staging.memory.buffer.off.heap";
+
+    public final static String STAGING_MEMORY_BUFFER_POOL_MAX_BYTES = "staging.memory.buffer.pool.max.bytes";
+
+    public final static String STAGING_MEMORY_BUDGET_BYTES = "staging.memory.budget.bytes";
+
+    public final static String STAGING_COMPRESS_ENABLED = "staging.compress.enabled";
+
     public final static String STATISTIC_MANAGER_CLASS = "statistic.manager.class";
 
     public final static String DB2_CAPTURE_TRANSACTION_ID = "db2.capture.transaction.id";
@@ -44,6 +44,7 @@ import org.jumpmind.db.sql.ISqlResultsListener;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.sql.LogSqlResultsListener;
+import org.jumpmind.db.sql.Row;
 import org.jumpmind.db.sql.SqlException;
 import org.jumpmind.db.sql.SqlScript;
 import org.jumpmind.db.util.BinaryEncoding;
@@ -649,6 +650,45 @@ abstract public class AbstractSymmetricDialect implements ISymmetricDialect {
         return supportsSubselectsInUpdate;
     }
 
+    public boolean supportsPartitionPurge() {
+        return false;
+    }
+
+    public List<TablePartition> getTablePartitions(String tableName) {
+        return new ArrayList<TablePartition>(0);
+    }
+
+    public void dropTablePartition(String tableName, TablePartition partition) {
+    }
+
+    /*
+     * Build partitions from rows of partition_name and high_value, ordered by
+     * position, for platforms that declare each partition by the exclusive
+     * upper bound of its values.
+     */
+    protected List<TablePartition> getTablePartitionsByHighValue(String sql, Object... args) {
+        List<TablePartition> partitions = new ArrayList<TablePartition>();
+        long minId = Long.MIN_VALUE;
+        for (Row row : platform.getSqlTemplate().query(sql, args)) {
+            String highValue = StringUtils.trim(row.getString("high_value"));
+            long maxId = Long.MAX_VALUE;
+            if (!"MAXVALUE".equalsIgnoreCase(highValue)) {
+                try {
+                    maxId = Long.parseLong(highValue) - 1;
+                } catch (NumberFormatException e) {
+                    log.debug("Partition {} is not bounded by an id: {}", row.getString("partition_name"), highValue);
+                    return new ArrayList<TablePartition>(0);
+                }
+            }
+            partitions.add(new TablePartition(row.getString("partition_name"), minId, maxId));
+            if (maxId == Long.MAX_VALUE) {
+                break;
+            }
+            minId = maxId + 1;
+        }
+        return partitions;
+    }
+
     public long insertWithGeneratedKey(String sql, SequenceIdentifier sequenceId) {
         return insertWithGeneratedKey(sql, sequenceId, null, null);
     }
@@ -147,6 +147,24 @@ public interface ISymmetricDialect {
      */
     public boolean supportsSubselectsInUpdate();
 
+    /*
+     * Indicates if this dialect can list and drop the native partitions of a
+     * table, so the purge can drop them instead of deleting their rows.
+     */
+    public boolean supportsPartitionPurge();
+
+    /*
+     * Get the native partitions of a table that is partitioned by ranges of a
+     * numeric id, ordered by id.  Returns an empty list when the table is not
+     * partitioned that way or the platform has no native partitioning.
+     */
+    public List<TablePartition> getTablePartitions(String tableName);
+
+    /*
+     * Drop a partition returned by getTablePartitions along with its rows.
+     */
+    public void dropTablePartition(String tableName, TablePartition partition);
+
     /*
      * Implement this if the database has some type of cleanup functionality
      * that needs to be run when dropping database objects. An example is
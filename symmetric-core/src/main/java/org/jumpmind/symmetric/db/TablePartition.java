@@ -0,0 +1,63 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db;
+
+/**
+ * A native partition of a table that is partitioned by ranges of a numeric
+ * id. Both bounds are inclusive. An unbounded end is represented by
+ * {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}.
+ */
+public class TablePartition {
+
+    protected String name;
+
+    protected long minId;
+
+    protected long maxId;
+
+    public TablePartition(String name, long minId, long maxId) {
+        this.name = name;
+        this.minId = minId;
+        this.maxId = maxId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMinId() {
+        return minId;
+    }
+
+    public long getMaxId() {
+        return maxId;
+    }
+
+    public boolean isUnbounded() {
+        return minId == Long.MIN_VALUE && maxId == Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%d..%d]", name, minId, maxId);
+    }
+
+}
@@ -30,8 +30,16 @@ import static org.jumpmind.symmetric.common.Constants.DATA_CONTEXT_TARGET_NODE_E
 import static org.jumpmind.symmetric.common.Constants.DATA_CONTEXT_TARGET_NODE_GROUP_ID;
 import static org.jumpmind.symmetric.common.Constants.DATA_CONTEXT_TARGET_NODE_ID;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.lang.model.SourceVersion;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jumpmind.db.platform.IDatabasePlatform;
@@ -42,6 +50,7 @@ import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.service.IExtensionService;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.util.Context;
 import org.slf4j.Logger;
@@ -56,17 +65,64 @@ public class BshColumnTransform implements ISingleNewAndOldValueColumnTransform,
 
     final String INTERPRETER_KEY = String.format("%d.BshInterpreter", hashCode());
 
+    final String COMPILED_TRANSFORMS_KEY = String.format("%d.BshCompiledTransforms", hashCode());
+
     public static final String NAME = "bsh";
 
+    public final static String CODE_START = "import org.jumpmind.symmetric.io.data.transform.*;\n"
+            + "import org.jumpmind.symmetric.io.data.*;\n"
+            + "import org.jumpmind.db.platform.*;\n"
+            + "import org.jumpmind.db.sql.*;\n"
+            + "import java.util.*;\n"
+            + "public class BshColumnTransformExt implements BshColumnTransform.CompiledTransform { \n";
+
+    public final static String CODE_END = "\n\n   }\n}\n";
+
+    /**
+     * The variables a script can use besides the source columns, in the order
+     * they are passed to a compiled script.
+     */
+    protected final static String[][] VARIABLES = { { "currentValue", "String" }, { "oldValue", "String" },
+            { "channelId", "String" }, { "includeOn", "TransformColumn.IncludeOnType" },
+            { "sourceDmlType", "DataEventType" }, { "sourceDmlTypeString", "String" },
+            { "transformedData", "TransformedData" }, { "transformColumn", "TransformColumn" },
+            { "sourceSchemaName", "String" }, { "sourceCatalogName", "String" }, { "sourceTableName", "String" },
+            { "log", "org.slf4j.Logger" }, { "sqlTemplate", "ISqlTemplate" }, { "context", "DataContext" },
+            { "bshContext", "Map<String, Object>" }, { DATA_CONTEXT_ENGINE, "org.jumpmind.symmetric.ISymmetricEngine" },
+            { DATA_CONTEXT_TARGET_NODE, "org.jumpmind.symmetric.model.Node" }, { DATA_CONTEXT_TARGET_NODE_ID, "String" },
+            { DATA_CONTEXT_TARGET_NODE_GROUP_ID, "String" }, { DATA_CONTEXT_TARGET_NODE_EXTERNAL_ID, "String" },
+            { DATA_CONTEXT_SOURCE_NODE, "org.jumpmind.symmetric.model.Node" }, { DATA_CONTEXT_SOURCE_NODE_ID, "String" },
+            { DATA_CONTEXT_SOURCE_NODE_GROUP_ID, "String" }, { DATA_CONTEXT_SOURCE_NODE_EXTERNAL_ID, "String" } };
+
+    /**
+     * A transform expression compiled to Java. Variables are passed in the
+     * order of {@link BshColumnTransform#VARIABLES} and source column values
+     * in the order the columns were compiled. Each data context gets its own
+     * instance for each target column, so fields declared by the global script
+     * are neither shared between concurrent loads nor between columns.
+     */
+    public interface CompiledTransform {
+        public Object transform(Object[] variables, String[] values) throws Exception;
+    }
+
     IParameterService parameterService;
 
+    IExtensionService extensionService;
+
+    protected Map<String, CompiledScript> compiledScripts = new ConcurrentHashMap<String, CompiledScript>();
+
     /*
      * Static context object used to maintain objects in memory for reference between BSH transforms.
      */
     private static Map<String, Object> bshContext = new HashMap<String, Object>();
 
     public BshColumnTransform(IParameterService parameterService) {
+        this(parameterService, null);
+    }
+
+    public BshColumnTransform(IParameterService parameterService, IExtensionService extensionService) {
         this.parameterService = parameterService;
+        this.extensionService = extensionService;
     }
 
     public String getName() {
@@ -85,6 +141,11 @@ public class BshColumnTransform implements ISingleNewAndOldValueColumnTransform,
             DataContext context,
             TransformColumn column, TransformedData data, Map<String, String> sourceValues,
             String newValue, String oldValue) throws IgnoreColumnException, IgnoreRowException {
+        CompiledScript compiledScript = getCompiledScript(column, sourceValues);
+        if (compiledScript != null) {
+            return transformUsingCompiledScript(compiledScript, platform, context, column, data, sourceValues,
+                    newValue, oldValue);
+        }
         try {
             Interpreter interpreter = getInterpreter(context);
             interpreter.set("currentValue", newValue);
@@ -187,6 +248,147 @@ public class BshColumnTransform implements ISingleNewAndOldValueColumnTransform,
         }
     }
 
+    protected NewAndOldValue transformUsingCompiledScript(CompiledScript compiledScript, IDatabasePlatform platform,
+            DataContext context, TransformColumn column, TransformedData data, Map<String, String> sourceValues,
+            String newValue, String oldValue) throws IgnoreColumnException, IgnoreRowException {
+        Object[] variables = new Object[VARIABLES.length];
+        int index = 0;
+        variables[index++] = newValue;
+        variables[index++] = oldValue;
+        variables[index++] = context.getBatch().getChannelId();
+        variables[index++] = column.getIncludeOn();
+        variables[index++] = data.getSourceDmlType();
+        variables[index++] = data.getSourceDmlType().toString();
+        variables[index++] = data;
+        variables[index++] = column;
+        Data csvData = (Data) context.get(Constants.DATA_CONTEXT_CURRENT_CSV_DATA);
+        if (csvData != null && csvData.getTriggerHistory() != null) {
+            variables[index++] = csvData.getTriggerHistory().getSourceSchemaName();
+            variables[index++] = csvData.getTriggerHistory().getSourceCatalogName();
+            variables[index++] = csvData.getTriggerHistory().getSourceTableName();
+        } else {
+            index += 3;
+        }
+        variables[index++] = log;
+        variables[index++] = platform.getSqlTemplate();
+        variables[index++] = context;
+        variables[index++] = bshContext;
+        for (int i = index; i < VARIABLES.length; i++) {
+            variables[i] = context.get(VARIABLES[i][0]);
+        }
+
+        String[] values = new String[compiledScript.columnNames.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = sourceValues.get(compiledScript.columnNames[i]);
+        }
+
+        try {
+            Object result = getCompiledTransform(context, compiledScript).transform(variables, values);
+            if (result instanceof String) {
+                if (data.getTargetDmlType().equals(DataEventType.DELETE) && !column.isPk()) {
+                    return new NewAndOldValue(null, (String) result);
+                } else {
+                    return new NewAndOldValue((String) result, null);
+                }
+            } else if (result instanceof NewAndOldValue) {
+                return (NewAndOldValue) result;
+            } else if (result != null) {
+                return new NewAndOldValue(result.toString(), null);
+            } else {
+                return null;
+            }
+        } catch (IgnoreColumnException ex) {
+            throw ex;
+        } catch (IgnoreRowException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            log.error(String.format("Compiled script error for target column %s on transform %s", column.getTargetColumnName(),
+                    column.getTransformId()), ex);
+            throw new TransformColumnException(ex);
+        }
+    }
+
+    /**
+     * Returns the compiled form of the transform expression, compiling it the
+     * first time it is seen with this set of source columns. Returns null when
+     * compiling is turned off or the expression is not valid Java, in which
+     * case the BeanShell interpreter is used.
+     */
+    protected CompiledScript getCompiledScript(TransformColumn column, Map<String, String> sourceValues) {
+        if (extensionService == null || !parameterService.is(ParameterConstants.BSH_TRANSFORM_COMPILE_ENABLED)) {
+            return null;
+        }
+        String transformExpression = column.getTransformExpression();
+        String globalScript = parameterService.getString(ParameterConstants.BSH_TRANSFORM_GLOBAL_SCRIPT);
+        String key = column.getTransformId() + "." + column.getTargetColumnName();
+        CompiledScript compiledScript = compiledScripts.get(key);
+        if (compiledScript == null || !compiledScript.matches(transformExpression, globalScript, sourceValues)) {
+            compiledScript = compile(column, transformExpression, globalScript, sourceValues);
+            compiledScripts.put(key, compiledScript);
+        }
+        return compiledScript.transformClass != null ? compiledScript : null;
+    }
+
+    protected CompiledTransform getCompiledTransform(Context context, CompiledScript compiledScript) throws Exception {
+        @SuppressWarnings("unchecked")
+        Map<CompiledScript, CompiledTransform> transforms = (Map<CompiledScript, CompiledTransform>) context
+                .get(COMPILED_TRANSFORMS_KEY);
+        if (transforms == null) {
+            transforms = new HashMap<CompiledScript, CompiledTransform>();
+            context.put(COMPILED_TRANSFORMS_KEY, transforms);
+        }
+        CompiledTransform transform = transforms.get(compiledScript);
+        if (transform == null) {
+            transform = compiledScript.transformClass.newInstance();
+            transforms.put(compiledScript, transform);
+        }
+        return transform;
+    }
+
+    protected synchronized CompiledScript compile(TransformColumn column, String transformExpression,
+            String globalScript, Map<String, String> sourceValues) {
+        CompiledScript compiledScript = new CompiledScript(transformExpression, globalScript, sourceValues);
+        if (StringUtils.isEmpty(transformExpression)) {
+            return compiledScript;
+        }
+
+        Map<String, String> declarations = new LinkedHashMap<String, String>();
+        for (int i = 0; i < VARIABLES.length; i++) {
+            declarations.put(VARIABLES[i][0], String.format("%s %s = (%s) variables__[%d];", VARIABLES[i][1],
+                    VARIABLES[i][0], VARIABLES[i][1], i));
+        }
+        List<String> columnNames = new ArrayList<String>(sourceValues.keySet());
+        for (int i = 0; i < columnNames.size(); i++) {
+            for (String name : new String[] { columnNames.get(i).toUpperCase(), columnNames.get(i) }) {
+                if (SourceVersion.isName(name) && !name.endsWith("__")) {
+                    declarations.remove(name);
+                    declarations.put(name, String.format("String %s = values__[%d];", name, i));
+                }
+            }
+        }
+
+        StringBuilder javaCode = new StringBuilder(CODE_START);
+        if (StringUtils.isNotBlank(globalScript)) {
+            javaCode.append(globalScript).append("\n");
+        }
+        javaCode.append("    @SuppressWarnings(\"unchecked\")\n");
+        javaCode.append("    public Object transform(Object[] variables__, String[] values__) throws Exception {\n");
+        for (String declaration : declarations.values()) {
+            javaCode.append("        ").append(declaration).append("\n");
+        }
+        javaCode.append("\n").append(transformExpression).append(CODE_END);
+
+        try {
+            compiledScript.transformClass = ((CompiledTransform) extensionService.getCompiledClass(javaCode.toString()))
+                    .getClass();
+            compiledScript.columnNames = columnNames.toArray(new String[columnNames.size()]);
+        } catch (Throwable ex) {
+            log.info("Using the BeanShell interpreter for target column {} on transform {} because it could not be compiled: {}",
+                    new Object[] { column.getTargetColumnName(), column.getTransformId(), ex.getMessage() });
+        }
+        return compiledScript;
+    }
+
     protected Interpreter getInterpreter(Context context) {
         Interpreter interpreter = (Interpreter) context.get(INTERPRETER_KEY);
         if (interpreter == null) {
@@ -196,4 +398,24 @@ public class BshColumnTransform implements ISingleNewAndOldValueColumnTransform,
         return interpreter;
     }
 
+    static class CompiledScript {
+        String transformExpression;
+        String globalScript;
+        Set<String> sourceColumnNames;
+        String[] columnNames;
+        Class<? extends CompiledTransform> transformClass;
+
+        CompiledScript(String transformExpression, String globalScript, Map<String, String> sourceValues) {
+            this.transformExpression = transformExpression;
+            this.globalScript = globalScript;
+            this.sourceColumnNames = new HashSet<String>(sourceValues.keySet());
+        }
+
+        boolean matches(String transformExpression, String globalScript, Map<String, String> sourceValues) {
+            return StringUtils.equals(this.transformExpression, transformExpression)
+                    && StringUtils.equals(this.globalScript, globalScript)
+                    && sourceColumnNames.equals(sourceValues.keySet());
+        }
+    }
+
 }
@@ -22,31 +22,75 @@ package org.jumpmind.symmetric.io.data.transform;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jumpmind.db.model.Table;
 import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.NamedParameterUtils;
+import org.jumpmind.db.sql.ParsedSql;
+import org.jumpmind.db.sql.Row;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
 import org.jumpmind.symmetric.common.Constants;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.writer.DataWriterStatisticConstants;
 import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.util.ExpiringLruCache;
 import org.jumpmind.util.FormatUtils;
 import org.jumpmind.util.LinkedCaseInsensitiveMap;
+import org.jumpmind.util.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class LookupColumnTransform implements ISingleNewAndOldValueColumnTransform, IBuiltInExtensionPoint {
+public class LookupColumnTransform implements ISingleNewAndOldValueColumnTransform, ICachingColumnTransform,
+        IBuiltInExtensionPoint {
 
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
+    final String MODIFIED_TABLES_KEY = String.format("%d.LookupModifiedTables", hashCode());
+
     public static final String NAME = "lookup";
 
     protected static final StringMapper lookupColumnRowMapper = new StringMapper();
 
+    protected static final Pattern FROM_PATTERN = Pattern.compile("(?i)\\b(?:from|join)\\b\\s*");
+
+    protected static final Pattern TABLE_NAME_PATTERN = Pattern.compile("[^\\s,()]+");
+
+    protected static final Pattern NEXT_TABLE_PATTERN = Pattern.compile(
+            "(?i)(?:\\s+(?:as\\s+)?(?!(?:where|on|using|join|inner|left|right|full|cross|natural|group|order|having|union|limit|for)\\b)\\w+)?\\s*,\\s*");
+
+    protected static final Pattern PRELOAD_PATTERN = Pattern.compile(
+            "(?is)\\s*select\\s+([\\w.\"`\\[\\]]+)\\s+from\\s+([\\w.\"`\\[\\]]+)\\s+where\\s+([\\w.\"`\\[\\]]+)\\s*=\\s*:(\\w+)\\s*");
+
+    protected IParameterService parameterService;
+
+    protected Map<String, LookupCache> caches = new ConcurrentHashMap<String, LookupCache>();
+
+    public LookupColumnTransform() {
+        this(null);
+    }
+
+    public LookupColumnTransform(IParameterService parameterService) {
+        this.parameterService = parameterService;
+    }
+
     public String getName() {
         return NAME;
     }
@@ -82,10 +126,11 @@ public class LookupColumnTransform implements ISingleNewAndOldValueColumnTransfo
                     namedParams.put("TRM_" + transformedCol.getKey().toUpperCase(), transformedCol.getValue());
                 }
             }
-            if (transaction != null) {
-                values = transaction.query(sql, lookupColumnRowMapper, namedParams);
+            LookupCache cache = getCache(platform, context, column, data, sql);
+            if (cache != null) {
+                values = lookupUsingCache(platform, context, cache, namedParams);
             } else {
-                values = platform.getSqlTemplate().query(sql, lookupColumnRowMapper, namedParams);
+                values = query(platform, transaction, sql, namedParams);
             }
 
             int rowCount = values.size();
@@ -115,6 +160,188 @@ public class LookupColumnTransform implements ISingleNewAndOldValueColumnTransfo
         }
     }
     
+    protected List<String> query(IDatabasePlatform platform, ISqlTransaction transaction, String sql,
+            Map<String, Object> namedParams) {
+        if (transaction != null) {
+            return transaction.query(sql, lookupColumnRowMapper, namedParams);
+        } else {
+            return platform.getSqlTemplate().query(sql, lookupColumnRowMapper, namedParams);
+        }
+    }
+
+    /**
+     * Results are only cached for transforms on load, where the writer tells
+     * us about changes to the tables we read from. Returns null when caching
+     * is turned off, or when the batch has modified a table the lookup reads
+     * from, because the batch would see and cache values it has not committed.
+     */
+    protected LookupCache getCache(IDatabasePlatform platform, DataContext context, TransformColumn column,
+            TransformedData data, String sql) {
+        if (parameterService == null || !parameterService.is(ParameterConstants.TRANSFORM_LOOKUP_CACHE_ENABLED)
+                || data.getTransformation() == null
+                || data.getTransformation().getTransformPoint() != TransformPoint.LOAD) {
+            return null;
+        }
+        String key = column.getTransformId() + "." + column.getTargetColumnName();
+        LookupCache cache = caches.get(key);
+        Set<String> tableNames = cache != null && cache.sql.equals(sql) ? cache.tableNames : getTableNames(sql);
+        if (tableNames == null || isModifiedByBatch(context, tableNames)) {
+            return null;
+        }
+        if (cache == null || !cache.sql.equals(sql)) {
+            int maxEntries = parameterService.getInt(ParameterConstants.TRANSFORM_LOOKUP_CACHE_MAX_ENTRIES, 10000);
+            cache = new LookupCache(sql, NamedParameterUtils.parseSqlStatement(sql), tableNames, maxEntries,
+                    parameterService.getLong(ParameterConstants.TRANSFORM_LOOKUP_CACHE_TTL_MS, 60000));
+            preload(platform, context, cache, Math.min(maxEntries,
+                    parameterService.getInt(ParameterConstants.TRANSFORM_LOOKUP_CACHE_PRELOAD_MAX_ROWS, 1000)));
+            caches.put(key, cache);
+        }
+        return cache;
+    }
+
+    protected List<String> lookupUsingCache(IDatabasePlatform platform, DataContext context, LookupCache cache,
+            Map<String, Object> namedParams) {
+        List<Object> key = Arrays.asList(NamedParameterUtils.buildValueArray(cache.parsedSql, namedParams));
+        List<String> values = cache.values.get(key);
+        if (values != null) {
+            incrementStatistic(context, DataWriterStatisticConstants.TRANSFORMCACHEHITS);
+        } else {
+            incrementStatistic(context, DataWriterStatisticConstants.TRANSFORMCACHEMISSES);
+            long generation = cache.getGeneration();
+            values = query(platform, context.findTransaction(), cache.sql, namedParams);
+            cache.put(key, values, generation);
+        }
+        return values;
+    }
+
+    /**
+     * When the lookup selects one column from one table by a single key and
+     * the table is small, read the whole table into the cache at once instead
+     * of one key at a time. Keys missing from the table are still selected
+     * individually, so a miss after preloading costs no more than without it.
+     */
+    protected void preload(IDatabasePlatform platform, DataContext context, LookupCache cache, int maxRows) {
+        Matcher matcher = PRELOAD_PATTERN.matcher(cache.sql);
+        if (maxRows <= 0 || !matcher.matches()) {
+            return;
+        }
+        String tableName = matcher.group(2);
+        long generation = cache.getGeneration();
+        ISqlTransaction transaction = context.findTransaction();
+        String countSql = "select count(*) from " + tableName;
+        int rowCount = transaction != null ? transaction.queryForInt(countSql) : platform.getSqlTemplate()
+                .queryForInt(countSql);
+        if (rowCount > maxRows) {
+            return;
+        }
+        String selectSql = "select " + matcher.group(3) + " as lookup_key, " + matcher.group(1) + " as lookup_value from "
+                + tableName;
+        ISqlRowMapper<String[]> mapper = new ISqlRowMapper<String[]>() {
+            public String[] mapRow(Row row) {
+                return new String[] { row.getString("lookup_key"), row.getString("lookup_value") };
+            }
+        };
+        List<String[]> rows = transaction != null ? transaction.query(selectSql, mapper, new Object[0], null)
+                : platform.getSqlTemplate().query(selectSql, mapper);
+        Map<String, List<String>> valuesByKey = new LinkedHashMap<String, List<String>>();
+        for (String[] row : rows) {
+            if (row[0] != null) {
+                List<String> values = valuesByKey.get(row[0]);
+                if (values == null) {
+                    values = new ArrayList<String>(1);
+                    valuesByKey.put(row[0], values);
+                }
+                values.add(row[1]);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : valuesByKey.entrySet()) {
+            cache.put(Arrays.<Object> asList(entry.getKey()), entry.getValue(), generation);
+        }
+        log.debug("Preloaded {} lookup keys from {}", valuesByKey.size(), tableName);
+    }
+
+    public void tableModified(DataContext context, Table table) {
+        String tableName = table.getName() != null ? table.getName().toLowerCase() : null;
+        if (tableName != null) {
+            @SuppressWarnings("unchecked")
+            Set<String> modifiedTables = (Set<String>) context.get(MODIFIED_TABLES_KEY);
+            if (modifiedTables == null) {
+                modifiedTables = new HashSet<String>();
+                context.put(MODIFIED_TABLES_KEY, modifiedTables);
+            }
+            if (modifiedTables.add(tableName)) {
+                invalidate(modifiedTables);
+            }
+        }
+    }
+
+    /**
+     * Once the batch is committed, values other loads cached for the tables it
+     * modified are stale. After a rollback, clear everything, because a failed
+     * write may not have been reported as a modification.
+     */
+    public void batchEnded(DataContext context, boolean inError) {
+        @SuppressWarnings("unchecked")
+        Set<String> modifiedTables = (Set<String>) context.remove(MODIFIED_TABLES_KEY);
+        if (inError) {
+            for (LookupCache cache : caches.values()) {
+                cache.invalidate();
+            }
+        } else if (modifiedTables != null) {
+            invalidate(modifiedTables);
+        }
+    }
+
+    protected void invalidate(Set<String> tableNames) {
+        for (LookupCache cache : caches.values()) {
+            if (!Collections.disjoint(cache.tableNames, tableNames)) {
+                cache.invalidate();
+            }
+        }
+    }
+
+    protected boolean isModifiedByBatch(DataContext context, Set<String> tableNames) {
+        @SuppressWarnings("unchecked")
+        Set<String> modifiedTables = (Set<String>) context.get(MODIFIED_TABLES_KEY);
+        return modifiedTables != null && !Collections.disjoint(modifiedTables, tableNames);
+    }
+
+    /**
+     * Get the tables named after each from or join of the lookup sql,
+     * following comma separated from lists. Returns null when a from list has
+     * a derived table, because the tables after it cannot be found reliably
+     * and the lookup should not be cached.
+     */
+    protected Set<String> getTableNames(String sql) {
+        Set<String> tableNames = new HashSet<String>();
+        Matcher from = FROM_PATTERN.matcher(sql);
+        Matcher table = TABLE_NAME_PATTERN.matcher(sql);
+        Matcher next = NEXT_TABLE_PATTERN.matcher(sql);
+        while (from.find()) {
+            int position = from.end();
+            do {
+                table.region(position, sql.length());
+                if (!table.lookingAt()) {
+                    return null;
+                }
+                String tableName = table.group().replaceAll("[\"`\\[\\]]", "");
+                tableNames.add(tableName.substring(tableName.lastIndexOf('.') + 1).toLowerCase());
+                next.region(table.end(), sql.length());
+                position = next.lookingAt() ? next.end() : -1;
+            } while (position >= 0);
+        }
+        return tableNames;
+    }
+
+    protected void incrementStatistic(DataContext context, String category) {
+        if (context.getWriter() != null && context.getWriter().getStatistics() != null) {
+            Statistics stats = context.getWriter().getStatistics().get(context.getBatch());
+            if (stats != null) {
+                stats.increment(category);
+            }
+        }
+    }
+
     protected String doTokenReplacementOnSql(DataContext context, String sql) {
         if (isNotBlank(sql)) {
             Data csvData = (Data) context.get(Constants.DATA_CONTEXT_CURRENT_CSV_DATA);
@@ -132,4 +359,39 @@ public class LookupColumnTransform implements ISingleNewAndOldValueColumnTransfo
         return sql;
     }
 
+    static class LookupCache {
+        String sql;
+        ParsedSql parsedSql;
+        Set<String> tableNames;
+        ExpiringLruCache<List<Object>, List<String>> values;
+        long generation;
+
+        LookupCache(String sql, ParsedSql parsedSql, Set<String> tableNames, int maxEntries, long timeToLiveMs) {
+            this.sql = sql;
+            this.parsedSql = parsedSql;
+            this.tableNames = tableNames;
+            this.values = new ExpiringLruCache<List<Object>, List<String>>(maxEntries, timeToLiveMs);
+        }
+
+        synchronized long getGeneration() {
+            return generation;
+        }
+
+        /*
+         * Values read before the cache was last invalidated may already be
+         * stale, so they are only cached when no invalidation happened since
+         * the read started
+         */
+        synchronized void put(List<Object> key, List<String> value, long readGeneration) {
+            if (readGeneration == generation) {
+                values.put(key, value);
+            }
+        }
+
+        synchronized void invalidate() {
+            generation++;
+            values.clear();
+        }
+    }
+
 }
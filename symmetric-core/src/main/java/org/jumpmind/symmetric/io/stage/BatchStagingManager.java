@@ -22,6 +22,36 @@ public class BatchStagingManager extends StagingManager {
         super(directory, engine.getParameterService().is(ParameterConstants.CLUSTER_LOCKING_ENABLED),
                 engine.getParameterService().getLong(ParameterConstants.STAGING_LOW_SPACE_THRESHOLD_MEGABYTES, 0));
         this.engine = engine;
+        this.memoryBufferPool = new StagingBufferPool(StagingBufferPool.DEFAULT_SEGMENT_SIZE,
+                engine.getParameterService().is(ParameterConstants.STAGING_MEMORY_BUFFER_OFF_HEAP, false),
+                engine.getParameterService().getLong(ParameterConstants.STAGING_MEMORY_BUFFER_POOL_MAX_BYTES,
+                        StagingBufferPool.DEFAULT_MAX_POOLED_BYTES));
+        this.memoryBudgetBytes = engine.getParameterService().getLong(ParameterConstants.STAGING_MEMORY_BUDGET_BYTES, 0);
+    }
+
+    @Override
+    protected boolean spill(StagedResource resource) {
+        boolean spilled = super.spill(resource);
+        if (spilled && engine.getStatisticManager() != null) {
+            engine.getStatisticManager().incrementStagingMemorySpills(1);
+        }
+        return spilled;
+    }
+
+    @Override
+    public void memoryResourceRead(StagedResource resource) {
+        super.memoryResourceRead(resource);
+        if (engine.getStatisticManager() != null) {
+            engine.getStatisticManager().incrementStagingMemoryHits(1);
+        }
+    }
+
+    @Override
+    public void fileResourceRead(StagedResource resource) {
+        super.fileResourceRead(resource);
+        if (engine.getStatisticManager() != null) {
+            engine.getStatisticManager().incrementStagingMemoryMisses(1);
+        }
     }
     
     protected Map<String, Long> getBiggestBatchIds(Set<BatchId> batches) {
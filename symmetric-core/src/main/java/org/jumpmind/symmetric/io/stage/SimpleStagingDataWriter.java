@@ -23,10 +23,13 @@ package org.jumpmind.symmetric.io.stage;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jumpmind.db.model.Table;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.symmetric.common.Constants;
 import org.jumpmind.symmetric.csv.CsvReader;
@@ -83,6 +86,8 @@ public class SimpleStagingDataWriter {
             TableLine tableLine = null;
             Map<TableLine, TableLine> syncTableLines = new HashMap<TableLine, TableLine>();
             Map<TableLine, TableLine> batchTableLines = new HashMap<TableLine, TableLine>();
+            Map<String, Table> batchTables = new LinkedHashMap<String, Table>();
+            boolean batchHasScript = false;
             String line = null;
             long startTime = System.currentTimeMillis(), ts = startTime, lineCount = 0;
             String batchStatsColumnsLine = null;
@@ -99,6 +104,7 @@ public class SimpleStagingDataWriter {
                     writeLine(line);
                 } else if (line.startsWith(CsvConstants.TABLE)) {
                     tableLine = new TableLine(catalogLine, schemaLine, line);
+                    addTable(batchTables, catalogLine, schemaLine, line);
                     TableLine batchTableLine = batchTableLines.get(tableLine);
                     if (batchTableLine != null) {
                         tableLine = batchTableLine;
@@ -128,6 +134,8 @@ public class SimpleStagingDataWriter {
                     batch = new Batch(batchType, Long.parseLong(getArgLine(line)), getArgLine(channelLine), getBinaryEncoding(binaryLine),
                             getArgLine(nodeLine), targetNodeId, false);
                     processInfo.incrementBatchCount();
+                    batchTables.clear();
+                    batchHasScript = false;
                     String location = batch.getStagedLocation();
                     if (resource != null) {
                         resource.close();
@@ -146,6 +154,7 @@ public class SimpleStagingDataWriter {
                         }
                     }                    
                 } else if (line.startsWith(CsvConstants.COMMIT)) {
+                    boolean isStaged = writer != null;
                     if (writer != null) {
                         writeLine(line);
                         resource.close();
@@ -156,6 +165,9 @@ public class SimpleStagingDataWriter {
                     
                     if (batch != null) {
                         batch.setStatistics(batchStats);
+                        if (isStaged && !batchHasScript) {
+                            batch.setStagedTables(new ArrayList<Table>(batchTables.values()));
+                        }
                         if (listeners != null) {
                             for (IProtocolDataWriterListener listener : listeners) {
                                 listener.end(context, batch, resource);
@@ -164,6 +176,8 @@ public class SimpleStagingDataWriter {
                     }
                     batchStats = null;
                     resource = null;
+                    batchTables.clear();
+                    batchHasScript = false;
                 } else if (line.startsWith(CsvConstants.RETRY)) {
                     batch = new Batch(batchType, Long.parseLong(getArgLine(line)), getArgLine(channelLine), getBinaryEncoding(binaryLine),
                             getArgLine(nodeLine), targetNodeId, false);
@@ -226,10 +240,12 @@ public class SimpleStagingDataWriter {
                         }
                     }
                     
-                    if (line.startsWith(CsvConstants.INSERT) || line.startsWith(CsvConstants.DELETE) || line.startsWith(CsvConstants.UPDATE)
-                            || line.startsWith(CsvConstants.CREATE) || line.startsWith(CsvConstants.SQL)
+                    if (line.startsWith(CsvConstants.INSERT) || line.startsWith(CsvConstants.DELETE) || line.startsWith(CsvConstants.UPDATE)) {
+                        processInfo.incrementCurrentDataCount();
+                    } else if (line.startsWith(CsvConstants.CREATE) || line.startsWith(CsvConstants.SQL)
                             || line.startsWith(CsvConstants.BSH)) {
                         processInfo.incrementCurrentDataCount();
+                        batchHasScript = true;
                     }
                     
                     int size = line.length();
@@ -293,6 +309,16 @@ public class SimpleStagingDataWriter {
         return null;
     }
 
+    protected void addTable(Map<String, Table> batchTables, String catalogLine, String schemaLine, String tableLine) throws IOException {
+        String catalogName = StringUtils.trimToNull(getArgLine(catalogLine));
+        String schemaName = StringUtils.trimToNull(getArgLine(schemaLine));
+        String tableName = getArgLine(tableLine);
+        String key = Table.getFullyQualifiedTableName(catalogName, schemaName, tableName);
+        if (!batchTables.containsKey(key)) {
+            batchTables.put(key, new Table(catalogName, schemaName, tableName));
+        }
+    }
+
     protected BinaryEncoding getBinaryEncoding(String line) throws IOException {
         String value = getArgLine(line);
         if (value != null) {
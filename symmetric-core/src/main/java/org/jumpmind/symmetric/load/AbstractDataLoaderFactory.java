@@ -14,6 +14,8 @@ public abstract class AbstractDataLoaderFactory {
                 parameterService.is(ParameterConstants.DATA_LOADER_CREATE_TABLE_ALTER_TO_MATCH_DB_CASE, true));
         settings.setMaxRowsBeforeCommit(
                 parameterService.getLong(ParameterConstants.DATA_LOADER_MAX_ROWS_BEFORE_COMMIT));
+        settings.setUseJdbcBatch(parameterService.is(ParameterConstants.DATA_LOADER_USE_JDBC_BATCH, false));
+        settings.setJdbcBatchSize(parameterService.getInt(ParameterConstants.DATA_LOADER_JDBC_BATCH_SIZE, 100));
         settings.setCommitSleepInterval(
                 parameterService.getLong(ParameterConstants.DATA_LOADER_SLEEP_TIME_AFTER_EARLY_COMMIT));
         settings.setIgnoreMissingTables(parameterService.is(ParameterConstants.DATA_LOADER_IGNORE_MISSING_TABLES));
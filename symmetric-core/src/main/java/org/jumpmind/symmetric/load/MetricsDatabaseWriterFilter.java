@@ -0,0 +1,66 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.load;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.writer.DatabaseWriterFilterAdapter;
+import org.jumpmind.symmetric.statistic.MetricsRegistry;
+
+/**
+ * An out of the box filter that times each row loaded into the database by
+ * table and DML type. The start time is kept per thread so that timing a row
+ * does not allocate.
+ */
+public class MetricsDatabaseWriterFilter extends DatabaseWriterFilterAdapter implements IBuiltInExtensionPoint {
+
+    protected MetricsRegistry metrics;
+
+    protected ThreadLocal<long[]> startNanos = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    public MetricsDatabaseWriterFilter(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean beforeWrite(DataContext context, Table table, CsvData data) {
+        if (metrics.isEnabled()) {
+            startNanos.get()[0] = System.nanoTime();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterWrite(DataContext context, Table table, CsvData data) {
+        long start = startNanos.get()[0];
+        if (start != 0 && metrics.isEnabled() && table != null && data.getDataEventType() != null) {
+            metrics.getLoadRowTimers().get(table.getName(), data.getDataEventType().name()).stop(start);
+        }
+    }
+
+}
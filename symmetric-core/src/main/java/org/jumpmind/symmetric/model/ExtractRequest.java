@@ -22,6 +22,7 @@ package org.jumpmind.symmetric.model;
 
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 
 public class ExtractRequest implements Serializable {
 
@@ -54,6 +55,8 @@ public class ExtractRequest implements Serializable {
     private long transferredMillis;
     private long loadedMillis;
     private long parentRequestId;
+    private transient String reloadSelect;
+    private transient List<ExtractRequest> rangeRequests;
     
     public long getRequestId() {
         return requestId;
@@ -239,5 +242,29 @@ public class ExtractRequest implements Serializable {
         this.extractedMillis = extractedMillis;
     }
 
-    
+    /**
+     * The select used for the reload when the request was created. It is not
+     * stored with the request.
+     */
+    public String getReloadSelect() {
+        return reloadSelect;
+    }
+
+    public void setReloadSelect(String reloadSelect) {
+        this.reloadSelect = reloadSelect;
+    }
+
+    /**
+     * The requests for each primary key range when the table was split into
+     * ranges that are extracted in parallel, including this one. It is not
+     * stored with the request.
+     */
+    public List<ExtractRequest> getRangeRequests() {
+        return rangeRequests;
+    }
+
+    public void setRangeRequests(List<ExtractRequest> rangeRequests) {
+        this.rangeRequests = rangeRequests;
+    }
+
 }
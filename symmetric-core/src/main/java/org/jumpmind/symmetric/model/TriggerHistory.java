@@ -23,12 +23,14 @@ package org.jumpmind.symmetric.model;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.util.Date;
+import java.util.Map;
 
 import org.jumpmind.db.model.Table;
 import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.csv.CsvReader;
 import org.jumpmind.symmetric.db.AbstractTriggerTemplate;
 import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.util.LinkedCaseInsensitiveMap;
 
 /**
  * Maps to the table sync audit table which tracks the history of sync trigger
@@ -59,10 +61,14 @@ public class TriggerHistory implements Serializable {
 
     private String[] parsedColumnNames;
 
+    private Map<String, Integer> columnIndexes;
+
     private String pkColumnNames;
 
     private String[] parsedPkColumnNames;
 
+    private Map<String, Integer> pkColumnIndexes;
+
     private String nameForInsertTrigger;
 
     private String nameForUpdateTrigger;
@@ -163,6 +169,16 @@ public class TriggerHistory implements Serializable {
         return parsedColumnNames;
     }
 
+    /**
+     * @return the index of each column keyed by its name, ignoring case
+     */
+    public Map<String, Integer> getColumnIndexes() {
+        if (columnIndexes == null && getParsedColumnNames() != null) {
+            columnIndexes = toColumnIndexes(parsedColumnNames);
+        }
+        return columnIndexes;
+    }
+
     public int indexOfColumnName(String columnName, boolean ignoreCase) {
         String[] columnNames = getParsedColumnNames();
         int i = 0;
@@ -184,6 +200,25 @@ public class TriggerHistory implements Serializable {
         return parsedPkColumnNames;
     }
 
+    /**
+     * @return the index of each primary key column keyed by its name, ignoring
+     *         case
+     */
+    public Map<String, Integer> getPkColumnIndexes() {
+        if (pkColumnIndexes == null && getParsedPkColumnNames() != null) {
+            pkColumnIndexes = toColumnIndexes(parsedPkColumnNames);
+        }
+        return pkColumnIndexes;
+    }
+
+    protected static Map<String, Integer> toColumnIndexes(String[] columnNames) {
+        Map<String, Integer> indexes = new LinkedCaseInsensitiveMap<Integer>(columnNames.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            indexes.put(columnNames[i], i);
+        }
+        return indexes;
+    }
+
     public int getTableHash() {
         return tableHash;
     }
@@ -0,0 +1,86 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.ext.ISymmetricEngineAware;
+import org.jumpmind.symmetric.io.stage.IStagingManager;
+import org.jumpmind.symmetric.model.Monitor;
+import org.jumpmind.symmetric.model.MonitorEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+
+public class MonitorTypeStagingMemory implements IMonitorType, ISymmetricEngineAware, IBuiltInExtensionPoint {
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+
+    protected IStagingManager stagingManager;
+
+    @Override
+    public String getName() {
+        return "stagingMemory";
+    }
+
+    @Override
+    public MonitorEvent check(Monitor monitor) {
+        MonitorEvent event = new MonitorEvent();
+        long budget = stagingManager.getMemoryBudget();
+        long used = stagingManager.getMemoryBufferSize();
+        if (budget > 0) {
+            event.setValue((long) ((double) used / (double) budget * 100));
+        }
+        event.setDetails(serializeDetails(used, budget));
+        return event;
+    }
+
+    @Override
+    public boolean requiresClusterLock() {
+        return false;
+    }
+
+    @Override
+    public void setSymmetricEngine(ISymmetricEngine engine) {
+        stagingManager = engine.getStagingManager();
+    }
+
+    protected String serializeDetails(long used, long budget) {
+        Map<String, Long> details = new LinkedHashMap<String, Long>();
+        details.put("usedBytes", used);
+        details.put("budgetBytes", budget);
+        details.put("spills", stagingManager.getMemorySpillCount());
+        details.put("memoryHits", stagingManager.getMemoryHitCount());
+        details.put("memoryMisses", stagingManager.getMemoryMissCount());
+        String result = null;
+        try {
+            result = new Gson().toJson(details);
+        } catch (Exception e) {
+            log.warn("Unable to convert staging memory usage to JSON", e);
+        }
+        return result;
+    }
+
+}
@@ -109,6 +109,8 @@ public class NotificationTypeEmail implements INotificationType, ISymmetricEngin
                     stackTrace.append("Memory usage is at ").append(event.getValue()).append("%\n");
                 } else if (event.getType().equals("disk")) {
                     stackTrace.append("Disk usage is at ").append(event.getValue()).append("%\n");
+                } else if (event.getType().equals("stagingMemory")) {
+                    stackTrace.append("Staging memory usage is at ").append(event.getValue()).append("% of the budget\n");
                 }
                 if (!stackTrace.toString().isEmpty()) {
                     text.append("\nDetails: ");
@@ -48,7 +48,16 @@ public abstract class AbstractDataRouter implements IDataRouter {
     public void contextCommitted(SimpleRouterContext context) {
     }
 
+    /**
+     * @return the column values of the row keyed by column name, with the old
+     *         values also under OLD_ prefixed names. Values are decoded from
+     *         the row data as they are looked up.
+     */
     protected Map<String, String> getDataMap(DataMetaData dataMetaData, ISymmetricDialect symmetricDialect) {
+        return new LazyDataMap(this, dataMetaData, symmetricDialect);
+    }
+
+    protected Map<String, String> buildDataMap(DataMetaData dataMetaData, ISymmetricDialect symmetricDialect) {
         Map<String, String> data = null;
         DataEventType dml = dataMetaData.getData().getDataEventType();
         switch (dml) {
@@ -208,10 +217,14 @@ public abstract class AbstractDataRouter implements IDataRouter {
     }
 
     protected void testColumnNamesMatchValues(DataMetaData dataMetaData, String[] columnNames, Object[] values) {
-        if (columnNames.length != values.length) {
+        testColumnNamesMatchValues(dataMetaData, columnNames, values.length);
+    }
+
+    protected void testColumnNamesMatchValues(DataMetaData dataMetaData, String[] columnNames, int valueCount) {
+        if (columnNames.length != valueCount) {
             String message = String.format(
                     "The router row for table %s had %d columns but expected %d.",
-                    dataMetaData.getData().getTableName(), values.length, columnNames.length);
+                    dataMetaData.getData().getTableName(), valueCount, columnNames.length);
             throw new ProtocolException(message);
         }
     }
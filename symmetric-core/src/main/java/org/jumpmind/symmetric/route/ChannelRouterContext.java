@@ -59,6 +59,8 @@ public class ChannelRouterContext extends SimpleRouterContext {
     public static final String STAT_BATCHES_NONCOMMON = "batches.noncommon.count";
     public static final String STAT_UPDATE_BATCHES_MS = "batches.update.time.ms";
     public static final String STAT_ROUTE_TOTAL_TIME = "total.time.ms";
+    public static final String STAT_ROUTER_CACHE_HITS = "router.cache.hits";
+    public static final String STAT_ROUTER_CACHE_MISSES = "router.cache.misses";
 
     private Map<String, OutgoingBatch> batchesByNodes = new HashMap<String, OutgoingBatch>();
     private Map<Integer, Map<String, OutgoingBatch>> batchesByGroups = new HashMap<Integer, Map<String, OutgoingBatch>>();
@@ -92,6 +94,7 @@ public class ChannelRouterContext extends SimpleRouterContext {
     private long committedDataEventCount = 0;
     private IBatchAlgorithm batchAlgorithm;
     private Map<Long, DataMetaData> configDataIdsProcessed = new HashMap<Long, DataMetaData>();
+    private IDataToRouteReader dataReader;
 
     public ChannelRouterContext(String nodeId, NodeChannel channel, ISqlTransaction transaction, IBatchAlgorithm batchAlgorithm)
             throws SQLException {
@@ -392,4 +395,13 @@ public class ChannelRouterContext extends SimpleRouterContext {
     public void setMaxBatchesJdbcFlushSize(int maxBatchesJdbcFlushSize) {
         this.maxBatchesJdbcFlushSize = maxBatchesJdbcFlushSize;
     }
+
+    public IDataToRouteReader getDataReader() {
+        return dataReader;
+    }
+
+    public void setDataReader(IDataToRouteReader dataReader) {
+        this.dataReader = dataReader;
+    }
+
 }
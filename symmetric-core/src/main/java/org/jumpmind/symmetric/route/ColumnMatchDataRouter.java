@@ -22,9 +22,14 @@ package org.jumpmind.symmetric.route;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -32,9 +37,14 @@ import org.jumpmind.extension.IBuiltInExtensionPoint;
 import org.jumpmind.symmetric.SyntaxParsingException;
 import org.jumpmind.symmetric.common.TokenConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.CsvRow;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.Router;
+import org.jumpmind.symmetric.model.TriggerHistory;
 import org.jumpmind.symmetric.model.TriggerRouter;
 import org.jumpmind.symmetric.service.IConfigurationService;
 
@@ -75,17 +85,28 @@ import org.jumpmind.symmetric.service.IConfigurationService;
  * the store_id would be the external_id of a node in the registration_redirect
  * table and the router_expression for trigger entry for the 'price' table would
  * be 'store_id=:REDIRECT_NODE' and the router_type would be 'column'.
+ * <P>
+ * Expressions are compiled once for each version of a router and each trigger
+ * history, so columns are read by position from the captured row and nodes
+ * are matched by hash lookup.
  */
 public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRouter, IBuiltInExtensionPoint {
 
     private static final String NULL_VALUE = "NULL";
 
+    private static final int MAX_NODE_INDEXES = 100;
+
     private IConfigurationService configurationService;
     
     private ISymmetricDialect symmetricDialect;
 
     final static String EXPRESSION_KEY = String.format("%s.Expression.", ColumnMatchDataRouter.class
             .getName());        
+
+    final static String NODE_INDEX_KEY = String.format("%s.NodeIndex.", ColumnMatchDataRouter.class
+            .getName());
+
+    protected Map<String, CompiledExpressions> compiledExpressions = new ConcurrentHashMap<String, CompiledExpressions>();
     
     public ColumnMatchDataRouter() {
     }
@@ -101,51 +122,12 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         if (initialLoadSelectUsed && initialLoad) {
             nodeIds = toNodeIds(nodes, null);
         } else {
-            List<Expression> expressions = getExpressions(dataMetaData.getRouter(), routingContext);
-            Map<String, String> columnValues = getDataMap(dataMetaData, symmetricDialect);
-
-            if (columnValues != null) {
-                for (Expression e : expressions) {
-                    String column = e.tokens[0].trim();
-                    String value = e.tokens[1];
-                    String columnValue = columnValues.get(column);
-
-                    if (value.equalsIgnoreCase(TokenConstants.NODE_ID)) {
-                        for (Node node : nodes) {
-                            nodeIds = runExpression(e, columnValue, node.getNodeId(), nodes,
-                                    nodeIds, node);
-                        }
-                    } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
-                        for (Node node : nodes) {
-                            nodeIds = runExpression(e, columnValue, node.getExternalId(), nodes,
-                                    nodeIds, node);
-                        }
-                    } else if (value.equalsIgnoreCase(TokenConstants.NODE_GROUP_ID)) {
-                        for (Node node : nodes) {
-                            nodeIds = runExpression(e, columnValue, node.getNodeGroupId(), nodes,
-                                    nodeIds, node);
-                        }
-                    } else if (e.hasEquals && value.equalsIgnoreCase(TokenConstants.REDIRECT_NODE)) {
-                        Map<String, String> redirectMap = getRedirectMap(routingContext);
-                        String nodeId = redirectMap.get(columnValue);
-                        if (nodeId != null) {
-                            nodeIds = addNodeId(nodeId, nodeIds, nodes);
-                        }
-                    } else {
-                        String compareValue = value;
-                        if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_DATA)) {
-                            compareValue = dataMetaData.getData().getExternalData();
-                        } else if (value.startsWith(":")) {
-                            compareValue = columnValues.get(value.substring(1));
-                        } else if (value.equals(NULL_VALUE)) {
-                            compareValue = null;
-                        }
-                        nodeIds = runExpression(e, columnValue, compareValue, nodes, nodeIds, null);
-                    }
-                }
+            CompiledExpressions compiled = getCompiledExpressions(dataMetaData.getRouter(),
+                    dataMetaData.getTriggerHistory());
+            if (compiled != null && compiled.canMatch(dataMetaData.getData())) {
+                nodeIds = compiled.match(this, routingContext, dataMetaData.getData(), nodes);
             } else {
-                log.warn("There were no columns to match for the data_id of {}", dataMetaData
-                        .getData().getDataId());
+                nodeIds = routeToNodesUsingDataMap(routingContext, dataMetaData, nodes);
             }
         }
         
@@ -159,6 +141,58 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
 
     }
 
+    protected Set<String> routeToNodesUsingDataMap(SimpleRouterContext routingContext,
+            DataMetaData dataMetaData, Set<Node> nodes) {
+        Set<String> nodeIds = null;
+        List<Expression> expressions = getExpressions(dataMetaData.getRouter(), routingContext);
+        Map<String, String> columnValues = getDataMap(dataMetaData, symmetricDialect);
+
+        if (columnValues != null) {
+            for (Expression e : expressions) {
+                String column = e.tokens[0].trim();
+                String value = e.tokens[1];
+                String columnValue = columnValues.get(column);
+
+                if (value.equalsIgnoreCase(TokenConstants.NODE_ID)) {
+                    for (Node node : nodes) {
+                        nodeIds = runExpression(e, columnValue, node.getNodeId(), nodes,
+                                nodeIds, node);
+                    }
+                } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
+                    for (Node node : nodes) {
+                        nodeIds = runExpression(e, columnValue, node.getExternalId(), nodes,
+                                nodeIds, node);
+                    }
+                } else if (value.equalsIgnoreCase(TokenConstants.NODE_GROUP_ID)) {
+                    for (Node node : nodes) {
+                        nodeIds = runExpression(e, columnValue, node.getNodeGroupId(), nodes,
+                                nodeIds, node);
+                    }
+                } else if (e.hasEquals && value.equalsIgnoreCase(TokenConstants.REDIRECT_NODE)) {
+                    Map<String, String> redirectMap = getRedirectMap(routingContext);
+                    String nodeId = redirectMap.get(columnValue);
+                    if (nodeId != null) {
+                        nodeIds = addNodeId(nodeId, nodeIds, nodes);
+                    }
+                } else {
+                    String compareValue = value;
+                    if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_DATA)) {
+                        compareValue = dataMetaData.getData().getExternalData();
+                    } else if (value.startsWith(":")) {
+                        compareValue = columnValues.get(value.substring(1));
+                    } else if (value.equals(NULL_VALUE)) {
+                        compareValue = null;
+                    }
+                    nodeIds = runExpression(e, columnValue, compareValue, nodes, nodeIds, null);
+                }
+            }
+        } else {
+            log.warn("There were no columns to match for the data_id of {}", dataMetaData
+                    .getData().getDataId());
+        }
+        return nodeIds;
+    }
+
     protected Set<String> runExpression(Expression e, String columnValue, String compareValue, Set<Node> nodes, Set<String> nodeIds, Node node) {
         boolean result = false;
         if (e.hasEquals && ((columnValue == null && compareValue == null) || 
@@ -263,6 +297,46 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         return value;
     }
 
+    /**
+     * Compile the expression once for each version of the router and each
+     * trigger history, so column positions only need to be resolved once.
+     */
+    protected CompiledExpressions getCompiledExpressions(Router router, TriggerHistory triggerHistory) {
+        if (triggerHistory == null) {
+            return null;
+        }
+        String key = router.getRouterId() + "." + triggerHistory.getTriggerHistoryId();
+        CompiledExpressions compiled = compiledExpressions.get(key);
+        if (compiled == null || !compiled.isCompiledFor(router)) {
+            compiled = new CompiledExpressions(router, parse(router.getRouterExpression()),
+                    triggerHistory.getParsedColumnNames());
+            compiledExpressions.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * The same set of nodes is passed for every row of a trigger router, so
+     * the index is kept by identity for the routing pass.
+     */
+    @SuppressWarnings("unchecked")
+    protected NodeIndex getNodeIndex(SimpleRouterContext ctx, Set<Node> nodes) {
+        Map<Set<Node>, NodeIndex> indexes = (Map<Set<Node>, NodeIndex>) ctx.getContextCache().get(NODE_INDEX_KEY);
+        if (indexes == null) {
+            indexes = new IdentityHashMap<Set<Node>, NodeIndex>();
+            ctx.getContextCache().put(NODE_INDEX_KEY, indexes);
+        }
+        NodeIndex index = indexes.get(nodes);
+        if (index == null) {
+            if (indexes.size() >= MAX_NODE_INDEXES) {
+                indexes.clear();
+            }
+            index = new NodeIndex(nodes);
+            indexes.put(nodes, index);
+        }
+        return index;
+    }
+
     @SuppressWarnings("unchecked")
     protected Map<String, String> getRedirectMap(SimpleRouterContext ctx) {
         final String CTX_CACHE_KEY = ColumnMatchDataRouter.class.getSimpleName() + "RouterMap";
@@ -275,6 +349,251 @@ public class ColumnMatchDataRouter extends AbstractDataRouter implements IDataRo
         return redirectMap;
     }
 
+    /**
+     * The expressions of a router resolved against the columns of one trigger
+     * history.
+     */
+    protected static class CompiledExpressions {
+
+        static final String OLD_ = "OLD_";
+
+        static final int SOURCE_NONE = 0;
+        static final int SOURCE_NEW = 1;
+        static final int SOURCE_OLD = 2;
+        static final int SOURCE_EXTERNAL_DATA = 3;
+
+        static final int COMPARE_CONSTANT = 0;
+        static final int COMPARE_COLUMN = 1;
+        static final int COMPARE_NODE_ID = 2;
+        static final int COMPARE_EXTERNAL_ID = 3;
+        static final int COMPARE_NODE_GROUP_ID = 4;
+        static final int COMPARE_REDIRECT_NODE = 5;
+
+        String routerExpression;
+        Date routerLastUpdateTime;
+        int columnCount;
+        Expression[] expressions;
+        int[] sources;
+        int[] indexes;
+        int[] compareTypes;
+        int[] compareSources;
+        int[] compareIndexes;
+        String[] constants;
+
+        CompiledExpressions(Router router, List<Expression> expressionList, String[] columnNames) {
+            this.routerExpression = router.getRouterExpression();
+            this.routerLastUpdateTime = router.getLastUpdateTime();
+            this.columnCount = columnNames.length;
+            int size = expressionList.size();
+            expressions = expressionList.toArray(new Expression[size]);
+            sources = new int[size];
+            indexes = new int[size];
+            compareTypes = new int[size];
+            compareSources = new int[size];
+            compareIndexes = new int[size];
+            constants = new String[size];
+            Map<String, Integer> columnIndexes = new HashMap<String, Integer>(columnNames.length * 2);
+            for (int i = 0; i < columnNames.length; i++) {
+                columnIndexes.put(columnNames[i].toUpperCase(), i);
+            }
+            for (int i = 0; i < size; i++) {
+                Expression e = expressions[i];
+                String column = e.tokens[0].trim();
+                String value = e.tokens[1];
+                resolve(column, columnIndexes, sources, indexes, i);
+                if (value.equalsIgnoreCase(TokenConstants.NODE_ID)) {
+                    compareTypes[i] = COMPARE_NODE_ID;
+                } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_ID)) {
+                    compareTypes[i] = COMPARE_EXTERNAL_ID;
+                } else if (value.equalsIgnoreCase(TokenConstants.NODE_GROUP_ID)) {
+                    compareTypes[i] = COMPARE_NODE_GROUP_ID;
+                } else if (e.hasEquals && value.equalsIgnoreCase(TokenConstants.REDIRECT_NODE)) {
+                    compareTypes[i] = COMPARE_REDIRECT_NODE;
+                } else if (value.equalsIgnoreCase(TokenConstants.EXTERNAL_DATA)) {
+                    compareTypes[i] = COMPARE_COLUMN;
+                    compareSources[i] = SOURCE_EXTERNAL_DATA;
+                } else if (value.startsWith(":")) {
+                    compareTypes[i] = COMPARE_COLUMN;
+                    resolve(value.substring(1), columnIndexes, compareSources, compareIndexes, i);
+                } else {
+                    compareTypes[i] = COMPARE_CONSTANT;
+                    constants[i] = value.equals(NULL_VALUE) ? null : value;
+                }
+            }
+        }
+
+        /**
+         * Resolve a column name the same way it is looked up in the data map,
+         * where EXTERNAL_DATA and OLD_ prefixed names win over table columns.
+         */
+        static void resolve(String column, Map<String, Integer> columnIndexes, int[] sources, int[] indexes, int i) {
+            String name = column.toUpperCase();
+            Integer index = null;
+            if (name.equals("EXTERNAL_DATA")) {
+                sources[i] = SOURCE_EXTERNAL_DATA;
+            } else if (name.startsWith(OLD_) && (index = columnIndexes.get(name.substring(OLD_.length()))) != null) {
+                sources[i] = SOURCE_OLD;
+                indexes[i] = index;
+            } else if ((index = columnIndexes.get(name)) != null) {
+                sources[i] = SOURCE_NEW;
+                indexes[i] = index;
+            } else {
+                sources[i] = SOURCE_NONE;
+            }
+        }
+
+        boolean isCompiledFor(Router router) {
+            return StringUtils.equals(routerExpression, router.getRouterExpression())
+                    && (routerLastUpdateTime == null ? router.getLastUpdateTime() == null
+                            : routerLastUpdateTime.equals(router.getLastUpdateTime()));
+        }
+
+        /**
+         * Rows that are not a complete insert, update or delete are matched
+         * using the data map instead.
+         */
+        boolean canMatch(Data data) {
+            DataEventType eventType = data.getDataEventType();
+            if (columnCount == 0) {
+                return false;
+            } else if (eventType == DataEventType.INSERT) {
+                return hasAllColumns(data.getCsvRow(CsvData.ROW_DATA));
+            } else if (eventType == DataEventType.UPDATE) {
+                CsvRow oldData = data.getCsvRow(CsvData.OLD_DATA);
+                return hasAllColumns(data.getCsvRow(CsvData.ROW_DATA)) && (oldData == null || hasAllColumns(oldData));
+            } else if (eventType == DataEventType.DELETE) {
+                return hasAllColumns(data.getCsvRow(CsvData.OLD_DATA));
+            } else {
+                return false;
+            }
+        }
+
+        boolean hasAllColumns(CsvRow values) {
+            return values != null && values.size() == columnCount;
+        }
+
+        String getValue(int source, int index, Data data) {
+            switch (source) {
+                case SOURCE_NEW:
+                    return data.getCsvRow(data.getDataEventType() == DataEventType.DELETE ? CsvData.OLD_DATA
+                            : CsvData.ROW_DATA).get(index);
+                case SOURCE_OLD:
+                    CsvRow oldData = data.getDataEventType() == DataEventType.INSERT ? null : data.getCsvRow(CsvData.OLD_DATA);
+                    return oldData != null ? oldData.get(index) : null;
+                case SOURCE_EXTERNAL_DATA:
+                    return data.getExternalData();
+                default:
+                    return null;
+            }
+        }
+
+        Set<String> match(ColumnMatchDataRouter router, SimpleRouterContext routingContext, Data data, Set<Node> nodes) {
+            Set<String> nodeIds = null;
+            for (int i = 0; i < expressions.length; i++) {
+                Expression e = expressions[i];
+                String columnValue = getValue(sources[i], indexes[i], data);
+                switch (compareTypes[i]) {
+                    case COMPARE_NODE_ID:
+                    case COMPARE_EXTERNAL_ID:
+                    case COMPARE_NODE_GROUP_ID:
+                        nodeIds = router.getNodeIndex(routingContext, nodes).match(e, compareTypes[i], columnValue,
+                                nodeIds);
+                        break;
+                    case COMPARE_REDIRECT_NODE:
+                        String nodeId = router.getRedirectMap(routingContext).get(columnValue);
+                        if (nodeId != null) {
+                            nodeIds = router.addNodeId(nodeId, nodeIds, nodes);
+                        }
+                        break;
+                    case COMPARE_COLUMN:
+                        nodeIds = router.runExpression(e, columnValue,
+                                getValue(compareSources[i], compareIndexes[i], data), nodes, nodeIds, null);
+                        break;
+                    default:
+                        nodeIds = router.runExpression(e, columnValue, constants[i], nodes, nodeIds, null);
+                        break;
+                }
+            }
+            return nodeIds;
+        }
+    }
+
+    /**
+     * Node ids keyed by node id, external id and node group id, so a column
+     * value is matched to nodes without comparing it to every node.
+     */
+    protected static class NodeIndex {
+
+        Set<Node> nodes;
+        Map<String, List<String>> byNodeId = new HashMap<String, List<String>>();
+        Map<String, List<String>> byExternalId = new HashMap<String, List<String>>();
+        Map<String, List<String>> byNodeGroupId = new HashMap<String, List<String>>();
+
+        NodeIndex(Set<Node> nodes) {
+            this.nodes = nodes;
+            for (Node node : nodes) {
+                put(byNodeId, node.getNodeId(), node);
+                put(byExternalId, node.getExternalId(), node);
+                put(byNodeGroupId, node.getNodeGroupId(), node);
+            }
+        }
+
+        static void put(Map<String, List<String>> map, String key, Node node) {
+            List<String> nodeIds = map.get(key);
+            if (nodeIds == null) {
+                nodeIds = new ArrayList<String>(1);
+                map.put(key, nodeIds);
+            }
+            nodeIds.add(node.getNodeId());
+        }
+
+        Map<String, List<String>> get(int compareType) {
+            if (compareType == CompiledExpressions.COMPARE_NODE_ID) {
+                return byNodeId;
+            } else if (compareType == CompiledExpressions.COMPARE_EXTERNAL_ID) {
+                return byExternalId;
+            } else {
+                return byNodeGroupId;
+            }
+        }
+
+        Set<String> match(Expression e, int compareType, String columnValue, Set<String> nodeIds) {
+            Map<String, List<String>> map = get(compareType);
+            if (e.hasEquals) {
+                nodeIds = add(map.get(columnValue), nodeIds);
+            } else if (e.hasNotEquals) {
+                for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+                    if (!StringUtils.equals(columnValue, entry.getKey())) {
+                        nodeIds = add(entry.getValue(), nodeIds);
+                    }
+                }
+            } else if (columnValue != null) {
+                Set<String> values = new HashSet<String>();
+                Collections.addAll(values, columnValue.split(","));
+                if (e.hasContains) {
+                    for (String value : values) {
+                        nodeIds = add(map.get(value), nodeIds);
+                    }
+                } else if (e.hasNotContains) {
+                    for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+                        if (entry.getKey() != null && !values.contains(entry.getKey())) {
+                            nodeIds = add(entry.getValue(), nodeIds);
+                        }
+                    }
+                }
+            }
+            return nodeIds;
+        }
+
+        Set<String> add(List<String> matched, Set<String> nodeIds) {
+            if (matched != null) {
+                nodeIds = nodeIds == null ? new HashSet<String>(matched.size()) : nodeIds;
+                nodeIds.addAll(matched);
+            }
+            return nodeIds;
+        }
+    }
+
     public static class Expression {
         public static final String EQUALS = "=";
         public static final String NOT_EQUALS = "!=";
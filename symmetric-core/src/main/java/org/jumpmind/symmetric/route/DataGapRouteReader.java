@@ -27,11 +27,10 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -97,7 +96,7 @@ public class DataGapRouteReader implements IDataToRouteReader {
 
     protected String lastTransactionId = null;
     
-    protected static Map<String, Boolean> lastSelectUsedGreaterThanQueryByEngineName = new HashMap<String, Boolean>(); 
+    protected static Map<String, Boolean> lastSelectUsedGreaterThanQueryByEngineName = new ConcurrentHashMap<String, Boolean>(); 
     
     long lastStatsPrintOutBaselineInMs = System.currentTimeMillis();
 
@@ -180,10 +179,9 @@ public class DataGapRouteReader implements IDataToRouteReader {
     
     protected void executeTransactional(ISqlReadCursor<Data> cursor) throws Exception {
         long maxPeekAheadSizeInBytes = (long)(Runtime.getRuntime().maxMemory() * percentOfHeapToUse);
-        int lastPeekAheadIndex = 0;
         int dataCount = 0;
         long maxDataToRoute = context.getChannel().getMaxDataToRoute();
-        List<Data> peekAheadQueue = new ArrayList<Data>(peekAheadCount);
+        PeekAheadQueue peekAheadQueue = new PeekAheadQueue(peekAheadCount);
 
         boolean moreData = true;
         while (dataCount < maxDataToRoute || (lastTransactionId != null)) {
@@ -195,7 +193,7 @@ public class DataGapRouteReader implements IDataToRouteReader {
             
             while (peekAheadQueue.size() > 0 && lastTransactionId == null &&
                     dataCount < maxDataToRoute) {
-                Data data = peekAheadQueue.remove(0);
+                Data data = peekAheadQueue.poll();
                 copyToQueue(data);
                 dataCount++;
                 processInfo.incrementCurrentDataCount();
@@ -205,27 +203,16 @@ public class DataGapRouteReader implements IDataToRouteReader {
             }
 
             if (lastTransactionId != null && peekAheadQueue.size() > 0) {
-                Iterator<Data> datas = peekAheadQueue.iterator();
-                int index = 0;
-                while (datas.hasNext()) {
-                    Data data = datas.next();                        
-                    if (lastTransactionId.equals(data.getTransactionId())) {
-                        dataWithSameTransactionIdCount++;
-                        datas.remove();
-                        copyToQueue(data);
-                        dataCount++;
-                        processInfo.incrementCurrentDataCount();
-                        processInfo.setCurrentTableName(data.getTableName());
-                        lastPeekAheadIndex = index;
-                    } else {
-                        index++;
-                    }
-                    
+                for (Data data : peekAheadQueue.pollTransaction(lastTransactionId)) {
+                    dataWithSameTransactionIdCount++;
+                    copyToQueue(data);
+                    dataCount++;
+                    processInfo.incrementCurrentDataCount();
+                    processInfo.setCurrentTableName(data.getTableName());
                 }
 
-                if (dataWithSameTransactionIdCount == 0 || peekAheadQueue.size()-lastPeekAheadIndex > peekAheadCount) {
+                if (dataWithSameTransactionIdCount == 0 || peekAheadQueue.getSizeAfterLastRemoved() > peekAheadCount) {
                     lastTransactionId = null;
-                    lastPeekAheadIndex = 0;
                 }
 
             } 
@@ -244,14 +231,14 @@ public class DataGapRouteReader implements IDataToRouteReader {
     
     protected void executeNonTransactional(ISqlReadCursor<Data> cursor) throws Exception {
         long maxDataToRoute = context.getChannel().getMaxDataToRoute();
-        List<Data> peekAheadQueue = new ArrayList<Data>(peekAheadCount);
+        PeekAheadQueue peekAheadQueue = new PeekAheadQueue(peekAheadCount);
         int dataCount = 0;
         while (dataCount < maxDataToRoute) {
             fillPeekAheadQueue(peekAheadQueue, peekAheadCount, cursor);
             
             if (peekAheadQueue.size() > 0) {
                 while (peekAheadQueue.size() > 0 && dataCount < maxDataToRoute) {
-                    Data data = peekAheadQueue.remove(0);
+                    Data data = peekAheadQueue.poll();
                     copyToQueue(data);
                     dataCount++;
                     processInfo.incrementCurrentDataCount();
@@ -467,7 +454,7 @@ public class DataGapRouteReader implements IDataToRouteReader {
                 select, context.isOverrideContainsBigLob() || channel.isContainsBigLob());
     }
 
-    protected boolean fillPeekAheadQueue(List<Data> peekAheadQueue, int peekAheadCount,
+    protected boolean fillPeekAheadQueue(PeekAheadQueue peekAheadQueue, int peekAheadCount,
             ISqlReadCursor<Data> cursor) throws SQLException {
         boolean moreData = true;
         int dataCount = 0;
@@ -543,6 +530,16 @@ public class DataGapRouteReader implements IDataToRouteReader {
         return dataQueue;
     }
 
+    public List<Data> peekAhead() {
+        List<Data> datas = new ArrayList<Data>(dataQueue.size());
+        for (Data data : dataQueue) {
+            if (!(data instanceof EOD)) {
+                datas.add(data);
+            }
+        }
+        return datas;
+    }
+
     static class EOD extends Data {
         private static final long serialVersionUID = 1L;
     }
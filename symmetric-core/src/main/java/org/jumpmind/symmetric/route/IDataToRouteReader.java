@@ -20,6 +20,8 @@
  */
 package org.jumpmind.symmetric.route;
 
+import java.util.List;
+
 import org.jumpmind.symmetric.model.Data;
 
 public interface IDataToRouteReader extends Runnable {
@@ -30,4 +32,10 @@ public interface IDataToRouteReader extends Runnable {
 
     public abstract void setReading(boolean reading);
 
+    /**
+     * A snapshot of the data that has been read but not yet taken, in the
+     * order it will be taken. Routers can use it to look ahead.
+     */
+    public abstract List<Data> peekAhead();
+
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.CsvRow;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+import org.jumpmind.symmetric.model.TriggerHistory;
+
+/**
+ * The column values of a row that is being routed, keyed the same way as the
+ * map built by {@link AbstractDataRouter#buildDataMap(DataMetaData, ISymmetricDialect)}.
+ * The row data is indexed up front, but a value is only decoded when it is
+ * looked up, so a router that checks one or two columns of a wide table does
+ * not decode the whole row. The full map is built the first time this map is
+ * changed, iterated or searched by anything other than {@link #get(Object)}.
+ */
+class LazyDataMap extends AbstractMap<String, String> {
+
+    private static final String OLD_ = "OLD_";
+
+    private static final String EXTERNAL_DATA = "EXTERNAL_DATA";
+
+    protected AbstractDataRouter router;
+
+    protected DataMetaData dataMetaData;
+
+    protected ISymmetricDialect symmetricDialect;
+
+    protected DataEventType dml;
+
+    protected Map<String, Integer> columnIndexes;
+
+    protected CsvRow newData;
+
+    protected CsvRow oldData;
+
+    protected boolean pkOnly;
+
+    protected Map<String, Integer> pkColumnIndexes;
+
+    protected CsvRow pkData;
+
+    protected Map<String, String> map;
+
+    LazyDataMap(AbstractDataRouter router, DataMetaData dataMetaData, ISymmetricDialect symmetricDialect) {
+        this.router = router;
+        this.dataMetaData = dataMetaData;
+        this.symmetricDialect = symmetricDialect;
+        this.dml = dataMetaData.getData().getDataEventType();
+        TriggerHistory triggerHistory = dataMetaData.getTriggerHistory();
+        String[] columnNames = triggerHistory.getParsedColumnNames();
+        this.columnIndexes = triggerHistory.getColumnIndexes();
+        switch (dml) {
+            case UPDATE:
+                newData = getRow(CsvData.ROW_DATA, columnNames);
+                oldData = getRow(CsvData.OLD_DATA, columnNames);
+                pkOnly = columnNames.length == 0 || (newData == null && oldData == null);
+                break;
+            case INSERT:
+                newData = getRow(CsvData.ROW_DATA, columnNames);
+                pkOnly = columnNames.length == 0;
+                break;
+            case DELETE:
+                oldData = getRow(CsvData.OLD_DATA, columnNames);
+                pkOnly = columnNames.length == 0 || oldData == null;
+                break;
+            default:
+                pkOnly = true;
+                break;
+        }
+
+        if (pkOnly) {
+            String[] pkColumnNames = triggerHistory.getParsedPkColumnNames();
+            if (pkColumnNames != null) {
+                pkColumnIndexes = triggerHistory.getPkColumnIndexes();
+                pkData = getRow(CsvData.PK_DATA, pkColumnNames);
+            }
+        }
+    }
+
+    protected CsvRow getRow(String key, String[] columnNames) {
+        CsvRow row = dataMetaData.getData().getCsvRow(key);
+        if (row != null) {
+            router.testColumnNamesMatchValues(dataMetaData, columnNames, row.size());
+        }
+        return row;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (map != null) {
+            return map.get(key);
+        } else if (!(key instanceof String)) {
+            return null;
+        }
+
+        String name = (String) key;
+        Data data = dataMetaData.getData();
+        if (name.equalsIgnoreCase(EXTERNAL_DATA)) {
+            return data.getExternalData();
+        } else if (pkOnly) {
+            Integer index = pkData != null ? pkColumnIndexes.get(name) : null;
+            return index != null ? pkData.get(index) : null;
+        }
+
+        Integer index = null;
+        if (name.regionMatches(true, 0, OLD_, 0, OLD_.length())
+                && (index = columnIndexes.get(name.substring(OLD_.length()))) != null) {
+            if (dml == DataEventType.INSERT) {
+                return null;
+            } else if (oldData != null) {
+                return oldData.get(index);
+            }
+        }
+
+        index = columnIndexes.get(name);
+        CsvRow row = dml == DataEventType.DELETE ? oldData : newData;
+        return index != null && row != null ? row.get(index) : null;
+    }
+
+    protected Map<String, String> getMap() {
+        if (map == null) {
+            map = router.buildDataMap(dataMetaData, symmetricDialect);
+        }
+        return map;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return getMap().containsKey(key);
+    }
+
+    @Override
+    public String put(String key, String value) {
+        return getMap().put(key, value);
+    }
+
+    @Override
+    public String remove(Object key) {
+        return getMap().remove(key);
+    }
+
+    @Override
+    public int size() {
+        return getMap().size();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return getMap().keySet();
+    }
+
+    @Override
+    public Collection<String> values() {
+        return getMap().values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return getMap().entrySet();
+    }
+
+}
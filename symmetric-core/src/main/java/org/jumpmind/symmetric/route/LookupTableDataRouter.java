@@ -20,10 +20,14 @@
  */
 package org.jumpmind.symmetric.route;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jumpmind.db.sql.ISqlRowMapper;
@@ -31,16 +35,34 @@ import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.Row;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
 import org.jumpmind.symmetric.SyntaxParsingException;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.Router;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.service.IParameterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A data router that uses a lookup table to map data to nodes
+ * A data router that uses a lookup table to map data to nodes.
+ * <p/>
+ * By default the lookup table is read once per routing pass of a channel.
+ * When routing.lookup.table.cache.enabled is on, the lookup table is indexed
+ * once and kept for the life of the engine. The index is kept current by
+ * applying changes to the lookup table as they are routed, by reading the
+ * table again when its row count changed since the last pass, by selecting
+ * rows changed since the last pass when LAST_UPDATE_COLUMN is set, and by a
+ * full reload once it is older than routing.lookup.table.cache.max.age.ms.
+ * <p/>
+ * Changes to the lookup table are routed on its own channel, which might
+ * run after the channel that uses the lookup table. Until then a delete is
+ * only seen through the row count, so a delete that is offset by an insert
+ * in the same pass, or an update without LAST_UPDATE_COLUMN, is missed
+ * until the change is routed or the index reaches its maximum age.
  */
 public class LookupTableDataRouter extends AbstractDataRouter implements IDataRouter, IBuiltInExtensionPoint {
 
@@ -51,6 +73,10 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
     public final static String PARAM_MAPPED_KEY_COLUMN = "LOOKUP_KEY_COLUMN";
     public final static String PARAM_EXTERNAL_ID_COLUMN = "EXTERNAL_ID_COLUMN";
     public final static String PARAM_ALL_NODES_VALUE = "ALL_NODES_VALUE";
+    public final static String PARAM_LAST_UPDATE_COLUMN = "LAST_UPDATE_COLUMN";
+
+    final static Set<String> PARAMS = new HashSet<String>(Arrays.asList(PARAM_LOOKUP_TABLE, PARAM_KEY_COLUMN,
+            PARAM_MAPPED_KEY_COLUMN, PARAM_EXTERNAL_ID_COLUMN, PARAM_ALL_NODES_VALUE, PARAM_LAST_UPDATE_COLUMN));
 
     final static String EXPRESSION_KEY = String.format("%s.Expression.",
             LookupTableDataRouter.class.getName());
@@ -60,6 +86,8 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
 
     private ISymmetricDialect symmetricDialect;
 
+    protected ConcurrentMap<String, LookupIndex> lookupIndexes = new ConcurrentHashMap<String, LookupIndex>();
+
     public LookupTableDataRouter(ISymmetricDialect symmetricDialect) {
         this.symmetricDialect = symmetricDialect;
     }
@@ -80,11 +108,10 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
             params = getParams(router, routingContext);
         
             Map<String, String> dataMap = getDataMap(dataMetaData, symmetricDialect);
-            Map<String, Set<String>> lookupTable = getLookupTable(params, router, routingContext);
             String column = params.get(PARAM_KEY_COLUMN);
             if (dataMap.containsKey(column)) {
                 String keyData = dataMap.get(column);
-                Set<String> externalIds = lookupTable.get(keyData);
+                Collection<String> externalIds = getExternalIds(params, router, routingContext, keyData);
                 if (externalIds != null) {
                     for (Node node : nodes) {
                         if (externalIds.contains(node.getExternalId()) || externalIds.contains(params.get(PARAM_ALL_NODES_VALUE))) {
@@ -103,6 +130,22 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
         return nodeIds;
     }
 
+    protected Collection<String> getExternalIds(Map<String, String> params, Router router,
+            SimpleRouterContext routingContext, String keyData) {
+        LookupIndex index = getLookupIndex(params, routingContext);
+        /*
+         * Read the published map once. It is null when a reload on another
+         * channel found the table too large after this pass cached the index
+         */
+        Map<String, String[]> externalIdsByKey = index != null ? index.externalIdsByKey : null;
+        if (externalIdsByKey != null) {
+            String[] externalIds = keyData != null ? externalIdsByKey.get(keyData) : null;
+            return externalIds != null ? Arrays.asList(externalIds) : null;
+        } else {
+            return getLookupTable(params, router, routingContext).get(keyData);
+        }
+    }
+
     /**
      * Cache parsed expressions in the context to minimize the amount of parsing
      * we have to do when we have lots of throughput.
@@ -140,7 +183,8 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
                     }
                 }
                 if (!valid ||
-                    params.size() < 4 || params.size() > 5 || 
+                    params.size() < 4 || params.size() > 6 || 
+                    !PARAMS.containsAll(params.keySet()) ||
                     !params.containsKey(PARAM_LOOKUP_TABLE) ||
                     !params.containsKey(PARAM_KEY_COLUMN) ||
                     !params.containsKey(PARAM_MAPPED_KEY_COLUMN) ||
@@ -186,4 +230,300 @@ public class LookupTableDataRouter extends AbstractDataRouter implements IDataRo
         return lookupMap;
     }
 
+    /**
+     * Get the engine wide index for the lookup table, refreshing it once per
+     * routing pass. Returns null when the index is turned off or the lookup
+     * table is too big to keep in memory.
+     */
+    protected LookupIndex getLookupIndex(Map<String, String> params, SimpleRouterContext routingContext) {
+        IParameterService parameterService = symmetricDialect != null ? symmetricDialect.getParameterService() : null;
+        if (parameterService == null || !parameterService.is(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_ENABLED)) {
+            return null;
+        }
+        final String CTX_CACHE_KEY = LOOKUP_TABLE_KEY + ".Index." + params.get(PARAM_LOOKUP_TABLE) + "."
+                + params.get(PARAM_MAPPED_KEY_COLUMN) + "." + params.get(PARAM_EXTERNAL_ID_COLUMN);
+        LookupIndex index = (LookupIndex) routingContext.getContextCache().get(CTX_CACHE_KEY);
+        if (index == null) {
+            String indexKey = CTX_CACHE_KEY + "." + params.get(PARAM_LAST_UPDATE_COLUMN);
+            index = lookupIndexes.get(indexKey);
+            if (index == null) {
+                index = new LookupIndex(params.get(PARAM_LOOKUP_TABLE), params.get(PARAM_MAPPED_KEY_COLUMN),
+                        params.get(PARAM_EXTERNAL_ID_COLUMN), params.get(PARAM_LAST_UPDATE_COLUMN));
+                LookupIndex existing = lookupIndexes.putIfAbsent(indexKey, index);
+                index = existing != null ? existing : index;
+            }
+            refresh(index, parameterService.getLong(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_MAX_AGE_MS, 3600000),
+                    parameterService.getInt(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_MAX_ROWS, 10000000));
+            routingContext.getContextCache().put(CTX_CACHE_KEY, index);
+        }
+        return index.tooLarge ? null : index;
+    }
+
+    protected void refresh(final LookupIndex index, long maxAgeMs, int maxRows) {
+        synchronized (index) {
+            ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
+            boolean expired = maxAgeMs > 0 && System.currentTimeMillis() - index.loadTime > maxAgeMs;
+            if (index.tooLarge && !expired) {
+                return;
+            }
+            boolean fullReload = index.externalIdsByKey == null || index.stale || index.tooLarge || expired;
+            if (!fullReload) {
+                /*
+                 * A count is cheap next to reading the table, and catches
+                 * inserts and deletes that have not been routed yet
+                 */
+                long tableRowCount = template.queryForLong(String.format("select count(*) from %s", index.tableName));
+                fullReload = tableRowCount != index.tableRowCount;
+            }
+            String sql = String.format("select %s, %s%s from %s", index.keyColumn, index.externalIdColumn,
+                    index.lastUpdateColumn != null ? ", " + index.lastUpdateColumn : "", index.tableName);
+            if (fullReload) {
+                /*
+                 * Other channels keep routing with the current map, so the
+                 * new one is built on the side and published when complete
+                 */
+                long ts = System.currentTimeMillis();
+                LookupIndex loaded = new LookupIndex(index.tableName, index.keyColumn, index.externalIdColumn,
+                        index.lastUpdateColumn);
+                loaded.reset(maxRows);
+                LookupIndexMapper mapper = new LookupIndexMapper(loaded);
+                template.query(sql, mapper);
+                loaded.tableRowCount = mapper.rowsRead;
+                index.loadTime = System.currentTimeMillis();
+                if (loaded.tooLarge) {
+                    setTooLarge(index, maxRows);
+                } else {
+                    index.publish(loaded);
+                    log.debug("Indexed {} rows of lookup table {} in {} ms", new Object[] { index.rowCount,
+                            index.tableName, index.loadTime - ts });
+                }
+            } else if (index.lastUpdateColumn != null && index.lastUpdateValue != null) {
+                /*
+                 * Rows with the same last update value might have committed
+                 * since the last pass, so they are selected again
+                 */
+                template.query(sql + " where " + index.lastUpdateColumn + " >= ?", new LookupIndexMapper(index),
+                        index.lastUpdateValue);
+                if (index.tooLarge) {
+                    setTooLarge(index, maxRows);
+                }
+            }
+        }
+    }
+
+    protected void setTooLarge(LookupIndex index, int maxRows) {
+        log.warn("The lookup table {} has more than {} rows, so it will be read for every routing pass instead of being kept in memory",
+                index.tableName, maxRows);
+        index.tooLarge = true;
+        index.externalIdsByKey = null;
+    }
+
+    /**
+     * Apply a captured change to any lookup index on the changed table. Called
+     * for all data that is routed, so it needs to be cheap when there are no
+     * indexes.
+     */
+    public void dataRouted(Data data) {
+        if (lookupIndexes.size() > 0 && data.getTriggerHistory() != null) {
+            for (LookupIndex index : lookupIndexes.values()) {
+                if (index.isTable(data.getTableName())) {
+                    synchronized (index) {
+                        if (index.externalIdsByKey != null) {
+                            applyChange(index, data);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    protected void applyChange(LookupIndex index, Data data) {
+        String[] columnNames = data.getTriggerHistory().getParsedColumnNames();
+        int keyIndex = indexOf(columnNames, index.keyColumn);
+        int externalIdIndex = indexOf(columnNames, index.externalIdColumn);
+        DataEventType eventType = data.getDataEventType();
+        String[] newData = eventType == DataEventType.INSERT || eventType == DataEventType.UPDATE ? data.toParsedRowData() : null;
+        String[] oldData = eventType == DataEventType.UPDATE || eventType == DataEventType.DELETE ? data.toParsedOldData() : null;
+        if (keyIndex < 0 || externalIdIndex < 0 || (eventType != DataEventType.INSERT && eventType != DataEventType.UPDATE
+                && eventType != DataEventType.DELETE) || (newData == null && eventType != DataEventType.DELETE)
+                || (oldData == null && eventType != DataEventType.INSERT)
+                || (newData != null && newData.length != columnNames.length)
+                || (oldData != null && oldData.length != columnNames.length)) {
+            /* not enough was captured to apply the change, so read the table again on the next pass */
+            index.stale = true;
+        } else {
+            if (oldData != null) {
+                index.remove(oldData[keyIndex], oldData[externalIdIndex]);
+            }
+            if (newData != null) {
+                index.add(newData[keyIndex], newData[externalIdIndex]);
+            }
+        }
+    }
+
+    protected static int indexOf(String[] columnNames, String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static class LookupIndexMapper implements ISqlRowMapper<Object> {
+        LookupIndex index;
+        long rowsRead;
+
+        LookupIndexMapper(LookupIndex index) {
+            this.index = index;
+        }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public Object mapRow(Row rs) {
+            rowsRead++;
+            if (!index.tooLarge) {
+                index.add(rs.getString(index.keyColumn), rs.getString(index.externalIdColumn));
+                if (index.lastUpdateColumn != null) {
+                    Object lastUpdate = rs.get(index.lastUpdateColumn);
+                    if (lastUpdate instanceof Comparable && (index.lastUpdateValue == null
+                            || ((Comparable) lastUpdate).compareTo(index.lastUpdateValue) > 0)) {
+                        index.lastUpdateValue = lastUpdate;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The lookup table held as key to external ids. External ids are repeated
+     * across many keys, so each distinct value is stored once. A key and
+     * external id pair is either present or not, so a change that removes a
+     * pair that is duplicated in the table is corrected at the next full
+     * reload.
+     */
+    protected static class LookupIndex {
+        final String tableName;
+        final String keyColumn;
+        final String externalIdColumn;
+        final String lastUpdateColumn;
+        volatile Map<String, String[]> externalIdsByKey;
+        Map<String, String> externalIds = new HashMap<String, String>();
+        Object lastUpdateValue;
+        long loadTime;
+        long tableRowCount = -1;
+        volatile boolean stale;
+        volatile boolean tooLarge;
+        int rowCount;
+        int maxRows;
+
+        LookupIndex(String tableName, String keyColumn, String externalIdColumn, String lastUpdateColumn) {
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+            this.externalIdColumn = externalIdColumn;
+            this.lastUpdateColumn = lastUpdateColumn;
+        }
+
+        void reset(int maxRows) {
+            this.externalIdsByKey = new ConcurrentHashMap<String, String[]>();
+            this.externalIds = new HashMap<String, String>();
+            this.lastUpdateValue = null;
+            this.stale = false;
+            this.tooLarge = false;
+            this.rowCount = 0;
+            this.maxRows = maxRows;
+        }
+
+        /**
+         * Take over the state of a completely loaded index. The map is
+         * written last so readers that see it also see the rest.
+         */
+        void publish(LookupIndex loaded) {
+            this.externalIds = loaded.externalIds;
+            this.lastUpdateValue = loaded.lastUpdateValue;
+            this.rowCount = loaded.rowCount;
+            this.tableRowCount = loaded.tableRowCount;
+            this.maxRows = loaded.maxRows;
+            this.stale = false;
+            this.tooLarge = false;
+            this.externalIdsByKey = loaded.externalIdsByKey;
+        }
+
+        boolean isTable(String changedTableName) {
+            if (changedTableName == null) {
+                return false;
+            }
+            int dot = tableName.lastIndexOf('.');
+            String name = dot >= 0 ? tableName.substring(dot + 1) : tableName;
+            return name.equalsIgnoreCase(changedTableName);
+        }
+
+        String[] get(String key) {
+            Map<String, String[]> map = externalIdsByKey;
+            return map != null && key != null ? map.get(key) : null;
+        }
+
+        void add(String key, String externalId) {
+            if (key == null) {
+                return;
+            }
+            String[] ids = externalIdsByKey.get(key);
+            if (ids == null) {
+                if (++rowCount > maxRows && maxRows > 0) {
+                    tooLarge = true;
+                    return;
+                }
+                externalIdsByKey.put(key, new String[] { intern(externalId) });
+            } else if (!contains(ids, externalId)) {
+                rowCount++;
+                String[] newIds = Arrays.copyOf(ids, ids.length + 1);
+                newIds[ids.length] = intern(externalId);
+                externalIdsByKey.put(key, newIds);
+            }
+        }
+
+        void remove(String key, String externalId) {
+            if (key == null) {
+                return;
+            }
+            String[] ids = externalIdsByKey.get(key);
+            if (ids != null && contains(ids, externalId)) {
+                rowCount--;
+                if (ids.length == 1) {
+                    externalIdsByKey.remove(key);
+                } else {
+                    String[] newIds = new String[ids.length - 1];
+                    int i = 0;
+                    for (String id : ids) {
+                        if (!StringUtils.equals(id, externalId)) {
+                            newIds[i++] = id;
+                        }
+                    }
+                    externalIdsByKey.put(key, newIds);
+                }
+            }
+        }
+
+        String intern(String externalId) {
+            if (externalId == null) {
+                return null;
+            }
+            String interned = externalIds.get(externalId);
+            if (interned == null) {
+                externalIds.put(externalId, externalId);
+                interned = externalId;
+            }
+            return interned;
+        }
+
+        static boolean contains(String[] ids, String externalId) {
+            for (String id : ids) {
+                if (StringUtils.equals(id, externalId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
 }
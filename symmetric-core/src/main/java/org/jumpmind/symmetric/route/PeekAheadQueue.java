@@ -0,0 +1,218 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jumpmind.symmetric.model.Data;
+
+/**
+ * The peek ahead window used by {@link DataGapRouteReader}. Data is held in
+ * a ring buffer in the order it was read and is indexed by transaction id, so
+ * taking the head and pulling every pending row of a transaction out of the
+ * window do not have to shift or rescan the rest of the window.
+ */
+public class PeekAheadQueue {
+
+    protected Data[] ring;
+
+    /**
+     * Binary indexed tree over the ring slots counting the rows that are still
+     * pending, used to count the rows behind a position.
+     */
+    protected int[] pending;
+
+    protected int mask;
+
+    protected long head;
+
+    protected long tail;
+
+    protected int size;
+
+    protected long lastRemoved = -1;
+
+    protected Map<String, ArrayDeque<Long>> transactions = new HashMap<String, ArrayDeque<Long>>();
+
+    public PeekAheadQueue(int initialCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) << 1;
+        ring = new Data[capacity];
+        pending = new int[capacity + 1];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(Data data) {
+        if (tail - head == ring.length) {
+            grow();
+        }
+        long sequence = tail++;
+        int slot = slot(sequence);
+        ring[slot] = data;
+        update(slot, 1);
+        size++;
+        String transactionId = data.getTransactionId();
+        if (transactionId != null) {
+            ArrayDeque<Long> sequences = transactions.get(transactionId);
+            if (sequences == null) {
+                sequences = new ArrayDeque<Long>();
+                transactions.put(transactionId, sequences);
+            }
+            sequences.add(sequence);
+        }
+    }
+
+    /**
+     * Remove and return the oldest pending row, or null if the window is empty.
+     */
+    public Data poll() {
+        if (size == 0) {
+            return null;
+        }
+        Data data = remove(head);
+        String transactionId = data.getTransactionId();
+        if (transactionId != null) {
+            ArrayDeque<Long> sequences = transactions.get(transactionId);
+            sequences.pollFirst();
+            if (sequences.isEmpty()) {
+                transactions.remove(transactionId);
+            }
+        }
+        advanceHead();
+        return data;
+    }
+
+    /**
+     * Remove every pending row of a transaction from the window.
+     * 
+     * @return the rows in the order they were read
+     */
+    public List<Data> pollTransaction(String transactionId) {
+        ArrayDeque<Long> sequences = transactionId != null ? transactions.remove(transactionId) : null;
+        if (sequences == null) {
+            return Collections.emptyList();
+        }
+        List<Data> datas = new ArrayList<Data>(sequences.size());
+        for (Long sequence : sequences) {
+            datas.add(remove(sequence));
+        }
+        advanceHead();
+        return datas;
+    }
+
+    /**
+     * @return the number of pending rows that were read after the row most
+     *         recently removed from the window
+     */
+    public int getSizeAfterLastRemoved() {
+        if (lastRemoved < head) {
+            return size;
+        }
+        return size - countPending(head, lastRemoved);
+    }
+
+    public void clear() {
+        Arrays.fill(ring, null);
+        Arrays.fill(pending, 0);
+        transactions.clear();
+        head = tail;
+        size = 0;
+        lastRemoved = -1;
+    }
+
+    protected Data remove(long sequence) {
+        int slot = slot(sequence);
+        Data data = ring[slot];
+        ring[slot] = null;
+        update(slot, -1);
+        size--;
+        lastRemoved = sequence;
+        return data;
+    }
+
+    protected void advanceHead() {
+        while (head < tail && ring[slot(head)] == null) {
+            head++;
+        }
+    }
+
+    protected void grow() {
+        Data[] oldRing = ring;
+        int oldMask = mask;
+        ring = new Data[oldRing.length << 1];
+        pending = new int[ring.length + 1];
+        mask = ring.length - 1;
+        for (long sequence = head; sequence < tail; sequence++) {
+            Data data = oldRing[(int) (sequence & oldMask)];
+            if (data != null) {
+                int slot = slot(sequence);
+                ring[slot] = data;
+                update(slot, 1);
+            }
+        }
+    }
+
+    protected int slot(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    /**
+     * Count the pending rows between two positions, inclusive. The range
+     * never spans more than the ring, but it may wrap around its end.
+     */
+    protected int countPending(long from, long to) {
+        int fromSlot = slot(from);
+        int toSlot = slot(to);
+        if (fromSlot <= toSlot) {
+            return prefix(toSlot) - prefix(fromSlot - 1);
+        } else {
+            return prefix(ring.length - 1) - prefix(fromSlot - 1) + prefix(toSlot);
+        }
+    }
+
+    protected void update(int slot, int delta) {
+        for (int i = slot + 1; i < pending.length; i += i & -i) {
+            pending[i] += delta;
+        }
+    }
+
+    protected int prefix(int slot) {
+        int count = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            count += pending[i];
+        }
+        return count;
+    }
+
+}
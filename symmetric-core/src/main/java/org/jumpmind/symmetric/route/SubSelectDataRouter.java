@@ -20,20 +20,32 @@
  */
 package org.jumpmind.symmetric.route;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.InvalidSqlException;
+import org.jumpmind.db.sql.NamedParameterUtils;
+import org.jumpmind.db.sql.ParsedSql;
+import org.jumpmind.db.sql.Row;
 import org.jumpmind.db.sql.mapper.StringMapper;
 import org.jumpmind.extension.IBuiltInExtensionPoint;
+import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
 import org.jumpmind.symmetric.model.DataMetaData;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.util.ExpiringLruCache;
 import org.jumpmind.util.FormatUtils;
 
 /**
@@ -41,7 +53,7 @@ import org.jumpmind.util.FormatUtils;
  * router_expression is always a SQL expression that is used to find the list of
  * nodes a row of data will be routed to. This router should never be used for
  * high throughput tables because it makes a call back to the database for each
- * row that is routed.
+ * row that is routed, unless routing.subselect.cache.enabled is turned on.
  * <P/>
  * The query that is used to select the nodes is as follows:
  * <P/>
@@ -59,10 +71,19 @@ import org.jumpmind.util.FormatUtils;
  * <code>
  * c.external_id in (select home_store from employee where employee_id in (:EMPLOYEE_ID, :OLD_EMPLOYEE_ID))
  * </code>
+ * <P/>
+ * When caching is enabled, the nodes selected are cached for the routing pass
+ * by the values that are bound to the expression. On a cache miss, the rows
+ * of the same table that are waiting in the peek ahead window are resolved
+ * along with the current row in a single union all query.
  */
 public class SubSelectDataRouter extends AbstractDataRouter implements IBuiltInExtensionPoint {
 
-    private static final String SQL = "select c.node_id from $(prefixName)_node c where c.node_group_id=:NODE_GROUP_ID and c.sync_enabled=1 and ";
+    private static final String FROM_SQL = "from $(prefixName)_node c where c.node_group_id=:NODE_GROUP_ID and c.sync_enabled=1 and ";
+
+    private static final String SQL = "select c.node_id " + FROM_SQL;
+
+    final static String CACHE_KEY = String.format("%s.Cache.", SubSelectDataRouter.class.getName());
 
     private ISymmetricDialect symmetricDialect;
 
@@ -72,24 +93,23 @@ public class SubSelectDataRouter extends AbstractDataRouter implements IBuiltInE
 
     public Set<String> routeToNodes(SimpleRouterContext routingContext, DataMetaData dataMetaData,
             Set<Node> nodes, boolean initialLoad, boolean initialLoadSelectUsed, TriggerRouter triggerRouter) {
-        String sql = FormatUtils.replaceToken(SQL, "prefixName", symmetricDialect.getTablePrefix(),
-                true);
         String subSelect = dataMetaData.getRouter().getRouterExpression();
         Set<String> nodeIds = null;
         if (!StringUtils.isBlank(subSelect) && !initialLoadSelectUsed) {
             try {
-                Map<String, Object> sqlParams = getDataObjectMap(dataMetaData, symmetricDialect, true);
-                sqlParams.put("NODE_GROUP_ID", dataMetaData.getRouter().getNodeGroupLink()
-                        .getTargetNodeGroupId());
-                sqlParams.put("EXTERNAL_DATA", dataMetaData.getData().getExternalData());
-                sqlParams.put("DATA_EVENT_TYPE", dataMetaData.getData().getDataEventType().name());
-                sqlParams.put("TABLE_NAME", dataMetaData.getData().getTableName());
-
-                ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
-                List<String> ids = template.query(String.format("%s%s", sql, subSelect),
-                        new StringMapper(), sqlParams);
-                if (ids != null) {
-                    nodeIds = new HashSet<String>(ids);
+                Map<String, Object> sqlParams = getSqlParams(dataMetaData);
+                SubSelectCache cache = getCache(routingContext, dataMetaData, subSelect);
+                if (cache != null) {
+                    nodeIds = routeToNodesUsingCache(routingContext, dataMetaData, triggerRouter, cache, sqlParams);
+                } else {
+                    String sql = FormatUtils.replaceToken(SQL, "prefixName", symmetricDialect.getTablePrefix(),
+                            true);
+                    ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
+                    List<String> ids = template.query(String.format("%s%s", sql, subSelect),
+                            new StringMapper(), sqlParams);
+                    if (ids != null) {
+                        nodeIds = new HashSet<String>(ids);
+                    }
                 }
             } catch (InvalidSqlException ex) {
                 log.error("The subselect expression was invalid for the {} subselect router for the '{}' event for table '{}'",
@@ -106,4 +126,137 @@ public class SubSelectDataRouter extends AbstractDataRouter implements IBuiltInE
         return nodeIds;
     }
 
+    protected Map<String, Object> getSqlParams(DataMetaData dataMetaData) {
+        Map<String, Object> sqlParams = getDataObjectMap(dataMetaData, symmetricDialect, true);
+        sqlParams.put("NODE_GROUP_ID", dataMetaData.getRouter().getNodeGroupLink()
+                .getTargetNodeGroupId());
+        sqlParams.put("EXTERNAL_DATA", dataMetaData.getData().getExternalData());
+        sqlParams.put("DATA_EVENT_TYPE", dataMetaData.getData().getDataEventType().name());
+        sqlParams.put("TABLE_NAME", dataMetaData.getData().getTableName());
+        return sqlParams;
+    }
+
+    /**
+     * The cache lives in the context, so it only spans one routing pass of a
+     * channel. Returns null when caching is turned off.
+     */
+    protected SubSelectCache getCache(SimpleRouterContext routingContext, DataMetaData dataMetaData, String subSelect) {
+        IParameterService parameterService = symmetricDialect.getParameterService();
+        if (parameterService == null || !parameterService.is(ParameterConstants.ROUTING_SUBSELECT_CACHE_ENABLED)) {
+            return null;
+        }
+        final String KEY = CACHE_KEY + dataMetaData.getRouter().getRouterId();
+        SubSelectCache cache = (SubSelectCache) routingContext.getContextCache().get(KEY);
+        if (cache == null || !cache.subSelect.equals(subSelect)) {
+            String fromSql = FormatUtils.replaceToken(FROM_SQL, "prefixName", symmetricDialect.getTablePrefix(), true)
+                    + subSelect;
+            cache = new SubSelectCache(subSelect, NamedParameterUtils.parseSqlStatement(fromSql),
+                    parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_CACHE_MAX_ENTRIES, 10000),
+                    parameterService.getLong(ParameterConstants.ROUTING_SUBSELECT_CACHE_TTL_MS, 60000),
+                    parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_BATCH_SIZE, 100));
+            routingContext.getContextCache().put(KEY, cache);
+        }
+        return cache;
+    }
+
+    protected Set<String> routeToNodesUsingCache(SimpleRouterContext routingContext, DataMetaData dataMetaData,
+            TriggerRouter triggerRouter, SubSelectCache cache, Map<String, Object> sqlParams) {
+        List<Object> key = Arrays.asList(NamedParameterUtils.buildValueArray(cache.parsedSql, sqlParams));
+        Set<String> nodeIds = cache.nodeIds.get(key);
+        if (nodeIds != null) {
+            routingContext.incrementStat(1, ChannelRouterContext.STAT_ROUTER_CACHE_HITS);
+        } else {
+            routingContext.incrementStat(1, ChannelRouterContext.STAT_ROUTER_CACHE_MISSES);
+            Map<List<Object>, Map<String, Object>> paramsByKey = new LinkedHashMap<List<Object>, Map<String, Object>>();
+            paramsByKey.put(key, sqlParams);
+            if (cache.batchSize > 1 && routingContext instanceof ChannelRouterContext) {
+                addPeekAheadParams((ChannelRouterContext) routingContext, dataMetaData, triggerRouter, cache, paramsByKey);
+            }
+            Map<List<Object>, Set<String>> nodeIdsByKey = queryNodeIds(cache.parsedSql, paramsByKey);
+            for (Map.Entry<List<Object>, Set<String>> entry : nodeIdsByKey.entrySet()) {
+                cache.nodeIds.put(entry.getKey(), entry.getValue());
+            }
+            nodeIds = nodeIdsByKey.get(key);
+        }
+        return new HashSet<String>(nodeIds);
+    }
+
+    /**
+     * Collect the distinct, uncached binds of rows for the same table that are
+     * waiting to be routed so they can be resolved with the current row.
+     */
+    protected void addPeekAheadParams(ChannelRouterContext context, DataMetaData dataMetaData, TriggerRouter triggerRouter,
+            SubSelectCache cache, Map<List<Object>, Map<String, Object>> paramsByKey) {
+        IDataToRouteReader reader = context.getDataReader();
+        if (reader == null || dataMetaData.getTriggerHistory() == null) {
+            return;
+        }
+        int triggerHistoryId = dataMetaData.getTriggerHistory().getTriggerHistoryId();
+        for (Data data : reader.peekAhead()) {
+            if (paramsByKey.size() >= cache.batchSize) {
+                break;
+            }
+            DataEventType eventType = data.getDataEventType();
+            if (data.getTriggerHistory() != null && data.getTriggerHistory().getTriggerHistoryId() == triggerHistoryId
+                    && StringUtils.isBlank(data.getNodeList())
+                    && (eventType == DataEventType.INSERT || eventType == DataEventType.UPDATE || eventType == DataEventType.DELETE)
+                    && (triggerRouter == null || triggerRouter.isRouted(eventType))) {
+                Map<String, Object> sqlParams = getSqlParams(new DataMetaData(data, dataMetaData.getTable(),
+                        dataMetaData.getRouter(), dataMetaData.getNodeChannel()));
+                List<Object> key = Arrays.asList(NamedParameterUtils.buildValueArray(cache.parsedSql, sqlParams));
+                if (!paramsByKey.containsKey(key) && !cache.nodeIds.containsKey(key)) {
+                    paramsByKey.put(key, sqlParams);
+                }
+            }
+        }
+    }
+
+    /**
+     * Select the nodes for each set of binds. More than one set is selected
+     * with a union all of the sub select, tagged with the position of its
+     * binds.
+     */
+    protected Map<List<Object>, Set<String>> queryNodeIds(ParsedSql parsedSql, Map<List<Object>, Map<String, Object>> paramsByKey) {
+        final List<List<Object>> keys = new ArrayList<List<Object>>(paramsByKey.keySet());
+        final Map<List<Object>, Set<String>> nodeIdsByKey = new LinkedHashMap<List<Object>, Set<String>>(keys.size());
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<Object>();
+        for (int i = 0; i < keys.size(); i++) {
+            Map<String, Object> sqlParams = paramsByKey.get(keys.get(i));
+            if (i > 0) {
+                sql.append(" union all ");
+            }
+            sql.append("select ").append(i).append(" as bind_position, c.node_id ");
+            sql.append(NamedParameterUtils.substituteNamedParameters(parsedSql, sqlParams));
+            args.addAll(Arrays.asList(NamedParameterUtils.buildValueArray(parsedSql, sqlParams)));
+            nodeIdsByKey.put(keys.get(i), new HashSet<String>());
+        }
+
+        ISqlTemplate template = symmetricDialect.getPlatform().getSqlTemplate();
+        template.query(sql.toString(), new ISqlRowMapper<Object>() {
+            public Object mapRow(Row row) {
+                String nodeId = row.getString("node_id");
+                if (nodeId != null) {
+                    nodeIdsByKey.get(keys.get(row.getInt("bind_position"))).add(nodeId);
+                }
+                return null;
+            }
+        }, args.toArray(), null);
+        return nodeIdsByKey;
+    }
+
+    static class SubSelectCache {
+        String subSelect;
+        ParsedSql parsedSql;
+        ExpiringLruCache<List<Object>, Set<String>> nodeIds;
+        int batchSize;
+
+        SubSelectCache(String subSelect, ParsedSql parsedSql, int maxEntries, long timeToLiveMs, int batchSize) {
+            this.subSelect = subSelect;
+            this.parsedSql = parsedSql;
+            this.nodeIds = new ExpiringLruCache<List<Object>, Set<String>>(maxEntries, timeToLiveMs);
+            this.batchSize = batchSize;
+        }
+    }
+
 }
@@ -22,8 +22,13 @@ package org.jumpmind.symmetric.service.impl;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
+import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.sql.mapper.NumberMapper;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.common.Constants;
@@ -70,142 +75,162 @@ public class AcknowledgeService extends AbstractService implements IAcknowledgeS
             }
         } else {
             OutgoingBatch outgoingBatch = outgoingBatchService.findOutgoingBatch(batch.getBatchId(), batch.getNodeId());
+            if (isAcknowledgeable(batch, outgoingBatch, result)) {
+                boolean isFirstTimeAsOkStatus = applyAck(batch, outgoingBatch);
+                outgoingBatchService.updateOutgoingBatch(outgoingBatch);
+                afterAck(batch, outgoingBatch, isFirstTimeAsOkStatus);
+            }
+        }
+        return result;
+    }
+
+    protected boolean isAcknowledgeable(BatchAck batch, OutgoingBatch outgoingBatch, BatchAckResult result) {
+        if (outgoingBatch == null) {
             Status status = batch.isResend() ? Status.RS : batch.isOk() ? Status.OK : Status.ER;
+            log.error("Could not find batch {}-{} to acknowledge as {}", new Object[] {batch.getNodeId(), batch.getBatchId(),
+                    status.name()});
+            result.setOk(false);
+            return false;
+        }
+        return outgoingBatch.getStatus() != Status.RQ;
+    }
 
-            if (outgoingBatch != null && outgoingBatch.getStatus() != Status.RQ) {
+    /**
+     * Apply the status and statistics of the acknowledgement to the outgoing
+     * batch, handling errors reported for the batch.
+     * 
+     * @return true if the batch is OK for the first time
+     */
+    protected boolean applyAck(BatchAck batch, OutgoingBatch outgoingBatch) {
+        Status status = batch.isResend() ? Status.RS : batch.isOk() ? Status.OK : Status.ER;
 
-                // Allow an outside system/user to indicate that a batch is OK
-                if (outgoingBatch.getStatus() == Status.IG && status == Status.OK) {
-                    log.info("Ignoring batch {}", outgoingBatch.getNodeBatchId());
-                } else if (outgoingBatch.getStatus() == Status.OK && status != Status.OK) {
-                    log.info("Setting status to ignore for batch {} because status was set to OK by user", outgoingBatch.getNodeBatchId());
-                    status = Status.IG;
-                }
+        // Allow an outside system/user to indicate that a batch is OK
+        if (outgoingBatch.getStatus() == Status.IG && status == Status.OK) {
+            log.info("Ignoring batch {}", outgoingBatch.getNodeBatchId());
+        } else if (outgoingBatch.getStatus() == Status.OK && status != Status.OK) {
+            log.info("Setting status to ignore for batch {} because status was set to OK by user", outgoingBatch.getNodeBatchId());
+            status = Status.IG;
+        }
 
-                boolean isFirstTimeAsOkStatus = outgoingBatch.getStatus() != Status.OK && status == Status.OK;
-                outgoingBatch.setStatus(status);
-                outgoingBatch.setErrorFlag(status == Status.ER);
-                outgoingBatch.setNetworkMillis(batch.getNetworkMillis());
-                outgoingBatch.setFilterMillis(batch.getFilterMillis());
-                outgoingBatch.setLoadMillis(batch.getLoadMillis());
-                outgoingBatch.setLoadStartTime(new Date(batch.getStartTime()));
-                outgoingBatch.setSqlCode(batch.getSqlCode());
-                outgoingBatch.setSqlState(batch.getSqlState());
-                outgoingBatch.setSqlMessage(batch.getSqlMessage());
-                outgoingBatch.setLoadRowCount(batch.getLoadRowCount());
-                outgoingBatch.setLoadInsertRowCount(batch.getLoadInsertRowCount());
-                outgoingBatch.setLoadUpdateRowCount(batch.getLoadUpdateRowCount());
-                outgoingBatch.setTransformLoadMillis(batch.getTransformLoadMillis());
-                outgoingBatch.setLoadDeleteRowCount(batch.getLoadDeleteRowCount());
-                outgoingBatch.setFallbackInsertCount(batch.getFallbackInsertCount());
-                outgoingBatch.setFallbackUpdateCount(batch.getFallbackUpdateCount());
-                outgoingBatch.setIgnoreRowCount(batch.getIgnoreRowCount());
-                outgoingBatch.setMissingDeleteCount(batch.getMissingDeleteCount());
-                outgoingBatch.setSkipCount(batch.getSkipCount());
-                if (batch.isIgnored()) {
-                    outgoingBatch.incrementIgnoreCount();
-                }
-                if (status == Status.OK) {
-                    outgoingBatch.setFailedDataId(0);
-                    outgoingBatch.setFailedLineNumber(0);
-                }
+        boolean isFirstTimeAsOkStatus = outgoingBatch.getStatus() != Status.OK && status == Status.OK;
+        outgoingBatch.setStatus(status);
+        outgoingBatch.setErrorFlag(status == Status.ER);
+        outgoingBatch.setNetworkMillis(batch.getNetworkMillis());
+        outgoingBatch.setFilterMillis(batch.getFilterMillis());
+        outgoingBatch.setLoadMillis(batch.getLoadMillis());
+        outgoingBatch.setLoadStartTime(new Date(batch.getStartTime()));
+        outgoingBatch.setSqlCode(batch.getSqlCode());
+        outgoingBatch.setSqlState(batch.getSqlState());
+        outgoingBatch.setSqlMessage(batch.getSqlMessage());
+        outgoingBatch.setLoadRowCount(batch.getLoadRowCount());
+        outgoingBatch.setLoadInsertRowCount(batch.getLoadInsertRowCount());
+        outgoingBatch.setLoadUpdateRowCount(batch.getLoadUpdateRowCount());
+        outgoingBatch.setTransformLoadMillis(batch.getTransformLoadMillis());
+        outgoingBatch.setLoadDeleteRowCount(batch.getLoadDeleteRowCount());
+        outgoingBatch.setFallbackInsertCount(batch.getFallbackInsertCount());
+        outgoingBatch.setFallbackUpdateCount(batch.getFallbackUpdateCount());
+        outgoingBatch.setIgnoreRowCount(batch.getIgnoreRowCount());
+        outgoingBatch.setMissingDeleteCount(batch.getMissingDeleteCount());
+        outgoingBatch.setSkipCount(batch.getSkipCount());
+        if (batch.isIgnored()) {
+            outgoingBatch.incrementIgnoreCount();
+        }
+        if (status == Status.OK) {
+            outgoingBatch.setFailedDataId(0);
+            outgoingBatch.setFailedLineNumber(0);
+        }
 
-                boolean isNewError = false;
-                if (status == Status.ER && batch.getErrorLine() != 0) {
-                    if (outgoingBatch.isLoadFlag()) {
-                        isNewError = outgoingBatch.getSentCount() == 1;
-                    } else if (batch.getErrorLine() != outgoingBatch.getFailedLineNumber()){
-                        String sql = getSql("selectDataIdSql");
-                        if (parameterService.is(ParameterConstants.DBDIALECT_ORACLE_SEQUENCE_NOORDER, false)) {
-                            sql = getSql("selectDataIdByCreateTimeSql");
-                        } else if (parameterService.is(ParameterConstants.ROUTING_DATA_READER_ORDER_BY_DATA_ID_ENABLED, true)) {
-                            sql += getSql("orderByDataId");
-                        }
+        boolean isNewError = false;
+        if (status == Status.ER && batch.getErrorLine() != 0) {
+            if (outgoingBatch.isLoadFlag()) {
+                isNewError = outgoingBatch.getSentCount() == 1;
+            } else if (batch.getErrorLine() != outgoingBatch.getFailedLineNumber()){
+                String sql = getSql("selectDataIdSql");
+                if (parameterService.is(ParameterConstants.DBDIALECT_ORACLE_SEQUENCE_NOORDER, false)) {
+                    sql = getSql("selectDataIdByCreateTimeSql");
+                } else if (parameterService.is(ParameterConstants.ROUTING_DATA_READER_ORDER_BY_DATA_ID_ENABLED, true)) {
+                    sql += getSql("orderByDataId");
+                }
     
-                        List<Number> ids = sqlTemplateDirty.query(sql, new NumberMapper(), outgoingBatch.getBatchId());
-                        if (ids.size() >= batch.getErrorLine()) {
-                            long failedDataId = ids.get((int) batch.getErrorLine() - 1).longValue();
-                            isNewError = outgoingBatch.getFailedDataId() == 0 || outgoingBatch.getFailedDataId() != failedDataId;
-                            outgoingBatch.setFailedDataId(failedDataId);
-                        }
-                        outgoingBatch.setFailedLineNumber(batch.getErrorLine());
-                    }
+                List<Number> ids = sqlTemplateDirty.query(sql, new NumberMapper(), outgoingBatch.getBatchId());
+                if (ids.size() >= batch.getErrorLine()) {
+                    long failedDataId = ids.get((int) batch.getErrorLine() - 1).longValue();
+                    isNewError = outgoingBatch.getFailedDataId() == 0 || outgoingBatch.getFailedDataId() != failedDataId;
+                    outgoingBatch.setFailedDataId(failedDataId);
                 }
+                outgoingBatch.setFailedLineNumber(batch.getErrorLine());
+            }
+        }
 
-                if (status == Status.ER) {
-                    boolean suppressError = false;
-                    if (isNewError) {
-                        engine.getStatisticManager().incrementDataLoadedOutgoingErrors(outgoingBatch.getChannelId(), 1);
-                    }
-                    if (isNewError && outgoingBatch.getSqlCode() == ErrorConstants.FK_VIOLATION_CODE) {
-                        if (!outgoingBatch.isLoadFlag() && parameterService.is(ParameterConstants.AUTO_RESOLVE_FOREIGN_KEY_VIOLATION)) {
-                            engine.getDataService().reloadMissingForeignKeyRows(outgoingBatch.getNodeId(), outgoingBatch.getFailedDataId());
-                            suppressError = true;
-                        }
-                        if (outgoingBatch.isLoadFlag() && parameterService.is(ParameterConstants.AUTO_RESOLVE_FOREIGN_KEY_VIOLATION_REVERSE_RELOAD)) {
-                            suppressError = true;
-                        }
-                    }
-                    if (outgoingBatch.getSqlCode() == ErrorConstants.PROTOCOL_VIOLATION_CODE
-                            && ErrorConstants.PROTOCOL_VIOLATION_STATE.equals(outgoingBatch.getSqlState())) {
-                        if (outgoingBatch.isLoadFlag()) {
-                            log.info("The batch {} may be corrupt in staging. Not removing the batch because it was a load batch, but you may need to clear the batch from staging manually.",
-                                    outgoingBatch.getNodeBatchId());
-                        } else {
-                            IStagedResource resource = engine.getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING,
-                                    outgoingBatch.getStagedLocation(), outgoingBatch.getBatchId());
-                            if (resource != null) {
-                                log.info("The batch {} may be corrupt in staging, so removing it.", outgoingBatch.getNodeBatchId());
-                                resource.delete();
-                                suppressError = isNewError;
-                            }
-                        }
-                    }
-                    if (isNewError && outgoingBatch.getSqlCode() == ErrorConstants.DEADLOCK_CODE) {
-                        suppressError = true;
-                    }
-                    
-                    if (suppressError) {
-                        outgoingBatch.setErrorFlag(false);
-                    } else {
-                        log.error("The outgoing batch {} failed: {}{}", outgoingBatch.getNodeBatchId(),
-                                (batch.getSqlCode() != 0 ? "[" + batch.getSqlState() + "," + batch.getSqlCode() + "] " : ""), batch.getSqlMessage());
-                        RouterStats routerStats = engine.getStatisticManager().getRouterStatsByBatch(batch.getBatchId());
-                        if (routerStats != null) {
-                            log.info("Router stats for batch " + outgoingBatch.getBatchId() + ": " + routerStats.toString());
-                        }
+        if (status == Status.ER) {
+            boolean suppressError = false;
+            if (isNewError) {
+                engine.getStatisticManager().incrementDataLoadedOutgoingErrors(outgoingBatch.getChannelId(), 1);
+            }
+            if (isNewError && outgoingBatch.getSqlCode() == ErrorConstants.FK_VIOLATION_CODE) {
+                if (!outgoingBatch.isLoadFlag() && parameterService.is(ParameterConstants.AUTO_RESOLVE_FOREIGN_KEY_VIOLATION)) {
+                    engine.getDataService().reloadMissingForeignKeyRows(outgoingBatch.getNodeId(), outgoingBatch.getFailedDataId());
+                    suppressError = true;
+                }
+                if (outgoingBatch.isLoadFlag() && parameterService.is(ParameterConstants.AUTO_RESOLVE_FOREIGN_KEY_VIOLATION_REVERSE_RELOAD)) {
+                    suppressError = true;
+                }
+            }
+            if (outgoingBatch.getSqlCode() == ErrorConstants.PROTOCOL_VIOLATION_CODE
+                    && ErrorConstants.PROTOCOL_VIOLATION_STATE.equals(outgoingBatch.getSqlState())) {
+                if (outgoingBatch.isLoadFlag()) {
+                    log.info("The batch {} may be corrupt in staging. Not removing the batch because it was a load batch, but you may need to clear the batch from staging manually.",
+                            outgoingBatch.getNodeBatchId());
+                } else {
+                    IStagedResource resource = engine.getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING,
+                            outgoingBatch.getStagedLocation(), outgoingBatch.getBatchId());
+                    if (resource != null) {
+                        log.info("The batch {} may be corrupt in staging, so removing it.", outgoingBatch.getNodeBatchId());
+                        resource.delete();
+                        suppressError = isNewError;
                     }
-                } else if (status == Status.RS) {
-                    log.info("The outgoing batch {} received resend request", outgoingBatch.getNodeBatchId());
                 }
-                
-                outgoingBatchService.updateOutgoingBatch(outgoingBatch);
+            }
+            if (isNewError && outgoingBatch.getSqlCode() == ErrorConstants.DEADLOCK_CODE) {
+                suppressError = true;
+            }
+            
+            if (suppressError) {
+                outgoingBatch.setErrorFlag(false);
+            } else {
+                log.error("The outgoing batch {} failed: {}{}", outgoingBatch.getNodeBatchId(),
+                        (batch.getSqlCode() != 0 ? "[" + batch.getSqlState() + "," + batch.getSqlCode() + "] " : ""), batch.getSqlMessage());
+                RouterStats routerStats = engine.getStatisticManager().getRouterStatsByBatch(batch.getBatchId());
+                if (routerStats != null) {
+                    log.info("Router stats for batch " + outgoingBatch.getBatchId() + ": " + routerStats.toString());
+                }
+            }
+        } else if (status == Status.RS) {
+            log.info("The outgoing batch {} received resend request", outgoingBatch.getNodeBatchId());
+        }
+        return isFirstTimeAsOkStatus;
+    }
 
-                if (status == Status.OK) {
-                    if (isFirstTimeAsOkStatus) {
-                        if (outgoingBatch.getLoadId() > 0) {
-                            engine.getDataExtractorService().updateExtractRequestLoadTime(new Date(), outgoingBatch);
-                        }
-                        engine.getStatisticManager().incrementDataLoadedOutgoing(outgoingBatch.getChannelId(), outgoingBatch.getLoadRowCount());
-                        engine.getStatisticManager().incrementDataBytesLoadedOutgoing(outgoingBatch.getChannelId(), outgoingBatch.getByteCount());
-                    }
-                    if (parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED)) {
-                        purgeBatchesFromStaging(outgoingBatch);
-                    }
-                    Channel channel = engine.getConfigurationService().getChannel(outgoingBatch.getChannelId());
-                    if (channel != null && channel.isFileSyncFlag()){
-                        /* Acknowledge the file_sync in case the file needs deleted. */
-                        engine.getFileSyncService().acknowledgeFiles(outgoingBatch);
-                    }
-                    engine.getStatisticManager().removeRouterStatsByBatch(batch.getBatchId());
+    protected void afterAck(BatchAck batch, OutgoingBatch outgoingBatch, boolean isFirstTimeAsOkStatus) {
+        Status status = outgoingBatch.getStatus();
+        if (status == Status.OK) {
+            if (isFirstTimeAsOkStatus) {
+                if (outgoingBatch.getLoadId() > 0) {
+                    engine.getDataExtractorService().updateExtractRequestLoadTime(new Date(), outgoingBatch);
                 }
-            } else if (outgoingBatch == null) {
-                log.error("Could not find batch {}-{} to acknowledge as {}", new Object[] {batch.getNodeId(), batch.getBatchId(),
-                        status.name()});
-                result.setOk(false);
+                engine.getStatisticManager().incrementDataLoadedOutgoing(outgoingBatch.getChannelId(), outgoingBatch.getLoadRowCount());
+                engine.getStatisticManager().incrementDataBytesLoadedOutgoing(outgoingBatch.getChannelId(), outgoingBatch.getByteCount());
             }
+            if (parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED)) {
+                purgeBatchesFromStaging(outgoingBatch);
+            }
+            Channel channel = engine.getConfigurationService().getChannel(outgoingBatch.getChannelId());
+            if (channel != null && channel.isFileSyncFlag()){
+                /* Acknowledge the file_sync in case the file needs deleted. */
+                engine.getFileSyncService().acknowledgeFiles(outgoingBatch);
+            }
+            engine.getStatisticManager().removeRouterStatsByBatch(batch.getBatchId());
         }
-        return result;
     }
 
     protected void purgeBatchesFromStaging(OutgoingBatch outgoingBatch) {
@@ -224,18 +249,116 @@ public class AcknowledgeService extends AbstractService implements IAcknowledgeS
         if (streamToFileThreshold > 0 && !outgoingBatch.isCommonFlag() && outgoingBatch.getByteCount() <= streamToFileThreshold) {
             IStagedResource resource = engine.getStagingManager().find(Constants.STAGING_CATEGORY_OUTGOING,
                     outgoingBatch.getStagedLocation(), outgoingBatch.getBatchId());
-            if (resource != null && resource.isMemoryResource() && !resource.isInUse()) {
-                resource.delete();
+            if (resource != null && resource.isMemoryResource()) {
+                if (!resource.isInUse()) {
+                    resource.delete();
+                } else {
+                    resource.setAcknowledged(true);
+                }
             }
         }
     }
 
     public List<BatchAckResult> ack(List<BatchAck> batches) {
         
+        int bulkSize = parameterService.getInt(ParameterConstants.ACKNOWLEDGE_BULK_SIZE, 500);
+        if (bulkSize > 1 && batches.size() > 1) {
+            List<BatchAckResult> results = new ArrayList<BatchAckResult>(batches.size());
+            for (int i = 0; i < batches.size(); i += bulkSize) {
+                results.addAll(ackInBulk(batches.subList(i, Math.min(i + bulkSize, batches.size()))));
+            }
+            return results;
+        }
+
         List<BatchAckResult> results = new ArrayList<BatchAckResult>();
         for (BatchAck batch:batches) {
             results.add(ack(batch));
         }
         return results;
     }
+
+    /**
+     * Acknowledge a group of batches by selecting all of their outgoing
+     * batches with one query per node and writing them back with batched
+     * updates in a single transaction.
+     */
+    protected List<BatchAckResult> ackInBulk(List<BatchAck> batches) {
+        IOutgoingBatchService outgoingBatchService = engine.getOutgoingBatchService();
+        List<IAcknowledgeEventListener> listeners = engine.getExtensionService().getExtensionPointList(IAcknowledgeEventListener.class);
+
+        Map<String, List<Long>> batchIdsByNode = new LinkedHashMap<String, List<Long>>();
+        for (BatchAck batch : batches) {
+            if (isBulkAcknowledgeable(batch)) {
+                List<Long> batchIds = batchIdsByNode.get(batch.getNodeId());
+                if (batchIds == null) {
+                    batchIds = new ArrayList<Long>();
+                    batchIdsByNode.put(batch.getNodeId(), batchIds);
+                }
+                batchIds.add(batch.getBatchId());
+            }
+        }
+
+        Map<String, OutgoingBatch> outgoingBatches = new HashMap<String, OutgoingBatch>(batches.size());
+        for (Map.Entry<String, List<Long>> entry : batchIdsByNode.entrySet()) {
+            for (OutgoingBatch outgoingBatch : outgoingBatchService.findOutgoingBatches(entry.getKey(), entry.getValue())) {
+                outgoingBatches.put(outgoingBatch.getNodeBatchId(), outgoingBatch);
+            }
+        }
+
+        List<BatchAckResult> results = new ArrayList<BatchAckResult>(batches.size());
+        List<OutgoingBatch> acknowledged = new ArrayList<OutgoingBatch>(batches.size());
+        List<BatchAck> acks = new ArrayList<BatchAck>(batches.size());
+        List<Boolean> firstTimeAsOk = new ArrayList<Boolean>(batches.size());
+        for (BatchAck batch : batches) {
+            if (isBulkAcknowledgeable(batch)) {
+                BatchAckResult result = new BatchAckResult(batch);
+                for (IAcknowledgeEventListener listener : listeners) {
+                    listener.onAcknowledgeEvent(batch);
+                }
+                OutgoingBatch outgoingBatch = outgoingBatches.get(batch.getNodeId() + "-" + batch.getBatchId());
+                if (isAcknowledgeable(batch, outgoingBatch, result)) {
+                    firstTimeAsOk.add(applyAck(batch, outgoingBatch));
+                    acknowledged.add(outgoingBatch);
+                    acks.add(batch);
+                }
+                results.add(result);
+            } else {
+                results.add(ack(batch));
+            }
+        }
+
+        updateOutgoingBatches(acknowledged);
+
+        for (int i = 0; i < acknowledged.size(); i++) {
+            afterAck(acks.get(i), acknowledged.get(i), firstTimeAsOk.get(i));
+        }
+        return results;
+    }
+
+    protected boolean isBulkAcknowledgeable(BatchAck batch) {
+        return batch.getBatchId() != Constants.VIRTUAL_BATCH_FOR_REGISTRATION && StringUtils.isNotBlank(batch.getNodeId());
+    }
+
+    protected void updateOutgoingBatches(List<OutgoingBatch> outgoingBatches) {
+        if (outgoingBatches.size() > 0) {
+            ISqlTransaction transaction = null;
+            try {
+                transaction = sqlTemplate.startSqlTransaction();
+                engine.getOutgoingBatchService().updateOutgoingBatches(transaction, outgoingBatches, outgoingBatches.size());
+                transaction.commit();
+            } catch (Error ex) {
+                if (transaction != null) {
+                    transaction.rollback();
+                }
+                throw ex;
+            } catch (RuntimeException ex) {
+                if (transaction != null) {
+                    transaction.rollback();
+                }
+                throw ex;
+            } finally {
+                close(transaction);
+            }
+        }
+    }
 }
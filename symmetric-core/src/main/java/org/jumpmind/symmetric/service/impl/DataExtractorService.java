@@ -25,10 +25,18 @@ import static org.jumpmind.symmetric.common.Constants.LOG_PROCESS_SUMMARY_THRESH
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
@@ -52,7 +60,10 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
@@ -60,6 +71,7 @@ import java.util.regex.Pattern;
 import java.util.zip.ZipException;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.jumpmind.db.io.DatabaseXmlUtil;
@@ -89,6 +101,8 @@ import org.jumpmind.symmetric.common.ErrorConstants;
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.PipelinedWriter;
 import org.jumpmind.symmetric.io.data.Batch;
 import org.jumpmind.symmetric.io.data.Batch.BatchType;
 import org.jumpmind.symmetric.io.data.CsvConstants;
@@ -104,6 +118,7 @@ import org.jumpmind.symmetric.io.data.ProtocolException;
 import org.jumpmind.symmetric.io.data.reader.DataReaderStatistics;
 import org.jumpmind.symmetric.io.data.reader.ExtractDataReader;
 import org.jumpmind.symmetric.io.data.reader.IExtractDataReaderSource;
+import org.jumpmind.symmetric.io.data.reader.PrefetchExtractDataReaderSource;
 import org.jumpmind.symmetric.io.data.reader.ProtocolDataReader;
 import org.jumpmind.symmetric.io.data.transform.TransformPoint;
 import org.jumpmind.symmetric.io.data.transform.TransformTable;
@@ -169,7 +184,10 @@ import org.jumpmind.symmetric.service.ITriggerRouterService;
 import org.jumpmind.symmetric.service.impl.TransformService.TransformTableNodeGroupLink;
 import org.jumpmind.symmetric.statistic.IStatisticManager;
 import org.jumpmind.symmetric.transport.BatchBufferedWriter;
+import org.jumpmind.symmetric.transport.GzipMemberOutputStream;
+import org.jumpmind.symmetric.transport.IGzipMemberOutputStream;
 import org.jumpmind.symmetric.transport.IOutgoingTransport;
+import org.jumpmind.symmetric.transport.StreamBufferedWriter;
 import org.jumpmind.symmetric.transport.TransportUtils;
 import org.jumpmind.symmetric.util.CounterStat;
 import org.jumpmind.symmetric.util.SymmetricUtils;
@@ -188,6 +206,14 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         INodeCommunicationExecutor {
 
     final static long MS_PASSED_BEFORE_BATCH_REQUERIED = 5000;
+
+    final static int PIPELINED_WRITER_QUEUE_SIZE = 16;
+
+    final static int PIPELINED_WRITER_CHUNK_SIZE = 32768;
+
+    final static int MAX_STATS_SEARCH_LENGTH = 32768;
+
+    final static long MAX_TRANSFER_LENGTH = 1048576;
         
     protected enum ExtractMode { FOR_SYM_CLIENT, FOR_PAYLOAD_CLIENT, EXTRACT_ONLY };
 
@@ -225,6 +251,8 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     
     private CustomizableThreadFactory threadPoolFactory;
 
+    private ThreadPoolExecutor pipelineExecutor;
+
     public DataExtractorService(ISymmetricEngine engine) {
         super(engine.getParameterService(), engine.getSymmetricDialect());
         this.engine = engine;
@@ -584,11 +612,42 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
 
             if (activeBatches.size() > 0) {
                 BufferedWriter writer = transport.openWriter();
+                PipelinedWriter pipelinedWriter = null;
+                if (parameterService.is(ParameterConstants.EXTRACT_PIPELINE_ENABLED)
+                        && !parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED)) {
+                    /* Send to the transport on another thread while the next rows are serialized */
+                    try {
+                        pipelinedWriter = new PipelinedWriter(writer, PIPELINED_WRITER_QUEUE_SIZE, getPipelineExecutor());
+                        writer = new BufferedWriter(pipelinedWriter, PIPELINED_WRITER_CHUNK_SIZE);
+                    } catch (RejectedExecutionException e) {
+                        log.debug("All {} extract pipeline threads are busy, so writing to node {} directly", 
+                                pipelineExecutor.getMaximumPoolSize(), targetNode.getNodeId());
+                    }
+                }
                 IDataWriter dataWriter = new ProtocolDataWriter(nodeService.findIdentityNodeId(),
                         writer, targetNode.requires13Compatiblity(), targetNode.allowCaptureTimeInProtocol(),
                         parameterService.is(ParameterConstants.EXTRACT_ROW_CAPTURE_TIME));
 
-                return extract(extractInfo, targetNode, activeBatches, dataWriter, writer, ExtractMode.FOR_SYM_CLIENT);
+                boolean finished = false;
+                try {
+                    List<OutgoingBatch> extractedBatches = extract(extractInfo, targetNode, activeBatches, dataWriter, writer, 
+                            ExtractMode.FOR_SYM_CLIENT);
+                    if (pipelinedWriter != null) {
+                        try {
+                            writer.flush();
+                            pipelinedWriter.finish();
+                        } catch (IOException e) {
+                            throw new IoException(e);
+                        }
+                    }
+                    finished = true;
+                    return extractedBatches;
+                } finally {
+                    if (pipelinedWriter != null && !finished) {
+                        /* Leave the original error to propagate and stop sending what is left */
+                        pipelinedWriter.abort();
+                    }
+                }
             }
 
         }
@@ -694,17 +753,31 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             long batchesSelectedAtMs = System.currentTimeMillis();
             OutgoingBatch currentBatch = null;
             ExecutorService executor = null;
+            ExtractWindow window = null;
             try {
                 final boolean streamToFileEnabled = parameterService.is(ParameterConstants.STREAM_TO_FILE_ENABLED);
                 long keepAliveMillis = parameterService.getLong(ParameterConstants.DATA_LOADER_SEND_ACK_KEEPALIVE);
                 Node sourceNode = nodeService.findIdentity();
                 final FutureExtractStatus status = new FutureExtractStatus();
 
-                if (this.threadPoolFactory == null) {
-                    this.threadPoolFactory = new CustomizableThreadFactory(String.format("%s-dataextractor", parameterService.getEngineName().toLowerCase()));
+                final Map<String, Semaphore> channelPermits = new HashMap<String, Semaphore>();
+                int threadCount = 1;
+                if (streamToFileEnabled) {
+                    for (OutgoingBatch batch : activeBatches) {
+                        if (!channelPermits.containsKey(batch.getChannelId())) {
+                            int channelThreadCount = getExtractParallelBatches(targetNode.getNodeId(), batch.getChannelId());
+                            channelPermits.put(batch.getChannelId(), new Semaphore(channelThreadCount));
+                            threadCount = Math.max(threadCount, channelThreadCount);
+                        }
+                    }
+                    threadCount = Math.min(threadCount, activeBatches.size());
+                    boolean synchronizeAllJobs = parameterService.is(ParameterConstants.SYNCHRONIZE_ALL_JOBS);
+                    window = new ExtractWindow(threadCount > 1 && !synchronizeAllJobs ? threadCount : Integer.MAX_VALUE);
                 }
-                
-                executor = streamToFileEnabled ? Executors.newFixedThreadPool(1, this.threadPoolFactory) : null;
+                final ExtractWindow extractWindow = window;
+                final boolean isParallel = threadCount > 1;
+
+                executor = streamToFileEnabled ? Executors.newFixedThreadPool(threadCount, getThreadFactory()) : null;
 
                 List<Future<FutureOutgoingBatch>> futures = new ArrayList<Future<FutureOutgoingBatch>>();
 
@@ -715,8 +788,13 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     channelsProcessed.add(currentBatch.getChannelId());
                     
                     final OutgoingBatch extractBatch = currentBatch;
+                    final int position = i;
                     Callable<FutureOutgoingBatch> callable = () -> {
                         MDC.put("engineName", engine.getParameterService().getEngineName()); 
+                        if (isParallel) {
+                            return extractBatchInParallel(extractBatch, position, extractWindow, channelPermits.get(extractBatch.getChannelId()),
+                                    batchesSelectedAtMs, status, extractInfo, targetNode, dataWriter, mode, activeBatches);
+                        }
                         OutgoingBatch refreshedBatch = requeryIfEnoughTimeHasPassed(batchesSelectedAtMs, extractBatch);
                         return extractBatch(refreshedBatch, status, extractInfo, targetNode, dataWriter, mode, activeBatches);                            
                     };
@@ -846,6 +924,9 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                             }
                         } 
                     }
+                    if (window != null) {
+                        window.sent();
+                    }
                 }
             } catch (RuntimeException e) {
                 if (currentBatch != null) {
@@ -900,6 +981,9 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     log.error("Could not log the outgoing batch status because the batch was null", e);
                 }
             } finally {
+                if (window != null) {
+                    window.close();
+                }
                 if (executor != null) {                    
                     executor.shutdown(); 
                 }
@@ -962,15 +1046,18 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                     outgoingBatch = new FutureOutgoingBatch(
                             extractOutgoingBatch(extractInfo, targetNode, dataWriter, extractBatch, streamToFileEnabled, true, mode, null),
                             isRetry);
-                    status.batchExtractCount++;
-                    status.byteExtractCount += extractBatch.getByteCount();
-
-                    if (status.byteExtractCount >= maxBytesToSync && status.batchExtractCount < activeBatches.size()) {
-                        log.info(
-                                "Reached the total byte threshold after {} of {} batches were extracted for node '{}' (extracted {} bytes, the max is {}).  "
-                                        + "The remaining batches will be extracted on a subsequent sync.",
-                                new Object[] { status.batchExtractCount, activeBatches.size(), targetNode.getNodeId(), status.byteExtractCount, maxBytesToSync });
-                        status.shouldExtractSkip = true;
+                    synchronized (status) {
+                        status.batchExtractCount++;
+                        status.byteExtractCount += extractBatch.getByteCount();
+
+                        if (status.byteExtractCount >= maxBytesToSync && status.batchExtractCount < activeBatches.size()
+                                && !status.shouldExtractSkip) {
+                            log.info(
+                                    "Reached the total byte threshold after {} of {} batches were extracted for node '{}' (extracted {} bytes, the max is {}).  "
+                                            + "The remaining batches will be extracted on a subsequent sync.",
+                                    new Object[] { status.batchExtractCount, activeBatches.size(), targetNode.getNodeId(), status.byteExtractCount, maxBytesToSync });
+                            status.shouldExtractSkip = true;
+                        }
                     }
                 } catch (Exception e) {
                     status.shouldExtractSkip = outgoingBatch.isExtractSkipped = true;
@@ -983,6 +1070,44 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         return outgoingBatch;
     }
 
+    /**
+     * Extract a batch on one of several extract threads. The batch waits for
+     * its turn in the extract window, so that no more batches are held in
+     * staging ahead of the sender than there are threads, and for a permit
+     * from its channel.
+     */
+    protected FutureOutgoingBatch extractBatchInParallel(OutgoingBatch extractBatch, int position, ExtractWindow window,
+            Semaphore channelPermits, long batchesSelectedAtMs, FutureExtractStatus status, ProcessInfo extractInfo,
+            Node targetNode, IDataWriter dataWriter, ExtractMode mode, List<OutgoingBatch> activeBatches) throws Exception {
+        if (!window.await(position) || status.shouldExtractSkip) {
+            FutureOutgoingBatch outgoingBatch = new FutureOutgoingBatch(extractBatch, false);
+            outgoingBatch.isExtractSkipped = true;
+            return outgoingBatch;
+        }
+        channelPermits.acquire();
+        try {
+            OutgoingBatch refreshedBatch = requeryIfEnoughTimeHasPassed(batchesSelectedAtMs, extractBatch);
+            return extractBatch(refreshedBatch, status, extractInfo, targetNode, dataWriter, mode, activeBatches);
+        } finally {
+            channelPermits.release();
+        }
+    }
+
+    /**
+     * Look up the number of batches to extract at the same time for a target
+     * node and channel, from the most general setting to the most specific:
+     * the parameter, then suffixed by the target node id, by the channel id,
+     * and by the channel id and target node id.
+     */
+    protected int getExtractParallelBatches(String targetNodeId, String channelId) {
+        String name = ParameterConstants.EXTRACT_PARALLEL_BATCHES;
+        int count = parameterService.getInt(name, 1);
+        count = parameterService.getInt(name + "." + targetNodeId, count);
+        count = parameterService.getInt(name + "." + channelId, count);
+        count = parameterService.getInt(name + "." + channelId + "." + targetNodeId, count);
+        return Math.max(1, count);
+    }
+
     protected void writeKeepAliveAck(BufferedWriter writer, Node sourceNode, boolean streamToFileEnabled) {
         try {
             if (writer != null && streamToFileEnabled) {
@@ -1045,6 +1170,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             IDataWriter writer = wrapWithTransformWriter(sourceNode, targetNode, extractInfo, dataWriter, useStagingDataWriter);
 
             long ts = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
             long extractTimeInMs = 0l;
             long byteCount = 0l;
             long transformTimeInMs = 0l;            
@@ -1053,6 +1179,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 cleanupIgnoredBatch(sourceNode, targetNode, currentBatch, writer);
             } else if (currentBatch.getStatus() == Status.RQ || !isPreviouslyExtracted(currentBatch, false)) {
                 BatchLock lock = null;
+                boolean extracted = false;
                 try {
                     log.debug("{} attempting to acquire lock for batch {}", targetNode.getNodeId(), currentBatch.getBatchId());
                     lock = acquireLock(currentBatch, useStagingDataWriter);
@@ -1106,6 +1233,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                             }
                         }
                         extractTimeInMs = System.currentTimeMillis() - ts;
+                        statisticManager.getMetrics().getExtractBatchTimers().get(currentBatch.getChannelId()).stop(startNanos);
                         Statistics stats = getExtractStats(writer, currentBatch);
                         if (stats != null) {
                             transformTimeInMs = stats.get(DataWriterStatisticConstants.TRANSFORMMILLIS);                            
@@ -1130,7 +1258,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                                 outgoingBatchService.updateCommonBatchExtractStatistics(currentBatch);
                             }
                         }
-
+                        extracted = true;
                     }
                 } catch (RuntimeException ex) {
                     IStagedResource resource = getStagedResource(currentBatch);
@@ -1144,6 +1272,11 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                         IStagedResource resource = getStagedResource(currentBatch);
                         if (resource != null) {
                             resource.setState(State.DONE);
+                            /* Only the thread that extracted the batch compresses it, while it still holds the lock */
+                            if (extracted && useStagingDataWriter && resource.isFileResource()
+                                    && parameterService.is(ParameterConstants.STAGING_COMPRESS_ENABLED)) {
+                                compressStagedResource(resource);
+                            }
                         }
                     } finally {
                         releaseLock(lock, currentBatch, useStagingDataWriter);
@@ -1291,13 +1424,48 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
 
     protected ExtractDataReader buildExtractDataReader(Node sourceNode, Node targetNode, OutgoingBatch currentBatch, ProcessInfo processInfo) {
         return new ExtractDataReader(symmetricDialect.getPlatform(), 
-                new SelectFromSymDataSource(currentBatch, sourceNode, targetNode, processInfo));
+                prefetchIfEnabled(new SelectFromSymDataSource(currentBatch, sourceNode, targetNode, processInfo)));
     }
 
     protected ExtractDataReader buildExtractDataReader(Node sourceNode, Node targetNode, OutgoingBatch currentBatch, ProcessInfo processInfo,
             boolean containsBigLob) {
         return new ExtractDataReader(symmetricDialect.getPlatform(), 
-                new SelectFromSymDataSource(currentBatch, sourceNode, targetNode, processInfo, containsBigLob));
+                prefetchIfEnabled(new SelectFromSymDataSource(currentBatch, sourceNode, targetNode, processInfo, containsBigLob)));
+    }
+
+    /**
+     * Read rows from sym_data on another thread while the previous rows are
+     * transformed and written, when extract.pipeline.enabled is on.
+     */
+    protected IExtractDataReaderSource prefetchIfEnabled(IExtractDataReaderSource source) {
+        if (parameterService.is(ParameterConstants.EXTRACT_PIPELINE_ENABLED)) {
+            return new PrefetchExtractDataReaderSource(source, parameterService.getInt(ParameterConstants.EXTRACT_PIPELINE_QUEUE_SIZE, 1000),
+                    getPipelineExecutor());
+        }
+        return source;
+    }
+
+    /**
+     * Pipelined writers and prefetching readers share a bounded pool of
+     * threads. They only run on the pool when a thread is free, so the pool
+     * never queues work.
+     */
+    protected synchronized ThreadPoolExecutor getPipelineExecutor() {
+        int maxThreads = Math.max(1, parameterService.getInt(ParameterConstants.EXTRACT_PIPELINE_MAX_THREADS, 20));
+        if (pipelineExecutor == null) {
+            pipelineExecutor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, 
+                    new SynchronousQueue<Runnable>(), getThreadFactory());
+        } else if (pipelineExecutor.getMaximumPoolSize() != maxThreads) {
+            pipelineExecutor.setMaximumPoolSize(maxThreads);
+        }
+        return pipelineExecutor;
+    }
+
+    protected CustomizableThreadFactory getThreadFactory() {
+        if (this.threadPoolFactory == null) {
+            this.threadPoolFactory = new CustomizableThreadFactory(String.format("%s-dataextractor", parameterService.getEngineName().toLowerCase()));
+        }
+        return this.threadPoolFactory;
     }
 
     protected Statistics getExtractStats(IDataWriter writer, OutgoingBatch currentBatch) {
@@ -1403,6 +1571,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
             }
 
             long ts = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
             IStagedResource extractedBatch = getStagedResource(currentBatch);
             if (extractedBatch != null) {
                 processInfo.setCurrentLoadId(currentBatch.getLoadId());
@@ -1480,6 +1649,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                         currentBatch.getNodeBatchId()));
             }
 
+            statisticManager.getMetrics().getTransportSendTimers().get(currentBatch.getChannelId()).stop(startNanos);
             currentBatch = requeryIfEnoughTimeHasPassed(ts, currentBatch);
 
         }
@@ -1491,11 +1661,11 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     protected void transferFromStaging(ExtractMode mode, BatchType batchType, OutgoingBatch batch, boolean isRetry, IStagedResource stagedResource,
             BufferedWriter writer, DataContext context, BigDecimal maxKBytesPerSec) {
         final int MAX_WRITE_LENGTH = 32768;
-        BufferedReader reader = stagedResource.getReader();
         try {
             // Retry means we've sent this batch before, so let's ask to
             // retry the batch from the target's staging
             if (isRetry) {
+                BufferedReader reader = stagedResource.getReader();
                 String line = null;
                 while ((line = reader.readLine()) != null) {
                     if (line.startsWith(CsvConstants.BATCH)) {
@@ -1518,7 +1688,17 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 }
                 
                 writer.flush();
+            } else if (isByteTransferSupported(stagedResource, writer)) {
+                boolean writeBatchStats = nodeService.findNode(batch.getNodeId(), true).isVersionGreaterThanOrEqualTo(3, 9, 0);
+                long totalBytesRead = transferBytesFromStaging(mode, batch, stagedResource.getFile(),
+                        stagedResource.getCompressedFile(), ((StreamBufferedWriter) writer).getStream(), writeBatchStats,
+                        maxKBytesPerSec);
+                if (batch.getSentCount() == 1) {
+                    statisticManager.incrementDataSent(batch.getChannelId(), batch.getDataRowCount());
+                    statisticManager.incrementDataBytesSent(batch.getChannelId(), totalBytesRead);
+                }
             } else {
+                BufferedReader reader = stagedResource.getReader();
                 long totalCharsRead = 0, totalBytesRead = 0;
                 int numCharsRead = 0, numBytesRead = 0;
                 long startTime = System.currentTimeMillis(), ts = startTime, bts = startTime;
@@ -1531,10 +1711,10 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                 }
                 char[] buffer = new char[bufferSize];
 
-                boolean batchStatsWritten = false;
+                boolean batchStatsWritten = !nodeService.findNode(batch.getNodeId(), true).isVersionGreaterThanOrEqualTo(3, 9, 0);
                 String prevBuffer = "";
                 while ((numCharsRead = reader.read(buffer)) != -1) {
-                    if (!batchStatsWritten && nodeService.findNode(batch.getNodeId(), true).isVersionGreaterThanOrEqualTo(3, 9, 0)) {
+                    if (!batchStatsWritten) {
                         batchStatsWritten = writeBatchStats(writer, buffer, numCharsRead, prevBuffer, batch);
                         prevBuffer = new String(buffer);
                     } else {
@@ -1546,18 +1726,7 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
                         throw new IoException("This thread was interrupted");
                     }
 
-                    long batchStatusUpdateMillis = parameterService.getLong(ParameterConstants.OUTGOING_BATCH_UPDATE_STATUS_MILLIS);
-                    if (System.currentTimeMillis() - ts > batchStatusUpdateMillis && batch.getStatus() != Status.SE && batch.getStatus() != Status.RS) {
-                        changeBatchStatus(Status.SE, batch, mode);
-                    }
-                    if (System.currentTimeMillis() - ts > LOG_PROCESS_SUMMARY_THRESHOLD) {
-                        log.info(
-                                "Batch '{}', for node '{}', for process 'send from stage' has been processing for {} seconds.  "
-                                        + "The following stats have been gathered: {}",
-                                new Object[] { batch.getBatchId(), batch.getNodeId(), (System.currentTimeMillis() - startTime) / 1000,
-                                        "CHARS=" + totalCharsRead });
-                        ts = System.currentTimeMillis();
-                    }
+                    ts = updateTransferProgress(mode, batch, startTime, ts, "CHARS=" + totalCharsRead);
 
                     if (isThrottled) {
                         numBytesRead += new String(buffer, 0, numCharsRead).getBytes().length;
@@ -1601,6 +1770,165 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
         }
     }
     
+    /**
+     * A staged file can be sent as bytes when the transport encodes to the
+     * same character set that the file was staged in.
+     */
+    protected boolean isByteTransferSupported(IStagedResource stagedResource, BufferedWriter writer) {
+        return stagedResource.isFileResource() && writer instanceof StreamBufferedWriter
+                && ((StreamBufferedWriter) writer).getCharset().equals(Charset.forName(IoConstants.ENCODING));
+    }
+
+    /**
+     * Sends a staged file without decoding and encoding it. The batch stats are
+     * written after the batch line at the top of the file and the rest of the
+     * file is transferred by its channel, at no more than the given rate. When
+     * the stream takes gzip members and the transfer is not throttled, the rest
+     * of the file is sent from its compressed copy instead, if there is one.
+     * 
+     * @return the number of bytes read from the file
+     */
+    protected long transferBytesFromStaging(ExtractMode mode, OutgoingBatch batch, File file, File compressedFile,
+            OutputStream out, boolean writeBatchStats, BigDecimal maxKBytesPerSec) throws IOException, InterruptedException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            WritableByteChannel target = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel()
+                    : Channels.newChannel(out);
+            long size = channel.size();
+            long position = 0;
+            boolean isThrottled = maxKBytesPerSec != null && maxKBytesPerSec.compareTo(BigDecimal.ZERO) > 0;
+            if (writeBatchStats) {
+                int index = findStatsIndex(channel);
+                if (index > -1) {
+                    channel.transferTo(0, index, target);
+                    String stats = getBatchStatsColumns() + System.lineSeparator() + getBatchStats(batch) + System.lineSeparator();
+                    out.write(stats.getBytes(IoConstants.ENCODING));
+                    position = index;
+                } else {
+                    log.warn("Could not find the batch line in the first {} bytes of staged batch {}, so it will be sent without batch stats",
+                            MAX_STATS_SEARCH_LENGTH, batch.getNodeBatchId());
+                }
+
+                /* The compressed copy starts where the stats go, or at the top when there are none */
+                if (!isThrottled && out instanceof IGzipMemberOutputStream && compressedFile != null && compressedFile.exists()) {
+                    ((IGzipMemberOutputStream) out).writeGzipMembers(compressedFile);
+                    return size;
+                }
+            }
+
+            long startTime = System.currentTimeMillis(), ts = startTime, bts = startTime;
+            long totalThrottleTime = 0, numBytesRead = 0;
+            long chunkSize = isThrottled ? Math.max(1, maxKBytesPerSec.multiply(new BigDecimal(1024)).longValue())
+                    : MAX_TRANSFER_LENGTH;
+            while (position < size) {
+                long transferred = channel.transferTo(position, Math.min(chunkSize, size - position), target);
+                if (transferred <= 0) {
+                    throw new IOException(String.format("The transfer of staged batch %s stopped at byte %d of %d",
+                            batch.getNodeBatchId(), position, size));
+                }
+                position += transferred;
+
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IoException("This thread was interrupted");
+                }
+
+                ts = updateTransferProgress(mode, batch, startTime, ts, "BYTES=" + position);
+
+                if (isThrottled) {
+                    numBytesRead += transferred;
+                    if (numBytesRead >= chunkSize) {
+                        long expectedMillis = (long) (((numBytesRead / 1024f) / maxKBytesPerSec.floatValue()) * 1000);
+                        long actualMillis = System.currentTimeMillis() - bts;
+                        if (actualMillis < expectedMillis) {
+                            totalThrottleTime += expectedMillis - actualMillis;
+                            Thread.sleep(expectedMillis - actualMillis);
+                        }
+                        numBytesRead = 0;
+                        bts = System.currentTimeMillis();
+                    }
+                }
+            }
+
+            if (log.isDebugEnabled() && totalThrottleTime > 0) {
+                log.debug("Batch '{}' for node '{}' took {}ms for {} bytes and was throttled for {}ms because limit is set to {} KB/s",
+                        batch.getBatchId(), batch.getNodeId(), (System.currentTimeMillis() - startTime), size,
+                        totalThrottleTime, maxKBytesPerSec);
+            }
+            return size;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Finds where the batch stats go in a staged file from the head of the
+     * file, read from the start of its channel.
+     */
+    protected int findStatsIndex(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_STATS_SEARCH_LENGTH));
+        while (head.hasRemaining() && channel.read(head) > 0) {
+        }
+        /* Each byte maps to one char, so the index in the string is the index in the file */
+        return findStatsIndex(new String(head.array(), 0, head.position(), "ISO-8859-1"), "");
+    }
+
+    /**
+     * Writes the gzip compressed copy of a staged batch, so it is compressed
+     * once no matter how many nodes it is sent to. The copy starts where the
+     * batch stats go, because they are written for each send. It is written to
+     * a temporary file first so a send never sees part of it.
+     */
+    protected void compressStagedResource(IStagedResource resource) {
+        File compressedFile = resource.getCompressedFile();
+        File tmpFile = new File(compressedFile.getPath() + ".tmp");
+        try {
+            FileInputStream in = new FileInputStream(resource.getFile());
+            try {
+                FileChannel channel = in.getChannel();
+                channel.position(Math.max(findStatsIndex(channel), 0));
+                OutputStream out = new GzipMemberOutputStream(new FileOutputStream(tmpFile),
+                        parameterService.getInt(ParameterConstants.TRANSPORT_HTTP_COMPRESSION_LEVEL),
+                        parameterService.getInt(ParameterConstants.TRANSPORT_HTTP_COMPRESSION_STRATEGY), false);
+                try {
+                    IOUtils.copy(Channels.newInputStream(channel), out, MAX_STATS_SEARCH_LENGTH);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            FileUtils.deleteQuietly(compressedFile);
+            if (!tmpFile.renameTo(compressedFile)) {
+                throw new IOException("Could not rename " + tmpFile.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to compress staged batch {}, so it will be sent uncompressed: {}", resource.getPath(), e.getMessage());
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+
+    /**
+     * Marks the batch as sending and logs progress when a transfer runs long.
+     * 
+     * @return the time progress was last logged
+     */
+    protected long updateTransferProgress(ExtractMode mode, OutgoingBatch batch, long startTime, long ts, String stats) {
+        long batchStatusUpdateMillis = parameterService.getLong(ParameterConstants.OUTGOING_BATCH_UPDATE_STATUS_MILLIS);
+        if (System.currentTimeMillis() - ts > batchStatusUpdateMillis && batch.getStatus() != Status.SE && batch.getStatus() != Status.RS) {
+            changeBatchStatus(Status.SE, batch, mode);
+        }
+        if (System.currentTimeMillis() - ts > LOG_PROCESS_SUMMARY_THRESHOLD) {
+            log.info(
+                    "Batch '{}', for node '{}', for process 'send from stage' has been processing for {} seconds.  "
+                            + "The following stats have been gathered: {}",
+                    new Object[] { batch.getBatchId(), batch.getNodeId(), (System.currentTimeMillis() - startTime) / 1000,
+                            stats });
+            ts = System.currentTimeMillis();
+        }
+        return ts;
+    }
+
     protected int findStatsIndex(String bufferString, String prevBuffer) {
         int index = -1;
         String fullBuffer = prevBuffer + bufferString;
@@ -3191,11 +3519,49 @@ public class DataExtractorService extends AbstractService implements IDataExtrac
     }
 
     static class FutureExtractStatus {
-        boolean shouldExtractSkip;
+        volatile boolean shouldExtractSkip;
         int batchExtractCount;
         int byteExtractCount;
     }
 
+    /**
+     * Limits how far extraction runs ahead of sending. The batch at a given
+     * position in the send order may be extracted once fewer than the window
+     * size of the batches before it are still waiting to be sent. Because the
+     * batch being waited on by the sender is always allowed to start, the
+     * window cannot deadlock no matter which order the extract threads run
+     * in.
+     */
+    static class ExtractWindow {
+        int size;
+        int sentCount;
+        boolean closed;
+
+        public ExtractWindow(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return false if the window was closed while waiting
+         */
+        public synchronized boolean await(int position) throws InterruptedException {
+            while (!closed && position >= sentCount + size) {
+                wait();
+            }
+            return !closed;
+        }
+
+        public synchronized void sent() {
+            sentCount++;
+            notifyAll();
+        }
+
+        public synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+    }
+
     static class FutureOutgoingBatch {
         OutgoingBatch outgoingBatch;
         boolean isRetry;
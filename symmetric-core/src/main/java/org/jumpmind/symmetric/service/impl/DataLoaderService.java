@@ -39,10 +39,13 @@ import java.net.MalformedURLException;
 import java.net.UnknownHostException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
@@ -52,7 +55,9 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jumpmind.db.model.ForeignKey;
 import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
 import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.sql.Row;
@@ -100,6 +105,7 @@ import org.jumpmind.symmetric.load.DefaultDataLoaderFactory;
 import org.jumpmind.symmetric.load.DynamicDatabaseWriterFilter;
 import org.jumpmind.symmetric.load.IDataLoaderFactory;
 import org.jumpmind.symmetric.load.ILoadSyncLifecycleListener;
+import org.jumpmind.symmetric.load.MetricsDatabaseWriterFilter;
 import org.jumpmind.symmetric.model.AbstractBatch.Status;
 import org.jumpmind.symmetric.model.Channel;
 import org.jumpmind.symmetric.model.ChannelMap;
@@ -125,6 +131,7 @@ import org.jumpmind.symmetric.service.INodeService;
 import org.jumpmind.symmetric.service.ITransformService;
 import org.jumpmind.symmetric.service.RegistrationNotOpenException;
 import org.jumpmind.symmetric.service.RegistrationRequiredException;
+import org.jumpmind.symmetric.service.impl.ParallelBatchLoadScheduler.ScheduledBatch;
 import org.jumpmind.symmetric.service.impl.TransformService.TransformTableNodeGroupLink;
 import org.jumpmind.symmetric.statistic.IStatisticManager;
 import org.jumpmind.symmetric.transport.AuthenticationException;
@@ -189,6 +196,7 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         extensionService = engine.getExtensionService();
         extensionService.addExtensionPoint(new DefaultDataLoaderFactory(engine));
         extensionService.addExtensionPoint(new ConfigurationChangedDatabaseWriterFilter(engine));
+        extensionService.addExtensionPoint(new MetricsDatabaseWriterFilter(statisticManager.getMetrics()));
         this.nodeCommunicationService = engine.getNodeCommunicationService();
         this.engine = engine;
     }
@@ -553,8 +561,11 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
      */
     protected List<IncomingBatch> loadDataFromTransport(final ProcessInfo transferInfo,
             final Node sourceNode, IIncomingTransport transport, OutputStream out) throws IOException {
-        final ManageIncomingBatchListener listener = new ManageIncomingBatchListener(transferInfo, engine);
+        Set<String> parallelChannels = getParallelLoadChannels();
+        final ManageIncomingBatchListener listener = parallelChannels.size() > 0 ? new ManageIncomingBatchListener(transferInfo,
+                engine, Collections.synchronizedList(new ArrayList<IncomingBatch>())) : new ManageIncomingBatchListener(transferInfo, engine);
         final DataContext ctx = new DataContext();
+        LoadIntoDatabaseOnArrivalListener loadListener = null;
         Throwable error = null;
         try {
             Node targetNode = nodeService.findIdentity();
@@ -589,14 +600,17 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                     threadFactory = new CustomizableThreadFactory(parameterService.getEngineName().toLowerCase() + "-dataloader");
                 }
                 
-                ExecutorService executor = Executors.newFixedThreadPool(1, threadFactory);
+                int threadCount = parallelChannels.size() > 0 ? Math.max(1, parameterService.getInt(ParameterConstants.DATA_LOADER_PARALLEL_THREADS, 4)) : 1;
+                ExecutorService executor = Executors.newFixedThreadPool(threadCount, threadFactory);
                 
-                LoadIntoDatabaseOnArrivalListener loadListener = new LoadIntoDatabaseOnArrivalListener(transferInfo,
-                        sourceNode.getNodeId(), listener, executor);
+                loadListener = new LoadIntoDatabaseOnArrivalListener(transferInfo, sourceNode.getNodeId(), listener, ctx, executor,
+                        parallelChannels);
                 
+                long startNanos = System.nanoTime();
                 try {
                     new SimpleStagingDataWriter(transferInfo, transport.openReader(), stagingManager, Constants.STAGING_CATEGORY_INCOMING, 
                             memoryThresholdInBytes, BatchType.LOAD, targetNodeId, ctx, loadListener).process();
+                    statisticManager.getMetrics().getTransportReceiveTimers().get().stop(startNanos);
                 } finally {
                     /* Previously submitted tasks will still be executed */
                     executor.shutdown();
@@ -635,7 +649,9 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                                     ((ManageIncomingBatchListener) listener).getCurrentBatch().isRetry());
                         }
                     };
+                    long startNanos = System.nanoTime();
                     processor.process(ctx);
+                    statisticManager.getMetrics().getTransportReceiveTimers().get().stop(startNanos);
                     loadInfo.setStatus(ProcessStatus.OK);
                 } catch (Throwable e) {
                     loadInfo.setStatus(ProcessStatus.ERROR);
@@ -645,19 +661,25 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
             }
         } catch (Throwable ex) {
             error = ex;
+            ManageIncomingBatchListener errorListener = listener;
+            DataContext errorCtx = ctx;
+            if (loadListener != null && loadListener.failedListener != null) {
+                errorListener = loadListener.failedListener;
+                errorCtx = loadListener.failedContext;
+            }
             if (parameterService.is(ParameterConstants.AUTO_RESOLVE_FOREIGN_KEY_VIOLATION_REVERSE_RELOAD)
-                    && listener.getCurrentBatch() != null && listener.isNewErrorForCurrentBatch()
-                    && listener.getCurrentBatch().isLoadFlag()
-                    && listener.getCurrentBatch().getSqlCode() == ErrorConstants.FK_VIOLATION_CODE) {
-                engine.getDataService().reloadMissingForeignKeyRowsReverse(sourceNode.getNodeId(), ctx.getBatch().getBatchId(), 
-                        listener.getCurrentBatch().getFailedLineNumber(), ctx.getTable(), ctx.getData(), Constants.CHANNEL_CONFIG, false);
+                    && errorListener.getCurrentBatch() != null && errorListener.isNewErrorForCurrentBatch()
+                    && errorListener.getCurrentBatch().isLoadFlag()
+                    && errorListener.getCurrentBatch().getSqlCode() == ErrorConstants.FK_VIOLATION_CODE) {
+                engine.getDataService().reloadMissingForeignKeyRowsReverse(sourceNode.getNodeId(), errorCtx.getBatch().getBatchId(), 
+                        errorListener.getCurrentBatch().getFailedLineNumber(), errorCtx.getTable(), errorCtx.getData(), Constants.CHANNEL_CONFIG, false);
             }
             if (parameterService.is(ParameterConstants.AUTO_RESOLVE_FOREIGN_KEY_VIOLATION_REVERSE)
-                    && listener.getCurrentBatch() != null && listener.isNewErrorForCurrentBatch()
-                    && !listener.getCurrentBatch().isLoadFlag()
-                    && listener.getCurrentBatch().getSqlCode() == ErrorConstants.FK_VIOLATION_CODE) {
-                engine.getDataService().reloadMissingForeignKeyRowsReverse(sourceNode.getNodeId(), ctx.getBatch().getBatchId(), 
-                        listener.getCurrentBatch().getFailedLineNumber(), ctx.getTable(), ctx.getData(), null, 
+                    && errorListener.getCurrentBatch() != null && errorListener.isNewErrorForCurrentBatch()
+                    && !errorListener.getCurrentBatch().isLoadFlag()
+                    && errorListener.getCurrentBatch().getSqlCode() == ErrorConstants.FK_VIOLATION_CODE) {
+                engine.getDataService().reloadMissingForeignKeyRowsReverse(sourceNode.getNodeId(), errorCtx.getBatch().getBatchId(), 
+                        errorListener.getCurrentBatch().getFailedLineNumber(), errorCtx.getTable(), errorCtx.getData(), null, 
                         parameterService.is(ParameterConstants.AUTO_RESOLVE_FOREIGN_KEY_VIOLATION_REVERSE_PEERS));
             }
             logOrRethrow(ex);
@@ -672,6 +694,24 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         return listener.getBatchesProcessed();
     }
 
+    /**
+     * Channels whose batches may be loaded in parallel with other batches in
+     * the same transfer when they do not share tables.
+     */
+    protected Set<String> getParallelLoadChannels() {
+        Set<String> channelIds = new HashSet<String>();
+        String value = parameterService.getString(ParameterConstants.DATA_LOADER_PARALLEL_CHANNELS);
+        if (StringUtils.isNotBlank(value)) {
+            for (String channelId : value.split(",")) {
+                channelId = channelId.trim();
+                if (channelId.length() > 0 && !channelId.equals(Constants.CHANNEL_CONFIG)) {
+                    channelIds.add(channelId);
+                }
+            }
+        }
+        return channelIds;
+    }
+
     private void awaitTermination(ExecutorService executor) throws InterruptedException {
         long hours = 1;
         while (!executor.awaitTermination(1, TimeUnit.HOURS)) {
@@ -1015,27 +1055,108 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         
         private ProcessInfo transferInfo;
 
-        private ProcessInfo loadInfo;
-        
         private ExecutorService executor;
         
         private List<Future<IncomingBatch>> futures = new ArrayList<Future<IncomingBatch>>();
         
-        private boolean isError;
+        private ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+
+        private Set<String> parallelChannels;
+
+        private Map<String, Object> parallelContext;
+
+        private Map<String, List<String>> loadTransformTargets;
+
+        private volatile ManageIncomingBatchListener failedListener;
+
+        private volatile DataContext failedContext;
 
         public LoadIntoDatabaseOnArrivalListener(ProcessInfo transferInfo, String sourceNodeId,
-                ManageIncomingBatchListener listener, ExecutorService executor) {
+                ManageIncomingBatchListener listener, DataContext ctx, ExecutorService executor, Set<String> parallelChannels) {
             this.sourceNodeId = sourceNodeId;
             this.listener = listener;
             this.executor = executor;
             this.transferInfo = transferInfo;
+            this.parallelChannels = parallelChannels;
+            if (parallelChannels.size() > 0) {
+                initParallelLoad(ctx);
+            }
+        }
+
+        protected void initParallelLoad(DataContext ctx) {
+            NodeGroupLink link = null;
+            Node sourceNode = nodeService.findNode(sourceNodeId, true);
+            if (sourceNode != null) {
+                link = new NodeGroupLink(sourceNode.getNodeGroupId(), parameterService.getNodeGroupId());
+            }
+            Map<LoadFilterType, Map<String, List<LoadFilter>>> loadFilters = link != null ? loadFilterService.findLoadFiltersFor(link, true)
+                    : null;
+            if (link == null || (loadFilters != null && loadFilters.size() > 0)) {
+                /* Load filters can change any table, so only the arrival order is safe */
+                log.debug("Loading batches from {} in order because parallel load requires a known node group link without load filters",
+                        sourceNodeId);
+                parallelChannels = Collections.emptySet();
+                return;
+            }
+
+            loadTransformTargets = new HashMap<String, List<String>>();
+            List<TransformTableNodeGroupLink> transforms = transformService.findTransformsFor(link, TransformPoint.LOAD);
+            if (transforms != null) {
+                for (TransformTable transform : transforms) {
+                    String sourceTableName = transform.getSourceTableName().toLowerCase();
+                    List<String> targets = loadTransformTargets.get(sourceTableName);
+                    if (targets == null) {
+                        targets = new ArrayList<String>();
+                        loadTransformTargets.put(sourceTableName, targets);
+                    }
+                    targets.add(transform.getTargetTableName());
+                }
+            }
+            parallelContext = new HashMap<String, Object>(ctx.getContext());
+        }
+
+        /**
+         * The lower case names of the target tables a batch writes to, along
+         * with the tables they reference with foreign keys. Returns null when
+         * the batch must be loaded in arrival order with respect to every
+         * other batch.
+         */
+        protected Set<String> getTableKeys(Batch batch) {
+            List<Table> tables = batch.getStagedTables();
+            if (!parallelChannels.contains(batch.getChannelId()) || tables == null) {
+                return null;
+            }
+            IDatabasePlatform platform = symmetricDialect.getTargetPlatform();
+            Set<String> tableKeys = new HashSet<String>();
+            for (Table table : tables) {
+                List<String> targetTableNames = loadTransformTargets.get(table.getNameLowerCase());
+                if (targetTableNames == null) {
+                    targetTableNames = Collections.singletonList(table.getName());
+                }
+                for (String targetTableName : targetTableNames) {
+                    tableKeys.add(targetTableName.toLowerCase());
+                    Table targetTable = platform.getTableFromCache(table.getCatalog(), table.getSchema(), targetTableName, false);
+                    if (targetTable == null && (table.getCatalog() != null || table.getSchema() != null)) {
+                        targetTable = platform.getTableFromCache(null, null, targetTableName, false);
+                    }
+                    if (targetTable != null) {
+                        for (ForeignKey foreignKey : targetTable.getForeignKeys()) {
+                            if (foreignKey.getForeignTableName() != null) {
+                                tableKeys.add(foreignKey.getForeignTableName().toLowerCase());
+                            }
+                        }
+                    }
+                }
+            }
+            return tableKeys;
         }
 
         public void start(DataContext ctx, Batch batch) {
             batchStartsToArriveTimeInMs = System.currentTimeMillis();
         }
 
-        protected ProtocolDataReader buildDataReader(final Batch batchInStaging, final IStagedResource resource) {
+        protected ProtocolDataReader buildDataReader(final Batch batchInStaging, final IStagedResource resource,
+                final ManageIncomingBatchListener listener) {
             return new ProtocolDataReader(BatchType.LOAD, batchInStaging.getTargetNodeId(), resource) {
                 @Override
                 public Table nextTable() {
@@ -1059,14 +1180,30 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
         public void end(final DataContext ctx, final Batch batchInStaging, final IStagedResource resource) {
             final long networkMillis = System.currentTimeMillis() - batchStartsToArriveTimeInMs;
 
+            final Set<String> tableKeys = resource != null ? getTableKeys(batchInStaging) : null;
+            final ManageIncomingBatchListener listener;
+            final DataContext batchCtx;
+            if (tableKeys != null) {
+                log.debug("Loading batch {} in parallel with batches that do not use tables {}", batchInStaging.getNodeBatchId(), tableKeys);
+                listener = new ManageIncomingBatchListener(transferInfo, engine, this.listener.getBatchesProcessed());
+                batchCtx = new DataContext();
+                batchCtx.getContext().putAll(parallelContext);
+            } else {
+                listener = this.listener;
+                batchCtx = ctx;
+            }
+
+            final ScheduledBatch scheduledBatch = resource != null ? scheduler.schedule(tableKeys) : null;
+
             Callable<IncomingBatch> loadBatchFromStage = new Callable<IncomingBatch>() {
                 public IncomingBatch call() throws Exception {
                     IncomingBatch incomingBatch = null;
                     DataProcessor processor = null;
                     MDC.put("engineName", engine.getParameterService().getEngineName());
-                    if (!isError && resource != null && resource.exists()) {
+                    boolean isLoadable = scheduler.awaitDependencies(scheduledBatch);
+                    if (isLoadable && resource != null && resource.exists()) {
                         try {
-                            loadInfo = statisticManager.newProcessInfo(new ProcessInfoKey(transferInfo.getSourceNodeId(),
+                            final ProcessInfo loadInfo = statisticManager.newProcessInfo(new ProcessInfoKey(transferInfo.getSourceNodeId(),
                                     transferInfo.getQueue(), transferInfo.getTargetNodeId(), transferInfo.getProcessType() == PULL_JOB_TRANSFER ? PULL_JOB_LOAD : PUSH_HANDLER_LOAD));            
                             if (batchInStaging.getStatistics() != null) {                
                                 loadInfo.setTotalDataCount(batchInStaging.getStatistics().get(DataReaderStatistics.DATA_ROW_COUNT));
@@ -1074,7 +1211,7 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
 
                             loadInfo.setStatus(ProcessInfo.ProcessStatus.LOADING);
                             
-                            ProtocolDataReader reader = buildDataReader(batchInStaging, resource);
+                            ProtocolDataReader reader = buildDataReader(batchInStaging, resource, listener);
                             
                             processor = new DataProcessor(reader, null, listener, "data load from stage") {
                                 @Override
@@ -1083,24 +1220,24 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                                     return buildDataWriter(loadInfo, sourceNodeId, batch.getChannelId(), batch.getBatchId(), isRetry);
                                 }
                             };
-                            processor.process(ctx);
+                            processor.process(batchCtx);
                             
                             if (loadInfo.getCurrentBatchCount() == 0) {
                                 loadInfo.setStatus(ProcessStatus.OK);
                             }
                         } catch (Exception e) {
-                            if (ctx.get(ContextConstants.CONTEXT_BULK_WRITER_TO_USE) != null && ctx.get(ContextConstants.CONTEXT_BULK_WRITER_TO_USE).equals("bulk")) {
+                            if (batchCtx.get(ContextConstants.CONTEXT_BULK_WRITER_TO_USE) != null && batchCtx.get(ContextConstants.CONTEXT_BULK_WRITER_TO_USE).equals("bulk")) {
                                 log.debug("Bulk loader failed : ", e);
                                 log.info("Bulk loader failed in class {} with message: {}", e.getClass().getName(), e.getMessage());
                                 
-                                ctx.put(ContextConstants.CONTEXT_BULK_WRITER_TO_USE, "default");
+                                batchCtx.put(ContextConstants.CONTEXT_BULK_WRITER_TO_USE, "default");
                                 listener.currentBatch.setStatus(Status.OK);
-                                processor.setDataReader(buildDataReader(batchInStaging, resource));
+                                processor.setDataReader(buildDataReader(batchInStaging, resource, listener));
                                 try {
                                     listener.getBatchesProcessed().remove(listener.currentBatch);
-                                    processor.process(ctx);
+                                    processor.process(batchCtx);
                                 } catch (Exception retryException) {
-                                    isError = true;
+                                    failed(scheduledBatch, listener, batchCtx);
                                     incomingBatch = listener.currentBatch;
                                     incomingBatch.setStatus(Status.ER);
                                     incomingBatch.setErrorFlag(true);
@@ -1108,7 +1245,7 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                                     throw e;
                                 }
                             } else {
-                                isError = true;
+                                failed(scheduledBatch, listener, batchCtx);
                                 if (listener.currentBatch.getSqlCode() == ErrorConstants.PROTOCOL_VIOLATION_CODE) {
                                     log.info("The batch {} may be corrupt in staging, so removing it.", batchInStaging.getNodeBatchId());
                                     resource.delete();
@@ -1136,6 +1273,9 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                         incomingBatch = new IncomingBatch(batchInStaging);
                         incomingBatch.setStatus(Status.RS);
                         incomingBatchService.updateIncomingBatch(incomingBatch);
+                    } else {
+                        /* Skip a batch that follows a failed batch it conflicts with so both are resent in order */
+                        scheduler.failed(scheduledBatch);
                     }
                     return incomingBatch;
                 }
@@ -1149,9 +1289,19 @@ public class DataLoaderService extends AbstractService implements IDataLoaderSer
                     incomingBatch.setStatus(Status.RS);
                     incomingBatchService.updateIncomingBatch(incomingBatch);
                 }
-                isError = true;
+                scheduler.failed(null);
             } else {
-                futures.add(executor.submit(loadBatchFromStage));
+                Future<IncomingBatch> future = executor.submit(loadBatchFromStage);
+                scheduledBatch.setFuture(future);
+                futures.add(future);
+            }
+        }
+
+        protected void failed(ScheduledBatch scheduledBatch, ManageIncomingBatchListener listener, DataContext ctx) {
+            scheduler.failed(scheduledBatch);
+            if (failedListener == null) {
+                failedContext = ctx;
+                failedListener = listener;
             }
         }
         
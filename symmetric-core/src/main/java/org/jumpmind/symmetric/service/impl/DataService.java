@@ -22,6 +22,8 @@ package org.jumpmind.symmetric.service.impl;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.sql.DataTruncation;
 import java.sql.SQLException;
@@ -45,14 +47,17 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
+import org.jumpmind.db.model.Column;
 import org.jumpmind.db.model.Table;
 import org.jumpmind.db.platform.DatabaseInfo;
 import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ArrayRow;
 import org.jumpmind.db.sql.ISqlReadCursor;
 import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.ISqlTransaction;
 import org.jumpmind.db.sql.InvalidSqlException;
 import org.jumpmind.db.sql.Row;
+import org.jumpmind.db.sql.RowColumns;
 import org.jumpmind.db.sql.SqlException;
 import org.jumpmind.db.sql.UniqueKeyException;
 import org.jumpmind.db.sql.mapper.NumberMapper;
@@ -1459,7 +1464,7 @@ public class DataService extends AbstractService implements IDataService {
         return sqlEventsSent;
     }
     
-    private Map<Integer, ExtractRequest> insertLoadBatchesForReload(Node targetNode, long loadId, String createBy,
+    protected Map<Integer, ExtractRequest> insertLoadBatchesForReload(Node targetNode, long loadId, String createBy,
             List<TriggerHistory> triggerHistories,
             Map<Integer, List<TriggerRouter>> triggerRoutersByHistoryId, boolean transactional,
             ISqlTransaction transaction, Map<String, TableReloadRequest> reloadRequests, ProcessInfo processInfo,
@@ -1509,6 +1514,7 @@ public class DataService extends AbstractService implements IDataService {
                         Channel channel = channels.get(reloadChannel);
                         long rowCount = -1;
                         long parentRequestId = 0;
+                        List<ExtractRequest> parentRangeRequests = null;
                         ExtractRequest parentRequest = requests.get(triggerHistory.getTriggerHistoryId());
 
                         if (parentRequest != null) {
@@ -1516,6 +1522,7 @@ public class DataService extends AbstractService implements IDataService {
                             if (router != null && router.getRouterType().equals("default")) {
                                 parentRequestId = parentRequest.getRequestId();
                                 rowCount = parentRequest.getRows();
+                                parentRangeRequests = parentRequest.getRangeRequests();
                             }                                
                         }
 
@@ -1523,36 +1530,57 @@ public class DataService extends AbstractService implements IDataService {
                             rowCount = getDataCountForReload(table, targetNode, selectSql);
                         }
 
-                        long transformMultiplier = getTransformMultiplier(table, triggerRouter);
-                        long startBatchId = 0;
-                        long numberOfBatches = 1;
-
-                        if (parameterService.is(ParameterConstants.INITIAL_LOAD_USE_EXTRACT_JOB)) {
-                            if (rowCount > 0) {
-                                numberOfBatches = (long) Math.ceil((rowCount * transformMultiplier) / (channel.getMaxBatchSize() * 1f));
+                        List<ExtractRequest> tableRequests = new ArrayList<ExtractRequest>();
+                        List<String> rangeSelects = null;
+                        if (parentRangeRequests != null) {
+                            for (ExtractRequest parentRangeRequest : parentRangeRequests) {
+                                tableRequests.add(insertLoadBatchesForTable(transaction, targetNode, triggerRouter, triggerHistory, table,
+                                        parentRangeRequest.getReloadSelect(), loadId, createBy, channel, channel.getQueue(),
+                                        parentRangeRequest.getRows(), parentRangeRequest.getRequestId()));
                             }
+                        } else if (parentRequestId == 0 && parameterService.is(ParameterConstants.INITIAL_LOAD_USE_EXTRACT_JOB)) {
+                            rangeSelects = getRangeSelectsForReload(table, targetNode, selectSql, rowCount);
+                        }
 
-                            startBatchId = insertRequestedOutgoingBatches(transaction, targetNode, triggerRouter, triggerHistory, selectSql,
-                                    loadId, createBy, reloadChannel, rowCount, channel.getMaxBatchSize(), numberOfBatches);
-                        } else {
-                            startBatchId = insertReloadEvent(transaction, targetNode, triggerRouter, triggerHistory,
-                                    selectSql, true, loadId, createBy, Status.NE, null, -1);
+                        if (rangeSelects != null) {
+                            boolean useEstimatedCounts = parameterService.is(ParameterConstants.INITIAL_LOAD_USE_ESTIMATED_COUNTS);
+                            long remainingRowCount = rowCount;
+                            for (int i = 0; i < rangeSelects.size(); i++) {
+                                long rangeRowCount = remainingRowCount / (rangeSelects.size() - i);
+                                if (!useEstimatedCounts) {
+                                    rangeRowCount = getDataCountForReload(table, targetNode, rangeSelects.get(i));
+                                }
+                                remainingRowCount -= rangeRowCount;
+                                /* Each range is extracted by the thread of its own queue */
+                                String queue = i == 0 ? channel.getQueue() : channel.getQueue() + "-" + i;
+                                tableRequests.add(insertLoadBatchesForTable(transaction, targetNode, triggerRouter, triggerHistory, table,
+                                        rangeSelects.get(i), loadId, createBy, channel, queue, rangeRowCount, 0));
+                            }
+                            log.info("Split the load of table {} for node {} into {} primary key ranges", table.getName(),
+                                    targetNode.getNodeId(), rangeSelects.size());
+                        } else if (tableRequests.size() == 0) {
+                            tableRequests.add(insertLoadBatchesForTable(transaction, targetNode, triggerRouter, triggerHistory, table,
+                                    selectSql, loadId, createBy, channel, channel.getQueue(), rowCount, parentRequestId));
                         }
 
-                        long endBatchId = startBatchId + numberOfBatches - 1;
-                        firstBatchId = firstBatchId == 0 ? startBatchId : firstBatchId;
-                        
-                        if (table.getNameLowerCase().startsWith(symmetricDialect.getTablePrefix() + "_" + TableConstants.SYM_FILE_SNAPSHOT)) {
-                            TableReloadStatus reloadStatus = getTableReloadStatusByLoadId(loadId);
-                            firstBatchId = reloadStatus.getStartDataBatchId() > 0 ? reloadStatus.getStartDataBatchId() : firstBatchId;
+                        for (ExtractRequest request : tableRequests) {
+                            firstBatchId = firstBatchId == 0 ? request.getStartBatchId() : firstBatchId;
+
+                            if (table.getNameLowerCase().startsWith(symmetricDialect.getTablePrefix() + "_" + TableConstants.SYM_FILE_SNAPSHOT)) {
+                                TableReloadStatus reloadStatus = getTableReloadStatusByLoadId(loadId);
+                                firstBatchId = reloadStatus.getStartDataBatchId() > 0 ? reloadStatus.getStartDataBatchId() : firstBatchId;
+                            }
+
+                            updateTableReloadStatusDataCounts(platform.supportsMultiThreadedTransactions() ? null : transaction, 
+                                    loadId, firstBatchId, request.getEndBatchId(), request.getEndBatchId() - request.getStartBatchId() + 1,
+                                    request.getRows());
                         }
-                        
-                        updateTableReloadStatusDataCounts(platform.supportsMultiThreadedTransactions() ? null : transaction, 
-                                loadId, firstBatchId, endBatchId, numberOfBatches, rowCount);
-                    
-                        ExtractRequest request = engine.getDataExtractorService().requestExtractRequest(transaction, targetNode.getNodeId(), channel.getQueue(),
-                                triggerRouter, startBatchId, endBatchId, loadId, table.getName(), rowCount, parentRequestId);
+
                         if (parentRequestId == 0) {
+                            ExtractRequest request = tableRequests.get(0);
+                            if (tableRequests.size() > 1) {
+                                request.setRangeRequests(tableRequests);
+                            }
                             requests.put(triggerHistory.getTriggerHistoryId(), request);
                         }
                     } else {
@@ -1580,6 +1608,108 @@ public class DataService extends AbstractService implements IDataService {
         return requests;
     }
 
+    protected ExtractRequest insertLoadBatchesForTable(ISqlTransaction transaction, Node targetNode, TriggerRouter triggerRouter,
+            TriggerHistory triggerHistory, Table table, String selectSql, long loadId, String createBy, Channel channel,
+            String queue, long rowCount, long parentRequestId) {
+        long transformMultiplier = getTransformMultiplier(table, triggerRouter);
+        long startBatchId = 0;
+        long numberOfBatches = 1;
+
+        if (parameterService.is(ParameterConstants.INITIAL_LOAD_USE_EXTRACT_JOB)) {
+            if (rowCount > 0) {
+                numberOfBatches = (long) Math.ceil((rowCount * transformMultiplier) / (channel.getMaxBatchSize() * 1f));
+            }
+
+            startBatchId = insertRequestedOutgoingBatches(transaction, targetNode, triggerRouter, triggerHistory, selectSql,
+                    loadId, createBy, channel.getChannelId(), rowCount, channel.getMaxBatchSize(), numberOfBatches);
+        } else {
+            startBatchId = insertReloadEvent(transaction, targetNode, triggerRouter, triggerHistory,
+                    selectSql, true, loadId, createBy, Status.NE, null, -1);
+        }
+
+        long endBatchId = startBatchId + numberOfBatches - 1;
+        ExtractRequest request = engine.getDataExtractorService().requestExtractRequest(transaction, targetNode.getNodeId(), queue,
+                triggerRouter, startBatchId, endBatchId, loadId, table.getName(), rowCount, parentRequestId);
+        request.setReloadSelect(selectSql);
+        return request;
+    }
+
+    /**
+     * Splits the rows selected for the reload of a large table into ranges of
+     * its primary key between the smallest and largest key, so each range can
+     * be extracted by its own thread. The first and last ranges are open ended,
+     * so together the ranges select the same rows as the select they split.
+     * 
+     * @return the select for each range, or null when the table is not split
+     */
+    protected List<String> getRangeSelectsForReload(Table table, Node targetNode, String selectSql, long rowCount) {
+        long splitRows = parameterService.getLong(ParameterConstants.INITIAL_LOAD_EXTRACT_SPLIT_ROWS, 0);
+        Column[] pkColumns = table.getPrimaryKeyColumns();
+        if (splitRows <= 0 || rowCount <= splitRows || pkColumns.length != 1 || !isIntegerColumn(pkColumns[0])) {
+            return null;
+        }
+        long rangeCount = Math.min((rowCount + splitRows - 1) / splitRows,
+                parameterService.getInt(ParameterConstants.INITIAL_LOAD_EXTRACT_SPLIT_MAX_COUNT, 4));
+
+        DatabaseInfo dbInfo = getTargetPlatform().getDatabaseInfo();
+        String quote = dbInfo.getDelimiterToken();
+        String column = "t." + quote + pkColumns[0].getName() + quote;
+        String sql = String.format("select min(%s) min_value, max(%s) max_value from %s t where %s", column, column,
+                table.getQualifiedTableName(quote, dbInfo.getCatalogSeparator(), dbInfo.getSchemaSeparator()), selectSql);
+        sql = replaceReloadVariables(sql, targetNode, table);
+
+        Row row = null;
+        try {
+            row = getTargetPlatform().getSqlTemplateDirty().queryForRow(sql);
+        } catch (SqlException ex) {
+            log.error("Failed to execute primary key range SQL while starting reload.  " + ex.getMessage() + ", SQL: \"" + sql + "\"");
+            throw new InvalidSqlException(ex);
+        }
+        if (row == null || row.get("min_value") == null || row.get("max_value") == null) {
+            return null;
+        }
+
+        BigInteger minValue = new BigDecimal(row.get("min_value").toString()).toBigInteger();
+        BigInteger span = new BigDecimal(row.get("max_value").toString()).toBigInteger().subtract(minValue).add(BigInteger.ONE);
+        rangeCount = Math.min(rangeCount, span.min(BigInteger.valueOf(Long.MAX_VALUE)).longValue());
+        if (rangeCount < 2) {
+            return null;
+        }
+
+        List<String> rangeSelects = new ArrayList<String>();
+        BigInteger rangeStart = null;
+        for (long i = 1; i <= rangeCount; i++) {
+            StringBuilder rangeSelect = new StringBuilder("(").append(selectSql).append(")");
+            if (rangeStart != null) {
+                rangeSelect.append(" and ").append(column).append(" >= ").append(rangeStart);
+            }
+            BigInteger rangeEnd = null;
+            if (i < rangeCount) {
+                rangeEnd = minValue.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(rangeCount)));
+                rangeSelect.append(" and ").append(column).append(" < ").append(rangeEnd);
+            }
+            rangeSelects.add(rangeSelect.toString());
+            rangeStart = rangeEnd;
+        }
+        return rangeSelects;
+    }
+
+    protected boolean isIntegerColumn(Column column) {
+        int type = column.getMappedTypeCode();
+        return type == Types.TINYINT || type == Types.SMALLINT || type == Types.INTEGER || type == Types.BIGINT
+                || ((type == Types.NUMERIC || type == Types.DECIMAL) && column.getScale() == 0);
+    }
+
+    protected String replaceReloadVariables(String sql, Node targetNode, Table table) {
+        sql = FormatUtils.replace("groupId", targetNode.getNodeGroupId(), sql);
+        sql = FormatUtils.replace("externalId", targetNode.getExternalId(), sql);
+        sql = FormatUtils.replace("nodeId", targetNode.getNodeId(), sql);
+        for (IReloadVariableFilter filter : extensionService.getExtensionPointList(IReloadVariableFilter.class)) {
+            sql = filter.filterPurgeSql(sql, targetNode, table);
+        }
+        return sql;
+    }
+
     protected long getDataCountForReload(Table table, Node targetNode, String selectSql) throws SqlException {
         long rowCount = -1;
         if (parameterService.is(ParameterConstants.INITIAL_LOAD_USE_ESTIMATED_COUNTS) &&
@@ -1595,12 +1725,7 @@ public class DataService extends AbstractService implements IDataService {
                                               
             String sql = String.format("select count(*) from %s t where %s", table
                     .getQualifiedTableName(quote, catalogSeparator, schemaSeparator), selectSql);
-            sql = FormatUtils.replace("groupId", targetNode.getNodeGroupId(), sql);
-            sql = FormatUtils.replace("externalId", targetNode.getExternalId(), sql);
-            sql = FormatUtils.replace("nodeId", targetNode.getNodeId(), sql);
-            for (IReloadVariableFilter filter : extensionService.getExtensionPointList(IReloadVariableFilter.class)) {
-                sql = filter.filterPurgeSql(sql, targetNode, table);
-            }
+            sql = replaceReloadVariables(sql, targetNode, table);
             
             try {            
                 rowCount = getTargetPlatform().getSqlTemplateDirty().queryForLong(sql);
@@ -3168,29 +3293,46 @@ public class DataService extends AbstractService implements IDataService {
 
     public class DataMapper implements ISqlRowMapper<Data> {
 
+        private static final int ROW_DATA = 0, PK_DATA = 1, OLD_DATA = 2, CHANNEL_ID = 3, TRANSACTION_ID = 4,
+                TABLE_NAME = 5, EVENT_TYPE = 6, SOURCE_NODE_ID = 7, EXTERNAL_DATA = 8, NODE_LIST = 9, DATA_ID = 10,
+                CREATE_TIME = 11, TRIGGER_HIST_ID = 12, IS_PREROUTED = 13;
+
+        private final String[] columnNames = { "ROW_DATA", "PK_DATA", "OLD_DATA", "CHANNEL_ID", "TRANSACTION_ID",
+                "TABLE_NAME", "EVENT_TYPE", "SOURCE_NODE_ID", "EXTERNAL_DATA", "NODE_LIST", "DATA_ID", "CREATE_TIME",
+                "TRIGGER_HIST_ID", "IS_PREROUTED" };
+
+        private RowColumns columns;
+
+        private int[] indexes;
+
         private HashMap<String, TriggerHistory> mismatchedTableName;
         
         private HashSet<Integer> missingConfigTriggerHist; 
 
-        public Data mapRow(Row row) {
+        public Data mapRow(Row r) {
+            ArrayRow row = ArrayRow.valueOf(r);
+            if (row.getColumns() != columns) {
+                columns = row.getColumns();
+                indexes = columns.indexesOf(columnNames);
+            }
             Data data = new Data();
-            String rowData = row.getString("ROW_DATA", false);
+            String rowData = row.getString(indexes[ROW_DATA], false);
             data.putCsvData(CsvData.ROW_DATA, isNotBlank(rowData) ? rowData : null);
-            String pkData = row.getString("PK_DATA", false);
+            String pkData = row.getString(indexes[PK_DATA], false);
             data.putCsvData(CsvData.PK_DATA, isNotBlank(pkData) ? pkData : null);
-            String oldData = row.getString("OLD_DATA", false);
+            String oldData = row.getString(indexes[OLD_DATA], false);
             data.putCsvData(CsvData.OLD_DATA, isNotBlank(oldData) ? oldData : null);
-            data.putAttribute(CsvData.ATTRIBUTE_CHANNEL_ID, row.getString("CHANNEL_ID"));
-            data.putAttribute(CsvData.ATTRIBUTE_TX_ID, row.getString("TRANSACTION_ID", false));
-            String tableName = row.getString("TABLE_NAME");
+            data.putAttribute(CsvData.ATTRIBUTE_CHANNEL_ID, row.getString(indexes[CHANNEL_ID]));
+            data.putAttribute(CsvData.ATTRIBUTE_TX_ID, row.getString(indexes[TRANSACTION_ID], false));
+            String tableName = row.getString(indexes[TABLE_NAME]);
             data.putAttribute(CsvData.ATTRIBUTE_TABLE_NAME, tableName);
-            data.setDataEventType(DataEventType.getEventType(row.getString("EVENT_TYPE")));
-            data.putAttribute(CsvData.ATTRIBUTE_SOURCE_NODE_ID, row.getString("SOURCE_NODE_ID"));
-            data.putAttribute(CsvData.ATTRIBUTE_EXTERNAL_DATA, row.getString("EXTERNAL_DATA"));
-            data.putAttribute(CsvData.ATTRIBUTE_NODE_LIST, row.getString("NODE_LIST"));
-            data.putAttribute(CsvData.ATTRIBUTE_DATA_ID, row.getLong("DATA_ID"));
-            data.putAttribute(CsvData.ATTRIBUTE_CREATE_TIME, row.getDateTime("CREATE_TIME"));
-            int triggerHistId = row.getInt("TRIGGER_HIST_ID");
+            data.setDataEventType(DataEventType.getEventType(row.getString(indexes[EVENT_TYPE])));
+            data.putAttribute(CsvData.ATTRIBUTE_SOURCE_NODE_ID, row.getString(indexes[SOURCE_NODE_ID]));
+            data.putAttribute(CsvData.ATTRIBUTE_EXTERNAL_DATA, row.getString(indexes[EXTERNAL_DATA]));
+            data.putAttribute(CsvData.ATTRIBUTE_NODE_LIST, row.getString(indexes[NODE_LIST]));
+            data.putAttribute(CsvData.ATTRIBUTE_DATA_ID, row.getLong(indexes[DATA_ID]));
+            data.putAttribute(CsvData.ATTRIBUTE_CREATE_TIME, row.getDateTime(indexes[CREATE_TIME]));
+            int triggerHistId = row.getInt(indexes[TRIGGER_HIST_ID]);
             data.putAttribute(CsvData.ATTRIBUTE_TABLE_ID, triggerHistId);
             TriggerHistory triggerHistory = engine.getTriggerRouterService().getTriggerHistory(triggerHistId);
             if (triggerHistory == null) {
@@ -3253,7 +3395,7 @@ public class DataService extends AbstractService implements IDataService {
                 }
             }
             data.setTriggerHistory(triggerHistory);
-            data.setPreRouted(row.getBoolean("IS_PREROUTED"));
+            data.setPreRouted(row.getBoolean(indexes[IS_PREROUTED]));
             return data;
         }
     }
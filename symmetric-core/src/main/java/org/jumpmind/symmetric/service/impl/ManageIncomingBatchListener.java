@@ -101,6 +101,15 @@ class ManageIncomingBatchListener implements IDataProcessorListener {
         this.statisticManager = engine.getStatisticManager();
     }
 
+    /**
+     * Create a listener for one batch that records the batches it processes
+     * in a list shared with other listeners from the same transfer.
+     */
+    public ManageIncomingBatchListener(ProcessInfo processInfo, ISymmetricEngine engine, List<IncomingBatch> batchesProcessed) {
+        this(processInfo, engine);
+        this.batchesProcessed = batchesProcessed;
+    }
+
     public void beforeBatchEnd(DataContext context) {
         // Only sync triggers if this is not a load only node.
         if (engine.getSymmetricDialect().getPlatform().equals(engine.getTargetDialect().getPlatform())) {
@@ -38,6 +38,7 @@ import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.model.Notification;
 import org.jumpmind.symmetric.monitor.IMonitorType;
 import org.jumpmind.symmetric.monitor.MonitorTypeOfflineNodes;
+import org.jumpmind.symmetric.monitor.MonitorTypeStagingMemory;
 import org.jumpmind.symmetric.monitor.MonitorTypeBatchError;
 import org.jumpmind.symmetric.monitor.MonitorTypeBatchUnsent;
 import org.jumpmind.symmetric.monitor.MonitorTypeBlock;
@@ -100,7 +101,7 @@ public class MonitorService extends AbstractService implements IMonitorService {
         
         IMonitorType monitorExtensions[] = { new MonitorTypeBatchError(), new MonitorTypeBatchUnsent(), new MonitorTypeCpu(),
                 new MonitorTypeDataGap(), new MonitorTypeDisk(), new MonitorTypeMemory(), new MonitorTypeUnrouted(),
-                new MonitorTypeLog(), new MonitorTypeOfflineNodes(), new MonitorTypeBlock() };
+                new MonitorTypeLog(), new MonitorTypeOfflineNodes(), new MonitorTypeBlock(), new MonitorTypeStagingMemory() };
         for (IMonitorType ext : monitorExtensions) {
             extensionService.addExtensionPoint(ext.getName(), ext);    
         }
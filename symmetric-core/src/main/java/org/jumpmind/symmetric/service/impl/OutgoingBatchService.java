@@ -65,6 +65,8 @@ import org.jumpmind.util.FormatUtils;
  */
 public class OutgoingBatchService extends AbstractService implements IOutgoingBatchService {
 
+    protected static final int MAX_BATCH_IDS_IN_LIST = 1000;
+
     private INodeService nodeService;
 
     private IConfigurationService configurationService;
@@ -367,6 +369,29 @@ public class OutgoingBatchService extends AbstractService implements IOutgoingBa
         }
     }
 
+    public List<OutgoingBatch> findOutgoingBatches(String nodeId, List<Long> batchIds) {
+        List<OutgoingBatch> batches = new ArrayList<OutgoingBatch>(batchIds.size());
+        /*
+         * Some databases limit an in list to 1000 values
+         */
+        for (int start = 0; start < batchIds.size(); start += MAX_BATCH_IDS_IN_LIST) {
+            List<Long> chunk = batchIds.subList(start, Math.min(start + MAX_BATCH_IDS_IN_LIST, batchIds.size()));
+            Object[] args = new Object[chunk.size() + 1];
+            int[] types = new int[args.length];
+            args[0] = nodeId;
+            types[0] = Types.VARCHAR;
+            StringBuilder inList = new StringBuilder();
+            for (int i = 0; i < chunk.size(); i++) {
+                args[i + 1] = chunk.get(i);
+                types[i + 1] = symmetricDialect.getSqlTypeForIds();
+                inList.append(i > 0 ? ",?" : "?");
+            }
+            String sql = getSql("selectOutgoingBatchPrefixSql", "findOutgoingBatchesSql").replace(":BATCH_IDS", inList);
+            batches.addAll(sqlTemplateDirty.query(sql, new OutgoingBatchMapper(true), args, types));
+        }
+        return batches;
+    }
+
     public int countOutgoingBatchesInError() {
         return sqlTemplateDirty.queryForInt(getSql("countOutgoingBatchesErrorsSql"));
     }
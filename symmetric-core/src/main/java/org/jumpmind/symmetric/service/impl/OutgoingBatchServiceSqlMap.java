@@ -78,6 +78,8 @@ public class OutgoingBatchServiceSqlMap extends AbstractSqlMap {
 
         putSql("findOutgoingBatchByIdOnlySql", "where batch_id=? ");
 
+        putSql("findOutgoingBatchesSql", "where node_id=? and batch_id in (:BATCH_IDS) ");
+
         putSql("selectOutgoingBatchSql",
                 "where node_id = ? and status in (?, ?, ?, ?, ?, ?, ?, ?) order by batch_id asc   ");
 
@@ -0,0 +1,144 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Orders the loading of staged batches that arrive in one transfer. Each
+ * batch is described by its table keys, which are the lower case names of the
+ * tables it writes plus the tables they depend on. A batch with null table
+ * keys is a barrier that conflicts with every other batch. A batch waits for
+ * all earlier batches it conflicts with, so overlapping batches load in the
+ * order they arrived while independent batches load at the same time.
+ * <p>
+ * When a batch fails or is skipped, later batches that conflict with it are
+ * skipped so that the source node can resend them in order.
+ */
+class ParallelBatchLoadScheduler {
+
+    protected List<ScheduledBatch> inFlight = new ArrayList<ScheduledBatch>();
+
+    protected Set<String> failedTableKeys = new HashSet<String>();
+
+    protected boolean isBarrierFailed;
+
+    /**
+     * Register a batch and return the earlier batches that must finish before
+     * it can start. Called in arrival order from a single thread.
+     */
+    public synchronized ScheduledBatch schedule(Set<String> tableKeys) {
+        ScheduledBatch scheduled = new ScheduledBatch(tableKeys);
+        for (Iterator<ScheduledBatch> i = inFlight.iterator(); i.hasNext();) {
+            ScheduledBatch earlier = i.next();
+            if (earlier.isDone()) {
+                i.remove();
+            } else if (isConflict(earlier.tableKeys, tableKeys)) {
+                scheduled.dependencies.add(earlier);
+            }
+        }
+        inFlight.add(scheduled);
+        return scheduled;
+    }
+
+    /**
+     * Wait for the batches that the given batch depends on and return true if
+     * it may be loaded, or false if it must be skipped because an earlier
+     * conflicting batch failed.
+     */
+    public boolean awaitDependencies(ScheduledBatch scheduled) throws InterruptedException {
+        for (ScheduledBatch dependency : scheduled.dependencies) {
+            dependency.await();
+        }
+        synchronized (this) {
+            if (isBarrierFailed) {
+                return false;
+            } else if (scheduled.tableKeys == null) {
+                return failedTableKeys.isEmpty();
+            } else {
+                return Collections.disjoint(failedTableKeys, scheduled.tableKeys);
+            }
+        }
+    }
+
+    /**
+     * Record a batch that failed or was skipped. A null batch is treated as a
+     * failed barrier.
+     */
+    public synchronized void failed(ScheduledBatch scheduled) {
+        if (scheduled == null || scheduled.tableKeys == null) {
+            isBarrierFailed = true;
+        } else {
+            failedTableKeys.addAll(scheduled.tableKeys);
+        }
+    }
+
+    protected static boolean isConflict(Set<String> tableKeys1, Set<String> tableKeys2) {
+        return tableKeys1 == null || tableKeys2 == null || !Collections.disjoint(tableKeys1, tableKeys2);
+    }
+
+    static class ScheduledBatch {
+
+        protected Set<String> tableKeys;
+
+        protected List<ScheduledBatch> dependencies = new ArrayList<ScheduledBatch>();
+
+        protected Future<?> future;
+
+        public ScheduledBatch(Set<String> tableKeys) {
+            this.tableKeys = tableKeys;
+        }
+
+        public void setFuture(Future<?> future) {
+            this.future = future;
+        }
+
+        public Set<String> getTableKeys() {
+            return tableKeys;
+        }
+
+        public List<ScheduledBatch> getDependencies() {
+            return dependencies;
+        }
+
+        protected boolean isDone() {
+            return future != null && future.isDone();
+        }
+
+        protected void await() throws InterruptedException {
+            if (future != null) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    /* The failure is recorded and reported by the batch itself */
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+/**
+ * Picks the number of ids covered by each purge delete statement. When a
+ * target latency is set, the chunk doubles while deletes finish in less than
+ * half of the target and halves when a delete takes longer than the target.
+ * The chunk never drops below one id and never grows past
+ * {@link #MAX_GROWTH} times the configured size.
+ */
+class PurgeChunkSizer {
+
+    static final int MAX_GROWTH = 16;
+
+    protected int chunkSize;
+
+    protected int maxChunkSize;
+
+    protected long targetMillis;
+
+    public PurgeChunkSizer(int chunkSize, long targetMillis) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxChunkSize = (int) Math.min(Integer.MAX_VALUE, (long) this.chunkSize * MAX_GROWTH);
+        this.targetMillis = targetMillis;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void record(long elapsedMillis) {
+        if (targetMillis > 0) {
+            if (elapsedMillis > targetMillis) {
+                chunkSize = Math.max(1, chunkSize / 2);
+            } else if (elapsedMillis * 2 < targetMillis) {
+                chunkSize = (int) Math.min(maxChunkSize, (long) chunkSize * 2);
+            }
+        }
+    }
+
+    public static double getRowsPerSecond(long rows, long millis) {
+        return millis > 0 ? rows * 1000d / millis : 0;
+    }
+
+}
@@ -28,6 +28,11 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -37,9 +42,12 @@ import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.Row;
 import org.jumpmind.db.sql.mapper.LongMapper;
 import org.jumpmind.db.sql.mapper.StringMapper;
+import org.jumpmind.symmetric.SymmetricException;
 import org.jumpmind.symmetric.common.ContextConstants;
 import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.common.TableConstants;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.db.TablePartition;
 import org.jumpmind.symmetric.ext.IPurgeListener;
 import org.jumpmind.symmetric.model.ExtractRequest;
 import org.jumpmind.symmetric.model.IncomingBatch;
@@ -52,6 +60,7 @@ import org.jumpmind.symmetric.service.IExtensionService;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.jumpmind.symmetric.service.IPurgeService;
 import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.util.CustomizableThreadFactory;
 
 /**
  * @see IPurgeService
@@ -125,6 +134,9 @@ public class PurgeService extends AbstractService implements IPurgeService {
                     rowsPurged += purgeOutgoingByRetentionCutoff(retentionCutoff);
                 } else {
                     rowsPurged += purgeStrandedBatches();
+                    if (parameterService.is(ParameterConstants.PURGE_DROP_PARTITIONS) && symmetricDialect.supportsPartitionPurge()) {
+                        rowsPurged += purgePartitions(retentionCutoff);
+                    }
                     rowsPurged += purgeDataRows(retentionCutoff);
                     rowsPurged += purgeOutgoingBatch(retentionCutoff);
                     rowsPurged += purgeLingeringBatches(retentionCutoff);
@@ -212,6 +224,93 @@ public class PurgeService extends AbstractService implements IPurgeService {
         return dataEventsPurgedCount + outgoingbatchPurgedCount;
     }
 
+    protected long purgePartitions(final Calendar time) {
+        String tablePrefix = parameterService.getTablePrefix();
+        final Timestamp cutoffTime = new Timestamp(time.getTime().getTime());
+        final String okStatus = OutgoingBatch.Status.OK.name();
+        long minGapStartId = sqlTemplateDirty.queryForLong(getSql("minDataGapStartId"));
+        long maxDataId = getMaxDataIdEligibleToPurge(time);
+        if (minGapStartId > 0) {
+            maxDataId = Math.min(maxDataId, minGapStartId - 1);
+        }
+        long maxBatchId = sqlTemplateDirty.queryForLong(getSql("maxOutgoingBatchId"), -1, cutoffTime);
+        long dataCount = purgePartitions(TableConstants.getTableName(tablePrefix, TableConstants.SYM_DATA), maxDataId, 
+                "countDataByRangeSql", new PartitionCheck() {
+            public boolean isPurgeable(TablePartition partition) {
+                return sqlTemplateDirty.queryForLong(getSql("countDataNotPurgeableByRangeSql"), 
+                        partition.getMinId(), partition.getMaxId(), okStatus) == 0 &&
+                        sqlTemplateDirty.queryForLong(getSql("countDataAfterCutoffByRangeSql"), 
+                                partition.getMinId(), partition.getMaxId(), cutoffTime) == 0;
+            }
+        });
+        statisticManager.incrementPurgedDataRows(dataCount);
+
+        long eventCount = purgePartitions(TableConstants.getTableName(tablePrefix, TableConstants.SYM_DATA_EVENT), maxBatchId, 
+                "countDataEventByRangeSql", new PartitionCheck() {
+            public boolean isPurgeable(TablePartition partition) {
+                if (sqlTemplateDirty.queryForLong(getSql("countOutgoingBatchNotStatusByRangeSql"), 
+                        partition.getMinId(), partition.getMaxId(), okStatus) == 0) {
+                    long maxEventDataId = sqlTemplateDirty.queryForLong(getSql("maxDataEventDataIdByRangeSql"), 
+                            partition.getMinId(), partition.getMaxId());
+                    long minDataId = sqlTemplateDirty.queryForLong(getSql("minDataId"));
+                    return maxEventDataId < minDataId || minDataId == 0;
+                }
+                return false;
+            }
+        });
+        statisticManager.incrementPurgedDataEventRows(eventCount);
+
+        long batchCount = purgePartitions(TableConstants.getTableName(tablePrefix, TableConstants.SYM_OUTGOING_BATCH), maxBatchId, 
+                "countOutgoingBatchByRangeSql", new PartitionCheck() {
+            public boolean isPurgeable(TablePartition partition) {
+                return sqlTemplateDirty.queryForLong(getSql("countOutgoingBatchNotStatusByRangeSql"), 
+                        partition.getMinId(), partition.getMaxId(), okStatus) == 0 &&
+                        sqlTemplateDirty.queryForLong(getSql("countDataEventByRangeSql"), 
+                                partition.getMinId(), partition.getMaxId()) == 0;
+            }
+        });
+        statisticManager.incrementPurgedBatchOutgoingRows(batchCount);
+        return dataCount + eventCount + batchCount;
+    }
+
+    /*
+     * Drops the partitions of a table up through the max id while they are purgeable, 
+     * returning the number of rows that were in the dropped partitions
+     */
+    protected long purgePartitions(String tableName, long maxId, String countSqlName, PartitionCheck check) {
+        long rowCount = 0;
+        List<TablePartition> partitions = symmetricDialect.getTablePartitions(tableName);
+        if (partitions.size() > 0) {
+            log.info("Looking for partitions of {} to drop up through id {}", tableName, maxId);
+            for (TablePartition partition : partitions) {
+                if (partition.getMaxId() > maxId) {
+                    break;
+                }
+                if (check.isPurgeable(partition)) {
+                    long partitionRowCount = sqlTemplateDirty.queryForLong(getSql(countSqlName), 
+                            partition.getMinId(), partition.getMaxId());
+                    try {
+                        symmetricDialect.dropTablePartition(tableName, partition);
+                        log.info("Dropped partition {} of {} with {} rows", new Object[] { partition, tableName, partitionRowCount });
+                        rowCount += partitionRowCount;
+                    } catch (Exception e) {
+                        log.warn("Could not drop partition {} of {}, so it was left in place for the purge to delete its rows: {}", 
+                                new Object[] { partition, tableName, e.getMessage() });
+                        break;
+                    }
+                } else {
+                    log.debug("Partition {} of {} still has rows to keep, so it was left in place", partition, tableName);
+                }
+                clusterService.refreshLock(ClusterConstants.PURGE_OUTGOING);
+            }
+        }
+        return rowCount;
+    }
+
+    interface PartitionCheck {
+        public boolean isPurgeable(TablePartition partition);
+    }
+
     private long[] getRangeMinMax(long[] minMax, long notOkBatchId) {
         return new long[] { minMax[0], Math.min(notOkBatchId > 0 ? notOkBatchId - 1 : minMax[1], minMax[1]) };
     }
@@ -504,89 +603,164 @@ public class PurgeService extends AbstractService implements IPurgeService {
         long maxId = 0;
         long purgeUpToId = minMax[1];
         long ts = System.currentTimeMillis();
+        long deleteMillis = 0;
         int totalCount = 0;
         int totalDeleteStmts = 0;
-        int idSqlType = symmetricDialect.getSqlTypeForIds();
         Timestamp cutoffTime = new Timestamp(retentionTime.getTime());
+        boolean stranded = identifier == MinMaxDeleteSql.STRANDED_DATA || identifier == MinMaxDeleteSql.STRANDED_DATA_EVENT;
+        int threadCount = stranded ? 1 : Math.max(1, parameterService.getInt(ParameterConstants.PURGE_THREADS, 1));
+        PurgeChunkSizer chunkSizer = new PurgeChunkSizer(maxNumtoPurgeinTx,
+                parameterService.getLong(ParameterConstants.PURGE_TARGET_DELETE_MS, 0));
         log.info("About to purge {} using range {} through {}", identifier.toString().toLowerCase(), minMax[0], minMax[1]);
         
-        while (minId <= purgeUpToId) {
-            totalDeleteStmts++;
-            maxId = minId + maxNumtoPurgeinTx;
-            if (maxId > purgeUpToId) {
-                maxId = purgeUpToId;
-            }
-
-            String deleteSql = null;
-            Object[] args = null;
-            int[] argTypes = null;
-
-            switch (identifier) {
-                case DATA:
-                    deleteSql = getSql("deleteDataSql");
-                    args = new Object[] { minId, maxId, cutoffTime, minId, maxId, minId, maxId,
-                            OutgoingBatch.Status.OK.name() };
-                    argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP, 
-                            idSqlType, idSqlType, idSqlType, idSqlType, Types.VARCHAR};
-                    break;
-                case DATA_RANGE:
-                case STRANDED_DATA:
-                    deleteSql = getSql("deleteDataByRangeSql");
-                    args = new Object[] { minId, maxId, cutoffTime };
-                    argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP };
-                    break;
-                case DATA_EVENT:
-                    deleteSql = getSql("deleteDataEventSql");
-                    args = new Object[] { minId, maxId, OutgoingBatch.Status.OK.name(), minId,
-                            maxId };
-                    argTypes = new int[] { idSqlType, idSqlType, Types.VARCHAR, idSqlType, idSqlType};
+        ExecutorService executor = null;
+        if (threadCount > 1 && purgeUpToId - minId > maxNumtoPurgeinTx) {
+            executor = Executors.newFixedThreadPool(threadCount, new CustomizableThreadFactory(
+                    String.format("%s-purge-%s", parameterService.getEngineName().toLowerCase(), 
+                            identifier.toString().toLowerCase())));
+        }
 
+        try {
+            while (minId <= purgeUpToId) {
+                int chunkSize = chunkSizer.getChunkSize();
+                List<long[]> ranges = new ArrayList<long[]>(threadCount);
+                while (minId <= purgeUpToId && (ranges.isEmpty() || (executor != null && ranges.size() < threadCount))) {
+                    maxId = minId + chunkSize;
+                    if (maxId > purgeUpToId) {
+                        maxId = purgeUpToId;
+                    }
+                    ranges.add(new long[] { minId, maxId });
+                    minId = maxId + 1;
+                }
+                totalDeleteStmts += ranges.size();
+
+                long startTime = System.currentTimeMillis();
+                int count = purgeByRanges(executor, identifier, ranges, cutoffTime);
+                long elapsed = System.currentTimeMillis() - startTime;
+                deleteMillis += elapsed;
+                chunkSizer.record(elapsed);
+                totalCount += count;
+    
+                if (count == 0 && stranded) {
                     break;
-                case DATA_EVENT_RANGE:
-                    deleteSql = getSql("deleteDataEventByRangeSql");
-                    args = new Object[] { minId, maxId };
-                    argTypes = new int[] { idSqlType, idSqlType };
-                    break;
-                case OUTGOING_BATCH:
-                    deleteSql = getSql("deleteOutgoingBatchSql");
-                    args = new Object[] { OutgoingBatch.Status.OK.name(), minId, maxId, minId,
-                            maxId };
-                    argTypes = new int[] {Types.VARCHAR, idSqlType, idSqlType, idSqlType, idSqlType};
+                }
+    
+                if (System.currentTimeMillis() - ts > DateUtils.MILLIS_PER_MINUTE * 5) {
+                    log.info("Purged {} of {} rows so far using {} statements at {} rows/sec with a chunk size of {}", new Object[] {
+                            totalCount, identifier.toString().toLowerCase(), totalDeleteStmts, 
+                            Math.round(PurgeChunkSizer.getRowsPerSecond(totalCount, deleteMillis)), chunkSizer.getChunkSize() });
+                    ts = System.currentTimeMillis();
+                    clusterService.refreshLock(ClusterConstants.PURGE_OUTGOING);
+                    saveContextLastId(identifier, maxId);
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        saveContextLastId(identifier, maxId);
+        statisticManager.incrementPurgeTime(deleteMillis);
+        log.info("Done purging {} of {} rows at {} rows/sec", new Object[] { totalCount, identifier.toString().toLowerCase(),
+                Math.round(PurgeChunkSizer.getRowsPerSecond(totalCount, deleteMillis)) });
+        return totalCount;
+    }
 
-                    break;
-                case OUTGOING_BATCH_RANGE:
-                    deleteSql = getSql("deleteOutgoingBatchByRangeSql");
-                    args = new Object[] { minId, maxId };
-                    argTypes = new int[] { idSqlType, idSqlType };
-                    break;
-                case STRANDED_DATA_EVENT:
-                    deleteSql = getSql("deleteStrandedDataEvent");
-                    args = new Object[] { minId, maxId, cutoffTime };
-                    argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP };
-                    break;
+    protected int purgeByRanges(ExecutorService executor, final MinMaxDeleteSql identifier, List<long[]> ranges, 
+            final Timestamp cutoffTime) {
+        int count = 0;
+        if (executor == null) {
+            for (long[] range : ranges) {
+                count += purgeByRange(identifier, range[0], range[1], cutoffTime);
+            }
+        } else {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>(ranges.size());
+            for (final long[] range : ranges) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        return purgeByRange(identifier, range[0], range[1], cutoffTime);
+                    }
+                }));
+            }
+            RuntimeException failure = null;
+            for (Future<Integer> future : futures) {
+                try {
+                    count += future.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause()
+                                : new SymmetricException(ex.getCause());
+                    }
+                } catch (InterruptedException ex) {
+                    for (Future<Integer> toCancel : futures) {
+                        toCancel.cancel(true);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new SymmetricException("The purge was interrupted while waiting for delete statements", ex);
+                }
             }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        return count;
+    }
 
-            log.debug("Running the following statement: {} with the following arguments: {}", deleteSql, Arrays.toString(args));
-            int count = sqlTemplate.update(deleteSql, args, argTypes);
-            log.debug("Deleted {} rows", count);
-            totalCount += count;
+    protected int purgeByRange(MinMaxDeleteSql identifier, long minId, long maxId, Timestamp cutoffTime) {
+        int idSqlType = symmetricDialect.getSqlTypeForIds();
+        String deleteSql = null;
+        Object[] args = null;
+        int[] argTypes = null;
+
+        switch (identifier) {
+            case DATA:
+                deleteSql = getSql("deleteDataSql");
+                args = new Object[] { minId, maxId, cutoffTime, minId, maxId, minId, maxId,
+                        OutgoingBatch.Status.OK.name() };
+                argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP, 
+                        idSqlType, idSqlType, idSqlType, idSqlType, Types.VARCHAR};
+                break;
+            case DATA_RANGE:
+            case STRANDED_DATA:
+                deleteSql = getSql("deleteDataByRangeSql");
+                args = new Object[] { minId, maxId, cutoffTime };
+                argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP };
+                break;
+            case DATA_EVENT:
+                deleteSql = getSql("deleteDataEventSql");
+                args = new Object[] { minId, maxId, OutgoingBatch.Status.OK.name(), minId,
+                        maxId };
+                argTypes = new int[] { idSqlType, idSqlType, Types.VARCHAR, idSqlType, idSqlType};
 
-            if (count == 0 && (identifier == MinMaxDeleteSql.STRANDED_DATA || identifier == MinMaxDeleteSql.STRANDED_DATA_EVENT)) {
                 break;
-            }
+            case DATA_EVENT_RANGE:
+                deleteSql = getSql("deleteDataEventByRangeSql");
+                args = new Object[] { minId, maxId };
+                argTypes = new int[] { idSqlType, idSqlType };
+                break;
+            case OUTGOING_BATCH:
+                deleteSql = getSql("deleteOutgoingBatchSql");
+                args = new Object[] { OutgoingBatch.Status.OK.name(), minId, maxId, minId,
+                        maxId };
+                argTypes = new int[] {Types.VARCHAR, idSqlType, idSqlType, idSqlType, idSqlType};
 
-            if (System.currentTimeMillis() - ts > DateUtils.MILLIS_PER_MINUTE * 5) {
-                log.info("Purged {} of {} rows so far using {} statements", new Object[] {
-                        totalCount, identifier.toString().toLowerCase(), totalDeleteStmts });
-                ts = System.currentTimeMillis();
-                clusterService.refreshLock(ClusterConstants.PURGE_OUTGOING);
-                saveContextLastId(identifier, maxId);
-            }
-            minId = maxId + 1;
+                break;
+            case OUTGOING_BATCH_RANGE:
+                deleteSql = getSql("deleteOutgoingBatchByRangeSql");
+                args = new Object[] { minId, maxId };
+                argTypes = new int[] { idSqlType, idSqlType };
+                break;
+            case STRANDED_DATA_EVENT:
+                deleteSql = getSql("deleteStrandedDataEvent");
+                args = new Object[] { minId, maxId, cutoffTime };
+                argTypes = new int[] { idSqlType, idSqlType, Types.TIMESTAMP };
+                break;
         }
-        saveContextLastId(identifier, maxId);
-        log.info("Done purging {} of {} rows", totalCount, identifier.toString().toLowerCase());
-        return totalCount;
+
+        log.debug("Running the following statement: {} with the following arguments: {}", deleteSql, Arrays.toString(args));
+        int count = sqlTemplate.update(deleteSql, args, argTypes);
+        log.debug("Deleted {} rows", count);
+        return count;
     }
 
     protected void saveContextLastId(MinMaxDeleteSql identifier, long lastId) {
@@ -639,8 +813,8 @@ public class PurgeService extends AbstractService implements IPurgeService {
         if (getSymmetricDialect().supportsSubselectsInDelete()) {
             rowCount = sqlTemplate.update(getSql("deleteIncomingErrorsSql"));
         } else {
-            rowCount = selectIdsAndDelete(getSql("selectIncomingErrorsBatchIdsSql"), 
-                    "batch_id", getSql("deleteIncomingErrorsBatchIdsSql"));
+            rowCount = selectIdsAndDelete(getSql("selectIncomingErrorsBatchIdsSql"),
+                    getSql("deleteIncomingErrorsBatchIdsSql"));
         }
         
         log.info("Purged {} incoming error rows", rowCount);
@@ -665,6 +839,7 @@ public class PurgeService extends AbstractService implements IPurgeService {
         long ts = System.currentTimeMillis();
         int totalCount = 0;
         int totalDeleteStmts = 0;
+        long deleteMillis = 0;
         log.info("About to purge incoming batch");
 
         for (NodeBatchRange nodeBatchRange : nodeBatchRangeList) {
@@ -679,9 +854,11 @@ public class PurgeService extends AbstractService implements IPurgeService {
                 if (maxBatchId > purgeUpToBatchId) {
                     maxBatchId = purgeUpToBatchId;
                 }
+                long startTime = System.currentTimeMillis();
                 totalCount += sqlTemplate.update(getSql("deleteIncomingBatchSql"),
                         new Object[] { minBatchId, maxBatchId, nodeBatchRange.getNodeId(),
                                 IncomingBatch.Status.OK.name() });
+                deleteMillis += System.currentTimeMillis() - startTime;
                 minBatchId = maxBatchId + 1;
             }
 
@@ -692,7 +869,9 @@ public class PurgeService extends AbstractService implements IPurgeService {
                 ts = System.currentTimeMillis();
             }
         }
-        log.info("Done purging {} incoming batch rows", totalCount);
+        statisticManager.incrementPurgeTime(deleteMillis);
+        log.info("Done purging {} incoming batch rows at {} rows/sec", totalCount, 
+                Math.round(PurgeChunkSizer.getRowsPerSecond(totalCount, deleteMillis)));
         return totalCount;
     }
     
@@ -751,30 +930,45 @@ public class PurgeService extends AbstractService implements IPurgeService {
         log.info("Purged all {} incoming batch for node {}", count, nodeId);
     }
     
-    protected int selectIdsAndDelete(String selectSql, String fieldName, String deleteSql) {
-        List<Row> results = sqlTemplate.query(selectSql);
+    /**
+     * Delete the ids read by the select sql, a chunk at a time as they are
+     * read, so the ids never have to be held in memory all at once.
+     */
+    protected int selectIdsAndDelete(String selectSql, String deleteSql) {
         int rowCount = 0;
-        if (! results.isEmpty()) {            
-            List<Integer> ids = new ArrayList<Integer>(results.size());
-            for (Row row : results) {
-                ids.add(row.getInt(fieldName));
+        int chunkSize = Math.max(1, parameterService.getInt(ParameterConstants.PURGE_MAX_NUMBER_OF_BATCH_IDS));
+        long startTime = System.currentTimeMillis();
+        List<Long> chunk = new ArrayList<Long>(chunkSize);
+        ISqlReadCursor<Long> cursor = null;
+        try {
+            cursor = sqlTemplate.queryForCursor(selectSql, new LongMapper());
+            Long id = null;
+            while ((id = cursor.next()) != null) {
+                chunk.add(id);
+                if (chunk.size() >= chunkSize) {
+                    rowCount += deleteIds(deleteSql, chunk);
+                    chunk.clear();
+                }
             }
-            
-            results = null;
-            
-            StringBuilder placeHolders = new StringBuilder(ids.size()*2);
-            for (int i = 0; i < ids.size(); i++) {
-                placeHolders.append("?,");
+        } finally {
+            if (cursor != null) {
+                cursor.close();
             }
-            placeHolders.setLength(placeHolders.length()-1);
-            
-            String deleteStatement = deleteSql.replace("?", placeHolders);
-            
-            rowCount = sqlTemplate.update(deleteStatement, ids.toArray());
         }
+        if (chunk.size() > 0) {
+            rowCount += deleteIds(deleteSql, chunk);
+        }
+        statisticManager.incrementPurgeTime(System.currentTimeMillis() - startTime);
         return rowCount;
     }
-    
-    
+
+    protected int deleteIds(String deleteSql, List<Long> ids) {
+        StringBuilder placeHolders = new StringBuilder(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            placeHolders.append("?,");
+        }
+        placeHolders.setLength(placeHolders.length() - 1);
+        return sqlTemplate.update(deleteSql.replace("?", placeHolders), ids.toArray());
+    }
 
 }
@@ -143,6 +143,22 @@ public class PurgeServiceSqlMap extends AbstractSqlMap {
 
         putSql("deleteDataByRangeSql", "delete from $(data) where data_id between ? and ? and create_time < ?");
 
+        putSql("countDataNotPurgeableByRangeSql", "select count(*) from $(data_event) e " +
+                "inner join $(outgoing_batch) b on b.batch_id = e.batch_id where e.data_id between ? and ? and b.status != ?");
+
+        putSql("countDataByRangeSql", "select count(*) from $(data) where data_id between ? and ?");
+
+        putSql("countDataAfterCutoffByRangeSql", "select count(*) from $(data) where data_id between ? and ? and create_time >= ?");
+
+        putSql("countOutgoingBatchNotStatusByRangeSql", 
+                "select count(*) from $(outgoing_batch) where batch_id between ? and ? and status != ?");
+
+        putSql("countOutgoingBatchByRangeSql", "select count(*) from $(outgoing_batch) where batch_id between ? and ?");
+
+        putSql("maxDataEventDataIdByRangeSql", "select max(data_id) from $(data_event) where batch_id between ? and ?");
+
+        putSql("countDataEventByRangeSql", "select count(*) from $(data_event) where batch_id between ? and ?");
+
         putSql("selectOldChannelsForData", "select distinct channel_id from $(data) where channel_id not in (select channel_id from $(channel))");
         
         putSql("deleteDataByChannel", "delete from $(data) where channel_id = ?");
@@ -26,14 +26,22 @@ import static org.jumpmind.symmetric.common.Constants.LOG_PROCESS_SUMMARY_THRESH
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections4.CollectionUtils;
@@ -107,31 +115,52 @@ public class RouterService extends AbstractService implements IRouterService {
     
     final int MAX_LOGGING_LENGTH = 512;
 
-    protected Map<Integer, CounterStat> missingTriggerRouter = new HashMap<Integer, CounterStat>();
+    protected ConcurrentMap<Integer, CounterStat> missingTriggerRouter = new ConcurrentHashMap<Integer, CounterStat>();
     
-    protected Map<String, CounterStat> invalidRouterType = new HashMap<String, CounterStat>();
+    protected ConcurrentMap<String, CounterStat> invalidRouterType = new ConcurrentHashMap<String, CounterStat>();
     
-    protected long triggerRouterCacheTime = 0;
+    protected volatile long triggerRouterCacheTime = 0;
 
-    protected Map<String, Boolean> commonBatchesLastKnownState = new HashMap<String, Boolean>();
+    protected Map<String, Boolean> commonBatchesLastKnownState = new ConcurrentHashMap<String, Boolean>();
     
-    protected long commonBatchesCacheTime;
+    protected volatile long commonBatchesCacheTime;
 
-    protected Map<String, Boolean> defaultRouterOnlyLastKnownState = new HashMap<String, Boolean>();
+    protected Map<String, Boolean> defaultRouterOnlyLastKnownState = new ConcurrentHashMap<String, Boolean>();
     
-    protected long defaultRoutersCacheTime;
+    protected volatile long defaultRoutersCacheTime;
 
     protected transient ExecutorService readThread = null;
 
+    protected transient ExecutorService channelThreads = null;
+    
+    protected int channelThreadCount;
+    
+    protected final Object threadLock = new Object();
+    
+    /*
+     * Guards the gap detector, which is shared by every channel routed in the
+     * same pass
+     */
+    protected final Object gapDetectorLock = new Object();
+    
+    /*
+     * Non-null only while channels are being routed in parallel. Big lob
+     * reroutes advance the gap detector, so they are deferred until every
+     * channel in the pass has finished.
+     */
+    protected volatile List<BigLobReroute> deferredReroutes;
+
     protected ISymmetricEngine engine;
     
     protected IExtensionService extensionService;
     
     protected DataGapDetector gapDetector;
+
+    protected LookupTableDataRouter lookupTableDataRouter;
     
     protected boolean firstTimeCheck = true;
     
-    protected boolean hasMaxDataRoutedOnChannel;
+    protected volatile boolean hasMaxDataRoutedOnChannel;
 
     public RouterService(ISymmetricEngine engine) {
         super(engine.getParameterService(), engine.getSymmetricDialect());
@@ -146,7 +175,8 @@ public class RouterService extends AbstractService implements IRouterService {
         extensionService.addExtensionPoint(ConfigurationChangedDataRouter.ROUTER_TYPE, new ConfigurationChangedDataRouter(engine));
         extensionService.addExtensionPoint("bsh", new BshDataRouter(engine));
         extensionService.addExtensionPoint("subselect", new SubSelectDataRouter(symmetricDialect));
-        extensionService.addExtensionPoint("lookuptable", new LookupTableDataRouter(symmetricDialect));
+        lookupTableDataRouter = new LookupTableDataRouter(symmetricDialect);
+        extensionService.addExtensionPoint("lookuptable", lookupTableDataRouter);
         extensionService.addExtensionPoint("default", new DefaultDataRouter());
         extensionService.addExtensionPoint("audit", new AuditTableDataRouter(engine));
         extensionService.addExtensionPoint("column", new ColumnMatchDataRouter(engine.getConfigurationService(),
@@ -179,13 +209,23 @@ public class RouterService extends AbstractService implements IRouterService {
     }
 
     public synchronized void stop() {
-        if (readThread != null) {
-            try {
-                log.info("RouterService is shutting down");
-                readThread.shutdown();
-                readThread = null;
-            } catch (Exception ex) {
-                log.error("", ex);
+        synchronized (threadLock) {
+            if (readThread != null) {
+                try {
+                    log.info("RouterService is shutting down");
+                    readThread.shutdown();
+                    readThread = null;
+                } catch (Exception ex) {
+                    log.error("", ex);
+                }
+            }
+            if (channelThreads != null) {
+                try {
+                    channelThreads.shutdown();
+                    channelThreads = null;
+                } catch (Exception ex) {
+                    log.error("", ex);
+                }
             }
         }
     }
@@ -254,10 +294,11 @@ public class RouterService extends AbstractService implements IRouterService {
     }
 
     /**
-     * We route data channel by channel for two reasons. One is that if/when we
-     * decide to multi-thread the routing it is a simple matter of inserting a
-     * thread pool here and waiting for all channels to be processed. The other
-     * reason is to reduce the number of connections we are required to have.
+     * We route data channel by channel for two reasons. One is that channels
+     * are independent of each other, so when routing.parallel.threads is
+     * greater than one they are handed to a bounded thread pool and we wait
+     * for all channels to be processed. The other reason is to reduce the
+     * number of connections we are required to have.
      */
     protected long routeDataForEachChannel() {
         long dataCount = 0;
@@ -271,19 +312,29 @@ public class RouterService extends AbstractService implements IRouterService {
             if (parameterService.is(ParameterConstants.ROUTING_QUERY_CHANNELS_FIRST)) {
                 readyChannels = getReadyChannels();
             }
+            List<NodeChannel> channelsToRoute = new ArrayList<NodeChannel>(channels.size());
             for (NodeChannel nodeChannel : channels) {
-                engine.getClusterService().refreshLock(ClusterConstants.ROUTE);
                 if (nodeChannel.isEnabled() && (readyChannels == null || readyChannels.contains(nodeChannel.getChannelId()))) {
-                    processInfo.setCurrentTableName("");
-                    processInfo.setCurrentChannelId(nodeChannel.getChannelId());
-                    dataCount += routeDataForChannel(processInfo, nodeChannel, sourceNode, false, null, null);
+                    channelsToRoute.add(nodeChannel);
                 } else if (!nodeChannel.isEnabled()) {
-                    gapDetector.setIsAllDataRead(false);
+                    setIsAllDataRead(false);
                     if (log.isDebugEnabled()) {
                         log.debug("Not routing the {} channel.  It is either disabled or suspended.", nodeChannel.getChannelId());                            
                     }
                 }
             }
+            
+            int threadCount = parameterService.getInt(ParameterConstants.ROUTING_PARALLEL_THREADS, 1);
+            if (threadCount > 1 && channelsToRoute.size() > 1) {
+                dataCount = routeChannelsInParallel(processInfo, channelsToRoute, sourceNode, threadCount);
+            } else {
+                for (NodeChannel nodeChannel : channelsToRoute) {
+                    engine.getClusterService().refreshLock(ClusterConstants.ROUTE);
+                    processInfo.setCurrentTableName("");
+                    processInfo.setCurrentChannelId(nodeChannel.getChannelId());
+                    dataCount += routeDataForChannel(processInfo, nodeChannel, sourceNode, false, null, null);
+                }
+            }
             processInfo.setStatus(ProcessInfo.ProcessStatus.OK);
         } catch (RuntimeException ex) {
             processInfo.setStatus(ProcessInfo.ProcessStatus.ERROR);
@@ -293,6 +344,135 @@ public class RouterService extends AbstractService implements IRouterService {
         return dataCount;
     }
 
+    /**
+     * Route each channel on its own thread. A channel is only ever routed by
+     * one thread at a time, so data within a channel stays in order. Gap
+     * detector updates are serialized and reroutes that need to move the gap
+     * detector forward are run once all channels are done.
+     */
+    protected long routeChannelsInParallel(final ProcessInfo processInfo, List<NodeChannel> nodeChannels,
+            final Node sourceNode, int threadCount) {
+        ExecutorService executor = getChannelThreads(threadCount);
+        List<Future<Long>> futures = new ArrayList<Future<Long>>(nodeChannels.size());
+        List<BigLobReroute> reroutes = Collections.synchronizedList(new ArrayList<BigLobReroute>());
+        long dataCount = 0;
+        RuntimeException failure = null;
+        deferredReroutes = reroutes;
+        try {
+            for (final NodeChannel nodeChannel : nodeChannels) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        ProcessInfo channelProcessInfo = engine.getStatisticManager().newProcessInfo(
+                                new ProcessInfoKey(sourceNode.getNodeId(), nodeChannel.getChannelId(), null, ProcessType.ROUTER_JOB));
+                        channelProcessInfo.setStatus(ProcessInfo.ProcessStatus.PROCESSING);
+                        channelProcessInfo.setCurrentChannelId(nodeChannel.getChannelId());
+                        try {
+                            long count = routeDataForChannel(channelProcessInfo, nodeChannel, sourceNode, false, null, null);
+                            channelProcessInfo.setStatus(ProcessInfo.ProcessStatus.OK);
+                            return count;
+                        } catch (RuntimeException ex) {
+                            channelProcessInfo.setStatus(ProcessInfo.ProcessStatus.ERROR);
+                            throw ex;
+                        }
+                    }
+                }));
+            }
+
+            for (Future<Long> future : futures) {
+                try {
+                    dataCount += waitForChannel(future);
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause()
+                                : new SymmetricException(ex.getCause());
+                    }
+                } catch (InterruptedException ex) {
+                    log.warn("The routing process was interrupted while waiting for channels to finish");
+                    for (Future<Long> toCancel : futures) {
+                        toCancel.cancel(true);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new SymmetricException(ex);
+                }
+            }
+        } finally {
+            deferredReroutes = null;
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        for (BigLobReroute reroute : reroutes) {
+            engine.getClusterService().refreshLock(ClusterConstants.ROUTE);
+            dataCount += rerouteWithBigLobs(reroute.processInfo, reroute.nodeChannel, sourceNode, reroute.dataIds,
+                    reroute.batchesByNodes, reroute.batchesByGroups);
+        }
+        return dataCount;
+    }
+
+    protected long waitForChannel(Future<Long> future) throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                return future.get(1, TimeUnit.SECONDS);
+            } catch (TimeoutException ex) {
+                engine.getClusterService().refreshLock(ClusterConstants.ROUTE);
+            }
+        }
+    }
+
+    protected ExecutorService getChannelThreads(int threadCount) {
+        synchronized (threadLock) {
+            if (channelThreads != null && channelThreadCount != threadCount) {
+                channelThreads.shutdown();
+                channelThreads = null;
+            }
+            if (channelThreads == null) {
+                channelThreadCount = threadCount;
+                channelThreads = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+                    final AtomicInteger threadNumber = new AtomicInteger(1);
+                    final String namePrefix = parameterService.getEngineName().toLowerCase() + "-router-channel-";
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName(namePrefix + threadNumber.getAndIncrement());
+                        if (t.isDaemon()) {
+                            t.setDaemon(false);
+                        }
+                        if (t.getPriority() != Thread.NORM_PRIORITY) {
+                            t.setPriority(Thread.NORM_PRIORITY);
+                        }
+                        return t;
+                    }
+                });
+            }
+            return channelThreads;
+        }
+    }
+
+    protected void setIsAllDataRead(boolean isAllDataRead) {
+        synchronized (gapDetectorLock) {
+            gapDetector.setIsAllDataRead(isAllDataRead);
+        }
+    }
+
+    protected void addDataIds(ChannelRouterContext context, boolean isAllDataRead) {
+        synchronized (gapDetectorLock) {
+            gapDetector.addDataIds(context.getDataIds());
+            gapDetector.setIsAllDataRead(isAllDataRead);
+        }
+    }
+
+    protected long rerouteWithBigLobs(ProcessInfo processInfo, NodeChannel nodeChannel, Node sourceNode, List<Long> dataIds,
+            Map<String, OutgoingBatch> batchesByNodes, Map<Integer, Map<String, OutgoingBatch>> batchesByGroups) {
+        synchronized (gapDetectorLock) {
+            gapDetector.addDataIds(dataIds);
+            gapDetector.afterRouting();
+            gapDetector.beforeRouting();
+        }
+        return routeDataForChannel(processInfo, nodeChannel, sourceNode, true, batchesByNodes, batchesByGroups);
+    }
+
     protected Set<String> getReadyChannels() {
         List<DataGap> dataGaps = gapDetector.getDataGaps();
         int dataIdSqlType = engine.getSymmetricDialect().getSqlTypeForIds();
@@ -551,15 +731,19 @@ public class RouterService extends AbstractService implements IRouterService {
                 log.info("Re-attempting routing for batch {} with contains_big_lobs temporarily enabled for channel {}", 
                         batchId, nodeChannel.getChannelId());
                 dataCount = 0;
-                gapDetector.addDataIds(context.getDataIds());
-                gapDetector.afterRouting();
-                gapDetector.beforeRouting();
-                long dataCountWithBigLob = routeDataForChannel(processInfo, nodeChannel, sourceNode, true, batchesByNodes, batchesByGroups);
+                List<BigLobReroute> reroutes = deferredReroutes;
+                if (reroutes != null) {
+                    reroutes.add(new BigLobReroute(processInfo, nodeChannel, new ArrayList<Long>(context.getDataIds()),
+                            batchesByNodes, batchesByGroups));
+                    return context.getCommittedDataEventCount();
+                }
+                long dataCountWithBigLob = rerouteWithBigLobs(processInfo, nodeChannel, sourceNode, context.getDataIds(),
+                        batchesByNodes, batchesByGroups);
                 return context.getCommittedDataEventCount() + dataCountWithBigLob;
             }
         } catch (CommonBatchCollisionException e) {
             log.info(e.getMessage());
-            gapDetector.setIsAllDataRead(false);
+            setIsAllDataRead(false);
             dataCount = context.getDataEventList().size(); // we prevented writing the collision, so commit what we have
             return dataCount;
         } catch (Throwable ex) {
@@ -579,9 +763,11 @@ public class RouterService extends AbstractService implements IRouterService {
                     context.clearDataEventsList();
                     context.incrementStat(System.currentTimeMillis() - insertTs, ChannelRouterContext.STAT_INSERT_DATA_EVENTS_MS);
                     completeBatchesAndCommit(context);
-                    gapDetector.addDataIds(context.getDataIds());
-                    gapDetector.setIsAllDataRead(context.getDataIds().size() < context.getChannel().getMaxDataToRoute());
-                    hasMaxDataRoutedOnChannel |= context.getDataIds().size() >= context.getChannel().getMaxDataToRoute();
+                    boolean reachedMaxDataToRoute = context.getDataIds().size() >= context.getChannel().getMaxDataToRoute();
+                    addDataIds(context, !reachedMaxDataToRoute);
+                    if (reachedMaxDataToRoute) {
+                        hasMaxDataRoutedOnChannel = true;
+                    }
 
                     if (parameterService.is(ParameterConstants.ROUTING_COLLECT_STATS_UNROUTED)) {
                         Data lastDataProcessed = context.getLastDataProcessed();
@@ -600,8 +786,7 @@ public class RouterService extends AbstractService implements IRouterService {
                     }
                 } else if (dataCount == -1) {
                     // rolled back as exception, but let gap detector know about what was committed before halting
-                    gapDetector.addDataIds(context.getDataIds());
-                    gapDetector.setIsAllDataRead(false);
+                    addDataIds(context, false);
                 }
             } catch (Exception e) {
                 if (context != null) {
@@ -615,12 +800,17 @@ public class RouterService extends AbstractService implements IRouterService {
                     context.logStats(log, totalTime);
                     context.cleanup();
                 }
+                engine.getStatisticManager().incrementRouterMillis(nodeChannel.getChannelId(), totalTime);
+                engine.getStatisticManager().getMetrics().getRouteTimers().get(nodeChannel.getChannelId())
+                        .recordMillis(totalTime);
             }
         }
     }
 
     protected void completeBatchesAndCommit(ChannelRouterContext context) {
-        gapDetector.setFullGapAnalysis(context.getSqlTransaction(), true);
+        synchronized (gapDetectorLock) {
+            gapDetector.setFullGapAnalysis(context.getSqlTransaction(), true);
+        }
 
         Set<IDataRouter> usedRouters = new HashSet<IDataRouter>(context.getUsedDataRouters());
         List<OutgoingBatch> batches = new ArrayList<OutgoingBatch>(context.getBatchesByNodes().values());
@@ -641,10 +831,19 @@ public class RouterService extends AbstractService implements IRouterService {
     }
 
     protected void completeBatches(ChannelRouterContext context, List<OutgoingBatch> batches, Set<IDataRouter> usedRouters) {
+        long cacheHits = context.getStat(ChannelRouterContext.STAT_ROUTER_CACHE_HITS);
+        long cacheMisses = context.getStat(ChannelRouterContext.STAT_ROUTER_CACHE_MISSES);
+        if (cacheHits + cacheMisses > 0) {
+            engine.getStatisticManager().getMetrics().getRouterCacheHitRatioGauges()
+                    .get(context.getChannel().getChannelId()).set((double) cacheHits / (cacheHits + cacheMisses));
+            log.debug("Router cache for channel {} had {} hits and {} misses", new Object[] {
+                    context.getChannel().getChannelId(), cacheHits, cacheMisses });
+        }
+
         if (engine.getParameterService().is(ParameterConstants.ROUTING_LOG_STATS_ON_BATCH_ERROR)) {
             engine.getStatisticManager().addRouterStats(context.getStartDataId(), context.getEndDataId(), 
                     context.getDataReadCount(), context.getPeekAheadFillCount(),
-                    context.getDataGaps(), null, batches);
+                    context.getDataGaps(), null, cacheHits, cacheMisses, batches);
         }
 
         for (OutgoingBatch batch : batches) {
@@ -690,25 +889,27 @@ public class RouterService extends AbstractService implements IRouterService {
         if (parameterService.is(ParameterConstants.SYNCHRONIZE_ALL_JOBS)) {
             reader.run();
         } else {
-            if (readThread == null) {
-                readThread = Executors.newCachedThreadPool(new ThreadFactory() {
-                    final AtomicInteger threadNumber = new AtomicInteger(1);
-                    final String namePrefix = parameterService.getEngineName().toLowerCase() + "-router-reader-";
-
-                    public Thread newThread(Runnable r) {
-                        Thread t = new Thread(r);
-                        t.setName(namePrefix + threadNumber.getAndIncrement());
-                        if (t.isDaemon()) {
-                            t.setDaemon(false);
-                        }
-                        if (t.getPriority() != Thread.NORM_PRIORITY) {
-                            t.setPriority(Thread.NORM_PRIORITY);
+            synchronized (threadLock) {
+                if (readThread == null) {
+                    readThread = Executors.newCachedThreadPool(new ThreadFactory() {
+                        final AtomicInteger threadNumber = new AtomicInteger(1);
+                        final String namePrefix = parameterService.getEngineName().toLowerCase() + "-router-reader-";
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r);
+                            t.setName(namePrefix + threadNumber.getAndIncrement());
+                            if (t.isDaemon()) {
+                                t.setDaemon(false);
+                            }
+                            if (t.getPriority() != Thread.NORM_PRIORITY) {
+                                t.setPriority(Thread.NORM_PRIORITY);
+                            }
+                            return t;
                         }
-                        return t;
-                    }
-                });
+                    });
+                }
+                readThread.execute(reader);
             }
-            readThread.execute(reader);
         }
 
         return reader;
@@ -727,6 +928,7 @@ public class RouterService extends AbstractService implements IRouterService {
      */
     protected long selectDataAndRoute(ProcessInfo processInfo, ChannelRouterContext context) throws InterruptedException {
         IDataToRouteReader reader = startReading(context);
+        context.setDataReader(reader);
         Data data = null;
         Data nextData = null;
         long totalDataCount = 0;
@@ -746,6 +948,7 @@ public class RouterService extends AbstractService implements IRouterService {
                     if (data != null) {
                         processInfo.setCurrentTableName(data.getTableName());
                         processInfo.incrementCurrentDataCount();
+                        lookupTableDataRouter.dataRouted(data);
                         if (data.isPreRouted()) {
                             context.addData(data.getDataId());
                         } else {
@@ -927,7 +1130,10 @@ public class RouterService extends AbstractService implements IRouterService {
             CounterStat counterStat = missingTriggerRouter.get(triggerHistId);
             if (counterStat == null) {
                 counterStat = new CounterStat(data);
-                missingTriggerRouter.put(triggerHistId, counterStat);
+                CounterStat existing = missingTriggerRouter.putIfAbsent(triggerHistId, counterStat);
+                if (existing != null) {
+                    counterStat = existing;
+                }
             }
             counterStat.incrementCount();
             numberOfDataEventsInserted += insertDataEvents(processInfo, context, new DataMetaData(data, table,
@@ -1083,7 +1289,10 @@ public class RouterService extends AbstractService implements IRouterService {
                 CounterStat counterStat = invalidRouterType.get(router.getRouterId());
                 if (counterStat == null) {
                     counterStat = new CounterStat(router);
-                    invalidRouterType.put(router.getRouterId(), counterStat);
+                    CounterStat existing = invalidRouterType.putIfAbsent(router.getRouterId(), counterStat);
+                    if (existing != null) {
+                        counterStat = existing;
+                    }
                 }
                 counterStat.incrementCount();
             }
@@ -1166,4 +1375,21 @@ public class RouterService extends AbstractService implements IRouterService {
         return table;
     }
 
+    protected static class BigLobReroute {
+        ProcessInfo processInfo;
+        NodeChannel nodeChannel;
+        List<Long> dataIds;
+        Map<String, OutgoingBatch> batchesByNodes;
+        Map<Integer, Map<String, OutgoingBatch>> batchesByGroups;
+
+        public BigLobReroute(ProcessInfo processInfo, NodeChannel nodeChannel, List<Long> dataIds,
+                Map<String, OutgoingBatch> batchesByNodes, Map<Integer, Map<String, OutgoingBatch>> batchesByGroups) {
+            this.processInfo = processInfo;
+            this.nodeChannel = nodeChannel;
+            this.dataIds = dataIds;
+            this.batchesByNodes = batchesByNodes;
+            this.batchesByGroups = batchesByGroups;
+        }
+    }
+
 }
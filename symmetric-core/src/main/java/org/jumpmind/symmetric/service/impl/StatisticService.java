@@ -61,11 +61,12 @@ public class StatisticService extends AbstractService implements IStatisticServi
                         stats.getDataBytesSent(), stats.getDataSentErrors(), stats.getDataLoaded(),
                         stats.getDataBytesLoaded(), stats.getDataLoadedErrors(),
                         stats.getDataLoadedOutgoing(), stats.getDataBytesLoadedOutgoing(), 
-                        stats.getDataLoadedOutgoingErrors()}, new int[] {
+                        stats.getDataLoadedOutgoingErrors(), stats.getRouterMillis()}, new int[] {
                         Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP,
                         Types.TIMESTAMP, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
                         Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
-                        Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT });
+                        Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
+                        Types.BIGINT });
     }
     
     public void save(JobStats stats) {
@@ -113,12 +114,14 @@ public class StatisticService extends AbstractService implements IStatisticServi
                         stats.getPurgedDataEventRows(), stats.getPurgedBatchOutgoingRows(),
                         stats.getPurgedBatchIncomingRows(), stats.getTriggersCreatedCount(),
                         stats.getTriggersRebuiltCount(), stats.getTriggersRemovedCount(),
-                        stats.getTotalNodesPullTime(), stats.getTotalNodesPushTime()},
+                        stats.getTotalNodesPullTime(), stats.getTotalNodesPushTime(),
+                        stats.getStagingMemoryHits(), stats.getStagingMemoryMisses(),
+                        stats.getStagingMemorySpills(), stats.getPurgeTime()},
                 new int[] { Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP,
                         Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
                         Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT,
                         Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, 
-                        Types.BIGINT });
+                        Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT, Types.BIGINT });
     }
     
 
@@ -177,6 +180,7 @@ public class StatisticService extends AbstractService implements IStatisticServi
             stats.setDataLoadedOutgoing(rs.getLong("data_loaded_outgoing"));
             stats.setDataLoadedOutgoingErrors(rs.getLong("data_loaded_outgoing_errors"));
             stats.setDataBytesLoadedOutgoing(rs.getLong("data_bytes_loaded_outgoing"));
+            stats.setRouterMillis(rs.getLong("router_millis"));
             return stats;
         }
     }
@@ -204,6 +208,10 @@ public class StatisticService extends AbstractService implements IStatisticServi
             stats.setTriggersRemovedCount(rs.getLong("triggers_removed_count"));
             stats.setTotalNodesPullTime(rs.getLong("total_nodes_pull_time"));
             stats.setTotalNodesPushTime(rs.getLong("total_nodes_push_time"));
+            stats.setStagingMemoryHits(rs.getLong("staging_memory_hits"));
+            stats.setStagingMemoryMisses(rs.getLong("staging_memory_misses"));
+            stats.setStagingMemorySpills(rs.getLong("staging_memory_spills"));
+            stats.setPurgeTime(rs.getLong("purge_time"));
             return stats;
         }
     }
@@ -36,8 +36,9 @@ public class StatisticServiceSqlMap extends AbstractSqlMap {
 "  data_extracted, data_bytes_extracted, data_extracted_errors,   " + 
 "  data_sent, data_bytes_sent, data_sent_errors,                  " + 
 "  data_loaded, data_bytes_loaded, data_loaded_errors,            " + 
-"  data_loaded_outgoing, data_bytes_loaded_outgoing, data_loaded_outgoing_errors)            " + 
-"  values(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)                      " );
+"  data_loaded_outgoing, data_bytes_loaded_outgoing, data_loaded_outgoing_errors,           " + 
+"  router_millis)                                                 " + 
+"  values(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)                    " );
 
         putSql("selectChannelStatsSql" ,"" + 
 "select node_id, host_name, channel_id, start_time, end_time,                       " + 
@@ -45,7 +46,8 @@ public class StatisticServiceSqlMap extends AbstractSqlMap {
 "  data_extracted, data_bytes_extracted, data_extracted_errors,                     " + 
 "  data_sent, data_bytes_sent, data_sent_errors,                                    " + 
 "  data_loaded, data_bytes_loaded, data_loaded_errors,                               " + 
-"  data_loaded_outgoing, data_bytes_loaded_outgoing, data_loaded_outgoing_errors    " + 
+"  data_loaded_outgoing, data_bytes_loaded_outgoing, data_loaded_outgoing_errors,   " + 
+"  router_millis                                                                    " + 
 "  from $(node_host_channel_stats)                                            " + 
 "  where  start_time >= ? and end_time <= ? and node_id=? order by start_time asc   " );
         
@@ -60,7 +62,8 @@ public class StatisticServiceSqlMap extends AbstractSqlMap {
 "  sum(data_loaded_errors) as data_loaded_errors,                                          " + 
 "  sum(data_loaded_outgoing) as data_loaded_outgoing,                                     " + 
 "  sum(data_bytes_loaded_outgoing) as data_bytes_loaded_outgoing,                         " + 
-"  sum(data_loaded_outgoing_errors) as data_loaded_outgoing_errors                        " + 
+"  sum(data_loaded_outgoing_errors) as data_loaded_outgoing_errors,                       " + 
+"  sum(router_millis) as router_millis                                                    " + 
 "  from $(node_host_channel_stats)                                                       " +
 "  where start_time >= ? and end_time <= ? and node_id=?                                  " +
 "  and channel_id not in ('heartbeat', 'config')                                          " +
@@ -80,9 +83,10 @@ public class StatisticServiceSqlMap extends AbstractSqlMap {
 "  nodes_registered,nodes_loaded,nodes_disabled,purged_data_rows,                  " + 
 "  purged_data_event_rows,purged_batch_outgoing_rows,purged_batch_incoming_rows,   " + 
 "  triggers_created_count,triggers_rebuilt_count,triggers_removed_count,           " + 
-"  total_nodes_pull_time, total_nodes_push_time                                    " + 
+"  total_nodes_pull_time, total_nodes_push_time,                                   " + 
+"  staging_memory_hits, staging_memory_misses, staging_memory_spills, purge_time   " + 
 "  )                                                                               " + 
-"  values(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)                                 " );
+"  values(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)                         " );
 
         putSql("selectHostStatsSql" ,"" + 
 "select node_id, host_name, start_time, end_time,                                   " + 
@@ -90,7 +94,8 @@ public class StatisticServiceSqlMap extends AbstractSqlMap {
 "  nodes_registered,nodes_loaded,nodes_disabled,purged_data_rows,                   " + 
 "  purged_data_event_rows,purged_batch_outgoing_rows,purged_batch_incoming_rows,    " + 
 "  triggers_created_count,triggers_rebuilt_count,triggers_removed_count,            " + 
-"  total_nodes_pull_time, total_nodes_push_time                                     " + 
+"  total_nodes_pull_time, total_nodes_push_time,                                    " + 
+"  staging_memory_hits, staging_memory_misses, staging_memory_spills, purge_time    " + 
 "  from $(node_host_stats)                                                    " + 
 "  where  start_time >= ? and end_time <= ? and node_id=? order by start_time asc   " );
 
@@ -40,6 +40,7 @@ public class ChannelStats extends AbstractNodeHostStats {
     private long dataLoadedOutgoing;
     private long dataBytesLoadedOutgoing;
     private long dataLoadedOutgoingErrors;
+    private long routerMillis;
     
     public ChannelStats() {}
     
@@ -65,6 +66,7 @@ public class ChannelStats extends AbstractNodeHostStats {
         dataLoadedOutgoing += stats.getDataLoadedOutgoing();
         dataBytesLoadedOutgoing += stats.getDataBytesLoadedOutgoing();
         dataLoadedOutgoingErrors += stats.getDataLoadedOutgoingErrors();
+        routerMillis += stats.getRouterMillis();
     }
 
     public String getChannelId() {
@@ -255,4 +257,16 @@ public class ChannelStats extends AbstractNodeHostStats {
         this.dataLoadedOutgoingErrors += dataLoadedOutgoingErrors;
     }
 
-}
\ No newline at end of file
+    public long getRouterMillis() {
+        return routerMillis;
+    }
+
+    public void setRouterMillis(long routerMillis) {
+        this.routerMillis = routerMillis;
+    }
+
+    public void incrementRouterMillis(long routerMillis) {
+        this.routerMillis += routerMillis;
+    }
+
+}
@@ -40,6 +40,10 @@ public class HostStats extends AbstractNodeHostStats {
     private long triggersCreatedCount;
     private long triggersRebuiltCount;
     private long triggersRemovedCount;
+    private long stagingMemoryHits;
+    private long stagingMemoryMisses;
+    private long stagingMemorySpills;
+    private long purgeTime;
 
     public HostStats() {
     }
@@ -70,6 +74,10 @@ public class HostStats extends AbstractNodeHostStats {
         triggersCreatedCount += stats.getTriggersCreatedCount();
         triggersRebuiltCount += stats.getTriggersRebuiltCount();
         triggersRemovedCount += stats.getTriggersRemovedCount();
+        stagingMemoryHits += stats.getStagingMemoryHits();
+        stagingMemoryMisses += stats.getStagingMemoryMisses();
+        stagingMemorySpills += stats.getStagingMemorySpills();
+        purgeTime += stats.getPurgeTime();
     }
 
     public long getRestarted() {
@@ -209,6 +217,59 @@ public class HostStats extends AbstractNodeHostStats {
         return triggersRemovedCount;
     }
 
+    public long getStagingMemoryHits() {
+        return stagingMemoryHits;
+    }
+
+    public void setStagingMemoryHits(long stagingMemoryHits) {
+        this.stagingMemoryHits = stagingMemoryHits;
+    }
+
+    public void incrementStagingMemoryHits(long value) {
+        stagingMemoryHits += value;
+    }
+
+    public long getStagingMemoryMisses() {
+        return stagingMemoryMisses;
+    }
+
+    public void setStagingMemoryMisses(long stagingMemoryMisses) {
+        this.stagingMemoryMisses = stagingMemoryMisses;
+    }
+
+    public void incrementStagingMemoryMisses(long value) {
+        stagingMemoryMisses += value;
+    }
+
+    public long getStagingMemorySpills() {
+        return stagingMemorySpills;
+    }
+
+    public void setStagingMemorySpills(long stagingMemorySpills) {
+        this.stagingMemorySpills = stagingMemorySpills;
+    }
+
+    public void incrementStagingMemorySpills(long value) {
+        stagingMemorySpills += value;
+    }
+
+    public long getPurgeTime() {
+        return purgeTime;
+    }
+
+    public void setPurgeTime(long purgeTime) {
+        this.purgeTime = purgeTime;
+    }
+
+    public void incrementPurgeTime(long value) {
+        purgeTime += value;
+    }
+
+    public long getPurgedRowsPerSecond() {
+        long purgedRows = purgedDataRows + purgedDataEventRows + purgedBatchOutgoingRows + purgedBatchIncomingRows;
+        return purgeTime > 0 ? purgedRows * 1000 / purgeTime : 0;
+    }
+
     public void setRestarted(long restarted) {
         this.restarted = restarted;
     }
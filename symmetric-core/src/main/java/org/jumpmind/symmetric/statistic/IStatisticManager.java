@@ -53,7 +53,8 @@ public interface IStatisticManager {
     public void addJobStats(String targetNodeId, int targetNodeCount, String jobName, long startTime, long endTime, long processedCount);
     
     public void addRouterStats(long startDataId, long endDataId, long dataReadCount, long peekAheadFillCount, 
-            List<DataGap> dataGaps, Set<String> transactions, Collection<OutgoingBatch> batches);
+            List<DataGap> dataGaps, Set<String> transactions, long routerCacheHits, long routerCacheMisses,
+            Collection<OutgoingBatch> batches);
     
     public RouterStats getRouterStatsByBatch(Long batchId);
     
@@ -86,6 +87,8 @@ public interface IStatisticManager {
     public void setDataUnRouted(String channelId, long count);
 
     public void incrementDataRouted(String channelId, long count);
+
+    public void incrementRouterMillis(String channelId, long millis);
     
     public void incrementDataSentErrors(String channelId, long count);
     
@@ -114,17 +117,27 @@ public interface IStatisticManager {
     public void incrementPurgedDataRows(long count);
 
     public void incrementPurgedDataEventRows(long count);
+
+    public void incrementPurgeTime(long millis);
  
     public void incrementTriggersRemovedCount(long count);
     
     public void incrementTriggersRebuiltCount(long count);
     
     public void incrementTriggersCreatedCount(long count);
+
+    public void incrementStagingMemoryHits(long count);
+
+    public void incrementStagingMemoryMisses(long count);
+
+    public void incrementStagingMemorySpills(long count);
     
     public Map<String, ChannelStats> getWorkingChannelStats();
     
     public HostStats getWorkingHostStats();
     
+    public MetricsRegistry getMetrics();
+    
     public TreeMap<Date, Map<String, ChannelStats>> getNodeStatsForPeriod(Date start, Date end, String nodeId, int periodSizeInMinutes);
         
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.statistic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A named metric with zero, one or two labels. Each distinct combination of
+ * label values gets its own child metric, created on first use. Looking up
+ * an existing child does not allocate, so callers on hot paths can call
+ * {@link #get(String)} for every batch or row.
+ */
+public abstract class MetricFamily<T> {
+
+    public enum Type {
+        SUMMARY, GAUGE
+    }
+
+    protected String name;
+
+    protected String help;
+
+    protected Type type;
+
+    protected String[] labelNames;
+
+    protected ConcurrentHashMap<String, Child<T>> children = new ConcurrentHashMap<String, Child<T>>();
+
+    protected ConcurrentHashMap<String, ConcurrentHashMap<String, Child<T>>> childrenByTwoLabels = new ConcurrentHashMap<String, ConcurrentHashMap<String, Child<T>>>();
+
+    public MetricFamily(String name, String help, Type type, String... labelNames) {
+        if (labelNames.length > 2) {
+            throw new IllegalArgumentException("A metric can have at most two labels");
+        }
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labelNames = labelNames;
+    }
+
+    protected abstract T newMetric();
+
+    public T get() {
+        return get("");
+    }
+
+    public T get(String labelValue) {
+        if (labelValue == null) {
+            labelValue = "";
+        }
+        Child<T> child = children.get(labelValue);
+        if (child == null) {
+            child = newChild(children, labelValue, labelValue);
+        }
+        return child.metric;
+    }
+
+    public T get(String labelValue1, String labelValue2) {
+        if (labelValue1 == null) {
+            labelValue1 = "";
+        }
+        if (labelValue2 == null) {
+            labelValue2 = "";
+        }
+        ConcurrentHashMap<String, Child<T>> byLabel2 = childrenByTwoLabels.get(labelValue1);
+        if (byLabel2 == null) {
+            byLabel2 = new ConcurrentHashMap<String, Child<T>>();
+            ConcurrentHashMap<String, Child<T>> existing = childrenByTwoLabels.putIfAbsent(labelValue1, byLabel2);
+            if (existing != null) {
+                byLabel2 = existing;
+            }
+        }
+        Child<T> child = byLabel2.get(labelValue2);
+        if (child == null) {
+            child = newChild(byLabel2, labelValue2, labelValue1, labelValue2);
+        }
+        return child.metric;
+    }
+
+    protected Child<T> newChild(ConcurrentHashMap<String, Child<T>> map, String key, String... labelValues) {
+        Child<T> child = new Child<T>(labelValues, newMetric());
+        Child<T> existing = map.putIfAbsent(key, child);
+        return existing != null ? existing : child;
+    }
+
+    /**
+     * @return the child metrics ordered by their label values
+     */
+    public List<Child<T>> getChildren() {
+        List<Child<T>> list = new ArrayList<Child<T>>(children.values());
+        for (ConcurrentHashMap<String, Child<T>> byLabel2 : childrenByTwoLabels.values()) {
+            list.addAll(byLabel2.values());
+        }
+        Collections.sort(list, new Comparator<Child<T>>() {
+            public int compare(Child<T> o1, Child<T> o2) {
+                for (int i = 0; i < o1.labelValues.length && i < o2.labelValues.length; i++) {
+                    int result = o1.labelValues[i].compareTo(o2.labelValues[i]);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return o1.labelValues.length - o2.labelValues.length;
+            }
+        });
+        return list;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String[] getLabelNames() {
+        return labelNames;
+    }
+
+    public static class Child<T> {
+
+        protected String[] labelValues;
+
+        protected T metric;
+
+        public Child(String[] labelValues, T metric) {
+            this.labelValues = labelValues;
+            this.metric = metric;
+        }
+
+        public String[] getLabelValues() {
+            return labelValues;
+        }
+
+        public T getMetric() {
+            return metric;
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.statistic;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.jumpmind.exception.IoException;
+
+/**
+ * Holds the latency timers and gauges for an engine and writes them in the
+ * Prometheus text exposition format. Timers are written as summaries in
+ * seconds with a separate gauge for the maximum.
+ */
+public class MetricsRegistry {
+
+    public static final String ROUTE_SECONDS = "symmetric_route_seconds";
+
+    public static final String EXTRACT_BATCH_SECONDS = "symmetric_extract_batch_seconds";
+
+    public static final String TRANSPORT_SEND_SECONDS = "symmetric_transport_send_seconds";
+
+    public static final String TRANSPORT_RECEIVE_SECONDS = "symmetric_transport_receive_seconds";
+
+    public static final String LOAD_ROW_SECONDS = "symmetric_load_row_seconds";
+
+    public static final String DATA_UNROUTED = "symmetric_data_unrouted";
+
+    public static final String ROUTER_CACHE_HIT_RATIO = "symmetric_router_cache_hit_ratio";
+
+    public static final String TRANSPORT_RESERVATIONS = "symmetric_transport_reservations";
+
+    public static final String STAGING_MEMORY_BYTES = "symmetric_staging_memory_bytes";
+
+    public static final String STAGING_MEMORY_BUDGET_BYTES = "symmetric_staging_memory_budget_bytes";
+
+    protected static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.99, 0.999 };
+
+    protected volatile boolean enabled = true;
+
+    protected ConcurrentSkipListMap<String, MetricFamily<?>> families = new ConcurrentSkipListMap<String, MetricFamily<?>>();
+
+    protected MetricFamily<Timer> routeTimers = timer(ROUTE_SECONDS,
+            "Time to route the captured data of a channel", "channel");
+
+    protected MetricFamily<Timer> extractBatchTimers = timer(EXTRACT_BATCH_SECONDS,
+            "Time to extract an outgoing batch into staging", "channel");
+
+    protected MetricFamily<Timer> transportSendTimers = timer(TRANSPORT_SEND_SECONDS,
+            "Time to send an extracted batch to a node", "channel");
+
+    protected MetricFamily<Timer> transportReceiveTimers = timer(TRANSPORT_RECEIVE_SECONDS,
+            "Time to receive a payload of batches from a node, including the load when it is not staged first");
+
+    protected MetricFamily<Timer> loadRowTimers = timer(LOAD_ROW_SECONDS,
+            "Time to load a row into a table", "table", "dml");
+
+    protected MetricFamily<Gauge> dataUnroutedGauges = gauge(DATA_UNROUTED,
+            "Number of captured data rows waiting to be routed", "channel");
+
+    protected MetricFamily<Gauge> routerCacheHitRatioGauges = gauge(ROUTER_CACHE_HIT_RATIO,
+            "Fraction of subselect router lookups answered from the cache in the last routing pass", "channel");
+
+    protected MetricFamily<Gauge> transportReservationGauges = gauge(TRANSPORT_RESERVATIONS,
+            "Number of nodes holding a transport connection reservation", "pool");
+
+    protected MetricFamily<Gauge> stagingMemoryGauges = gauge(STAGING_MEMORY_BYTES,
+            "Bytes of staged batches currently held in memory");
+
+    protected MetricFamily<Gauge> stagingMemoryBudgetGauges = gauge(STAGING_MEMORY_BUDGET_BYTES,
+            "Bytes of staged batches that may be held in memory before spilling to disk");
+
+    public MetricFamily<Timer> getRouteTimers() {
+        return routeTimers;
+    }
+
+    public MetricFamily<Timer> getExtractBatchTimers() {
+        return extractBatchTimers;
+    }
+
+    public MetricFamily<Timer> getTransportSendTimers() {
+        return transportSendTimers;
+    }
+
+    public MetricFamily<Timer> getTransportReceiveTimers() {
+        return transportReceiveTimers;
+    }
+
+    public MetricFamily<Timer> getLoadRowTimers() {
+        return loadRowTimers;
+    }
+
+    public MetricFamily<Gauge> getDataUnroutedGauges() {
+        return dataUnroutedGauges;
+    }
+
+    public MetricFamily<Gauge> getRouterCacheHitRatioGauges() {
+        return routerCacheHitRatioGauges;
+    }
+
+    public MetricFamily<Gauge> getTransportReservationGauges() {
+        return transportReservationGauges;
+    }
+
+    public MetricFamily<Gauge> getStagingMemoryGauges() {
+        return stagingMemoryGauges;
+    }
+
+    public MetricFamily<Gauge> getStagingMemoryBudgetGauges() {
+        return stagingMemoryBudgetGauges;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @SuppressWarnings("unchecked")
+    public MetricFamily<Timer> timer(String name, String help, String... labelNames) {
+        MetricFamily<?> family = families.get(name);
+        if (family == null) {
+            family = register(new MetricFamily<Timer>(name, help, MetricFamily.Type.SUMMARY, labelNames) {
+                @Override
+                protected Timer newMetric() {
+                    return new Timer(MetricsRegistry.this);
+                }
+            });
+        }
+        return (MetricFamily<Timer>) family;
+    }
+
+    @SuppressWarnings("unchecked")
+    public MetricFamily<Gauge> gauge(String name, String help, String... labelNames) {
+        MetricFamily<?> family = families.get(name);
+        if (family == null) {
+            family = register(new MetricFamily<Gauge>(name, help, MetricFamily.Type.GAUGE, labelNames) {
+                @Override
+                protected Gauge newMetric() {
+                    return new Gauge();
+                }
+            });
+        }
+        return (MetricFamily<Gauge>) family;
+    }
+
+    protected MetricFamily<?> register(MetricFamily<?> family) {
+        MetricFamily<?> existing = families.putIfAbsent(family.getName(), family);
+        if (existing != null && existing.getType() != family.getType()) {
+            throw new IllegalStateException("The metric " + family.getName() + " is already registered as a "
+                    + existing.getType().name().toLowerCase());
+        }
+        return existing != null ? existing : family;
+    }
+
+    public MetricFamily<?> getFamily(String name) {
+        return families.get(name);
+    }
+
+    public List<MetricFamily<?>> getFamilies() {
+        return new ArrayList<MetricFamily<?>>(families.values());
+    }
+
+    public String toPrometheusText() {
+        StringWriter writer = new StringWriter();
+        writePrometheusText(writer);
+        return writer.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public void writePrometheusText(Writer writer) {
+        try {
+            for (MetricFamily<?> family : families.values()) {
+                if (family.getType() == MetricFamily.Type.SUMMARY) {
+                    writeSummary(writer, (MetricFamily<Timer>) family);
+                } else {
+                    writeGauge(writer, (MetricFamily<Gauge>) family);
+                }
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            throw new IoException(ex);
+        }
+    }
+
+    protected void writeSummary(Writer writer, MetricFamily<Timer> family) throws IOException {
+        List<MetricFamily.Child<Timer>> children = family.getChildren();
+        writeHeader(writer, family.getName(), family.getHelp(), "summary");
+        for (MetricFamily.Child<Timer> child : children) {
+            Timer timer = child.getMetric();
+            for (double quantile : QUANTILES) {
+                writeSample(writer, family.getName(), family.getLabelNames(), child.getLabelValues(),
+                        Double.toString(quantile), timer.getSecondsAtQuantile(quantile));
+            }
+            writeSample(writer, family.getName() + "_sum", family.getLabelNames(), child.getLabelValues(), null,
+                    timer.getTotalSeconds());
+            writeSample(writer, family.getName() + "_count", family.getLabelNames(), child.getLabelValues(), null,
+                    timer.getCount());
+        }
+        writeHeader(writer, family.getName() + "_max", family.getHelp() + " (maximum)", "gauge");
+        for (MetricFamily.Child<Timer> child : children) {
+            writeSample(writer, family.getName() + "_max", family.getLabelNames(), child.getLabelValues(), null,
+                    child.getMetric().getMaxSeconds());
+        }
+    }
+
+    protected void writeGauge(Writer writer, MetricFamily<Gauge> family) throws IOException {
+        writeHeader(writer, family.getName(), family.getHelp(), "gauge");
+        for (MetricFamily.Child<Gauge> child : family.getChildren()) {
+            writeSample(writer, family.getName(), family.getLabelNames(), child.getLabelValues(), null,
+                    child.getMetric().getValue());
+        }
+    }
+
+    protected void writeHeader(Writer writer, String name, String help, String type) throws IOException {
+        writer.write("# HELP " + name + " " + help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+        writer.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    protected void writeSample(Writer writer, String name, String[] labelNames, String[] labelValues,
+            String quantile, double value) throws IOException {
+        StringBuilder line = new StringBuilder(name);
+        int labelCount = Math.min(labelNames.length, labelValues.length);
+        if (labelCount > 0 || quantile != null) {
+            line.append("{");
+            for (int i = 0; i < labelCount; i++) {
+                if (i > 0) {
+                    line.append(",");
+                }
+                line.append(labelNames[i]).append("=\"").append(escapeLabelValue(labelValues[i])).append("\"");
+            }
+            if (quantile != null) {
+                if (labelCount > 0) {
+                    line.append(",");
+                }
+                line.append("quantile=\"").append(quantile).append("\"");
+            }
+            line.append("}");
+        }
+        line.append(" ").append(formatValue(value)).append("\n");
+        writer.write(line.toString());
+    }
+
+    protected static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    protected static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        } else {
+            return Double.toString(value);
+        }
+    }
+
+}
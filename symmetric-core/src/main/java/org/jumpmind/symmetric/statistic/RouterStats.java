@@ -37,6 +37,10 @@ public class RouterStats {
 
     private List<DataGap> dataGaps;
     
+    private long routerCacheHits;
+    
+    private long routerCacheMisses;
+    
     public RouterStats() {
     }
     
@@ -49,10 +53,18 @@ public class RouterStats {
         this.dataGaps = dataGaps;
     }
     
+    public RouterStats(long startDataId, long endDataId, long dataReadCount, long peekAheadFillCount, 
+            List<DataGap> dataGaps, Set<String> transactions, long routerCacheHits, long routerCacheMisses) {
+        this(startDataId, endDataId, dataReadCount, peekAheadFillCount, dataGaps, transactions);
+        this.routerCacheHits = routerCacheHits;
+        this.routerCacheMisses = routerCacheMisses;
+    }
+    
     @Override
     public String toString() {
         return "{ startDataId: " + startDataId + ", endDataId: " + endDataId + ", dataReadCount: " + dataReadCount +
-                ", peekAheadFillCount: " + peekAheadFillCount + ", dataGaps: " + dataGaps.toString() + " }";
+                ", peekAheadFillCount: " + peekAheadFillCount + ", routerCacheHits: " + routerCacheHits + 
+                ", routerCacheMisses: " + routerCacheMisses + ", dataGaps: " + dataGaps.toString() + " }";
     }
 
     public long getStartDataId() {
@@ -94,4 +106,28 @@ public class RouterStats {
     public void setDataGaps(List<DataGap> dataGaps) {
         this.dataGaps = dataGaps;
     }
+
+    public long getRouterCacheHits() {
+        return routerCacheHits;
+    }
+
+    public void setRouterCacheHits(long routerCacheHits) {
+        this.routerCacheHits = routerCacheHits;
+    }
+
+    public long getRouterCacheMisses() {
+        return routerCacheMisses;
+    }
+
+    public void setRouterCacheMisses(long routerCacheMisses) {
+        this.routerCacheMisses = routerCacheMisses;
+    }
+
+    /**
+     * @return the percentage of router cache lookups that were hits
+     */
+    public double getRouterCacheHitRate() {
+        long lookups = routerCacheHits + routerCacheMisses;
+        return lookups > 0 ? (routerCacheHits * 100d) / lookups : 0;
+    }
 }
@@ -92,6 +92,8 @@ public class StatisticManager implements IStatisticManager {
     protected Map<ProcessInfoKey, ProcessInfo> processInfosThatHaveDoneWork = new ConcurrentHashMap<ProcessInfoKey, ProcessInfo>();
 
     private Map<Date, Map<String, ChannelStats>> baseChannelStatsInMemory = new LinkedHashMap<Date, Map<String, ChannelStats>>();
+
+    protected MetricsRegistry metrics = new MetricsRegistry();
     
     public StatisticManager(IParameterService parameterService, INodeService nodeService,
             IConfigurationService configurationService, IStatisticService statisticsService,
@@ -105,6 +107,7 @@ public class StatisticManager implements IStatisticManager {
     }
 
     protected void init() {
+        metrics.setEnabled(parameterService.is(ParameterConstants.METRICS_ENABLED, true));
     }
 
 
@@ -193,9 +196,9 @@ public class StatisticManager implements IStatisticManager {
 
     public void addRouterStats(long startDataId, long endDataId, long dataReadCount,
             long peekAheadFillCount, List<DataGap> dataGaps, Set<String> transactions,
-            Collection<OutgoingBatch> batches) {
+            long routerCacheHits, long routerCacheMisses, Collection<OutgoingBatch> batches) {
         RouterStats routerStats = new RouterStats(startDataId, endDataId, dataReadCount,
-                peekAheadFillCount, dataGaps, transactions);
+                peekAheadFillCount, dataGaps, transactions, routerCacheHits, routerCacheMisses);
         for (OutgoingBatch batch : batches) {
             if (!batch.getNodeId().equals(Constants.UNROUTED_NODE_ID)) {
                 routerStatsByBatch.put(batch.getBatchId(), routerStats);
@@ -216,6 +219,15 @@ public class StatisticManager implements IStatisticManager {
         }
     }
 
+    public void incrementRouterMillis(String channelId, long millis) {
+        channelStatsLock.acquireUninterruptibly();
+        try {
+            getChannelStats(channelId).incrementRouterMillis(millis);
+        } finally {
+            channelStatsLock.release();
+        }
+    }
+
     public void setDataUnRouted(String channelId, long count) {
         channelStatsLock.acquireUninterruptibly();
         try {
@@ -223,6 +235,7 @@ public class StatisticManager implements IStatisticManager {
         } finally {
             channelStatsLock.release();
         }
+        metrics.getDataUnroutedGauges().get(channelId).set(count);
     }
 
     public void incrementDataExtracted(String channelId, long count) {
@@ -459,6 +472,15 @@ public class StatisticManager implements IStatisticManager {
         }
     }
 
+    public void incrementPurgeTime(long millis) {
+        hostStatsLock.acquireUninterruptibly();
+        try {
+            getHostStats().incrementPurgeTime(millis);
+        } finally {
+            hostStatsLock.release();
+        }
+    }
+
     public void incrementTriggersRemovedCount(long count) {
         hostStatsLock.acquireUninterruptibly();
         try {
@@ -486,6 +508,33 @@ public class StatisticManager implements IStatisticManager {
         }
     }
 
+    public void incrementStagingMemoryHits(long count) {
+        hostStatsLock.acquireUninterruptibly();
+        try {
+            getHostStats().incrementStagingMemoryHits(count);
+        } finally {
+            hostStatsLock.release();
+        }
+    }
+
+    public void incrementStagingMemoryMisses(long count) {
+        hostStatsLock.acquireUninterruptibly();
+        try {
+            getHostStats().incrementStagingMemoryMisses(count);
+        } finally {
+            hostStatsLock.release();
+        }
+    }
+
+    public void incrementStagingMemorySpills(long count) {
+        hostStatsLock.acquireUninterruptibly();
+        try {
+            getHostStats().incrementStagingMemorySpills(count);
+        } finally {
+            hostStatsLock.release();
+        }
+    }
+
     protected void saveAdditionalStats(Date endTime, ChannelStats stats) {
             if (baseChannelStatsInMemory.get(endTime) == null) {
                 baseChannelStatsInMemory.put(endTime, new HashMap<String, ChannelStats>());
@@ -495,6 +544,8 @@ public class StatisticManager implements IStatisticManager {
     
     public void flush() {
 
+        metrics.setEnabled(parameterService.is(ParameterConstants.METRICS_ENABLED, true));
+
         boolean recordStatistics = parameterService.is(ParameterConstants.STATISTIC_RECORD_ENABLE,
                 false);
         long recordStatisticsCountThreshold = parameterService.getLong(ParameterConstants.STATISTIC_RECORD_COUNT_THRESHOLD,-1);
@@ -619,6 +670,10 @@ public class StatisticManager implements IStatisticManager {
         }
     }
 
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
     public HostStats getWorkingHostStats() {
         if (this.hostStats != null) {
             return new HostStats(this.hostStats);
@@ -0,0 +1,75 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.statistic;
+
+/**
+ * Records durations into a {@link Histogram} with microsecond resolution. A
+ * caller takes {@link System#nanoTime()} before the work and passes it to
+ * {@link #stop(long)} afterwards, which keeps the hot path free of
+ * allocation.
+ */
+public class Timer {
+
+    protected MetricsRegistry registry;
+
+    protected Histogram histogram = new Histogram();
+
+    public Timer(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void stop(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(long nanos) {
+        if (registry.isEnabled()) {
+            histogram.record(nanos / 1000);
+        }
+    }
+
+    public void recordMillis(long millis) {
+        if (registry.isEnabled()) {
+            histogram.record(millis * 1000);
+        }
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    public double getTotalSeconds() {
+        return histogram.getSum() / 1000000d;
+    }
+
+    public double getMaxSeconds() {
+        return histogram.getMax() / 1000000d;
+    }
+
+    public double getSecondsAtQuantile(double quantile) {
+        return histogram.getValueAtQuantile(quantile) / 1000000d;
+    }
+
+}
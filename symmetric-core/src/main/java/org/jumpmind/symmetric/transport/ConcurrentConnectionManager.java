@@ -20,71 +20,97 @@
  */
 package org.jumpmind.symmetric.transport;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IGaugeSource;
 import org.jumpmind.symmetric.statistic.IStatisticManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Reservations are kept in a concurrent map per pool, so reserving and
+ * releasing only lock the map bin of the reservation itself. Each pool keeps
+ * an atomic count of its reservations, which is only incremented while it is
+ * below the maximum, so admission stays exact under contention.
+ * 
  * @see IConcurrentConnectionManager
  */
 public class ConcurrentConnectionManager implements IConcurrentConnectionManager {
 
     private static final Logger log = LoggerFactory.getLogger(ConcurrentConnectionManager.class);
 
+    private static final int ACCEPTED = 1;
+
+    private static final int REJECTED_FULL = 2;
+
+    private static final int REJECTED_EXISTING = 3;
+
     protected IParameterService parameterService;
 
-    protected Map<String, Map<String, Reservation>> activeReservationsByNodeByPool = new HashMap<String, Map<String, Reservation>>();
+    protected ConcurrentMap<String, Map<String, Reservation>> activeReservationsByNodeByPool = new ConcurrentHashMap<String, Map<String, Reservation>>();
+
+    protected ConcurrentMap<String, AtomicInteger> reservationCountByPool = new ConcurrentHashMap<String, AtomicInteger>();
 
-    protected Map<String, Map<String, NodeConnectionStatistics>> nodeConnectionStatistics = new HashMap<String, Map<String, NodeConnectionStatistics>>();
+    protected ConcurrentMap<String, Map<String, NodeConnectionStatistics>> nodeConnectionStatistics = new ConcurrentHashMap<String, Map<String, NodeConnectionStatistics>>();
 
-    protected Set<String> whiteList = new HashSet<String>();
+    protected Set<String> whiteList = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
-    protected Map<String, Long> transportErrorTimeByNode = new HashMap<String, Long>();
+    protected ConcurrentMap<String, Long> transportErrorTimeByNode = new ConcurrentHashMap<String, Long>();
+
+    protected IStatisticManager statisticManager;
     
     public ConcurrentConnectionManager(IParameterService parameterService,
             IStatisticManager statisticManager) {
         this.parameterService = parameterService;
+        this.statisticManager = statisticManager;
     }
 
     protected void logTooBusyRejection(String nodeId, String poolId) {
-        getNodeConnectionStatistics(nodeId, poolId).numOfRejections++;
+        NodeConnectionStatistics stats = getNodeConnectionStatistics(nodeId, poolId);
+        synchronized (stats) {
+            stats.numOfRejections++;
+        }
     }
 
     protected void logConnectedTimePeriod(String nodeId, long startMs, long endMs, String poolId) {
         NodeConnectionStatistics stats = getNodeConnectionStatistics(nodeId, poolId);
-        stats.totalConnectionCount++;
-        stats.totalConnectionTimeMs += endMs - startMs;
-        stats.lastConnectionTimeMs = startMs;
+        synchronized (stats) {
+            stats.totalConnectionCount++;
+            stats.totalConnectionTimeMs += endMs - startMs;
+            stats.lastConnectionTimeMs = startMs;
+        }
     }
 
-    private synchronized NodeConnectionStatistics getNodeConnectionStatistics(String nodeId,
-            String poolId) {
-        Map<String, NodeConnectionStatistics> statsMap = nodeConnectionStatistics.get(poolId);
-        if (statsMap == null) {
-            statsMap = new HashMap<String, NodeConnectionStatistics>();
-            nodeConnectionStatistics.put(poolId, statsMap);
-        }
-        NodeConnectionStatistics stats = statsMap.get(nodeId);
-        if (stats == null) {
-            stats = new NodeConnectionStatistics();
-            statsMap.put(nodeId, stats);
-        }
-        return stats;
+    private NodeConnectionStatistics getNodeConnectionStatistics(String nodeId, String poolId) {
+        Map<String, NodeConnectionStatistics> statsMap = nodeConnectionStatistics.computeIfAbsent(poolId,
+                new Function<String, Map<String, NodeConnectionStatistics>>() {
+                    public Map<String, NodeConnectionStatistics> apply(String key) {
+                        return new ConcurrentHashMap<String, NodeConnectionStatistics>();
+                    }
+                });
+        return statsMap.computeIfAbsent(nodeId, new Function<String, NodeConnectionStatistics>() {
+            public NodeConnectionStatistics apply(String key) {
+                return new NodeConnectionStatistics();
+            }
+        });
     }
 
-    synchronized public boolean releaseConnection(String nodeId, String channelId, String poolId) {
+    public boolean releaseConnection(String nodeId, String channelId, String poolId) {
         String reservationId = getReservationIdentifier(nodeId, channelId);
         log.debug("Releasing connection for {} {}", poolId, reservationId);
-        Map<String, Reservation> reservations = getReservationMap(poolId);
-        Reservation reservation = reservations.remove(reservationId);
+        Reservation reservation = removeReservation(poolId, reservationId);
         if (reservation != null) {
             logConnectedTimePeriod(reservationId, reservation.createTime, System.currentTimeMillis(),
                     poolId);
@@ -95,9 +121,8 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
         }
     }
     
-    synchronized public boolean releaseConnection(String nodeId, String poolId) {
-        Map<String, Reservation> reservations = getReservationMap(poolId);
-        Reservation reservation = reservations.remove(nodeId);
+    public boolean releaseConnection(String nodeId, String poolId) {
+        Reservation reservation = removeReservation(poolId, nodeId);
         if (reservation != null) {
             logConnectedTimePeriod(nodeId, reservation.createTime, System.currentTimeMillis(),
                     poolId);
@@ -107,60 +132,107 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
         }
     }
 
-    synchronized public void addToWhitelist(String nodeId) {
+    protected Reservation removeReservation(String poolId, String reservationId) {
+        Reservation reservation = getReservationMap(poolId).remove(reservationId);
+        if (reservation != null) {
+            getReservationCounter(poolId).decrementAndGet();
+        }
+        return reservation;
+    }
+
+    public void addToWhitelist(String nodeId) {
         whiteList.add(nodeId);
     }
 
-    synchronized public void removeFromWhiteList(String nodeId) {
+    public void removeFromWhiteList(String nodeId) {
         whiteList.remove(nodeId);
     }
 
-    synchronized public String[] getWhiteList() {
-        return whiteList.toArray(new String[whiteList.size()]);
+    public String[] getWhiteList() {
+        return whiteList.toArray(new String[0]);
     }
 
-    synchronized public int getReservationCount(String poolId) {
-        return getReservationMap(poolId).size();
+    public int getReservationCount(String poolId) {
+        return getReservationCounter(poolId).get();
     }
 
-    synchronized public boolean reserveConnection(String nodeId, String channelId, String poolId,
-            ReservationType reservationRequest) {
+    public boolean reserveConnection(final String nodeId, final String channelId, final String poolId,
+            final ReservationType reservationRequest) {
         
-        String reservationId = getReservationIdentifier(nodeId, channelId);
+        final String reservationId = getReservationIdentifier(nodeId, channelId);
         log.debug("Reserving connection for {} {}", poolId, reservationId);
-        Map<String, Reservation> reservations = getReservationMap(poolId);
-        int maxPoolSize = parameterService.getInt(ParameterConstants.CONCURRENT_WORKERS);
-        long timeout = parameterService.getLong(ParameterConstants.CONCURRENT_RESERVATION_TIMEOUT);
-        removeTimedOutReservations(reservations);
-        if (reservations.size() < maxPoolSize || reservations.containsKey(reservationId)
-                || whiteList.contains(reservationId)) {
-            Reservation existingReservation = reservations.get(reservationId);
-            if (existingReservation == null
-                    || existingReservation.getType() == ReservationType.SOFT) {
-                reservations.put(reservationId, new Reservation(reservationId,
-                        reservationRequest == ReservationType.SOFT ? System.currentTimeMillis()
-                                + timeout : Long.MAX_VALUE, reservationRequest));
-                transportErrorTimeByNode.remove(nodeId);
-                return true;
-            } else {
-                String message = "Node '{}' Channel '{}' requested a {} connection, but was rejected because it already has one";
-                if (shouldLogTransportError(nodeId)) {
-                    log.warn(message, nodeId, channelId, poolId);
-                } else {
-                    log.info(message, nodeId, channelId, poolId);
+        final Map<String, Reservation> reservations = getReservationMap(poolId);
+        final AtomicInteger count = getReservationCounter(poolId);
+        final int maxPoolSize = getMaxPoolSize();
+        final long timeout = getReservationTimeout();
+        final boolean whiteListed = whiteList.contains(reservationId);
+        final int[] result = new int[1];
+
+        BiFunction<String, Reservation, Reservation> reserve = new BiFunction<String, Reservation, Reservation>() {
+            public Reservation apply(String key, Reservation existingReservation) {
+                if (existingReservation == null) {
+                    if (whiteListed) {
+                        count.incrementAndGet();
+                    } else if (!tryIncrement(count, maxPoolSize)) {
+                        result[0] = REJECTED_FULL;
+                        return null;
+                    }
+                } else if (existingReservation.getType() != ReservationType.SOFT) {
+                    result[0] = REJECTED_EXISTING;
+                    return existingReservation;
                 }
-                return false;
+                result[0] = ACCEPTED;
+                return new Reservation(reservationId, reservationRequest == ReservationType.SOFT ? 
+                        System.currentTimeMillis() + timeout : Long.MAX_VALUE, reservationRequest);
             }
+        };
+
+        reservations.compute(reservationId, reserve);
+        if (result[0] == REJECTED_FULL && removeTimedOutReservations(poolId) > 0) {
+            reservations.compute(reservationId, reserve);
+        }
+
+        if (result[0] == ACCEPTED) {
+            transportErrorTimeByNode.remove(nodeId);
+            return true;
+        } else if (result[0] == REJECTED_EXISTING) {
+            String message = "Node '{}' Channel '{}' requested a {} connection, but was rejected because it already has one";
+            if (shouldLogTransportError(nodeId)) {
+                log.warn(message, nodeId, channelId, poolId);
+            } else {
+                log.info(message, nodeId, channelId, poolId);
+            }
+            return false;
         } else {
             return false;
         }
     }
     
-    synchronized public boolean reserveConnection(String nodeId, String poolId,
+    public boolean reserveConnection(String nodeId, String poolId,
             ReservationType reservationRequest) {
         return reserveConnection(nodeId, null, poolId, reservationRequest);
     }
 
+    protected int getMaxPoolSize() {
+        return parameterService.getInt(ParameterConstants.CONCURRENT_WORKERS);
+    }
+
+    protected long getReservationTimeout() {
+        return parameterService.getLong(ParameterConstants.CONCURRENT_RESERVATION_TIMEOUT);
+    }
+
+    private static boolean tryIncrement(AtomicInteger count, int max) {
+        while (true) {
+            int current = count.get();
+            if (current >= max) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
     public Map<String, Date> getPullReservationsByNodeId() {
         return getReservationsByNodeId("pull");
     }
@@ -187,26 +259,48 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
         return byNodeId;
     }
 
-    protected void removeTimedOutReservations(Map<String, Reservation> reservations) {
+    protected int removeTimedOutReservations(String poolId) {
+        int removed = removeTimedOutReservations(getReservationMap(poolId));
+        if (removed > 0) {
+            getReservationCounter(poolId).addAndGet(-removed);
+        }
+        return removed;
+    }
+
+    protected int removeTimedOutReservations(Map<String, Reservation> reservations) {
         long currentTime = System.currentTimeMillis();
-        String[] keys = reservations.keySet().toArray(new String[reservations.size()]);
-        if (keys != null) {
-            for (String key : keys) {
-                Reservation reservation = reservations.get(key);
-                if (reservation.timeToLiveInMs < currentTime) {
-                    reservations.remove(key);
-                }
+        int removed = 0;
+        for (Map.Entry<String, Reservation> entry : new HashMap<String, Reservation>(reservations).entrySet()) {
+            Reservation reservation = entry.getValue();
+            if (reservation.timeToLiveInMs < currentTime && reservations.remove(entry.getKey(), reservation)) {
+                removed++;
             }
         }
+        return removed;
     }
 
     private Map<String, Reservation> getReservationMap(String poolId) {
-        Map<String, Reservation> reservations = activeReservationsByNodeByPool.get(poolId);
-        if (reservations == null) {
-            reservations = new HashMap<String, Reservation>();
-            activeReservationsByNodeByPool.put(poolId, reservations);
-        }
-        return reservations;
+        return activeReservationsByNodeByPool.computeIfAbsent(poolId, new Function<String, Map<String, Reservation>>() {
+            public Map<String, Reservation> apply(String key) {
+                return new ConcurrentHashMap<String, Reservation>();
+            }
+        });
+    }
+
+    private AtomicInteger getReservationCounter(String poolId) {
+        return reservationCountByPool.computeIfAbsent(poolId, new Function<String, AtomicInteger>() {
+            public AtomicInteger apply(String key) {
+                final AtomicInteger counter = new AtomicInteger();
+                if (statisticManager != null) {
+                    statisticManager.getMetrics().getTransportReservationGauges().get(key).setSource(new IGaugeSource() {
+                        public double getValue() {
+                            return counter.get();
+                        }
+                    });
+                }
+                return counter;
+            }
+        });
     }
 
     public static class Reservation {
@@ -282,7 +376,10 @@ public class ConcurrentConnectionManager implements IConcurrentConnectionManager
         Long errorTime = transportErrorTimeByNode.get(nodeId);
         if (errorTime == null) {
             errorTime = System.currentTimeMillis();
-            transportErrorTimeByNode.put(nodeId, errorTime);
+            Long existingTime = transportErrorTimeByNode.putIfAbsent(nodeId, errorTime);
+            if (existingTime != null) {
+                errorTime = existingTime;
+            }
         }
         return System.currentTimeMillis() - errorTime >= maxErrorMillis;
     }
@@ -0,0 +1,54 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads every member of a gzip stream made of concatenated members, like the
+ * one written by {@link GzipMemberOutputStream}. {@link GZIPInputStream} only
+ * looks for another member when the underlying stream has bytes available, so
+ * on a network stream it can stop at a member boundary. Here available() waits
+ * for the next byte instead.
+ */
+public class GzipMemberInputStream extends GZIPInputStream {
+
+    public GzipMemberInputStream(InputStream in) throws IOException {
+        super(new PushbackInputStream(in) {
+            @Override
+            public int available() throws IOException {
+                int available = super.available();
+                if (available == 0) {
+                    int b = read();
+                    if (b >= 0) {
+                        unread(b);
+                        available = 1;
+                    }
+                }
+                return available;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a gzip stream made of concatenated members, so gzip members that were
+ * compressed ahead of time can be copied into it between the ones it
+ * compresses. A reader has to use {@link GzipMemberInputStream} to read past
+ * the first member.
+ */
+public class GzipMemberOutputStream extends OutputStream implements IGzipMemberOutputStream {
+
+    protected OutputStream out;
+
+    protected int compressionLevel;
+
+    protected int compressionStrategy;
+
+    protected boolean syncFlush;
+
+    protected Member member;
+
+    protected boolean written;
+
+    public GzipMemberOutputStream(OutputStream out, int compressionLevel, int compressionStrategy, boolean syncFlush) {
+        this.out = out;
+        this.compressionLevel = compressionLevel;
+        this.compressionStrategy = compressionStrategy;
+        this.syncFlush = syncFlush;
+    }
+
+    protected Member getMember() throws IOException {
+        if (member == null) {
+            member = new Member(out, syncFlush);
+            member.setLevel(compressionLevel);
+            member.setStrategy(compressionStrategy);
+            written = true;
+        }
+        return member;
+    }
+
+    protected void endMember() throws IOException {
+        if (member != null) {
+            try {
+                member.finish();
+            } finally {
+                member.end();
+                member = null;
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        getMember().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > 0) {
+            getMember().write(b, off, len);
+        }
+    }
+
+    @Override
+    public void writeGzipMembers(File file) throws IOException {
+        endMember();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            WritableByteChannel target = Channels.newChannel(out);
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            written |= size > 0;
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (member != null) {
+            member.flush();
+        } else {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!written) {
+                getMember();
+            }
+            endMember();
+        } finally {
+            out.close();
+        }
+    }
+
+    protected static class Member extends GZIPOutputStream {
+
+        public Member(OutputStream out, boolean syncFlush) throws IOException {
+            super(out, 512, syncFlush);
+        }
+
+        public void setLevel(int level) {
+            def.setLevel(level);
+        }
+
+        public void setStrategy(int strategy) {
+            def.setStrategy(strategy);
+        }
+
+        public void end() {
+            def.end();
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transport;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+
+/**
+ * A transport writer that also gives access to the stream it encodes to, so
+ * content that is already encoded in the same character set, like a staged
+ * batch, can be sent as bytes.
+ */
+public class StreamBufferedWriter extends BufferedWriter {
+
+    protected OutputStream stream;
+
+    protected Charset charset;
+
+    public StreamBufferedWriter(OutputStream stream, String charsetName) throws UnsupportedEncodingException {
+        super(new OutputStreamWriter(stream, charsetName));
+        this.stream = stream;
+        this.charset = Charset.forName(charsetName);
+    }
+
+    /**
+     * Flushes what has been written so far, so bytes written to the stream
+     * follow it.
+     */
+    public OutputStream getStream() throws IOException {
+        flush();
+        return stream;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+}
@@ -26,7 +26,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.util.Map;
 
 import org.jumpmind.exception.IoException;
@@ -44,7 +43,7 @@ public class TransportUtils {
 
     public static BufferedWriter toWriter(OutputStream os) {
         try {
-            return new BufferedWriter(new OutputStreamWriter(os, IoConstants.ENCODING));
+            return new StreamBufferedWriter(os, IoConstants.ENCODING);
         } catch (IOException ex) {
             throw new IoException(ex);
         }
@@ -32,7 +32,6 @@ import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jumpmind.exception.IoException;
@@ -47,6 +46,7 @@ import org.jumpmind.symmetric.model.BatchId;
 import org.jumpmind.symmetric.model.IncomingBatch;
 import org.jumpmind.symmetric.model.Node;
 import org.jumpmind.symmetric.transport.AbstractTransportManager;
+import org.jumpmind.symmetric.transport.GzipMemberInputStream;
 import org.jumpmind.symmetric.transport.IIncomingTransport;
 import org.jumpmind.symmetric.transport.IOutgoingWithResponseTransport;
 import org.jumpmind.symmetric.transport.ITransportManager;
@@ -355,7 +355,7 @@ public class HttpTransportManager extends AbstractTransportManager implements IT
 
     protected HttpConnection createGetConnectionFor(URL url, String nodeId, String securityToken) throws IOException {
         HttpConnection conn = openConnection(url, nodeId, securityToken);
-        conn.setRequestProperty("accept-encoding", "gzip");
+        conn.setRequestProperty("accept-encoding", "gzip, " + WebConstants.ENCODING_GZIP_MEMBERS);
         conn.setConnectTimeout(getHttpTimeOutInMs());
         conn.setReadTimeout(getHttpTimeOutInMs());
         conn.setRequestMethod("GET");
@@ -370,7 +370,7 @@ public class HttpTransportManager extends AbstractTransportManager implements IT
         String type = connection.getContentEncoding();
         InputStream in = connection.getInputStream();
         if (!StringUtils.isBlank(type) && type.equals("gzip")) {
-            in = new GZIPInputStream(in);
+            in = new GzipMemberInputStream(in);
         }
         return in;
     }
@@ -382,7 +382,7 @@ public class HttpTransportManager extends AbstractTransportManager implements IT
         String type = connection.getContentEncoding();
         InputStream in = connection.getInputStream();
         if (!StringUtils.isBlank(type) && type.equals("gzip")) {
-            in = new GZIPInputStream(in);
+            in = new GzipMemberInputStream(in);
         }
         return TransportUtils.toReader(in);
     }
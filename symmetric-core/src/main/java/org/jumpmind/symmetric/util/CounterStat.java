@@ -35,11 +35,11 @@ public class CounterStat {
         this.count = count;
     }
 
-    public void incrementCount() {
+    public synchronized void incrementCount() {
         count++;
     }
 
-    public long getCount() {
+    public synchronized long getCount() {
         return count;
     }
 
@@ -26,6 +26,14 @@ package org.jumpmind.symmetric.web;
 public class WebConstants {
 
     public static final String HEADER_ACCEPT_CHARSET = "Accept-Charset";
+
+    public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+
+    /**
+     * Accept-Encoding token of a client that reads every member of a gzip
+     * response made of concatenated members
+     */
+    public static final String ENCODING_GZIP_MEMBERS = "x-gzip-members";
     
     public static final String METHOD_GET = "GET";
     
@@ -0,0 +1,106 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.Row;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TablePartitionByHighValueTest {
+
+    AbstractSymmetricDialect dialect;
+
+    ISqlTemplate sqlTemplate;
+
+    @Before
+    public void setUp() {
+        sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        dialect = mock(AbstractSymmetricDialect.class, withSettings().useConstructor().defaultAnswer(CALLS_REAL_METHODS));
+        dialect.platform = platform;
+    }
+
+    @Test
+    public void testRangesFromHighValues() {
+        List<TablePartition> partitions = getPartitions(row("p1", "1000"), row("p2", "2000"), row("p3", "MAXVALUE"));
+        assertEquals(3, partitions.size());
+        assertRange(partitions.get(0), "p1", Long.MIN_VALUE, 999);
+        assertRange(partitions.get(1), "p2", 1000, 1999);
+        assertRange(partitions.get(2), "p3", 2000, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testHighValueWithWhitespace() {
+        List<TablePartition> partitions = getPartitions(row("p1", " 500 "));
+        assertEquals(1, partitions.size());
+        assertRange(partitions.get(0), "p1", Long.MIN_VALUE, 499);
+    }
+
+    @Test
+    public void testNotBoundedById() {
+        assertEquals(0, getPartitions(row("p1", "1000"), row("p2", "TO_DATE('2020-01-01')")).size());
+    }
+
+    @Test
+    public void testNotSupportedByDefault() {
+        assertFalse(dialect.supportsPartitionPurge());
+        assertEquals(0, dialect.getTablePartitions("sym_data").size());
+    }
+
+    protected List<TablePartition> getPartitions(Row... rows) {
+        List<Row> list = new ArrayList<Row>();
+        for (Row row : rows) {
+            list.add(row);
+        }
+        when(sqlTemplate.query(anyString(), any(Object[].class))).thenReturn(list);
+        return dialect.getTablePartitionsByHighValue("select partition_name, high_value from partitions where table_name = ?", 
+                "sym_data");
+    }
+
+    protected Row row(String name, String highValue) {
+        Row row = new Row(2);
+        row.put("partition_name", name);
+        row.put("high_value", highValue);
+        return row;
+    }
+
+    protected void assertRange(TablePartition partition, String name, long minId, long maxId) {
+        assertEquals(name, partition.getName());
+        assertEquals(minId, partition.getMinId());
+        assertEquals(maxId, partition.getMaxId());
+    }
+
+}
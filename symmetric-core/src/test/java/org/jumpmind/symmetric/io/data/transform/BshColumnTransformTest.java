@@ -0,0 +1,139 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.Batch.BatchType;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.impl.ExtensionService;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BshColumnTransformTest {
+
+    IDatabasePlatform platform;
+    IParameterService parameterService;
+    ExtensionService extensionService;
+    DataContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        platform = mock(IDatabasePlatform.class);
+        parameterService = mock(IParameterService.class);
+        when(parameterService.is(ParameterConstants.BSH_TRANSFORM_COMPILE_ENABLED)).thenReturn(true);
+
+        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        ISymmetricDialect dialect = mock(ISymmetricDialect.class);
+        when(dialect.getPlatform()).thenReturn(platform);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getSymmetricDialect()).thenReturn(dialect);
+        extensionService = new ExtensionService(engine);
+
+        context = new DataContext(new Batch(BatchType.LOAD, 1, "default", null, "00000", "00001", false));
+    }
+
+    @Test
+    public void testJavaExpressionIsCompiled() throws Exception {
+        BshColumnTransform transform = new BshColumnTransform(parameterService, extensionService);
+        String expression = "return ID + \"-\" + name.toUpperCase() + \"-\" + channelId;";
+        assertEquals("1-ABC-default", transform(transform, expression, "1", "abc"));
+        assertEquals("2-XYZ-default", transform(transform, expression, "2", "xyz"));
+        assertTrue(isCompiled(transform));
+    }
+
+    @Test
+    public void testBeanShellExpressionFallsBackToInterpreter() throws Exception {
+        BshColumnTransform transform = new BshColumnTransform(parameterService, extensionService);
+        String expression = "value = NAME + \"!\"; return value;";
+        assertEquals("abc!", transform(transform, expression, "1", "abc"));
+        assertFalse(isCompiled(transform));
+    }
+
+    @Test
+    public void testExpressionIsInterpretedWhenDisabled() throws Exception {
+        when(parameterService.is(ParameterConstants.BSH_TRANSFORM_COMPILE_ENABLED)).thenReturn(false);
+        BshColumnTransform transform = new BshColumnTransform(parameterService, extensionService);
+        assertEquals("abc", transform(transform, "return name;", "1", "abc"));
+        assertFalse(isCompiled(transform));
+    }
+
+    @Test(expected = IgnoreColumnException.class)
+    public void testCompiledExpressionCanIgnoreColumn() throws Exception {
+        BshColumnTransform transform = new BshColumnTransform(parameterService, extensionService);
+        transform(transform, "if (name == null) { throw new IgnoreColumnException(); } return name;", "1", null);
+    }
+
+    @Test
+    public void testGlobalScriptStateIsNotSharedBetweenContexts() throws Exception {
+        when(parameterService.getString(ParameterConstants.BSH_TRANSFORM_GLOBAL_SCRIPT)).thenReturn("int count = 0;");
+        BshColumnTransform transform = new BshColumnTransform(parameterService, extensionService);
+        String expression = "return String.valueOf(++count);";
+        assertEquals("1", transform(transform, expression, "1", "abc"));
+        assertEquals("2", transform(transform, expression, "2", "abc"));
+        assertEquals("1", transform(transform, "other", expression, "1", "abc"));
+        assertTrue(isCompiled(transform));
+
+        context = new DataContext(new Batch(BatchType.LOAD, 2, "default", null, "00000", "00001", false));
+        assertEquals("1", transform(transform, expression, "3", "abc"));
+        assertEquals("2", transform(transform, expression, "4", "abc"));
+        assertEquals("1", transform(transform, "other", expression, "3", "abc"));
+    }
+
+    protected String transform(BshColumnTransform transform, String expression, String id, String name) throws Exception {
+        return transform(transform, "name", expression, id, name);
+    }
+
+    protected String transform(BshColumnTransform transform, String targetColumn, String expression, String id,
+            String name) throws Exception {
+        TransformColumn column = new TransformColumn("name", targetColumn, false, BshColumnTransform.NAME, expression);
+        column.setTransformId("bsh");
+        TransformTable table = new TransformTable("source_table", "target_table", TransformPoint.LOAD, column);
+        Map<String, String> sourceValues = new HashMap<String, String>();
+        sourceValues.put("ID", id);
+        sourceValues.put("name", name);
+        TransformedData data = new TransformedData(table, DataEventType.INSERT, new HashMap<String, String>(),
+                null, sourceValues);
+        return transform.transform(platform, context, column, data, sourceValues, name, null).getNewValue();
+    }
+
+    protected boolean isCompiled(BshColumnTransform transform) {
+        BshColumnTransform.CompiledScript compiledScript = transform.compiledScripts.get("bsh.name");
+        return compiledScript != null && compiledScript.transformClass != null;
+    }
+
+}
@@ -22,7 +22,11 @@ package org.jumpmind.symmetric.model;
 
 import static org.junit.Assert.*;
 
+import java.util.Map;
+
 import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.CsvRow;
+import org.jumpmind.symmetric.io.data.CsvUtils;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.junit.Test;
 
@@ -38,4 +42,28 @@ public class CsvDataTest {
         String result = newData.getParsedData(CsvData.ROW_DATA)[0];
         assertEquals(TEST, result);
     }
+
+    @Test
+    public void testGetCsvRow() {
+        String[] values = { "1", null, "", "two\nlines", "\"quoted\" \\ text", " spaced " };
+        String rowData = CsvUtils.escapeCsvData(values);
+        CsvData data = new CsvData();
+        data.putCsvData(CsvData.ROW_DATA, rowData);
+
+        CsvRow row = data.getCsvRow(CsvData.ROW_DATA);
+        assertEquals(values.length, row.size());
+        assertEquals("two\nlines", row.get(3));
+        assertSame(row, data.getCsvRow(CsvData.ROW_DATA));
+        assertEquals(rowData, data.getCsvData(CsvData.ROW_DATA));
+
+        Map<String, String> map = data.toColumnNameValuePairs(new String[] { "A", "B", "C" }, CsvData.ROW_DATA);
+        assertEquals("1", map.get("a"));
+        assertNull(map.get("b"));
+        assertEquals("", map.get("c"));
+
+        assertArrayEquals(CsvUtils.tokenizeCsvData(rowData), data.getParsedData(CsvData.ROW_DATA));
+        assertArrayEquals(values, data.getParsedData(CsvData.ROW_DATA));
+        assertEquals(" spaced ", data.getCsvRow(CsvData.ROW_DATA).get(5));
+        assertNull(data.getCsvRow(CsvData.OLD_DATA));
+    }
 }
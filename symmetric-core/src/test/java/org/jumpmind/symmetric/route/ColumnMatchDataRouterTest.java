@@ -22,8 +22,10 @@ package org.jumpmind.symmetric.route;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jumpmind.db.model.Table;
@@ -362,4 +364,135 @@ public class ColumnMatchDataRouterTest {
         assertEquals(true, result.contains("100"));
         assertEquals(true, result.contains("300"));
     }
+
+    @Test
+    public void testExpressionOldColumnOnUpdate() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        nodes.add(new Node("100", "client"));
+        nodes.add(new Node("200", "client"));
+
+        TriggerHistory triggerHist = new TriggerHistory("mytable","ID","ID,NODE_ID,COLUMN2");
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(DataEventType.UPDATE);
+        data.setRowData("1,200,Super Dooper");
+        data.setOldData("1,100,Super Dooper");
+        data.setTriggerHistory(triggerHist);
+        Table table = new Table();
+        NodeChannel nodeChannel = new NodeChannel();
+        Router route = new Router();
+        route.setRouterExpression("old_node_id = :NODE_ID");
+        route.setRouterId("route1");
+        DataMetaData dataMetaData = new DataMetaData(data, table, route, nodeChannel);
+        
+        Set<String> result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("100"));
+
+        route.setRouterExpression("NODE_ID = :NODE_ID");
+        route.setLastUpdateTime(new Date(System.currentTimeMillis() + 1000));
+        result = router.routeToNodes(new SimpleRouterContext(), dataMetaData, nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("200"));
+    }
+
+    @Test
+    public void testExpressionContainsExternalIdOnDelete() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        Node node = new Node("1", "client");
+        node.setExternalId("store1");
+        nodes.add(node);
+        node = new Node("2", "client");
+        node.setExternalId("store2");
+        nodes.add(node);
+        node = new Node("3", "client");
+        node.setExternalId("store3");
+        nodes.add(node);
+
+        TriggerHistory triggerHist = new TriggerHistory("mytable","ID","ID,STORES");
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(DataEventType.DELETE);
+        data.setPkData("1");
+        data.setOldData("1,\"store1,store3\"");
+        data.setTriggerHistory(triggerHist);
+        Table table = new Table();
+        NodeChannel nodeChannel = new NodeChannel();
+        Router route = new Router();
+        route.setRouterExpression("STORES contains :EXTERNAL_ID");
+        route.setRouterId("route1");
+        DataMetaData dataMetaData = new DataMetaData(data, table, route, nodeChannel);
+        
+        Set<String> result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+        assertEquals(2, result.size());
+        assertEquals(true, result.contains("1"));
+        assertEquals(true, result.contains("3"));
+
+        route.setRouterExpression("STORES not contains :EXTERNAL_ID");
+        route.setLastUpdateTime(new Date(System.currentTimeMillis() + 1000));
+        result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("2"));
+    }
+
+    @Test
+    public void testExpressionUsesPkDataWhenNoRowData() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        SimpleRouterContext routingContext = new SimpleRouterContext();
+        HashSet<Node> nodes = new HashSet<Node>();
+        nodes.add(new Node("100", "client"));
+        nodes.add(new Node("200", "client"));
+
+        TriggerHistory triggerHist = new TriggerHistory("mytable","NODE_ID","NODE_ID,COLUMN2");
+        Data data = new Data();
+        data.setDataId(1);
+        data.setDataEventType(DataEventType.DELETE);
+        data.setPkData("200");
+        data.setTriggerHistory(triggerHist);
+        Table table = new Table();
+        NodeChannel nodeChannel = new NodeChannel();
+        Router route = new Router();
+        route.setRouterExpression("NODE_ID = :NODE_ID");
+        route.setRouterId("route1");
+        DataMetaData dataMetaData = new DataMetaData(data, table, route, nodeChannel);
+        
+        Set<String> result = router.routeToNodes(routingContext, dataMetaData, nodes, false, false, null);
+        assertEquals(1, result.size());
+        assertEquals(true, result.contains("200"));
+    }
+
+    @Test
+    public void testDataMapMatchesBuiltDataMap() {
+        ColumnMatchDataRouter router = new ColumnMatchDataRouter();
+        TriggerHistory triggerHist = new TriggerHistory("mytable", "ID", "ID,NODE_ID,Column2,OLD_ID");
+        String[] keys = { "ID", "id", "NODE_ID", "column2", "OLD_ID", "old_node_id", "OLD_COLUMN2",
+                "OLD_OLD_ID", "EXTERNAL_DATA", "external_data", "MISSING", "OLD_MISSING" };
+        for (DataEventType dml : new DataEventType[] { DataEventType.INSERT, DataEventType.UPDATE,
+                DataEventType.DELETE, DataEventType.SQL }) {
+            for (int i = 0; i < 3; i++) {
+                Data data = new Data();
+                data.setDataEventType(dml);
+                data.setTriggerHistory(triggerHist);
+                data.setExternalData("ext");
+                data.setPkData("\"1\"");
+                if (i != 1) {
+                    data.setRowData("\"1\",\"100\",\"new \\\"value\\\"\",");
+                }
+                if (i != 2) {
+                    data.setOldData("\"1\",\"200\",\"old value\",\"9\"");
+                }
+                DataMetaData dataMetaData = new DataMetaData(data, new Table(), new Router(), new NodeChannel());
+                Map<String, String> expected = router.buildDataMap(dataMetaData, null);
+                Map<String, String> lazy = router.getDataMap(dataMetaData, null);
+                for (String key : keys) {
+                    assertEquals(dml + " " + i + " " + key, expected.get(key), lazy.get(key));
+                }
+                assertEquals(expected, lazy);
+            }
+        }
+    }
 }
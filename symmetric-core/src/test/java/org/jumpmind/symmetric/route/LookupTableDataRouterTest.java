@@ -1,129 +1,356 @@
-/**
- * Licensed to JumpMind Inc under one or more contributor
- * license agreements.  See the NOTICE file distributed
- * with this work for additional information regarding
- * copyright ownership.  JumpMind Inc licenses this file
- * to you under the GNU General Public License, version 3.0 (GPLv3)
- * (the "License"); you may not use this file except in compliance
- * with the License.
- *
- * You should have received a copy of the GNU General Public License,
- * version 3.0 (GPLv3) along with this library; if not, see
- * <http://www.gnu.org/licenses/>.
- *
- * Unless required by applicable law or agreed to in writing,
- * software distributed under the License is distributed on an
- * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
- * KIND, either express or implied.  See the License for the
- * specific language governing permissions and limitations
- * under the License.
- */
-package org.jumpmind.symmetric.route;
-
-import static org.junit.Assert.*;
-
-import org.jumpmind.symmetric.SyntaxParsingException;
-import org.junit.Test;
-
-public class LookupTableDataRouterTest {
-
-    @Test
-    public void testValidExpression() {
-        LookupTableDataRouter router = new LookupTableDataRouter();
-        
-        boolean valid = true;
-        try {
-            router.parse("LOOKUP_TABLE=STORE\r\n" +
-                         "KEY_COLUMN=BRAND_ID\r\n" +
-                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
-                         "EXTERNAL_ID_COLUMN=STORE_ID");
-        } catch(SyntaxParsingException ex) {
-            valid = false;
-        }
-        
-        assertEquals(true, valid);
-    }
-
-    @Test
-    public void testExpressionWithoutNewLines() {
-        LookupTableDataRouter router = new LookupTableDataRouter();
-        
-        boolean valid = true;
-        try {
-            router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
-                         "LOOKUP_KEY_COLUMN=BRAND_ID  EXTERNAL_ID_COLUMN=STORE_ID");
-        } catch(SyntaxParsingException ex) {
-            valid = false;
-        }
-        
-        assertEquals(true, valid);
-    }
-    
-    @Test
-    public void testMissingEqualSign() {
-        LookupTableDataRouter router = new LookupTableDataRouter();
-        
-        boolean valid = true;
-        try {
-            router.parse("LOOKUP_TABLE=STORE\r\n" +
-                         "KEY_COLUMNBRAND_ID\r\n" +         // <-- Missing Equal
-                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
-                         "EXTERNAL_ID_COLUMN=STORE_ID");
-        } catch(SyntaxParsingException ex) {
-            valid = false;
-        }
-        
-        assertEquals(false, valid);
-    }
-    
-    @Test
-    public void testBadKey() {
-        LookupTableDataRouter router = new LookupTableDataRouter();
-        
-        boolean valid = true;
-        try {
-            router.parse("LOOKUP_TAB=STORE\r\n" +       // <-- Should be LOOKUP_TABLE
-                         "KEY_COLUMN=BRAND_ID\r\n" +
-                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
-                         "EXTERNAL_ID_COLUMN=STORE_ID");
-        } catch(SyntaxParsingException ex) {
-            valid = false;
-        }
-        
-        assertEquals(false, valid);
-    }
-    
-    @Test
-    public void testDoubleLine() {
-        LookupTableDataRouter router = new LookupTableDataRouter();
-        
-        boolean valid = true;
-        try {
-            router.parse("LOOKUP_TABLE=STORE\r\n" +
-                         "LOOKUP_TABLE=STORE\r\n" +     // <-- Duplicate
-                         "KEY_COLUMN=BRAND_ID\r\n" +
-                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
-                         "EXTERNAL_ID_COLUMN=STORE_ID");
-        } catch(SyntaxParsingException ex) {
-            valid = false;
-        }
-        
-        assertEquals(false, valid);
-    }
-    
-    @Test
-    public void testMissingLine() {
-        LookupTableDataRouter router = new LookupTableDataRouter();
-        
-        boolean valid = true;
-        try {
-            router.parse("LOOKUP_TABLE=STORE\r\n" +
-                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
-                         "EXTERNAL_ID_COLUMN=STORE_ID");
-        } catch(SyntaxParsingException ex) {
-            valid = false;
-        }
-        
-        assertEquals(false, valid);
-    }
-}
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.symmetric.SyntaxParsingException;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.jumpmind.symmetric.route.LookupTableDataRouter.LookupIndex;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class LookupTableDataRouterTest {
+
+    @Test
+    public void testValidExpression() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        
+        boolean valid = true;
+        try {
+            router.parse("LOOKUP_TABLE=STORE\r\n" +
+                         "KEY_COLUMN=BRAND_ID\r\n" +
+                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
+                         "EXTERNAL_ID_COLUMN=STORE_ID");
+        } catch(SyntaxParsingException ex) {
+            valid = false;
+        }
+        
+        assertEquals(true, valid);
+    }
+
+    @Test
+    public void testExpressionWithoutNewLines() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        
+        boolean valid = true;
+        try {
+            router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                         "LOOKUP_KEY_COLUMN=BRAND_ID  EXTERNAL_ID_COLUMN=STORE_ID");
+        } catch(SyntaxParsingException ex) {
+            valid = false;
+        }
+        
+        assertEquals(true, valid);
+    }
+    
+    @Test
+    public void testMissingEqualSign() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        
+        boolean valid = true;
+        try {
+            router.parse("LOOKUP_TABLE=STORE\r\n" +
+                         "KEY_COLUMNBRAND_ID\r\n" +         // <-- Missing Equal
+                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
+                         "EXTERNAL_ID_COLUMN=STORE_ID");
+        } catch(SyntaxParsingException ex) {
+            valid = false;
+        }
+        
+        assertEquals(false, valid);
+    }
+    
+    @Test
+    public void testBadKey() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        
+        boolean valid = true;
+        try {
+            router.parse("LOOKUP_TAB=STORE\r\n" +       // <-- Should be LOOKUP_TABLE
+                         "KEY_COLUMN=BRAND_ID\r\n" +
+                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
+                         "EXTERNAL_ID_COLUMN=STORE_ID");
+        } catch(SyntaxParsingException ex) {
+            valid = false;
+        }
+        
+        assertEquals(false, valid);
+    }
+    
+    @Test
+    public void testDoubleLine() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        
+        boolean valid = true;
+        try {
+            router.parse("LOOKUP_TABLE=STORE\r\n" +
+                         "LOOKUP_TABLE=STORE\r\n" +     // <-- Duplicate
+                         "KEY_COLUMN=BRAND_ID\r\n" +
+                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
+                         "EXTERNAL_ID_COLUMN=STORE_ID");
+        } catch(SyntaxParsingException ex) {
+            valid = false;
+        }
+        
+        assertEquals(false, valid);
+    }
+    
+    @Test
+    public void testMissingLine() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        
+        boolean valid = true;
+        try {
+            router.parse("LOOKUP_TABLE=STORE\r\n" +
+                         "LOOKUP_KEY_COLUMN=BRAND_ID\r\n" +
+                         "EXTERNAL_ID_COLUMN=STORE_ID");
+        } catch(SyntaxParsingException ex) {
+            valid = false;
+        }
+        
+        assertEquals(false, valid);
+    }
+
+    @Test
+    public void testLastUpdateColumn() {
+        LookupTableDataRouter router = new LookupTableDataRouter();
+        Map<String, String> params = router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                "LOOKUP_KEY_COLUMN=BRAND_ID EXTERNAL_ID_COLUMN=STORE_ID LAST_UPDATE_COLUMN=LAST_UPDATE_TIME");
+        assertEquals("LAST_UPDATE_TIME", params.get(LookupTableDataRouter.PARAM_LAST_UPDATE_COLUMN));
+    }
+
+    @Test
+    public void testIndexKeptAcrossRoutingPasses() {
+        List<String> queries = new ArrayList<String>();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { "1", "store1", 1l });
+        rows.add(new Object[] { "1", "store2", 1l });
+        rows.add(new Object[] { "2", "store1", 2l });
+        LookupTableDataRouter router = newRouter(queries, rows);
+        Map<String, String> params = router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                "LOOKUP_KEY_COLUMN=BRAND_ID EXTERNAL_ID_COLUMN=STORE_ID LAST_UPDATE_COLUMN=LAST_UPDATE_TIME");
+
+        LookupIndex index = router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(Arrays.asList("store1", "store2"), Arrays.asList(index.get("1")));
+        assertEquals(1, queries.size());
+        assertSame(index.get("1")[0], index.get("2")[0]);
+
+        rows.set(2, new Object[] { "3", "store3", 3l });
+        router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(2, queries.size());
+        assertTrue(queries.get(1).endsWith("where LAST_UPDATE_TIME >= ?"));
+        assertEquals(Arrays.asList("store3"), Arrays.asList(index.get("3")));
+    }
+
+    @Test
+    public void testIndexReloadedWhenRowCountChanges() {
+        List<String> queries = new ArrayList<String>();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { "1", "store1", null });
+        rows.add(new Object[] { "2", "store2", null });
+        LookupTableDataRouter router = newRouter(queries, rows);
+        Map<String, String> params = router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                "LOOKUP_KEY_COLUMN=BRAND_ID EXTERNAL_ID_COLUMN=STORE_ID");
+        LookupIndex index = router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(Arrays.asList("store2"), Arrays.asList(index.get("2")));
+
+        router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(1, queries.size());
+
+        rows.remove(1);
+        router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(2, queries.size());
+        assertNull(index.get("2"));
+        assertEquals(Arrays.asList("store1"), Arrays.asList(index.get("1")));
+    }
+
+    @Test
+    public void testIndexUpdatedFromRoutedData() {
+        List<String> queries = new ArrayList<String>();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { "1", "store1", null });
+        LookupTableDataRouter router = newRouter(queries, rows);
+        Map<String, String> params = router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                "LOOKUP_KEY_COLUMN=BRAND_ID EXTERNAL_ID_COLUMN=STORE_ID");
+        LookupIndex index = router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+
+        TriggerHistory triggerHistory = new TriggerHistory("store", "STORE_ID", "STORE_ID,BRAND_ID");
+        router.dataRouted(new Data("store", DataEventType.INSERT, "\"store2\",\"1\"", null, triggerHistory, "test", null, null));
+        assertEquals(Arrays.asList("store1", "store2"), Arrays.asList(index.get("1")));
+
+        Data update = new Data("store", DataEventType.UPDATE, "\"store2\",\"2\"", null, triggerHistory, "test", null, null);
+        update.setOldData("\"store2\",\"1\"");
+        router.dataRouted(update);
+        assertEquals(Arrays.asList("store1"), Arrays.asList(index.get("1")));
+        assertEquals(Arrays.asList("store2"), Arrays.asList(index.get("2")));
+
+        Data delete = new Data("store", DataEventType.DELETE, null, null, triggerHistory, "test", null, null);
+        delete.setOldData("\"store1\",\"1\"");
+        router.dataRouted(delete);
+        assertNull(index.get("1"));
+
+        router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(1, queries.size());
+
+        router.dataRouted(new Data("store", DataEventType.SQL, "\"delete from store\"", null, triggerHistory, "test", null, null));
+        router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(2, queries.size());
+        assertEquals(Arrays.asList("store1"), Arrays.asList(index.get("1")));
+    }
+
+    @Test
+    public void testLookupTableTooLarge() {
+        List<String> queries = new ArrayList<String>();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i = 0; i < 20; i++) {
+            rows.add(new Object[] { String.valueOf(i), "store1", null });
+        }
+        LookupTableDataRouter router = newRouter(queries, rows);
+        Map<String, String> params = router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                "LOOKUP_KEY_COLUMN=BRAND_ID EXTERNAL_ID_COLUMN=STORE_ID");
+        assertNull(router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test"))));
+        assertNull(router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test"))));
+        assertEquals(1, queries.size());
+    }
+
+    @Test
+    public void testReloadKeepsCurrentIndexUntilLoaded() {
+        List<String> queries = new ArrayList<String>();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { "1", "store1", null });
+        rows.add(new Object[] { "2", "store2", null });
+        final List<String[]> seenDuringReload = new ArrayList<String[]>();
+        final LookupIndex[] held = new LookupIndex[1];
+        LookupTableDataRouter router = newRouter(queries, rows, new Runnable() {
+            public void run() {
+                if (held[0] != null) {
+                    seenDuringReload.add(held[0].get("2"));
+                }
+            }
+        });
+        Map<String, String> params = router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                "LOOKUP_KEY_COLUMN=BRAND_ID EXTERNAL_ID_COLUMN=STORE_ID");
+        held[0] = router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+
+        TriggerHistory triggerHistory = new TriggerHistory("store", "STORE_ID", "STORE_ID,BRAND_ID");
+        router.dataRouted(new Data("store", DataEventType.SQL, "\"delete from store\"", null, triggerHistory, "test", null, null));
+        router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test")));
+        assertEquals(2, queries.size());
+        assertEquals(2, seenDuringReload.size());
+        for (String[] ids : seenDuringReload) {
+            assertEquals(Arrays.asList("store2"), Arrays.asList(ids));
+        }
+    }
+
+    @Test
+    public void testHeldIndexFallsBackWhenReloadTooLarge() {
+        List<String> queries = new ArrayList<String>();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[] { "1", "store1", null });
+        LookupTableDataRouter router = newRouter(queries, rows);
+        Map<String, String> params = router.parse("LOOKUP_TABLE=STORE KEY_COLUMN=BRAND_ID " +
+                "LOOKUP_KEY_COLUMN=BRAND_ID EXTERNAL_ID_COLUMN=STORE_ID");
+        SimpleRouterContext heldContext = new SimpleRouterContext("00000", new NodeChannel("test"));
+        assertNotNull(router.getLookupIndex(params, heldContext));
+
+        for (int i = 2; i < 20; i++) {
+            rows.add(new Object[] { String.valueOf(i), "store1", null });
+        }
+        TriggerHistory triggerHistory = new TriggerHistory("store", "STORE_ID", "STORE_ID,BRAND_ID");
+        router.dataRouted(new Data("store", DataEventType.SQL, "\"delete from store\"", null, triggerHistory, "test", null, null));
+        assertNull(router.getLookupIndex(params, new SimpleRouterContext("00000", new NodeChannel("test"))));
+
+        assertEquals(Arrays.asList("store1"), new ArrayList<String>(router.getExternalIds(params, null, heldContext, "1")));
+        assertEquals(Arrays.asList("store1"), new ArrayList<String>(router.getExternalIds(params, null, heldContext, "15")));
+    }
+
+    protected LookupTableDataRouter newRouter(final List<String> queries, final List<Object[]> rows) {
+        return newRouter(queries, rows, null);
+    }
+
+    protected LookupTableDataRouter newRouter(final List<String> queries, final List<Object[]> rows,
+            final Runnable afterEachRow) {
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        IParameterService parameterService = mock(IParameterService.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        when(symmetricDialect.getParameterService()).thenReturn(parameterService);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(parameterService.is(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_ENABLED)).thenReturn(true);
+        when(parameterService.getLong(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_MAX_AGE_MS, 3600000)).thenReturn(3600000l);
+        when(parameterService.getInt(ParameterConstants.ROUTING_LOOKUP_TABLE_CACHE_MAX_ROWS, 10000000)).thenReturn(10);
+
+        when(sqlTemplate.queryForLong(anyString(), (Object[]) any())).thenAnswer(new Answer<Long>() {
+            public Long answer(InvocationOnMock invocation) {
+                return (long) rows.size();
+            }
+        });
+
+        /*
+         * The last update value is the only bind variable, so rows older
+         * than it are filtered out like the database would
+         */
+        when(sqlTemplate.query(anyString(), any(ISqlRowMapper.class), (Object[]) any())).thenAnswer(new Answer<List<Object>>() {
+            public List<Object> answer(InvocationOnMock invocation) {
+                queries.add((String) invocation.getArgument(0));
+                ISqlRowMapper<?> mapper = invocation.getArgument(1);
+                Object[] args = invocation.getArguments();
+                Long lastUpdate = args.length > 2 ? (Long) args[2] : null;
+                for (Object[] values : new ArrayList<Object[]>(rows)) {
+                    if (lastUpdate == null || (Long) values[2] >= lastUpdate) {
+                        Row row = new Row(3);
+                        row.put("BRAND_ID", values[0]);
+                        row.put("STORE_ID", values[1]);
+                        row.put("LAST_UPDATE_TIME", values[2]);
+                        mapper.mapRow(row);
+                        if (afterEachRow != null) {
+                            afterEachRow.run();
+                        }
+                    }
+                }
+                return new ArrayList<Object>();
+            }
+        });
+        return new LookupTableDataRouter(symmetricDialect);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jumpmind.symmetric.model.Data;
+import org.junit.Test;
+
+public class PeekAheadQueueTest {
+
+    protected static Data data(long dataId, String transactionId) {
+        return new Data(dataId, null, null, null, "table1", null, null, null, transactionId, null);
+    }
+
+    @Test
+    public void testPollInOrder() {
+        PeekAheadQueue queue = new PeekAheadQueue(4);
+        for (int i = 1; i <= 100; i++) {
+            queue.add(data(i, i % 2 == 0 ? "a" : null));
+        }
+        assertEquals(100, queue.size());
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(i, queue.poll().getDataId());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPollTransaction() {
+        PeekAheadQueue queue = new PeekAheadQueue(4);
+        queue.add(data(1, "a"));
+        queue.add(data(2, "b"));
+        queue.add(data(3, "a"));
+        queue.add(data(4, "c"));
+        queue.add(data(5, "a"));
+        queue.add(data(6, "b"));
+
+        assertEquals(1, queue.poll().getDataId());
+        List<Data> datas = queue.pollTransaction("a");
+        assertEquals(2, datas.size());
+        assertEquals(3, datas.get(0).getDataId());
+        assertEquals(5, datas.get(1).getDataId());
+        assertEquals(1, queue.getSizeAfterLastRemoved());
+        assertEquals(3, queue.size());
+        assertTrue(queue.pollTransaction("a").isEmpty());
+
+        assertEquals(2, queue.poll().getDataId());
+        assertEquals(2, queue.getSizeAfterLastRemoved());
+        assertEquals(6, queue.pollTransaction("b").get(0).getDataId());
+        assertEquals(0, queue.getSizeAfterLastRemoved());
+        assertEquals(4, queue.poll().getDataId());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testSizeAfterLastRemovedAcrossWrapAndGrow() {
+        PeekAheadQueue queue = new PeekAheadQueue(16);
+        for (int i = 1; i <= 12; i++) {
+            queue.add(data(i, "t" + (i % 3)));
+        }
+        for (int i = 1; i <= 10; i++) {
+            queue.poll();
+        }
+        for (int i = 13; i <= 40; i++) {
+            queue.add(data(i, "t" + (i % 3)));
+        }
+        List<Data> datas = queue.pollTransaction("t1");
+        assertEquals(10, datas.size());
+        assertEquals(13, datas.get(0).getDataId());
+        assertEquals(40, datas.get(9).getDataId());
+        assertEquals(0, queue.getSizeAfterLastRemoved());
+        assertEquals(20, queue.size());
+        datas = queue.pollTransaction("t2");
+        assertEquals(38, datas.get(datas.size() - 1).getDataId());
+        assertEquals(1, queue.getSizeAfterLastRemoved());
+        assertEquals(12, queue.poll().getDataId());
+    }
+
+    @Test
+    public void testClear() {
+        PeekAheadQueue queue = new PeekAheadQueue(4);
+        queue.add(data(1, "a"));
+        queue.add(data(2, "a"));
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.pollTransaction("a").isEmpty());
+        queue.add(data(3, "a"));
+        assertEquals(1, queue.getSizeAfterLastRemoved());
+        assertEquals(3, queue.pollTransaction("a").get(0).getDataId());
+    }
+
+}
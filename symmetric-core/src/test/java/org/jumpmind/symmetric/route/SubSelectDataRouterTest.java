@@ -0,0 +1,198 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jumpmind.db.model.Column;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.Row;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.model.Data;
+import org.jumpmind.symmetric.model.DataMetaData;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.Router;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class SubSelectDataRouterTest {
+
+    ISymmetricDialect symmetricDialect;
+
+    IParameterService parameterService;
+
+    List<String> queries = new ArrayList<String>();
+
+    TriggerHistory triggerHistory;
+
+    Table table;
+
+    Router router;
+
+    NodeChannel nodeChannel = new NodeChannel("test");
+
+    @Before
+    public void setup() {
+        symmetricDialect = mock(ISymmetricDialect.class);
+        parameterService = mock(IParameterService.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        when(symmetricDialect.getTablePrefix()).thenReturn("sym");
+        when(symmetricDialect.getParameterService()).thenReturn(parameterService);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(parameterService.is(ParameterConstants.ROUTING_SUBSELECT_CACHE_ENABLED)).thenReturn(true);
+        when(parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_CACHE_MAX_ENTRIES, 10000)).thenReturn(100);
+        when(parameterService.getLong(ParameterConstants.ROUTING_SUBSELECT_CACHE_TTL_MS, 60000)).thenReturn(60000l);
+        when(parameterService.getInt(ParameterConstants.ROUTING_SUBSELECT_BATCH_SIZE, 100)).thenReturn(10);
+
+        when(platform.getObjectValues(any(), any(Table.class), any(String[].class), any(String[].class))).thenAnswer(
+                new Answer<Object[]>() {
+                    public Object[] answer(InvocationOnMock invocation) {
+                        String[] values = invocation.getArgument(3);
+                        return Arrays.copyOf(values, values.length, Object[].class);
+                    }
+                });
+
+        /*
+         * Every branch of the query binds the node group and the store id.
+         * Each store routes to a node of the same name.
+         */
+        when(sqlTemplate.query(anyString(), any(), any(Object[].class), isNull())).thenAnswer(new Answer<List<Object>>() {
+            public List<Object> answer(InvocationOnMock invocation) {
+                queries.add((String) invocation.getArgument(0));
+                ISqlRowMapper<?> mapper = invocation.getArgument(1);
+                Object[] args = invocation.getArgument(2);
+                for (int i = 0; i < args.length / 2; i++) {
+                    Row row = new Row(2);
+                    row.put("bind_position", i);
+                    row.put("node_id", "node-" + args[i * 2 + 1]);
+                    mapper.mapRow(row);
+                }
+                return new ArrayList<Object>();
+            }
+        });
+
+        triggerHistory = new TriggerHistory("item", "ID", "ID,STORE_ID");
+        triggerHistory.setTriggerHistoryId(1);
+        table = new Table("item", new Column("ID", true), new Column("STORE_ID"));
+        router = new Router("subselect", "corp", "store", "subselect");
+        router.setRouterExpression("c.external_id = :STORE_ID");
+    }
+
+    @Test
+    public void testSameBindValuesAreSelectedOnce() throws Exception {
+        SubSelectDataRouter dataRouter = new SubSelectDataRouter(symmetricDialect);
+        ChannelRouterContext context = newContext(new ArrayList<Data>());
+
+        Set<String> nodeIds = dataRouter.routeToNodes(context, newDataMetaData(1, "s1"), new HashSet<Node>(), false, false, null);
+        assertEquals(new HashSet<String>(Arrays.asList("node-s1")), nodeIds);
+        nodeIds = dataRouter.routeToNodes(context, newDataMetaData(2, "s1"), new HashSet<Node>(), false, false, null);
+        assertEquals(new HashSet<String>(Arrays.asList("node-s1")), nodeIds);
+        nodeIds = dataRouter.routeToNodes(context, newDataMetaData(3, "s2"), new HashSet<Node>(), false, false, null);
+        assertEquals(new HashSet<String>(Arrays.asList("node-s2")), nodeIds);
+
+        assertEquals(2, queries.size());
+        assertEquals(1, context.getStat(ChannelRouterContext.STAT_ROUTER_CACHE_HITS));
+        assertEquals(2, context.getStat(ChannelRouterContext.STAT_ROUTER_CACHE_MISSES));
+    }
+
+    @Test
+    public void testPeekAheadRowsAreSelectedTogether() throws Exception {
+        List<Data> peekAhead = new ArrayList<Data>();
+        peekAhead.add(newDataMetaData(2, "s2").getData());
+        peekAhead.add(newDataMetaData(3, "s1").getData());
+        peekAhead.add(newDataMetaData(4, "s3").getData());
+        peekAhead.add(newDataMetaData(5, "s2").getData());
+        SubSelectDataRouter dataRouter = new SubSelectDataRouter(symmetricDialect);
+        ChannelRouterContext context = newContext(peekAhead);
+
+        Set<String> nodeIds = dataRouter.routeToNodes(context, newDataMetaData(1, "s1"), new HashSet<Node>(), false, false, null);
+        assertEquals(new HashSet<String>(Arrays.asList("node-s1")), nodeIds);
+        assertEquals(1, queries.size());
+        assertTrue(queries.get(0).contains("union all"));
+
+        for (Data data : peekAhead) {
+            nodeIds = dataRouter.routeToNodes(context, new DataMetaData(data, table, router, nodeChannel),
+                    new HashSet<Node>(), false, false, null);
+            assertEquals(new HashSet<String>(Arrays.asList("node-" + data.toParsedRowData()[1])), nodeIds);
+        }
+
+        assertEquals(1, queries.size());
+        assertEquals(4, context.getStat(ChannelRouterContext.STAT_ROUTER_CACHE_HITS));
+        assertEquals(1, context.getStat(ChannelRouterContext.STAT_ROUTER_CACHE_MISSES));
+    }
+
+    @Test
+    public void testCacheDisabled() throws Exception {
+        when(parameterService.is(ParameterConstants.ROUTING_SUBSELECT_CACHE_ENABLED)).thenReturn(false);
+        ISqlTemplate sqlTemplate = symmetricDialect.getPlatform().getSqlTemplate();
+        when(sqlTemplate.query(anyString(), any(), any(Map.class))).thenReturn(new ArrayList<Object>(Arrays.asList("node-s1")));
+        SubSelectDataRouter dataRouter = new SubSelectDataRouter(symmetricDialect);
+        ChannelRouterContext context = newContext(new ArrayList<Data>());
+
+        dataRouter.routeToNodes(context, newDataMetaData(1, "s1"), new HashSet<Node>(), false, false, null);
+        dataRouter.routeToNodes(context, newDataMetaData(2, "s1"), new HashSet<Node>(), false, false, null);
+
+        assertEquals(0, queries.size());
+        assertEquals(0, context.getStat(ChannelRouterContext.STAT_ROUTER_CACHE_HITS));
+    }
+
+    protected ChannelRouterContext newContext(List<Data> peekAhead) throws Exception {
+        ChannelRouterContext context = new ChannelRouterContext("corp", nodeChannel, mock(ISqlTransaction.class), null);
+        IDataToRouteReader reader = mock(IDataToRouteReader.class);
+        when(reader.peekAhead()).thenReturn(peekAhead);
+        context.setDataReader(reader);
+        return context;
+    }
+
+    protected DataMetaData newDataMetaData(long dataId, String storeId) {
+        Data data = new Data("item", DataEventType.INSERT, "\"" + dataId + "\",\"" + storeId + "\"", "\"" + dataId + "\"",
+                triggerHistory, "test", null, null);
+        data.setDataId(dataId);
+        return new DataMetaData(data, table, router, nodeChannel);
+    }
+
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.AbstractBatch.Status;
+import org.jumpmind.symmetric.model.BatchAck;
+import org.jumpmind.symmetric.model.BatchAckResult;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.IOutgoingBatchService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.symmetric.transport.IAcknowledgeEventListener;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AcknowledgeServiceTest {
+
+    AcknowledgeService acknowledgeService;
+
+    IParameterService parameterService;
+
+    IOutgoingBatchService outgoingBatchService;
+
+    IStatisticManager statisticManager;
+
+    IAcknowledgeEventListener listener;
+
+    ISqlTransaction transaction;
+
+    @Before
+    public void setup() {
+        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        parameterService = mock(IParameterService.class);
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        IDatabasePlatform databasePlatform = mock(IDatabasePlatform.class);
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        IExtensionService extensionService = mock(IExtensionService.class);
+        transaction = mock(ISqlTransaction.class);
+        outgoingBatchService = mock(IOutgoingBatchService.class);
+        statisticManager = mock(IStatisticManager.class);
+        listener = mock(IAcknowledgeEventListener.class);
+        when(databasePlatform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(databasePlatform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(sqlTemplate.startSqlTransaction()).thenReturn(transaction);
+        when(symmetricDialect.getPlatform()).thenReturn(databasePlatform);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
+        when(engine.getExtensionService()).thenReturn(extensionService);
+        when(engine.getOutgoingBatchService()).thenReturn(outgoingBatchService);
+        when(engine.getStatisticManager()).thenReturn(statisticManager);
+        when(engine.getConfigurationService()).thenReturn(mock(IConfigurationService.class));
+        when(extensionService.getExtensionPointList(IAcknowledgeEventListener.class)).thenReturn(Arrays.asList(listener));
+        when(parameterService.getInt(ParameterConstants.ACKNOWLEDGE_BULK_SIZE, 500)).thenReturn(500);
+        acknowledgeService = new AcknowledgeService(engine);
+    }
+
+    @Test
+    public void testAckInBulk() {
+        OutgoingBatch batch1 = newOutgoingBatch(1);
+        OutgoingBatch batch2 = newOutgoingBatch(2);
+        when(outgoingBatchService.findOutgoingBatches("00001", Arrays.asList(1l, 2l, 3l))).thenReturn(
+                Arrays.asList(batch1, batch2));
+
+        List<BatchAck> acks = new ArrayList<BatchAck>();
+        acks.add(newAck(new BatchAck(1)));
+        acks.add(newAck(new BatchAck(2, 0)));
+        acks.add(newAck(new BatchAck(3)));
+        List<BatchAckResult> results = acknowledgeService.ack(acks);
+
+        assertEquals(3, results.size());
+        assertEquals(true, results.get(0).isOk());
+        assertEquals(true, results.get(1).isOk());
+        assertEquals(false, results.get(2).isOk());
+        assertEquals(Status.OK, batch1.getStatus());
+        assertEquals(Status.ER, batch2.getStatus());
+
+        verify(outgoingBatchService, never()).findOutgoingBatch(anyLong(), anyString());
+        verify(outgoingBatchService, never()).updateOutgoingBatch(batch1);
+        verify(outgoingBatchService).updateOutgoingBatches(transaction, Arrays.asList(batch1, batch2), 2);
+        verify(transaction).commit();
+        verify(listener, times(3)).onAcknowledgeEvent(any(BatchAck.class));
+        verify(statisticManager).incrementDataLoadedOutgoing(eq("default"), eq(10l));
+    }
+
+    @Test
+    public void testAckOneAtATimeWhenBulkDisabled() {
+        when(parameterService.getInt(ParameterConstants.ACKNOWLEDGE_BULK_SIZE, 500)).thenReturn(1);
+        OutgoingBatch batch1 = newOutgoingBatch(1);
+        OutgoingBatch batch2 = newOutgoingBatch(2);
+        when(outgoingBatchService.findOutgoingBatch(1, "00001")).thenReturn(batch1);
+        when(outgoingBatchService.findOutgoingBatch(2, "00001")).thenReturn(batch2);
+
+        List<BatchAckResult> results = acknowledgeService.ack(Arrays.asList(newAck(new BatchAck(1)), newAck(new BatchAck(2))));
+
+        assertEquals(2, results.size());
+        verify(outgoingBatchService).updateOutgoingBatch(batch1);
+        verify(outgoingBatchService).updateOutgoingBatch(batch2);
+        verify(transaction, never()).commit();
+    }
+
+    protected OutgoingBatch newOutgoingBatch(long batchId) {
+        OutgoingBatch batch = new OutgoingBatch("00001", "default", Status.LD);
+        batch.setBatchId(batchId);
+        return batch;
+    }
+
+    protected BatchAck newAck(BatchAck ack) {
+        ack.setNodeId("00001");
+        ack.setLoadRowCount(10);
+        return ack;
+    }
+
+}
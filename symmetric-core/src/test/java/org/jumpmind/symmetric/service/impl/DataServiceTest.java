@@ -1,29 +1,62 @@
 package org.jumpmind.symmetric.service.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.jumpmind.db.model.Column;
+import org.jumpmind.db.model.Table;
 import org.jumpmind.db.platform.DatabaseInfo;
 import org.jumpmind.db.platform.IDatabasePlatform;
 import org.jumpmind.db.sql.ISqlRowMapper;
 import org.jumpmind.db.sql.ISqlTemplate;
 import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.db.sql.Row;
 import org.jumpmind.symmetric.AbstractSymmetricEngine;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.common.ParameterConstants;
 import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.Channel;
 import org.jumpmind.symmetric.model.DataGap;
+import org.jumpmind.symmetric.model.ExtractRequest;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.model.TriggerHistory;
+import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IDataExtractorService;
 import org.jumpmind.symmetric.service.IDataService;
 import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.IGroupletService;
 import org.jumpmind.symmetric.service.IParameterService;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentMatchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class DataServiceTest {
 
@@ -32,23 +65,28 @@ public class DataServiceTest {
     IDataService dataService;
     IParameterService parameterService;
     ISymmetricDialect symmetricDialect;
+    IDatabasePlatform platform;
+    ISymmetricEngine engine;
 
     @Before
     public void setUp() throws Exception {
         sqlTemplate = mock(ISqlTemplate.class);
         sqlTransaction = mock(ISqlTransaction.class); 
         when(sqlTemplate.startSqlTransaction()).thenReturn(sqlTransaction);
-        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        platform = mock(IDatabasePlatform.class);
         when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
         when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getSqlTemplateDirty()).thenReturn(sqlTemplate);
         symmetricDialect = mock(AbstractSymmetricDialect.class);
         when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getTargetDialect()).thenReturn(symmetricDialect);
 
         parameterService = mock(ParameterService.class);
         when(parameterService.getLong(ParameterConstants.ROUTING_LARGEST_GAP_SIZE)).thenReturn(50000000L);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
 
         IExtensionService extensionService = mock(ExtensionService.class);
-        ISymmetricEngine engine = mock(AbstractSymmetricEngine.class);
+        engine = mock(AbstractSymmetricEngine.class);
         when(engine.getParameterService()).thenReturn(parameterService);
         when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
 
@@ -72,4 +110,165 @@ public class DataServiceTest {
         verifyNoMoreInteractions(sqlTransaction);
     }
 
+    @Test
+    public void testGetRangeSelectsForReload() throws Exception {
+        when(parameterService.getLong(ParameterConstants.INITIAL_LOAD_EXTRACT_SPLIT_ROWS, 0)).thenReturn(300L);
+        when(parameterService.getInt(ParameterConstants.INITIAL_LOAD_EXTRACT_SPLIT_MAX_COUNT, 4)).thenReturn(4);
+        Row row = new Row(2);
+        row.put("min_value", 1L);
+        row.put("max_value", 100L);
+        when(sqlTemplate.queryForRow(ArgumentMatchers.anyString())).thenReturn(row);
+
+        Table table = new Table("a_table", new Column("id", true, Types.INTEGER, 0, 0), new Column("name", false, Types.VARCHAR, 50, 0));
+        Node node = new Node("00001", "client");
+        String id = "t." + new DatabaseInfo().getDelimiterToken() + "id" + new DatabaseInfo().getDelimiterToken();
+        List<String> selects = ((DataService) dataService).getRangeSelectsForReload(table, node, "1=1", 1000);
+        assertEquals(Arrays.asList("(1=1) and " + id + " < 26", "(1=1) and " + id + " >= 26 and " + id + " < 51",
+                "(1=1) and " + id + " >= 51 and " + id + " < 76", "(1=1) and " + id + " >= 76"), selects);
+
+        assertNull(((DataService) dataService).getRangeSelectsForReload(table, node, "1=1", 300));
+
+        table.getColumnWithName("name").setPrimaryKey(true);
+        assertNull(((DataService) dataService).getRangeSelectsForReload(table, node, "1=1", 1000));
+    }
+
+    @Test
+    public void testInsertLoadBatchesForReloadWithCountedRanges() throws Exception {
+        List<ExtractRequest> requests = insertLoadBatchesForReload(false);
+        assertEquals(Arrays.asList(250L, 250L, 250L, 250L), getRows(requests));
+    }
+
+    @Test
+    public void testInsertLoadBatchesForReloadWithEstimatedRanges() throws Exception {
+        List<ExtractRequest> requests = insertLoadBatchesForReload(true);
+        assertEquals(Arrays.asList(250L, 250L, 250L, 250L), getRows(requests));
+    }
+
+    /**
+     * Loads a table with ids 1 through 1000 split into 4 ranges, checking that
+     * each range gets its own extract request on its own queue with its range
+     * select, and that the reload status adds up to the rows of the table
+     */
+    protected List<ExtractRequest> insertLoadBatchesForReload(boolean useEstimatedCounts) throws Exception {
+        when(parameterService.is(ParameterConstants.INITIAL_LOAD_USE_EXTRACT_JOB)).thenReturn(true);
+        when(parameterService.is(ParameterConstants.INITIAL_LOAD_USE_ESTIMATED_COUNTS)).thenReturn(useEstimatedCounts);
+        when(parameterService.getLong(ParameterConstants.INITIAL_LOAD_EXTRACT_SPLIT_ROWS, 0)).thenReturn(300L);
+        when(parameterService.getInt(ParameterConstants.INITIAL_LOAD_EXTRACT_SPLIT_MAX_COUNT, 4)).thenReturn(4);
+        when(platform.getEstimatedRowCount(any(Table.class))).thenReturn(1000L);
+        Row row = new Row(2);
+        row.put("min_value", 1L);
+        row.put("max_value", 1000L);
+        when(sqlTemplate.queryForRow(ArgumentMatchers.anyString())).thenReturn(row);
+        when(sqlTemplate.queryForLong(ArgumentMatchers.anyString())).thenAnswer(new Answer<Long>() {
+            public Long answer(InvocationOnMock invocation) {
+                String sql = invocation.getArgument(0);
+                Matcher from = Pattern.compile(">= (\\d+)").matcher(sql);
+                Matcher to = Pattern.compile("< (\\d+)").matcher(sql);
+                long first = from.find() ? Long.parseLong(from.group(1)) : 1;
+                long end = to.find() ? Long.parseLong(to.group(1)) : 1001;
+                return end - first;
+            }
+        });
+
+        Table table = new Table("a_table", new Column("id", true, Types.INTEGER, 0, 0), new Column("name", false, Types.VARCHAR, 50, 0));
+        when(platform.getTableFromCache(isNull(), isNull(), eq("a_table"), anyBoolean())).thenReturn(table);
+        Channel channel = new Channel("reload", 1);
+        channel.setMaxBatchSize(100);
+        channel.setQueue("reload");
+        Map<String, Channel> channels = new HashMap<String, Channel>();
+        channels.put("reload", channel);
+        IConfigurationService configurationService = mock(IConfigurationService.class);
+        when(configurationService.getChannels(false)).thenReturn(channels);
+        when(engine.getConfigurationService()).thenReturn(configurationService);
+        IGroupletService groupletService = mock(IGroupletService.class);
+        when(groupletService.isTargetEnabled(any(TriggerRouter.class), any(Node.class))).thenReturn(true);
+        when(engine.getGroupletService()).thenReturn(groupletService);
+        IDataExtractorService dataExtractorService = mock(IDataExtractorService.class);
+        when(dataExtractorService.requestExtractRequest(any(ISqlTransaction.class), anyString(), anyString(),
+                any(TriggerRouter.class), anyLong(), anyLong(), anyLong(), anyString(), anyLong(), anyLong()))
+                .thenAnswer(new Answer<ExtractRequest>() {
+                    public ExtractRequest answer(InvocationOnMock invocation) {
+                        ExtractRequest request = new ExtractRequest();
+                        request.setQueue((String) invocation.getArgument(2));
+                        request.setStartBatchId((Long) invocation.getArgument(4));
+                        request.setEndBatchId((Long) invocation.getArgument(5));
+                        request.setRows((Long) invocation.getArgument(8));
+                        return request;
+                    }
+                });
+        when(engine.getDataExtractorService()).thenReturn(dataExtractorService);
+
+        DataService service = spy((DataService) dataService);
+        doReturn("reload").when(service).getReloadChannelIdForTrigger(any(), any());
+        doReturn(1).when(service).getTransformMultiplier(any(Table.class), any(TriggerRouter.class));
+        final long[] nextBatchId = { 1 };
+        doAnswer(new Answer<Long>() {
+            public Long answer(InvocationOnMock invocation) {
+                long startBatchId = nextBatchId[0];
+                nextBatchId[0] += (Long) invocation.getArgument(10);
+                return startBatchId;
+            }
+        }).when(service).insertRequestedOutgoingBatches(any(ISqlTransaction.class), any(Node.class), any(TriggerRouter.class),
+                any(TriggerHistory.class), anyString(), anyLong(), any(), anyString(), anyLong(), anyLong(), anyLong());
+        final long[] statusTotals = new long[2];
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) {
+                statusTotals[0] += (Long) invocation.getArgument(4);
+                statusTotals[1] += (Long) invocation.getArgument(5);
+                return null;
+            }
+        }).when(service).updateTableReloadStatusDataCounts(any(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong());
+
+        TriggerHistory triggerHistory = new TriggerHistory(1);
+        triggerHistory.setSourceTableName("a_table");
+        TriggerRouter triggerRouter = new TriggerRouter();
+        Map<Integer, List<TriggerRouter>> triggerRoutersByHistoryId = new HashMap<Integer, List<TriggerRouter>>();
+        triggerRoutersByHistoryId.put(1, Arrays.asList(triggerRouter));
+
+        Map<Integer, ExtractRequest> requests = service.insertLoadBatchesForReload(new Node("00001", "client"), 1, "test",
+                Arrays.asList(triggerHistory), triggerRoutersByHistoryId, true, sqlTransaction, null, new ProcessInfo(),
+                null, null, true);
+
+        ExtractRequest request = requests.get(1);
+        List<ExtractRequest> rangeRequests = request.getRangeRequests();
+        assertEquals(4, rangeRequests.size());
+        assertSame(request, rangeRequests.get(0));
+        String id = "t." + new DatabaseInfo().getDelimiterToken() + "id" + new DatabaseInfo().getDelimiterToken();
+        assertEquals(Arrays.asList("(1=1) and " + id + " < 251", "(1=1) and " + id + " >= 251 and " + id + " < 501",
+                "(1=1) and " + id + " >= 501 and " + id + " < 751", "(1=1) and " + id + " >= 751"), getReloadSelects(rangeRequests));
+        assertEquals(Arrays.asList("reload", "reload-1", "reload-2", "reload-3"), getQueues(rangeRequests));
+        long batchCount = 0;
+        for (ExtractRequest rangeRequest : rangeRequests) {
+            batchCount += rangeRequest.getEndBatchId() - rangeRequest.getStartBatchId() + 1;
+        }
+        assertEquals(12, batchCount);
+        assertEquals(batchCount, statusTotals[0]);
+        assertEquals(1000, statusTotals[1]);
+        return rangeRequests;
+    }
+
+    protected List<Long> getRows(List<ExtractRequest> requests) {
+        List<Long> rows = new ArrayList<Long>();
+        for (ExtractRequest request : requests) {
+            rows.add(request.getRows());
+        }
+        return rows;
+    }
+
+    protected List<String> getReloadSelects(List<ExtractRequest> requests) {
+        List<String> selects = new ArrayList<String>();
+        for (ExtractRequest request : requests) {
+            selects.add(request.getReloadSelect());
+        }
+        return selects;
+    }
+
+    protected List<String> getQueues(List<ExtractRequest> requests) {
+        List<String> queues = new ArrayList<String>();
+        for (ExtractRequest request : requests) {
+            queues.add(request.getQueue());
+        }
+        return queues;
+    }
+
 }
@@ -0,0 +1,96 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jumpmind.symmetric.service.impl.DataExtractorService.ExtractWindow;
+import org.junit.Test;
+
+public class ExtractWindowTest {
+
+    @Test
+    public void testBatchesWithinWindowStart() throws Exception {
+        ExtractWindow window = new ExtractWindow(2);
+        assertTrue(window.await(0));
+        assertTrue(window.await(1));
+        window.sent();
+        assertTrue(window.await(2));
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseReleasesWaitingBatches() throws Exception {
+        final ExtractWindow window = new ExtractWindow(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> future = executor.submit(() -> window.await(5));
+            Thread.sleep(50);
+            assertFalse(future.isDone());
+            window.close();
+            assertFalse(future.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void testExtractAheadIsBoundedAndNeverDeadlocks() throws Exception {
+        final int windowSize = 3;
+        final int batchCount = 200;
+        final ExtractWindow window = new ExtractWindow(windowSize);
+        final AtomicInteger extractedNotSent = new AtomicInteger();
+        final AtomicInteger maxExtractedNotSent = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(windowSize);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < batchCount; i++) {
+                final int position = i;
+                futures.add(executor.submit(() -> {
+                    window.await(position);
+                    int count = extractedNotSent.incrementAndGet();
+                    synchronized (maxExtractedNotSent) {
+                        maxExtractedNotSent.set(Math.max(count, maxExtractedNotSent.get()));
+                    }
+                    return position;
+                }));
+            }
+            for (int i = 0; i < batchCount; i++) {
+                assertEquals(i, futures.get(i).get(10, TimeUnit.SECONDS).intValue());
+                extractedNotSent.decrementAndGet();
+                window.sent();
+            }
+            assertTrue(maxExtractedNotSent.get() <= windowSize);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.IConfigurationService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.ISequenceService;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class OutgoingBatchServiceTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFindOutgoingBatchesLimitsInList() {
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getSqlTemplateDirty()).thenReturn(sqlTemplate);
+        ISymmetricDialect symmetricDialect = mock(AbstractSymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getSqlReplacementTokens()).thenReturn(new HashMap<String, String>());
+        IParameterService parameterService = mock(ParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+        OutgoingBatchService outgoingBatchService = new OutgoingBatchService(parameterService, symmetricDialect,
+                mock(INodeService.class), mock(IConfigurationService.class), mock(ISequenceService.class),
+                mock(IClusterService.class), mock(IExtensionService.class));
+
+        final List<Integer> idsPerQuery = new ArrayList<Integer>();
+        when(sqlTemplate.query(anyString(), any(ISqlRowMapper.class), any(Object[].class), any(int[].class)))
+                .thenAnswer(new Answer<List<OutgoingBatch>>() {
+                    public List<OutgoingBatch> answer(InvocationOnMock invocation) {
+                        Object[] args = invocation.getArgument(2);
+                        idsPerQuery.add(args.length - 1);
+                        assertEquals("00001", args[0]);
+                        List<OutgoingBatch> batches = new ArrayList<OutgoingBatch>();
+                        for (int i = 1; i < args.length; i++) {
+                            OutgoingBatch batch = new OutgoingBatch();
+                            batch.setBatchId((Long) args[i]);
+                            batches.add(batch);
+                        }
+                        return batches;
+                    }
+                });
+
+        List<Long> batchIds = new ArrayList<Long>();
+        for (long i = 1; i <= 2500; i++) {
+            batchIds.add(i);
+        }
+        List<OutgoingBatch> batches = outgoingBatchService.findOutgoingBatches("00001", batchIds);
+        assertEquals(2500, batches.size());
+        assertEquals(2500, batches.get(2499).getBatchId());
+        assertEquals(3, idsPerQuery.size());
+        for (int ids : idsPerQuery) {
+            assertTrue(ids <= 1000);
+        }
+        assertTrue(outgoingBatchService.findOutgoingBatches("00001", new ArrayList<Long>()).isEmpty());
+    }
+
+}
@@ -0,0 +1,191 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.symmetric.service.impl.ParallelBatchLoadScheduler.ScheduledBatch;
+import org.junit.Test;
+
+public class ParallelBatchLoadSchedulerTest {
+
+    @Test
+    public void testIndependentBatchesHaveNoDependencies() throws Exception {
+        ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+        ScheduledBatch first = scheduler.schedule(tables("customer"));
+        first.setFuture(new CountDownLatchFuture());
+        ScheduledBatch second = scheduler.schedule(tables("item"));
+        assertEquals(0, second.getDependencies().size());
+        assertTrue(scheduler.awaitDependencies(second));
+    }
+
+    @Test
+    public void testOverlappingBatchesDependOnEarlierBatch() throws Exception {
+        ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+        ScheduledBatch parent = scheduler.schedule(tables("customer"));
+        parent.setFuture(new CountDownLatchFuture());
+        ScheduledBatch child = scheduler.schedule(tables("orders", "customer"));
+        child.setFuture(new CountDownLatchFuture());
+        ScheduledBatch other = scheduler.schedule(tables("item"));
+        other.setFuture(new CountDownLatchFuture());
+
+        assertEquals(Arrays.asList(parent), child.getDependencies());
+        assertEquals(0, other.getDependencies().size());
+    }
+
+    @Test
+    public void testBarrierDependsOnEverything() throws Exception {
+        ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+        ScheduledBatch first = scheduler.schedule(tables("customer"));
+        first.setFuture(new CountDownLatchFuture());
+        ScheduledBatch second = scheduler.schedule(tables("item"));
+        second.setFuture(new CountDownLatchFuture());
+        ScheduledBatch barrier = scheduler.schedule(null);
+        barrier.setFuture(new CountDownLatchFuture());
+        ScheduledBatch after = scheduler.schedule(tables("item_selling_price"));
+
+        assertEquals(Arrays.asList(first, second), barrier.getDependencies());
+        assertEquals(Arrays.asList(barrier), after.getDependencies());
+    }
+
+    @Test
+    public void testFinishedBatchesAreNotDependencies() throws Exception {
+        ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+        ScheduledBatch first = scheduler.schedule(tables("customer"));
+        CountDownLatchFuture future = new CountDownLatchFuture();
+        first.setFuture(future);
+        future.latch.countDown();
+        ScheduledBatch second = scheduler.schedule(tables("customer"));
+        assertEquals(0, second.getDependencies().size());
+    }
+
+    @Test
+    public void testFailureSkipsOnlyConflictingBatches() throws Exception {
+        ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+        ScheduledBatch failed = scheduler.schedule(tables("customer"));
+        failed.setFuture(new CountDownLatchFuture());
+        ScheduledBatch conflicting = scheduler.schedule(tables("customer", "orders"));
+        conflicting.setFuture(new CountDownLatchFuture());
+        ScheduledBatch independent = scheduler.schedule(tables("item"));
+        independent.setFuture(new CountDownLatchFuture());
+
+        scheduler.failed(failed);
+        ((CountDownLatchFuture) failed.future).latch.countDown();
+        assertFalse(scheduler.awaitDependencies(conflicting));
+        scheduler.failed(conflicting);
+        ((CountDownLatchFuture) conflicting.future).latch.countDown();
+
+        assertTrue(scheduler.awaitDependencies(independent));
+        ((CountDownLatchFuture) independent.future).latch.countDown();
+        assertFalse(scheduler.awaitDependencies(scheduler.schedule(tables("orders"))));
+        assertFalse(scheduler.awaitDependencies(scheduler.schedule(null)));
+    }
+
+    @Test
+    public void testFailedBarrierSkipsEverything() throws Exception {
+        ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+        scheduler.failed(null);
+        assertFalse(scheduler.awaitDependencies(scheduler.schedule(tables("item"))));
+    }
+
+    @Test(timeout = 10000)
+    public void testConflictingBatchWaitsForEarlierBatch() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final ParallelBatchLoadScheduler scheduler = new ParallelBatchLoadScheduler();
+            final CountDownLatch release = new CountDownLatch(1);
+            final StringBuffer order = new StringBuffer();
+            ScheduledBatch first = scheduler.schedule(tables("customer"));
+            first.setFuture(executor.submit(new Runnable() {
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                    }
+                    order.append("1");
+                }
+            }));
+            final ScheduledBatch second = scheduler.schedule(tables("customer"));
+            Future<?> secondFuture = executor.submit(new Runnable() {
+                public void run() {
+                    try {
+                        scheduler.awaitDependencies(second);
+                    } catch (InterruptedException e) {
+                    }
+                    order.append("2");
+                }
+            });
+            second.setFuture(secondFuture);
+
+            Thread.sleep(100);
+            assertEquals("", order.toString());
+            release.countDown();
+            secondFuture.get();
+            assertEquals("12", order.toString());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    protected Set<String> tables(String... tableNames) {
+        return new HashSet<String>(Arrays.asList(tableNames));
+    }
+
+    static class CountDownLatchFuture implements Future<Object> {
+
+        CountDownLatch latch = new CountDownLatch(1);
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        public Object get() throws InterruptedException {
+            latch.await();
+            return null;
+        }
+
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException {
+            latch.await(timeout, unit);
+            return null;
+        }
+    }
+
+}
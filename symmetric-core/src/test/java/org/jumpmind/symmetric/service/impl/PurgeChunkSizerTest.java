@@ -0,0 +1,67 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PurgeChunkSizerTest {
+
+    @Test
+    public void testFixedChunkWithoutTarget() {
+        PurgeChunkSizer sizer = new PurgeChunkSizer(5000, 0);
+        sizer.record(1);
+        sizer.record(100000);
+        assertEquals(5000, sizer.getChunkSize());
+    }
+
+    @Test
+    public void testGrowsWhileDeletesAreFast() {
+        PurgeChunkSizer sizer = new PurgeChunkSizer(100, 1000);
+        sizer.record(400);
+        assertEquals(200, sizer.getChunkSize());
+        sizer.record(700);
+        assertEquals(200, sizer.getChunkSize());
+        for (int i = 0; i < 10; i++) {
+            sizer.record(0);
+        }
+        assertEquals(100 * PurgeChunkSizer.MAX_GROWTH, sizer.getChunkSize());
+    }
+
+    @Test
+    public void testShrinksWhenDeletesAreSlow() {
+        PurgeChunkSizer sizer = new PurgeChunkSizer(8, 1000);
+        sizer.record(1500);
+        assertEquals(4, sizer.getChunkSize());
+        for (int i = 0; i < 10; i++) {
+            sizer.record(5000);
+        }
+        assertEquals(1, sizer.getChunkSize());
+    }
+
+    @Test
+    public void testRowsPerSecond() {
+        assertEquals(2500d, PurgeChunkSizer.getRowsPerSecond(5000, 2000), 0.001);
+        assertEquals(0d, PurgeChunkSizer.getRowsPerSecond(5000, 0), 0.001);
+    }
+
+}
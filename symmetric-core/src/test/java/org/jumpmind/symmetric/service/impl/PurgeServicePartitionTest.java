@@ -0,0 +1,148 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.db.TablePartition;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.IContextService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class PurgeServicePartitionTest {
+
+    static final String TABLE_NAME = "sym_data";
+
+    ISymmetricDialect symmetricDialect;
+
+    ISqlTemplate sqlTemplate;
+
+    PurgeService purgeService;
+
+    TablePartition p1 = new TablePartition("p1", Long.MIN_VALUE, 99);
+
+    TablePartition p2 = new TablePartition("p2", 100, 199);
+
+    TablePartition p3 = new TablePartition("p3", 200, Long.MAX_VALUE);
+
+    Set<String> notPurgeable = new HashSet<String>();
+
+    @Before
+    public void setUp() {
+        sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getSqlTemplateDirty()).thenReturn(sqlTemplate);
+
+        symmetricDialect = mock(AbstractSymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getSqlReplacementTokens()).thenReturn(new HashMap<String, String>());
+        when(symmetricDialect.supportsPartitionPurge()).thenReturn(true);
+        when(symmetricDialect.getTablePartitions(TABLE_NAME)).thenReturn(new ArrayList<TablePartition>(Arrays.asList(p1, p2, p3)));
+
+        IParameterService parameterService = mock(ParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+
+        purgeService = new PurgeService(parameterService, symmetricDialect, mock(IClusterService.class), 
+                mock(IStatisticManager.class), mock(IExtensionService.class), mock(IContextService.class));
+
+        // rows in a partition are counted by its lower bound, so p1 has 10, p2 has 20 and p3 has 30 rows
+        when(sqlTemplate.queryForLong(anyString(), (Object[]) any())).thenAnswer(new Answer<Long>() {
+            public Long answer(InvocationOnMock invocation) {
+                long minId = (Long) invocation.getArgument(1);
+                return minId == Long.MIN_VALUE ? 10L : minId == 100 ? 20L : 30L;
+            }
+        });
+    }
+
+    @Test
+    public void testDropsPartitionsThroughMaxId() {
+        assertEquals(30, purge(199));
+        verify(symmetricDialect).dropTablePartition(TABLE_NAME, p1);
+        verify(symmetricDialect).dropTablePartition(TABLE_NAME, p2);
+        verify(symmetricDialect, never()).dropTablePartition(TABLE_NAME, p3);
+    }
+
+    @Test
+    public void testPartitionPastMaxIdIsKept() {
+        assertEquals(10, purge(150));
+        verify(symmetricDialect).dropTablePartition(TABLE_NAME, p1);
+        verify(symmetricDialect, never()).dropTablePartition(TABLE_NAME, p2);
+    }
+
+    @Test
+    public void testPartitionWithRowsToKeepIsSkipped() {
+        notPurgeable.add("p1");
+        assertEquals(20, purge(199));
+        verify(symmetricDialect, never()).dropTablePartition(TABLE_NAME, p1);
+        verify(symmetricDialect).dropTablePartition(TABLE_NAME, p2);
+    }
+
+    @Test
+    public void testDropFailureLeavesRowsForDelete() {
+        doThrow(new RuntimeException("locked")).when(symmetricDialect).dropTablePartition(TABLE_NAME, p1);
+        assertEquals(0, purge(199));
+        verify(symmetricDialect, never()).dropTablePartition(TABLE_NAME, p2);
+    }
+
+    @Test
+    public void testNoPartitions() {
+        when(symmetricDialect.getTablePartitions(TABLE_NAME)).thenReturn(new ArrayList<TablePartition>());
+        assertEquals(0, purge(199));
+        verify(symmetricDialect, never()).dropTablePartition(eq(TABLE_NAME), any(TablePartition.class));
+    }
+
+    protected long purge(long maxId) {
+        return purgeService.purgePartitions(TABLE_NAME, maxId, "countDataByRangeSql", new PurgeService.PartitionCheck() {
+            public boolean isPurgeable(TablePartition partition) {
+                return !notPurgeable.contains(partition.getName());
+            }
+        });
+    }
+
+}
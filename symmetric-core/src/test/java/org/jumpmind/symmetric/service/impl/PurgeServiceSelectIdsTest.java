@@ -0,0 +1,82 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlReadCursor;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTemplate;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.AbstractSymmetricDialect;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.service.IClusterService;
+import org.jumpmind.symmetric.service.IContextService;
+import org.jumpmind.symmetric.service.IExtensionService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class PurgeServiceSelectIdsTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIdsAreDeletedInChunksAsTheyAreRead() {
+        ISqlTemplate sqlTemplate = mock(ISqlTemplate.class);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        when(platform.getSqlTemplate()).thenReturn(sqlTemplate);
+        when(platform.getSqlTemplateDirty()).thenReturn(sqlTemplate);
+        ISymmetricDialect symmetricDialect = mock(AbstractSymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        when(symmetricDialect.getSqlReplacementTokens()).thenReturn(new HashMap<String, String>());
+        IParameterService parameterService = mock(ParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+        when(parameterService.getInt(ParameterConstants.PURGE_MAX_NUMBER_OF_BATCH_IDS)).thenReturn(2);
+        PurgeService purgeService = new PurgeService(parameterService, symmetricDialect, mock(IClusterService.class),
+                mock(IStatisticManager.class), mock(IExtensionService.class), mock(IContextService.class));
+
+        ISqlReadCursor<Long> cursor = mock(ISqlReadCursor.class);
+        when(cursor.next()).thenReturn(1L, 2L, 3L, 4L, 5L, null);
+        when(sqlTemplate.queryForCursor(eq("select id"), any(ISqlRowMapper.class))).thenReturn((ISqlReadCursor) cursor);
+        when(sqlTemplate.update(eq("delete where id in (?,?)"), (Object[]) any())).thenReturn(2);
+        when(sqlTemplate.update(eq("delete where id in (?)"), (Object[]) any())).thenReturn(1);
+
+        assertEquals(5, purgeService.selectIdsAndDelete("select id", "delete where id in (?)"));
+
+        InOrder inOrder = inOrder(cursor, sqlTemplate);
+        inOrder.verify(sqlTemplate).update("delete where id in (?,?)", 1L, 2L);
+        inOrder.verify(sqlTemplate).update("delete where id in (?,?)", 3L, 4L);
+        inOrder.verify(cursor).close();
+        inOrder.verify(sqlTemplate).update("delete where id in (?)", 5L);
+    }
+
+}
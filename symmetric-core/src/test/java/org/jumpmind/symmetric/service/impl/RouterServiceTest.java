@@ -1,22 +1,34 @@
 package org.jumpmind.symmetric.service.impl;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.jumpmind.db.platform.DatabaseInfo;
 import org.jumpmind.db.platform.IDatabasePlatform;
 import org.jumpmind.symmetric.ISymmetricEngine;
 import org.jumpmind.symmetric.db.ISymmetricDialect;
 import org.jumpmind.symmetric.model.Channel;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.NodeChannel;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.model.ProcessInfo;
+import org.jumpmind.symmetric.model.ProcessInfoKey;
 import org.jumpmind.symmetric.model.Router;
 import org.jumpmind.symmetric.model.Trigger;
 import org.jumpmind.symmetric.model.TriggerRouter;
+import org.jumpmind.symmetric.service.IClusterService;
 import org.jumpmind.symmetric.service.IExtensionService;
 import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -30,9 +42,11 @@ public class RouterServiceTest {
 
     RouterService routerService;
     
+    ISymmetricEngine engine;
+    
     @Before
     public void setup() {
-        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        engine = mock(ISymmetricEngine.class);
         IParameterService parameterService = mock(IParameterService.class);
         ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
         IDatabasePlatform databasePlatform = mock(IDatabasePlatform.class);        
@@ -43,6 +57,11 @@ public class RouterServiceTest {
         when(engine.getParameterService()).thenReturn(parameterService);
         when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
         when(engine.getExtensionService()).thenReturn(extensionService);
+        when(engine.getClusterService()).thenReturn(mock(IClusterService.class));
+        IStatisticManager statisticManager = mock(IStatisticManager.class);
+        when(statisticManager.newProcessInfo(any(ProcessInfoKey.class))).thenReturn(new ProcessInfo());
+        when(engine.getStatisticManager()).thenReturn(statisticManager);
+        when(parameterService.getEngineName()).thenReturn("test");
         routerService = new RouterService(engine);        
     }
     
@@ -106,6 +125,45 @@ public class RouterServiceTest {
         triggerRouters.add(new TriggerRouter(tableTrigger3, new Router("test", TARGET_NODE_GROUP, SOURCE_NODE_GROUP, "default")));
         assertTrue(routerService.producesCommonBatches(CHANNEL_2_TEST, SOURCE_NODE_GROUP, triggerRouters));
     }
-    
+
+    @Test
+    public void testRouteChannelsInParallelDefersBigLobReroutes() {
+        final List<String> routed = Collections.synchronizedList(new ArrayList<String>());
+        RouterService parallelRouterService = new RouterService(engine) {
+            @Override
+            protected long routeDataForChannel(ProcessInfo processInfo, NodeChannel nodeChannel, Node sourceNode,
+                    boolean isOverrideContainsBigLob, Map<String, OutgoingBatch> overrideBatchesByNodes,
+                    Map<Integer, Map<String, OutgoingBatch>> overrideBatchesByGroups) {
+                if (nodeChannel.getChannelId().equals("lob") && !isOverrideContainsBigLob) {
+                    deferredReroutes.add(new BigLobReroute(processInfo, nodeChannel, new ArrayList<Long>(), null, null));
+                    return 1;
+                }
+                routed.add(nodeChannel.getChannelId() + (isOverrideContainsBigLob ? "-reroute" : ""));
+                return 10;
+            }
+
+            @Override
+            protected long rerouteWithBigLobs(ProcessInfo processInfo, NodeChannel nodeChannel, Node sourceNode,
+                    List<Long> dataIds, Map<String, OutgoingBatch> batchesByNodes,
+                    Map<Integer, Map<String, OutgoingBatch>> batchesByGroups) {
+                assertNull(deferredReroutes);
+                return routeDataForChannel(processInfo, nodeChannel, sourceNode, true, batchesByNodes, batchesByGroups);
+            }
+        };
+
+        List<NodeChannel> channels = new ArrayList<NodeChannel>();
+        for (String channelId : new String[] { "a", "b", "lob", "c" }) {
+            channels.add(new NodeChannel(channelId));
+        }
+        try {
+            long dataCount = parallelRouterService.routeChannelsInParallel(new ProcessInfo(), channels, new Node("00000", "source"), 3);
+            assertEquals(41, dataCount);
+            assertEquals(4, routed.size());
+            assertEquals("lob-reroute", routed.get(3));
+            assertNull(parallelRouterService.deferredReroutes);
+        } finally {
+            parallelRouterService.stop();
+        }
+    }
 
 }
@@ -0,0 +1,193 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.db.platform.DatabaseInfo;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.symmetric.ISymmetricEngine;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.db.ISymmetricDialect;
+import org.jumpmind.symmetric.io.IoConstants;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.model.AbstractBatch.Status;
+import org.jumpmind.symmetric.model.Node;
+import org.jumpmind.symmetric.model.OutgoingBatch;
+import org.jumpmind.symmetric.service.INodeService;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.service.impl.DataExtractorService.ExtractMode;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+import org.jumpmind.symmetric.transport.GzipMemberInputStream;
+import org.jumpmind.symmetric.transport.GzipMemberOutputStream;
+import org.jumpmind.symmetric.transport.StreamBufferedWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransferFromStagingTest {
+
+    DataExtractorService extractor;
+
+    IParameterService parameterService;
+
+    File file;
+
+    @Before
+    public void setUp() throws Exception {
+        parameterService = mock(IParameterService.class);
+        when(parameterService.getTablePrefix()).thenReturn("sym");
+        when(parameterService.getLong(ParameterConstants.OUTGOING_BATCH_UPDATE_STATUS_MILLIS)).thenReturn(600000L);
+        IDatabasePlatform platform = mock(IDatabasePlatform.class);
+        when(platform.getDatabaseInfo()).thenReturn(new DatabaseInfo());
+        ISymmetricDialect symmetricDialect = mock(ISymmetricDialect.class);
+        when(symmetricDialect.getPlatform()).thenReturn(platform);
+        Node node = new Node("00001", "client");
+        node.setSymmetricVersion("3.12.0");
+        INodeService nodeService = mock(INodeService.class);
+        when(nodeService.findNode(anyString(), eq(true))).thenReturn(node);
+        ISymmetricEngine engine = mock(ISymmetricEngine.class);
+        when(engine.getParameterService()).thenReturn(parameterService);
+        when(engine.getSymmetricDialect()).thenReturn(symmetricDialect);
+        when(engine.getNodeService()).thenReturn(nodeService);
+        when(engine.getStatisticManager()).thenReturn(mock(IStatisticManager.class));
+        extractor = new DataExtractorService(engine);
+
+        StringBuilder batch = new StringBuilder("nodeid,00000\nbinary,BASE64\nchannel,default\nbatch,42\n");
+        batch.append("table,a_table\nkeys,id\ncolumns,id,name\n");
+        for (int i = 0; i < 40000; i++) {
+            batch.append("insert,\"").append(i).append("\",\"café 中文 ").append(i).append("\"\n");
+        }
+        batch.append("commit,42\n");
+        file = File.createTempFile("batch", ".done");
+        FileUtils.write(file, batch, IoConstants.ENCODING);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(file);
+        FileUtils.deleteQuietly(new File(file.getPath() + ".gz"));
+    }
+
+    @Test
+    public void testBytesMatchCharacters() throws Exception {
+        assertTransfer(null);
+    }
+
+    @Test
+    public void testThrottledBytesMatchCharacters() throws Exception {
+        assertTransfer(new BigDecimal(4096));
+    }
+
+    @Test
+    public void testCompressedCopyMatchesCharacters() throws Exception {
+        when(parameterService.getInt(ParameterConstants.TRANSPORT_HTTP_COMPRESSION_LEVEL)).thenReturn(Deflater.BEST_SPEED);
+        when(parameterService.getInt(ParameterConstants.TRANSPORT_HTTP_COMPRESSION_STRATEGY)).thenReturn(Deflater.DEFAULT_STRATEGY);
+        IStagedResource stagedResource = newStagedResource();
+        File compressedFile = new File(file.getPath() + ".gz");
+        when(stagedResource.getCompressedFile()).thenReturn(compressedFile);
+        extractor.compressStagedResource(stagedResource);
+        assertTrue(compressedFile.exists());
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        StreamBufferedWriter streamWriter = new StreamBufferedWriter(new GzipMemberOutputStream(gzip, Deflater.BEST_SPEED,
+                Deflater.DEFAULT_STRATEGY, false), IoConstants.ENCODING);
+        streamWriter.write("before\n");
+        extractor.transferFromStaging(ExtractMode.FOR_SYM_CLIENT, null, newBatch(), false, stagedResource, streamWriter,
+                null, null);
+        streamWriter.write("after\n");
+        streamWriter.close();
+        assertTrue(new String(gzip.toByteArray(), "ISO-8859-1").contains(FileUtils.readFileToString(compressedFile, "ISO-8859-1")));
+
+        /* Like a network stream, nothing is available before the next member is read */
+        InputStream in = new GzipMemberInputStream(new ByteArrayInputStream(gzip.toByteArray()) {
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        });
+        assertEquals(transferChars(null), IOUtils.toString(in, IoConstants.ENCODING));
+    }
+
+    protected String transferChars(BigDecimal maxKBytesPerSec) throws Exception {
+        ByteArrayOutputStream chars = new ByteArrayOutputStream();
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(chars, IoConstants.ENCODING));
+        writer.write("before\n");
+        extractor.transferFromStaging(ExtractMode.FOR_SYM_CLIENT, null, newBatch(), false, newStagedResource(), writer,
+                null, maxKBytesPerSec);
+        writer.write("after\n");
+        writer.flush();
+        return new String(chars.toByteArray(), IoConstants.ENCODING);
+    }
+
+    protected void assertTransfer(BigDecimal maxKBytesPerSec) throws Exception {
+        String expected = transferChars(maxKBytesPerSec);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        StreamBufferedWriter streamWriter = new StreamBufferedWriter(bytes, IoConstants.ENCODING);
+        IStagedResource stagedResource = newStagedResource();
+        assertTrue(extractor.isByteTransferSupported(stagedResource, streamWriter));
+        streamWriter.write("before\n");
+        extractor.transferFromStaging(ExtractMode.FOR_SYM_CLIENT, null, newBatch(), false, stagedResource, streamWriter,
+                null, maxKBytesPerSec);
+        streamWriter.write("after\n");
+        streamWriter.flush();
+
+        assertTrue(expected.contains("batch,42\n" + extractor.getBatchStatsColumns()));
+        assertEquals(expected, new String(bytes.toByteArray(), IoConstants.ENCODING));
+    }
+
+    protected OutgoingBatch newBatch() {
+        OutgoingBatch batch = new OutgoingBatch("00001", "default", Status.NE);
+        batch.setBatchId(42);
+        batch.setSentCount(2);
+        return batch;
+    }
+
+    protected IStagedResource newStagedResource() throws Exception {
+        IStagedResource stagedResource = mock(IStagedResource.class);
+        when(stagedResource.isFileResource()).thenReturn(true);
+        when(stagedResource.getFile()).thenReturn(file);
+        when(stagedResource.getReader()).thenReturn(
+                new BufferedReader(new InputStreamReader(new FileInputStream(file), IoConstants.ENCODING)));
+        return stagedResource;
+    }
+
+}
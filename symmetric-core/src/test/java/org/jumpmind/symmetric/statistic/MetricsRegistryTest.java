@@ -0,0 +1,85 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.statistic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testBucketBoundsContainValue() {
+        long[] values = { 0, 1, 31, 32, 63, 64, 65, 1000, 123456789, Histogram.MAX_VALUE };
+        for (long value : values) {
+            int index = Histogram.indexOf(value);
+            assertTrue(index < Histogram.BUCKET_COUNT);
+            assertTrue(Histogram.lowestEquivalentValue(index) <= value);
+            assertTrue(Histogram.highestEquivalentValue(index) >= value);
+        }
+    }
+
+    @Test
+    public void testQuantilesWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000, histogram.getValueAtQuantile(0.5), 5000 * 0.04);
+        assertEquals(9900, histogram.getValueAtQuantile(0.99), 9900 * 0.04);
+        assertEquals(10000, histogram.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void testLabeledTimersAreReused() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        Timer timer = metrics.getLoadRowTimers().get("item", "INSERT");
+        assertSame(timer, metrics.getLoadRowTimers().get("item", "INSERT"));
+        assertTrue(timer != metrics.getLoadRowTimers().get("item", "UPDATE"));
+    }
+
+    @Test
+    public void testDisabledDoesNotRecord() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.setEnabled(false);
+        metrics.getRouteTimers().get("default").recordMillis(10);
+        assertEquals(0, metrics.getRouteTimers().get("default").getCount());
+    }
+
+    @Test
+    public void testPrometheusText() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.getRouteTimers().get("default").recordMillis(250);
+        metrics.getDataUnroutedGauges().get("a\"b").set(7);
+        String text = metrics.toPrometheusText();
+        assertTrue(text.contains("# TYPE symmetric_route_seconds summary\n"));
+        assertTrue(text.contains("symmetric_route_seconds_count{channel=\"default\"} 1\n"));
+        assertTrue(text.contains("symmetric_route_seconds_sum{channel=\"default\"} 0.25\n"));
+        assertTrue(text.contains("symmetric_route_seconds{channel=\"default\",quantile=\"0.5\"} 0.25\n"));
+        assertTrue(text.contains("# TYPE symmetric_route_seconds_max gauge\n"));
+        assertTrue(text.contains("symmetric_data_unrouted{channel=\"a\\\"b\"} 7\n"));
+    }
+
+}
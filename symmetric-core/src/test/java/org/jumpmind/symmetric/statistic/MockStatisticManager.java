@@ -34,6 +34,8 @@ import org.jumpmind.symmetric.model.ProcessInfoKey;
 
 public class MockStatisticManager implements IStatisticManager {
 
+    private MetricsRegistry metrics = new MetricsRegistry();
+
     public List<ProcessInfo> getProcessInfos() {
         return null;
     }
@@ -105,6 +107,9 @@ public class MockStatisticManager implements IStatisticManager {
     public synchronized void incrementDataRouted(String channelId, long count) {
     }
 
+    public void incrementRouterMillis(String channelId, long millis) {
+    }
+
     public synchronized void incrementDataSentErrors(String channelId, long count) {
     }
 
@@ -125,6 +130,10 @@ public class MockStatisticManager implements IStatisticManager {
         return null;
     }
 
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
     public void incrementNodesLoaded(long count) {
 
     }
@@ -161,9 +170,25 @@ public class MockStatisticManager implements IStatisticManager {
 
     }
 
+    public void incrementStagingMemoryHits(long count) {
+
+    }
+
+    public void incrementStagingMemoryMisses(long count) {
+
+    }
+
+    public void incrementStagingMemorySpills(long count) {
+
+    }
+
+    public void incrementPurgeTime(long millis) {
+
+    }
+
     public void addRouterStats(long startDataId, long endDataId, long dataReadCount,
             long peekAheadFillCount, List<DataGap> dataGaps, Set<String> transactions,
-            Collection<OutgoingBatch> batches) {
+            long routerCacheHits, long routerCacheMisses, Collection<OutgoingBatch> batches) {
     }
 
     public RouterStats getRouterStatsByBatch(Long batchId) {
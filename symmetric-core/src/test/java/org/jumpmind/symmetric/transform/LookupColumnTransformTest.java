@@ -0,0 +1,286 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.sql.ISqlRowMapper;
+import org.jumpmind.db.sql.ISqlTransaction;
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.IDataWriter;
+import org.jumpmind.symmetric.io.data.transform.LookupColumnTransform;
+import org.jumpmind.symmetric.io.data.transform.TransformColumn;
+import org.jumpmind.symmetric.io.data.transform.TransformPoint;
+import org.jumpmind.symmetric.io.data.transform.TransformTable;
+import org.jumpmind.symmetric.io.data.transform.TransformedData;
+import org.jumpmind.symmetric.io.data.writer.DataWriterStatisticConstants;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.util.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class LookupColumnTransformTest {
+
+    IDatabasePlatform platform;
+    IParameterService parameterService;
+    ISqlTransaction transaction;
+    DataContext context;
+    Statistics statistics;
+    IDataWriter writer;
+
+    @Before
+    public void setUp() throws Exception {
+        platform = mock(IDatabasePlatform.class);
+        transaction = mock(ISqlTransaction.class);
+        parameterService = mock(IParameterService.class);
+        when(parameterService.is(ParameterConstants.TRANSFORM_LOOKUP_CACHE_ENABLED)).thenReturn(true);
+        when(parameterService.getInt(eq(ParameterConstants.TRANSFORM_LOOKUP_CACHE_MAX_ENTRIES), anyInt())).thenReturn(100);
+        when(parameterService.getLong(eq(ParameterConstants.TRANSFORM_LOOKUP_CACHE_TTL_MS), anyLong())).thenReturn(0l);
+        when(parameterService.getInt(eq(ParameterConstants.TRANSFORM_LOOKUP_CACHE_PRELOAD_MAX_ROWS), anyInt())).thenReturn(10);
+
+        Batch batch = new Batch();
+        statistics = new Statistics();
+        Map<Batch, Statistics> statisticsByBatch = new HashMap<Batch, Statistics>();
+        statisticsByBatch.put(batch, statistics);
+        writer = mock(IDataWriter.class);
+        when(writer.getStatistics()).thenReturn(statisticsByBatch);
+
+        context = newContext(batch, transaction);
+    }
+
+    protected DataContext newContext(Batch batch, ISqlTransaction transaction) {
+        DataContext context = spy(new DataContext(batch));
+        doReturn(transaction).when(context).findTransaction();
+        doReturn(writer).when(context).getWriter();
+        return context;
+    }
+
+    @Test
+    public void testLookupIsCachedByBoundValues() throws Exception {
+        String sql = "select name from lookup_table where id = :ID and kind = :KIND";
+        doReturn(Arrays.asList("one")).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        assertEquals("one", transform(transform, sql, "1", "a"));
+        assertEquals("one", transform(transform, sql, "1", "a"));
+        verify(transaction, times(1)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+
+        assertEquals("one", transform(transform, sql, "1", "b"));
+        verify(transaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        assertEquals(1, statistics.get(DataWriterStatisticConstants.TRANSFORMCACHEHITS));
+        assertEquals(2, statistics.get(DataWriterStatisticConstants.TRANSFORMCACHEMISSES));
+    }
+
+    @Test
+    public void testCacheIsClearedWhenLookupTableIsModified() throws Exception {
+        String sql = "select name from lookup_table where id = :ID and kind = :KIND";
+        doReturn(Arrays.asList("one")).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        transform(transform, sql, "1", "a");
+        transform.tableModified(context, new Table("other_table"));
+        transform(transform, sql, "1", "a");
+        verify(transaction, times(1)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+
+        transform.tableModified(context, new Table("LOOKUP_TABLE"));
+        transform(transform, sql, "1", "a");
+        verify(transaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+    }
+
+    @Test
+    public void testCacheIsClearedWhenAnyTableInFromListIsModified() throws Exception {
+        String sql = "select l.name from lookup_table l, kind_table as k where l.id = :ID and k.kind = :KIND";
+        doReturn(Arrays.asList("one")).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        transform(transform, sql, "1", "a");
+        transform(transform, sql, "1", "a");
+        verify(transaction, times(1)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+
+        transform.tableModified(context, new Table("KIND_TABLE"));
+        transform(transform, sql, "1", "a");
+        verify(transaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+    }
+
+    @Test
+    public void testLookupFromDerivedTableIsNotCached() throws Exception {
+        String sql = "select t.name from (select id, name from lookup_table) t, kind_table k where t.id = :ID and k.kind = :KIND";
+        doReturn(Arrays.asList("one")).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        transform(transform, sql, "1", "a");
+        transform(transform, sql, "1", "a");
+        verify(transaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+    }
+
+    @Test
+    public void testBatchDoesNotCacheValuesItHasNotCommitted() throws Exception {
+        String sql = "select name from lookup_table where id = :ID and kind = :KIND";
+        doReturn(Arrays.asList("committed")).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        ISqlTransaction otherTransaction = mock(ISqlTransaction.class);
+        doReturn(Arrays.asList("uncommitted")).when(otherTransaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        DataContext otherContext = newContext(new Batch(), otherTransaction);
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        transform.tableModified(otherContext, new Table("lookup_table"));
+        assertEquals("uncommitted", transform(transform, otherContext, sql, "1", "a"));
+        assertEquals("uncommitted", transform(transform, otherContext, sql, "1", "a"));
+        verify(otherTransaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+
+        assertEquals("committed", transform(transform, sql, "1", "a"));
+        assertEquals("committed", transform(transform, sql, "1", "a"));
+        verify(transaction, times(1)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+    }
+
+    @Test
+    public void testCacheIsClearedWhenBatchIsRolledBack() throws Exception {
+        String sql = "select name from lookup_table where id = :ID and kind = :KIND";
+        doReturn(Arrays.asList("committed")).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        ISqlTransaction otherTransaction = mock(ISqlTransaction.class);
+        doReturn(Arrays.asList("committed"), Arrays.asList("uncommitted")).when(otherTransaction).query(eq(sql),
+                any(ISqlRowMapper.class), anyMap());
+        DataContext otherContext = newContext(new Batch(), otherTransaction);
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        assertEquals("committed", transform(transform, otherContext, sql, "1", "a"));
+        transform.tableModified(otherContext, new Table("lookup_table"));
+        assertEquals("uncommitted", transform(transform, otherContext, sql, "1", "a"));
+        transform.batchEnded(otherContext, true);
+
+        assertEquals("committed", transform(transform, sql, "1", "a"));
+        verify(transaction, times(1)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+
+        DataContext nextContext = newContext(new Batch(), transaction);
+        assertEquals("committed", transform(transform, nextContext, sql, "1", "a"));
+        verify(transaction, times(1)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+    }
+
+    @Test
+    public void testCacheIsClearedWhenModifyingBatchCommits() throws Exception {
+        String sql = "select name from lookup_table where id = :ID and kind = :KIND";
+        doReturn(Arrays.asList("old"), Arrays.asList("new")).when(transaction).query(eq(sql), any(ISqlRowMapper.class),
+                anyMap());
+        DataContext otherContext = newContext(new Batch(), mock(ISqlTransaction.class));
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        assertEquals("old", transform(transform, sql, "1", "a"));
+        transform.tableModified(otherContext, new Table("lookup_table"));
+        transform.batchEnded(otherContext, false);
+        assertEquals("new", transform(transform, sql, "1", "a"));
+        assertEquals("new", transform(transform, sql, "1", "a"));
+        verify(transaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+    }
+
+    @Test
+    public void testValueReadDuringCommitIsNotCached() throws Exception {
+        String sql = "select name from lookup_table where id = :ID and kind = :KIND";
+        final DataContext otherContext = newContext(new Batch(), mock(ISqlTransaction.class));
+        final LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+        transform.tableModified(otherContext, new Table("lookup_table"));
+        doAnswer(new Answer<Object>() {
+            int count;
+            public Object answer(InvocationOnMock invocation) {
+                if (count++ == 0) {
+                    transform.batchEnded(otherContext, false);
+                    return Arrays.asList("old");
+                }
+                return Arrays.asList("new");
+            }
+        }).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+
+        assertEquals("old", transform(transform, sql, "1", "a"));
+        assertEquals("new", transform(transform, sql, "1", "a"));
+        assertEquals("new", transform(transform, sql, "1", "a"));
+        verify(transaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+    }
+
+    @Test
+    public void testSmallLookupTableIsPreloaded() throws Exception {
+        String sql = "select name from lookup_table where id = :ID";
+        String selectSql = "select id as lookup_key, name as lookup_value from lookup_table";
+        when(transaction.queryForInt("select count(*) from lookup_table")).thenReturn(2);
+        doReturn(Arrays.asList(new String[] { "1", "one" }, new String[] { "2", "two" })).when(transaction)
+                .query(eq(selectSql), any(ISqlRowMapper.class), any(Object[].class), isNull());
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        assertEquals("two", transform(transform, sql, "2", null));
+        assertEquals("one", transform(transform, sql, "1", null));
+        verify(transaction, never()).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        assertEquals(2, statistics.get(DataWriterStatisticConstants.TRANSFORMCACHEHITS));
+    }
+
+    @Test
+    public void testLookupIsNotCachedWhenDisabled() throws Exception {
+        when(parameterService.is(ParameterConstants.TRANSFORM_LOOKUP_CACHE_ENABLED)).thenReturn(false);
+        String sql = "select name from lookup_table where id = :ID";
+        doReturn(Arrays.asList("one")).when(transaction).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        LookupColumnTransform transform = new LookupColumnTransform(parameterService);
+
+        transform(transform, sql, "1", null);
+        transform(transform, sql, "1", null);
+        verify(transaction, times(2)).query(eq(sql), any(ISqlRowMapper.class), anyMap());
+        verify(transaction, never()).queryForInt(anyString());
+    }
+
+    protected String transform(LookupColumnTransform transform, String sql, String id, String kind) throws Exception {
+        return transform(transform, context, sql, id, kind);
+    }
+
+    protected String transform(LookupColumnTransform transform, DataContext context, String sql, String id, String kind)
+            throws Exception {
+        TransformColumn column = new TransformColumn("id", "name", false, LookupColumnTransform.NAME, sql);
+        column.setTransformId("lookup");
+        TransformTable table = new TransformTable("source_table", "target_table", TransformPoint.LOAD, column);
+        Map<String, String> sourceValues = new HashMap<String, String>();
+        sourceValues.put("ID", id);
+        sourceValues.put("KIND", kind);
+        TransformedData data = new TransformedData(table, DataEventType.INSERT, new HashMap<String, String>(),
+                null, sourceValues);
+        return transform.transform(platform, context, column, data, sourceValues, id, null).getNewValue();
+    }
+
+}
@@ -20,11 +20,20 @@
  */
 package org.jumpmind.symmetric.transport;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.service.impl.MockParameterService;
 import org.jumpmind.symmetric.statistic.MockStatisticManager;
 import org.jumpmind.symmetric.transport.ConcurrentConnectionManager.Reservation;
 import org.jumpmind.symmetric.transport.IConcurrentConnectionManager.ReservationType;
@@ -52,4 +61,73 @@ public class ConcurrentConnectionManagerUnitTest {
         mgr.removeTimedOutReservations(reservations);
         assertEquals(1, reservations.size());
     }
+
+    @Test(timeout = 30000)
+    public void testReservationAdmissionIsExactUnderContention() throws Exception {
+        final ConcurrentConnectionManager mgr = newManager(5, 60000);
+        int threadCount = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < threadCount; i++) {
+                final String nodeId = String.valueOf(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return mgr.reserveConnection(nodeId, "pull", ReservationType.HARD);
+                }));
+            }
+            start.countDown();
+            int accepted = 0;
+            for (Future<Boolean> future : futures) {
+                if (future.get()) {
+                    accepted++;
+                }
+            }
+            assertEquals(5, accepted);
+            assertEquals(5, mgr.getReservationCount("pull"));
+            assertEquals(5, mgr.getActiveReservationsByNodeByPool().get("pull").size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSoftReservationIsUpgradedAndReleased() {
+        ConcurrentConnectionManager mgr = newManager(1, 60000);
+        assertTrue(mgr.reserveConnection("1", "pull", ReservationType.SOFT));
+        assertTrue(mgr.reserveConnection("1", "pull", ReservationType.HARD));
+        assertFalse(mgr.reserveConnection("1", "pull", ReservationType.HARD));
+        assertFalse(mgr.reserveConnection("2", "pull", ReservationType.SOFT));
+        assertEquals(1, mgr.getReservationCount("pull"));
+        assertTrue(mgr.releaseConnection("1", "pull"));
+        assertFalse(mgr.releaseConnection("1", "pull"));
+        assertEquals(0, mgr.getReservationCount("pull"));
+        assertTrue(mgr.reserveConnection("2", "pull", ReservationType.HARD));
+    }
+
+    @Test
+    public void testTimedOutReservationFreesItsSlot() {
+        ConcurrentConnectionManager mgr = newManager(1, -1000);
+        assertTrue(mgr.reserveConnection("1", "push", ReservationType.SOFT));
+        assertTrue(mgr.reserveConnection("2", "push", ReservationType.HARD));
+        assertEquals(1, mgr.getReservationCount("push"));
+        assertFalse(mgr.getActiveReservationsByNodeByPool().get("push").containsKey("1"));
+    }
+
+    @Test
+    public void testWhiteListedNodeBypassesPoolSize() {
+        ConcurrentConnectionManager mgr = newManager(1, 60000);
+        mgr.addToWhitelist("2");
+        assertTrue(mgr.reserveConnection("1", "pull", ReservationType.HARD));
+        assertTrue(mgr.reserveConnection("2", "pull", ReservationType.HARD));
+        assertEquals(2, mgr.getReservationCount("pull"));
+    }
+
+    protected ConcurrentConnectionManager newManager(int maxPoolSize, long reservationTimeout) {
+        Properties properties = new Properties();
+        properties.setProperty(ParameterConstants.CONCURRENT_WORKERS, String.valueOf(maxPoolSize));
+        properties.setProperty(ParameterConstants.CONCURRENT_RESERVATION_TIMEOUT, String.valueOf(reservationTimeout));
+        return new ConcurrentConnectionManager(new MockParameterService(properties), new MockStatisticManager());
+    }
 }
\ No newline at end of file
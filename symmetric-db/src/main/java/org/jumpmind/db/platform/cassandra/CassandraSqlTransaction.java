@@ -125,6 +125,20 @@ public class CassandraSqlTransaction implements ISqlTransaction {
         return 0;
     }
 
+    @Override
+    public int[] flushWithUpdateCounts() {
+        return new int[0];
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+    }
+
+    @Override
+    public int getBatchSize() {
+        return 1;
+    }
+
     @Override
     public <T> List<T> getUnflushedMarkers(boolean clear) {
         // TODO Auto-generated method stub
@@ -0,0 +1,386 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.db.sql;
+
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A {@link Row} that holds its values in an array and looks up column names
+ * in a {@link RowColumns} dictionary that is shared by every row of the same
+ * result set. Reading values by name or by position does not allocate. The
+ * first operation that changes the set of columns or needs a view of the
+ * entries copies the values into the underlying map, after which the row
+ * behaves exactly like a {@link Row}.
+ */
+public class ArrayRow extends Row {
+
+    private static final long serialVersionUID = 1L;
+
+    protected RowColumns columns;
+
+    protected Object[] values;
+
+    protected boolean inflated;
+
+    public ArrayRow(RowColumns columns, Object[] values) {
+        super(0);
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * @return the row itself if it is already an {@link ArrayRow}, otherwise
+     *         a copy of the row that supports positional access
+     */
+    public static ArrayRow valueOf(Row row) {
+        if (row instanceof ArrayRow) {
+            return (ArrayRow) row;
+        } else {
+            String[] names = row.keySet().toArray(new String[row.size()]);
+            Object[] values = new Object[names.length];
+            for (int i = 0; i < names.length; i++) {
+                values[i] = row.get(names[i]);
+            }
+            return new ArrayRow(new RowColumns(names), values);
+        }
+    }
+
+    public RowColumns getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the position of the column, suitable for the positional
+     *         getters, or -1 if the row does not have the column
+     */
+    public int getColumnIndex(String columnName) {
+        return columns.indexOf(columnName);
+    }
+
+    public Object getValue(int index) {
+        if (index < 0) {
+            return null;
+        } else if (inflated) {
+            return super.get(columns.getName(index));
+        } else {
+            return values[index];
+        }
+    }
+
+    public byte[] getBytes(int index) {
+        return toBytes(getValue(index));
+    }
+
+    public String getString(int index) {
+        return getString(index, true);
+    }
+
+    public String getString(int index, boolean checkForColumn) {
+        return convertToString(getValue(index), columns.getName(index), checkForColumn);
+    }
+
+    public int getInt(int index) {
+        return convertToInt(getValue(index), columns.getName(index));
+    }
+
+    public long getLong(int index) {
+        return convertToLong(getValue(index), columns.getName(index));
+    }
+
+    public float getFloat(int index) {
+        return convertToFloat(getValue(index), columns.getName(index));
+    }
+
+    public BigDecimal getBigDecimal(int index) {
+        return convertToBigDecimal(getValue(index), columns.getName(index));
+    }
+
+    public boolean getBoolean(int index) {
+        return convertToBoolean(getValue(index), columns.getName(index));
+    }
+
+    public Time getTime(int index) {
+        return convertToTime(getValue(index), columns.getName(index));
+    }
+
+    public Date getDateTime(int index) {
+        return convertToDateTime(getValue(index), columns.getName(index));
+    }
+
+    @Override
+    protected void checkForColumn(String columnName) {
+        if (columnName == null || !containsKey(columnName)) {
+            throw new ColumnNotFoundException(columnName);
+        }
+    }
+
+    /**
+     * Copy the values into the map so that operations which change the
+     * columns of the row or iterate over it can use the map implementation.
+     */
+    protected void inflate() {
+        if (!inflated) {
+            inflated = true;
+            for (int i = 0; i < values.length; i++) {
+                super.put(columns.getName(i), values[i]);
+            }
+            values = null;
+        }
+    }
+
+    @Override
+    protected Object firstValue() {
+        if (inflated) {
+            return super.firstValue();
+        } else if (values.length > 0) {
+            return values[0];
+        } else {
+            return super.firstValue();
+        }
+    }
+
+    @Override
+    public String csvValue() {
+        if (inflated) {
+            return super.csvValue();
+        }
+        StringBuilder concatenatedRow = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                concatenatedRow.append(",");
+            }
+            concatenatedRow.append(values[i] != null ? values[i].toString() : "");
+        }
+        return concatenatedRow.toString();
+    }
+
+    @Override
+    public long getLength() {
+        if (inflated) {
+            return super.getLength();
+        }
+        long length = 0;
+        for (int i = 0; i < values.length; i++) {
+            try {
+                Object obj = values[i];
+                if (obj instanceof Blob) {
+                    length += ((Blob) obj).length();
+                } else if (obj instanceof Clob) {
+                    length += ((Clob) obj).length();
+                } else {
+                    length += obj.toString().length();
+                }
+            } catch (SQLException se) {
+                log.warn("Unable to determine length of row, failure on column " + columns.getName(i), se);
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public int size() {
+        return inflated ? super.size() : values.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return inflated ? super.containsKey(key) : columns.indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (inflated) {
+            return super.containsValue(value);
+        }
+        for (Object obj : values) {
+            if (value == null ? obj == null : value.equals(obj)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (inflated) {
+            return super.get(key);
+        } else {
+            int index = columns.indexOf(key);
+            return index >= 0 ? values[index] : null;
+        }
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        if (inflated) {
+            return super.getOrDefault(key, defaultValue);
+        } else {
+            int index = columns.indexOf(key);
+            return index >= 0 ? values[index] : defaultValue;
+        }
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        if (!inflated) {
+            int index = columns.indexOf(key);
+            if (index >= 0) {
+                Object old = values[index];
+                values[index] = value;
+                return old;
+            }
+            inflate();
+        }
+        return super.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        inflate();
+        return super.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        inflated = true;
+        values = null;
+        super.clear();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        inflate();
+        return super.keySet();
+    }
+
+    @Override
+    public Collection<Object> values() {
+        inflate();
+        return super.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        inflate();
+        return super.entrySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        inflate();
+        super.forEach(action);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> function) {
+        inflate();
+        super.replaceAll(function);
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        inflate();
+        return super.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        inflate();
+        return super.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        inflate();
+        return super.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        inflate();
+        return super.replace(key, value);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ? extends Object> mappingFunction) {
+        inflate();
+        return super.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public Object computeIfPresent(String key,
+            BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        inflate();
+        return super.computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> remappingFunction) {
+        inflate();
+        return super.compute(key, remappingFunction);
+    }
+
+    @Override
+    public Object merge(String key, Object value,
+            BiFunction<? super Object, ? super Object, ? extends Object> remappingFunction) {
+        inflate();
+        return super.merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public Object clone() {
+        inflate();
+        return super.clone();
+    }
+
+    /**
+     * Serialize as a plain {@link Row} so that the shared column dictionary
+     * does not need to be serializable.
+     */
+    protected Object writeReplace() {
+        Row row = new Row(size());
+        if (inflated) {
+            row.putAll(this);
+        } else {
+            for (int i = 0; i < values.length; i++) {
+                row.put(columns.getName(i), values[i]);
+            }
+        }
+        return row;
+    }
+
+}
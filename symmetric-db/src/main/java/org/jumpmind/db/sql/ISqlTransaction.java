@@ -68,6 +68,26 @@ public interface ISqlTransaction {
 
     public int flush();
 
+    /**
+     * Execute the rows that were added in batch mode. When the batch fails,
+     * the markers of the rows that did not change the database are still
+     * available from {@link #getUnflushedMarkers(boolean)}.
+     * 
+     * @return the number of rows changed by each added row, in the order the
+     *         rows were added. A count of
+     *         {@link java.sql.Statement#SUCCESS_NO_INFO} means the row ran but
+     *         the driver did not report how many rows it changed.
+     */
+    public int[] flushWithUpdateCounts();
+
+    /**
+     * The number of rows that are added in batch mode before they are
+     * flushed automatically.
+     */
+    public void setBatchSize(int batchSize);
+
+    public int getBatchSize();
+
     public <T> List<T> getUnflushedMarkers(boolean clear);
 
     /**
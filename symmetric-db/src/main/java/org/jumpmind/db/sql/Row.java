@@ -43,7 +43,7 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
 
     private static final long serialVersionUID = 1L;
 
-    protected Logger log = LoggerFactory.getLogger(getClass());
+    protected static final Logger log = LoggerFactory.getLogger(Row.class);
 
     public Row(int numberOfColumns) {
         super(numberOfColumns);
@@ -55,8 +55,11 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public byte[] bytesValue() {
-        Object obj = this.values().iterator().next();
-        return toBytes(obj);
+        return toBytes(firstValue());
+    }
+
+    protected Object firstValue() {
+        return this.values().iterator().next();
     }
 
     protected byte[] toBytes(Object obj) {
@@ -84,7 +87,7 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public Number numberValue() {
-        Object obj = this.values().iterator().next();
+        Object obj = firstValue();
         if (obj != null) {
             if (obj instanceof Number) {
                 return (Number) obj;
@@ -97,7 +100,7 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public Date dateValue() {
-        Object obj = this.values().iterator().next();
+        Object obj = firstValue();
         if (obj != null) {
             if (obj instanceof Date) {
                 return (Date) obj;
@@ -110,7 +113,7 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
     
     public Long longValue() {
-        Object obj = this.values().iterator().next();
+        Object obj = firstValue();
         if (obj != null) {
             if (obj instanceof Long) {
                 return (Long)obj;
@@ -124,7 +127,7 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     
 
     public String stringValue() {
-        Object obj = this.values().iterator().next();
+        Object obj = firstValue();
         if (obj != null) {
             return obj.toString();
         } else {
@@ -156,7 +159,10 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public String getString(String columnName, boolean checkForColumn) {
-        Object obj = this.get(columnName);
+        return convertToString(this.get(columnName), columnName, checkForColumn);
+    }
+
+    protected String convertToString(Object obj, String columnName, boolean checkForColumn) {
         if (obj != null) {
             return obj.toString();
         } else {
@@ -168,7 +174,10 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public int getInt(String columnName) {
-        Object obj = this.get(columnName);
+        return convertToInt(this.get(columnName), columnName);
+    }
+
+    protected int convertToInt(Object obj, String columnName) {
         if (obj instanceof Number) {
             return ((Number) obj).intValue();
         } else if (obj instanceof String) {
@@ -180,7 +189,10 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public long getLong(String columnName) {
-        Object obj = this.get(columnName);
+        return convertToLong(this.get(columnName), columnName);
+    }
+
+    protected long convertToLong(Object obj, String columnName) {
         if (obj instanceof Number) {
             return ((Number) obj).longValue();
         } else if (obj instanceof String) {
@@ -192,7 +204,10 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public float getFloat(String columnName) {
-        Object obj = this.get(columnName);
+        return convertToFloat(this.get(columnName), columnName);
+    }
+
+    protected float convertToFloat(Object obj, String columnName) {
         if (obj instanceof Number) {
             return ((Number) obj).floatValue();
         } else if (obj instanceof String) {
@@ -204,7 +219,10 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public BigDecimal getBigDecimal(String columnName) {
-        Object obj = this.get(columnName);
+        return convertToBigDecimal(this.get(columnName), columnName);
+    }
+
+    protected BigDecimal convertToBigDecimal(Object obj, String columnName) {
         if (obj instanceof BigDecimal) {
             return (BigDecimal) obj;
         } else if (obj instanceof String) {
@@ -218,7 +236,10 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public boolean getBoolean(String columnName) {
-        Object obj = this.get(columnName);
+        return convertToBoolean(this.get(columnName), columnName);
+    }
+
+    protected boolean convertToBoolean(Object obj, String columnName) {
         if ("1".equals(obj)) {
             return true;
         } else if (obj instanceof Number) {
@@ -235,17 +256,23 @@ public class Row extends LinkedCaseInsensitiveMap<Object> {
     }
 
     public Time getTime(String columnName) {
-        Object obj = this.get(columnName);
+        return convertToTime(this.get(columnName), columnName);
+    }
+
+    protected Time convertToTime(Object obj, String columnName) {
         if (obj instanceof Time) {
             return (Time) obj;
         } else {
-            Date date = getDateTime(columnName);
+            Date date = convertToDateTime(obj, columnName);
             return new Time(date.getTime());
         }
     }
 
     public Date getDateTime(String columnName) {
-        Object obj = this.get(columnName);
+        return convertToDateTime(this.get(columnName), columnName);
+    }
+
+    protected Date convertToDateTime(Object obj, String columnName) {
         if (obj instanceof Number) {
             long value = ((Number) obj).longValue();
             return new Date(value);
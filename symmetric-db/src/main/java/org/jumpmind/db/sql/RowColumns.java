@@ -0,0 +1,115 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.db.sql;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jumpmind.util.FormatUtils;
+
+/**
+ * The column names of a result set, shared by every {@link ArrayRow} read
+ * from it. Resolves a column name to its position using the same case
+ * insensitive rules as {@link org.jumpmind.util.LinkedCaseInsensitiveMap}.
+ */
+public class RowColumns {
+
+    private final String[] names;
+
+    private final Map<String, Integer> caseInsensitiveIndexes;
+
+    private final ConcurrentMap<String, Integer> resolvedIndexes;
+
+    private final Locale locale;
+
+    private boolean unique = true;
+
+    public RowColumns(String... names) {
+        this.names = names;
+        this.locale = Locale.getDefault();
+        this.caseInsensitiveIndexes = new HashMap<String, Integer>(names.length * 2);
+        this.resolvedIndexes = new ConcurrentHashMap<String, Integer>(names.length * 2);
+        boolean turkey = FormatUtils.isInfamousTurkey();
+        for (int i = 0; i < names.length; i++) {
+            String key = convertKey(names[i]);
+            if (caseInsensitiveIndexes.put(key, i) != null) {
+                unique = false;
+            }
+            if (turkey) {
+                caseInsensitiveIndexes.put(FormatUtils.stripTurkeyDottedI(key), i);
+            }
+            resolvedIndexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * @return the position of the column or -1 if the result set does not
+     *         have the column
+     */
+    public int indexOf(Object columnName) {
+        if (columnName instanceof String) {
+            Integer index = resolvedIndexes.get(columnName);
+            if (index == null) {
+                index = caseInsensitiveIndexes.get(convertKey((String) columnName));
+                if (index == null) {
+                    return -1;
+                }
+                /* remember the spelling the caller used so the next lookup does not need to convert it */
+                resolvedIndexes.putIfAbsent((String) columnName, index);
+            }
+            return index;
+        } else {
+            return -1;
+        }
+    }
+
+    public int[] indexesOf(String... columnNames) {
+        int[] indexes = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            indexes[i] = indexOf(columnNames[i]);
+        }
+        return indexes;
+    }
+
+    public String getName(int index) {
+        return index >= 0 && index < names.length ? names[index] : null;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return false when two columns have the same case insensitive name. The
+     *         values of such a result set cannot be addressed by name alone.
+     */
+    public boolean isUnique() {
+        return unique;
+    }
+
+    protected String convertKey(String key) {
+        return key.toLowerCase(locale);
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.db.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class ArrayRowTest {
+
+    protected ArrayRow newRow() {
+        RowColumns columns = new RowColumns("DATA_ID", "ROW_DATA", "IS_PREROUTED");
+        return new ArrayRow(columns, new Object[] { new BigDecimal(10), "\"1\",\"one\"", null });
+    }
+
+    @Test
+    public void testGetByNameIgnoresCase() {
+        ArrayRow row = newRow();
+        assertEquals(10, row.getLong("data_id"));
+        assertEquals("\"1\",\"one\"", row.getString("Row_Data"));
+        assertTrue(row.containsKey("is_prerouted"));
+        assertFalse(row.containsKey("old_data"));
+        assertNull(row.get("old_data"));
+        assertEquals(3, row.size());
+    }
+
+    @Test
+    public void testGetByIndex() {
+        ArrayRow row = newRow();
+        int[] indexes = row.getColumns().indexesOf("data_id", "row_data", "is_prerouted", "old_data");
+        assertEquals(10, row.getInt(indexes[0]));
+        assertEquals("\"1\",\"one\"", row.getString(indexes[1]));
+        assertFalse(row.getBoolean(indexes[2]));
+        assertEquals(-1, indexes[3]);
+        assertNull(row.getString(indexes[3], false));
+    }
+
+    @Test(expected = ColumnNotFoundException.class)
+    public void testMissingColumn() {
+        newRow().getString("OLD_DATA");
+    }
+
+    @Test
+    public void testPutInflates() {
+        ArrayRow row = newRow();
+        row.put("ROW_DATA", "changed");
+        assertEquals("changed", row.getString(1));
+        row.put("OLD_DATA", "old");
+        assertEquals(4, row.size());
+        assertEquals("old", row.getString("old_data"));
+        assertEquals("changed", row.getString(1));
+        assertEquals("[DATA_ID, ROW_DATA, IS_PREROUTED, OLD_DATA]", row.keySet().toString());
+        row.remove("DATA_ID");
+        assertNull(row.getValue(0));
+        assertEquals(3, row.size());
+    }
+
+    @Test
+    public void testEqualsPlainRow() {
+        ArrayRow row = newRow();
+        Row plain = new Row(3);
+        plain.put("DATA_ID", new BigDecimal(10));
+        plain.put("ROW_DATA", "\"1\",\"one\"");
+        plain.put("IS_PREROUTED", null);
+        assertEquals(plain, row);
+        assertEquals(plain.csvValue(), newRow().csvValue());
+        ArrayRow copy = ArrayRow.valueOf(plain);
+        assertEquals(10, copy.getInt(copy.getColumnIndex("data_id")));
+    }
+
+    @Test
+    public void testDuplicateColumnsAreNotUnique() {
+        assertFalse(new RowColumns("ID", "id").isUnique());
+        assertTrue(new RowColumns("ID", "NAME").isUnique());
+    }
+
+    @Test
+    public void testSerializesAsRow() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(newRow());
+        out.close();
+        Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(Row.class, read.getClass());
+        assertEquals(10, ((Row) read).getInt("data_id"));
+    }
+
+}
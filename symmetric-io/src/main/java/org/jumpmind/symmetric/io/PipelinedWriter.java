@@ -0,0 +1,173 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * A writer that hands chunks of characters to a task on the executor which
+ * writes them to the target writer, so that serializing data overlaps with
+ * sending it. Writes block when the bounded queue of chunks is full. A flush
+ * is passed on to the target in order but does not wait for it. Call
+ * {@link #finish()} to wait for all chunks to be written without closing the
+ * target, or {@link #abort()} to discard what was not written yet when the
+ * data will not be used. Errors from the target are thrown by the next call
+ * on this writer.
+ */
+public class PipelinedWriter extends Writer {
+
+    protected static final char[] FLUSH = new char[0];
+
+    protected static final char[] END = new char[0];
+
+    protected Writer target;
+
+    protected BlockingQueue<char[]> queue;
+
+    protected CountDownLatch done = new CountDownLatch(1);
+
+    protected volatile IOException error;
+
+    protected volatile boolean aborted;
+
+    protected boolean finished;
+
+    /**
+     * @throws java.util.concurrent.RejectedExecutionException
+     *             when the executor has no thread to run the writes on
+     */
+    public PipelinedWriter(Writer target, int queueSize, Executor executor) {
+        this.target = target;
+        this.queue = new ArrayBlockingQueue<char[]>(Math.max(1, queueSize));
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    send();
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (len > 0) {
+            put(Arrays.copyOfRange(cbuf, off, off + len));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        put(FLUSH);
+    }
+
+    /**
+     * Wait for all chunks to be written and flushed to the target, leaving
+     * the target open.
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            put(END);
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        checkError();
+    }
+
+    /**
+     * Stop writing to the target without waiting, discarding the chunks that
+     * were not written yet. The target is left open. Does nothing once the
+     * writer has been finished.
+     */
+    public void abort() {
+        if (!finished) {
+            finished = true;
+            aborted = true;
+            queue.clear();
+            queue.offer(END);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            target.close();
+        }
+    }
+
+    protected void put(char[] chunk) throws IOException {
+        checkError();
+        if (finished && chunk != END) {
+            throw new IOException("The writer has already been finished");
+        }
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    protected void checkError() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    protected void send() {
+        char[] chunk = null;
+        do {
+            try {
+                chunk = queue.take();
+                if (error == null && !aborted) {
+                    if (chunk == FLUSH || chunk == END) {
+                        target.flush();
+                    } else {
+                        target.write(chunk);
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException(e);
+            } catch (InterruptedException e) {
+                error = new InterruptedIOException();
+                return;
+            }
+        } while (chunk != END);
+    }
+
+}
@@ -22,11 +22,13 @@ package org.jumpmind.symmetric.io.data;
 
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
+import org.jumpmind.db.model.Table;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.util.Statistics;
 
@@ -54,6 +56,7 @@ public class Batch {
     protected BatchType batchType;
     protected Statistics statistics;
     protected boolean invalidRetry = false;
+    protected List<Table> stagedTables;
     
     protected Map<String, Long> timers = new HashMap<String, Long>();
         
@@ -219,6 +222,18 @@ public class Batch {
     public boolean isInvalidRetry() {
         return invalidRetry;
     }
+
+    /**
+     * @param stagedTables the tables referenced by the batch while it was
+     *            written to staging, or null when they are not known
+     */
+    public void setStagedTables(List<Table> stagedTables) {
+        this.stagedTables = stagedTables;
+    }
+
+    public List<Table> getStagedTables() {
+        return stagedTables;
+    }
     
     public String encodeBinary(String value) {
         if (value != null) {
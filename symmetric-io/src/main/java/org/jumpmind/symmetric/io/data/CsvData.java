@@ -55,6 +55,8 @@ public class CsvData {
 
     private Map<String, String> csvData = null;
 
+    private Map<String, CsvRow> csvRows = null;
+
     private Map<String, Object> attributes;
     
     private boolean noBinaryOldData = false;
@@ -118,6 +120,9 @@ public class CsvData {
         if (csvData != null) {
             csvData.remove(key);
         }
+        if (csvRows != null) {
+            csvRows.remove(key);
+        }
     }
     
     public void removeParsedData(String key) {
@@ -195,6 +200,12 @@ public class CsvData {
         String[] values = null;
         if (parsedCsvData != null && parsedCsvData.containsKey(key)) {
             values = parsedCsvData.get(key);
+        } else if (csvRows != null && csvRows.containsKey(key)) {
+            CsvRow row = csvRows.get(key);
+            if (row != null) {
+                values = row.toArray();
+                putParsedData(key, values);
+            }
         } else if (csvData != null && csvData.containsKey(key)) {
             String data = csvData.get(key);
             if (data != null) {
@@ -205,6 +216,32 @@ public class CsvData {
         return values;
     }
 
+    /**
+     * Gets a view of the data that only decodes the values that are asked
+     * for. Unparsed CSV data is scanned once and kept alongside the CSV
+     * string until {@link #getParsedData(String)} is called for the same key.
+     * 
+     * @return the row, or null if there is no data for the key
+     */
+    public CsvRow getCsvRow(String key) {
+        CsvRow row = null;
+        if (parsedCsvData != null && parsedCsvData.containsKey(key)) {
+            String[] values = parsedCsvData.get(key);
+            if (values != null) {
+                row = new CsvRow(values);
+            }
+        } else if (csvRows != null && csvRows.containsKey(key)) {
+            row = csvRows.get(key);
+        } else if (csvData != null && csvData.containsKey(key)) {
+            row = CsvRow.parse(csvData.get(key));
+            if (csvRows == null) {
+                csvRows = new HashMap<String, CsvRow>(2);
+            }
+            csvRows.put(key, row);
+        }
+        return row;
+    }
+
     public Map<String, String> toKeyColumnValuePairs(Table table) {
         Map<String, String> data = toColumnNameValuePairs(table.getPrimaryKeyColumnNames(), CsvData.PK_DATA);
         if (data.size() == 0) {
@@ -229,11 +266,11 @@ public class CsvData {
     }
 
     public Map<String, String> toColumnNameValuePairs(String[] keyNames, String key) {
-        String[] values = getParsedData(key);
-        if (values != null && keyNames != null && values.length >= keyNames.length) {
+        CsvRow values = getCsvRow(key);
+        if (values != null && keyNames != null && values.size() >= keyNames.length) {
             Map<String, String> map = new LinkedCaseInsensitiveMap<String>(keyNames.length);
             for (int i = 0; i < keyNames.length; i++) {
-                map.put(keyNames[i], values[i]);
+                map.put(keyNames[i], values.get(i));
             }
             return map;
         } else {
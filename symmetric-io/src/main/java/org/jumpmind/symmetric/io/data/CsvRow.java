@@ -0,0 +1,101 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data;
+
+import java.io.IOException;
+
+import org.jumpmind.symmetric.io.data.reader.ProtocolTokenizer;
+
+/**
+ * A row of CSV data whose values are decoded as they are asked for. The row is
+ * scanned once to record where each value starts and ends, so looking at one
+ * or two columns of a wide row does not create strings for all of the others.
+ */
+public class CsvRow {
+
+    protected ProtocolTokenizer tokenizer;
+
+    protected String[] values;
+
+    protected boolean[] decoded;
+
+    protected int size;
+
+    public CsvRow(String[] values) {
+        this.values = values;
+        this.size = values.length;
+    }
+
+    protected CsvRow(ProtocolTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+        this.size = tokenizer.getColumnCount();
+        this.values = new String[size];
+        this.decoded = new boolean[size];
+    }
+
+    /**
+     * @return the indexed row, or null if the data does not hold a record
+     */
+    public static CsvRow parse(String csvData) {
+        if (csvData != null) {
+            ProtocolTokenizer tokenizer = new ProtocolTokenizer(csvData);
+            try {
+                if (tokenizer.readRecord()) {
+                    return new CsvRow(tokenizer);
+                }
+            } catch (IOException e) {
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(int index) {
+        if (index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        if (tokenizer != null && !decoded[index]) {
+            values[index] = tokenizer.get(index);
+            decoded[index] = true;
+        }
+        return values[index];
+    }
+
+    /**
+     * Decodes the values that have not been asked for yet.
+     * 
+     * @return all of the values of the row
+     */
+    public String[] toArray() {
+        if (tokenizer != null) {
+            for (int i = 0; i < size; i++) {
+                get(i);
+            }
+            tokenizer = null;
+            decoded = null;
+        }
+        return values;
+    }
+
+}
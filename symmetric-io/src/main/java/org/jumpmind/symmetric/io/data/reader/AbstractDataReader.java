@@ -63,7 +63,17 @@ public abstract class AbstractDataReader {
         }
         return bytesRead;
     }
-    
+
+    protected long logDebugAndCountBytes(ProtocolTokenizer tokenizer) {
+        if (log.isDebugEnabled()) {
+            return logDebugAndCountBytes(tokenizer.getValues());
+        }
+        long bytesRead = 0;
+        for (int i = 0; i < tokenizer.getColumnCount(); i++) {
+            bytesRead += tokenizer.getLength(i);
+        }
+        return bytesRead;
+    }
 
     protected static Batch toBatch(BinaryEncoding binaryEncoding) {
         return new Batch(BatchType.LOAD, Batch.UNKNOWN_BATCH_ID, "default", binaryEncoding, null,
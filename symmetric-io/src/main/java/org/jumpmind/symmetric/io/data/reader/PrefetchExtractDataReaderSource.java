@@ -0,0 +1,192 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.CsvData;
+
+/**
+ * Reads rows from another {@link IExtractDataReaderSource} on a task of the
+ * executor and hands them over through a bounded queue, so that fetching rows
+ * from the database overlaps with writing the previous rows. The source and
+ * target tables and the lob flag are captured with each row because the
+ * wrapped source moves ahead of the reader. When the executor has no thread
+ * free, the rows are read from the source on the reader's thread.
+ */
+public class PrefetchExtractDataReaderSource implements IExtractDataReaderSource {
+
+    protected static final PrefetchedRow END = new PrefetchedRow(null, null, null, false);
+
+    protected IExtractDataReaderSource source;
+
+    protected Executor executor;
+
+    protected BlockingQueue<PrefetchedRow> queue;
+
+    protected CountDownLatch done;
+
+    protected boolean started;
+
+    protected PrefetchedRow current;
+
+    protected volatile boolean closed;
+
+    protected volatile Throwable error;
+
+    public PrefetchExtractDataReaderSource(IExtractDataReaderSource source, int queueSize, Executor executor) {
+        this.source = source;
+        this.executor = executor;
+        this.queue = new ArrayBlockingQueue<PrefetchedRow>(Math.max(1, queueSize));
+    }
+
+    public Batch getBatch() {
+        return source.getBatch();
+    }
+
+    public Table getTargetTable() {
+        return current != null ? current.targetTable : null;
+    }
+
+    public Table getSourceTable() {
+        return current != null ? current.sourceTable : null;
+    }
+
+    public CsvData next() {
+        if (current == END) {
+            return null;
+        }
+        if (!started) {
+            started = true;
+            start();
+        }
+        if (done == null) {
+            CsvData data = source.next();
+            current = data != null ? new PrefetchedRow(data, source.getSourceTable(), source.getTargetTable(),
+                    source.requiresLobsSelectedFromSource(data)) : END;
+            return data;
+        }
+        try {
+            current = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new org.jumpmind.exception.InterruptedException(e);
+        }
+        if (current == END && error != null) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new RuntimeException(error);
+        }
+        return current.data;
+    }
+
+    public boolean requiresLobsSelectedFromSource(CsvData data) {
+        return current != null && current.requiresLobsSelectedFromSource;
+    }
+
+    public void close() {
+        closed = true;
+        if (done != null) {
+            queue.clear();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done = null;
+        }
+        queue.clear();
+        source.close();
+    }
+
+    protected void start() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        prefetch();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+            done = latch;
+        } catch (RejectedExecutionException e) {
+            done = null;
+        }
+    }
+
+    protected void prefetch() {
+        try {
+            CsvData data = null;
+            do {
+                data = source.next();
+                if (data != null) {
+                    put(new PrefetchedRow(data, source.getSourceTable(), source.getTargetTable(),
+                            source.requiresLobsSelectedFromSource(data)));
+                }
+            } while (data != null && !closed);
+        } catch (Throwable ex) {
+            error = ex;
+        } finally {
+            put(END);
+        }
+    }
+
+    protected void put(PrefetchedRow row) {
+        try {
+            while (!closed && !queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+            }
+        } catch (InterruptedException e) {
+            closed = true;
+        }
+    }
+
+    static class PrefetchedRow {
+
+        CsvData data;
+
+        Table sourceTable;
+
+        Table targetTable;
+
+        boolean requiresLobsSelectedFromSource;
+
+        PrefetchedRow(CsvData data, Table sourceTable, Table targetTable, boolean requiresLobsSelectedFromSource) {
+            this.data = data;
+            this.sourceTable = sourceTable;
+            this.targetTable = targetTable;
+            this.requiresLobsSelectedFromSource = requiresLobsSelectedFromSource;
+        }
+    }
+
+}
@@ -41,28 +41,32 @@ import org.jumpmind.db.model.Column;
 import org.jumpmind.db.model.Table;
 import org.jumpmind.db.util.BinaryEncoding;
 import org.jumpmind.exception.IoException;
-import org.jumpmind.symmetric.csv.CsvReader;
 import org.jumpmind.symmetric.io.IoConstants;
 import org.jumpmind.symmetric.io.data.Batch;
 import org.jumpmind.symmetric.io.data.Batch.BatchType;
 import org.jumpmind.symmetric.io.data.CsvConstants;
 import org.jumpmind.symmetric.io.data.CsvData;
-import org.jumpmind.symmetric.io.data.CsvUtils;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.IDataReader;
 import org.jumpmind.symmetric.io.stage.IStagedResource;
-import org.jumpmind.util.CollectionUtils;
 import org.jumpmind.util.Statistics;
 
 public class ProtocolDataReader extends AbstractDataReader implements IDataReader {
 
     public static final String CTX_LINE_NUMBER = ProtocolDataReader.class.getSimpleName() + ".lineNumber";
 
+    protected static final String[] KEYWORDS = { CsvConstants.INSERT, CsvConstants.UPDATE, CsvConstants.DELETE,
+            CsvConstants.OLD, CsvConstants.TIME, CsvConstants.TABLE, CsvConstants.KEYS, CsvConstants.COLUMNS,
+            CsvConstants.BATCH, CsvConstants.RETRY, CsvConstants.COMMIT, CsvConstants.SQL, CsvConstants.BSH,
+            CsvConstants.CREATE, CsvConstants.CATALOG, CsvConstants.SCHEMA, CsvConstants.NODEID,
+            CsvConstants.BINARY, CsvConstants.CHANNEL, CsvConstants.NO_BINARY_OLD_DATA, CsvConstants.IGNORE,
+            CsvConstants.STATS_COLUMNS, CsvConstants.STATS, CsvConstants.BASETIME };
+
     protected IStagedResource stagedResource;
     protected Reader reader;
     protected Map<Batch, Statistics> statistics = new HashMap<Batch, Statistics>();
-    protected CsvReader csvReader;
+    protected ProtocolTokenizer tokenizer;
     protected DataContext context;
     protected Object next;
     protected Batch batch;
@@ -74,7 +78,7 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
     protected boolean noBinaryOldData = false;
     protected BatchType batchType;
     protected int lineNumber = 0;
-    protected String[] tokens;
+    protected boolean pendingRecord;
     protected boolean streamToFile = true;
     protected long baseTime;
     protected Timestamp createTime;
@@ -132,7 +136,8 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
         }
         this.lineNumber = 0;
         this.context = context;
-        this.csvReader = CsvUtils.getCsvReader(reader);
+        this.tokenizer = new ProtocolTokenizer(reader);
+        this.pendingRecord = false;
         this.next = readNext();
     }
 
@@ -146,13 +151,15 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
             String[] statsColumns = null;
             String[] statsValues = null;
             Table table = null;
-            while (tokens != null || csvReader.readRecord()) {
+            while (pendingRecord || tokenizer.readRecord()) {
                 lineNumber++;
                 context.put(CTX_LINE_NUMBER, lineNumber);
-                if (tokens == null) {
-                    tokens = csvReader.getValues();
+                pendingRecord = true;
+                String type = tokenizer.match(0, KEYWORDS);
+                if (type == null) {
+                    type = StringUtils.defaultString(tokenizer.get(0));
                 }
-                bytesRead += logDebugAndCountBytes(tokens);
+                bytesRead += logDebugAndCountBytes(tokenizer);
                 Statistics stats = null;             
                 
                 if (batch != null) {
@@ -161,47 +168,47 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
                     bytesRead = 0;
                 }
 
-                if (table != null && !(tokens[0].equals(CsvConstants.TABLE) || tokens[0].equals(CsvConstants.KEYS)
-                        || tokens[0].equals(CsvConstants.COLUMNS))) {
+                if (table != null && !(type.equals(CsvConstants.TABLE) || type.equals(CsvConstants.KEYS)
+                        || type.equals(CsvConstants.COLUMNS))) {
                     return table;
                 }
 
-                if (stats != null && (tokens[0].equals(CsvConstants.INSERT) || tokens[0].equals(CsvConstants.UPDATE)
-                        || tokens[0].equals(CsvConstants.DELETE))) {
+                if (stats != null && (type.equals(CsvConstants.INSERT) || type.equals(CsvConstants.UPDATE)
+                        || type.equals(CsvConstants.DELETE))) {
                     stats.increment(DataReaderStatistics.READ_RECORD_COUNT, 1);
                 }
 
-                if (tokens[0].equals(CsvConstants.INSERT)) {
+                if (type.equals(CsvConstants.INSERT)) {
                     CsvData data = new CsvData();
                     data.setNoBinaryOldData(noBinaryOldData);
                     data.setDataEventType(DataEventType.INSERT);
-                    data.putParsedData(CsvData.ROW_DATA, CollectionUtils.copyOfRange(tokens, 1, tokens.length));
+                    data.putParsedData(CsvData.ROW_DATA, tokenizer.getValues(1, tokenizer.getColumnCount()));
                     if (createTime != null) {
                         data.putAttribute(CsvData.ATTRIBUTE_CREATE_TIME, createTime);
                     }
                     data.putAttribute(CsvData.ATTRIBUTE_CHANNEL_ID, channelId);
                     data.putAttribute(CsvData.ATTRIBUTE_TABLE_NAME, tableName);
                     data.putAttribute(CsvData.ATTRIBUTE_SOURCE_NODE_ID, sourceNodeId);
-                    tokens = null;
+                    pendingRecord = false;
                     return data;
-                } else if (tokens[0].equals(CsvConstants.OLD)) {
-                    parsedOldData = CollectionUtils.copyOfRange(tokens, 1, tokens.length);
+                } else if (type.equals(CsvConstants.OLD)) {
+                    parsedOldData = tokenizer.getValues(1, tokenizer.getColumnCount());
 
-                } else if (tokens[0].equals(CsvConstants.UPDATE)) {
+                } else if (type.equals(CsvConstants.UPDATE)) {
                     CsvData data = new CsvData();
                     data.setNoBinaryOldData(noBinaryOldData);
                     data.setDataEventType(DataEventType.UPDATE);
                     int columnCount = context.getLastParsedTable().getColumnCount();
-                    if (tokens.length <= columnCount) {
+                    if (tokenizer.getColumnCount() <= columnCount) {
                         String msg = String.format(
                                 "Invalid state while parsing csv data.  "
                                         + "The number of columns (%d) reported for table '%s' doesn't match up with the token count (%d) data: %s",
-                                columnCount, context.getLastParsedTable().getFullyQualifiedTableName(), tokens.length,
-                                ArrayUtils.toString(tokens));
+                                columnCount, context.getLastParsedTable().getFullyQualifiedTableName(), tokenizer.getColumnCount(),
+                                ArrayUtils.toString(tokenizer.getValues()));
                         throw new IllegalStateException(msg);
                     }
-                    data.putParsedData(CsvData.ROW_DATA, CollectionUtils.copyOfRange(tokens, 1, columnCount + 1));
-                    data.putParsedData(CsvData.PK_DATA, CollectionUtils.copyOfRange(tokens, columnCount + 1, tokens.length));
+                    data.putParsedData(CsvData.ROW_DATA, tokenizer.getValues(1, columnCount + 1));
+                    data.putParsedData(CsvData.PK_DATA, tokenizer.getValues(columnCount + 1, tokenizer.getColumnCount()));
                     data.putParsedData(CsvData.OLD_DATA, parsedOldData);
                     if (createTime != null) {
                         data.putAttribute(CsvData.ATTRIBUTE_CREATE_TIME, createTime);
@@ -209,13 +216,13 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
                     data.putAttribute(CsvData.ATTRIBUTE_CHANNEL_ID, channelId);
                     data.putAttribute(CsvData.ATTRIBUTE_TABLE_NAME, tableName);
                     data.putAttribute(CsvData.ATTRIBUTE_SOURCE_NODE_ID, sourceNodeId);
-                    tokens = null;
+                    pendingRecord = false;
                     return data;
-                } else if (tokens[0].equals(CsvConstants.DELETE)) {
+                } else if (type.equals(CsvConstants.DELETE)) {
                     CsvData data = new CsvData();
                     data.setNoBinaryOldData(noBinaryOldData);
                     data.setDataEventType(DataEventType.DELETE);
-                    data.putParsedData(CsvData.PK_DATA, CollectionUtils.copyOfRange(tokens, 1, tokens.length));
+                    data.putParsedData(CsvData.PK_DATA, tokenizer.getValues(1, tokenizer.getColumnCount()));
                     data.putParsedData(CsvData.OLD_DATA, parsedOldData);
                     if (createTime != null) {
                         data.putAttribute(CsvData.ATTRIBUTE_CREATE_TIME, createTime);
@@ -223,45 +230,45 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
                     data.putAttribute(CsvData.ATTRIBUTE_CHANNEL_ID, channelId);
                     data.putAttribute(CsvData.ATTRIBUTE_TABLE_NAME, tableName);
                     data.putAttribute(CsvData.ATTRIBUTE_SOURCE_NODE_ID, sourceNodeId);
-                    tokens = null;
+                    pendingRecord = false;
                     return data;
-                } else if (tokens[0].equals(CsvConstants.TIME)) {
-                    createTime = new Timestamp(Long.parseLong(tokens[1]) + baseTime);
-                } else if (tokens[0].equals(CsvConstants.BATCH) || tokens[0].equals(CsvConstants.RETRY)) {
+                } else if (type.equals(CsvConstants.TIME)) {
+                    createTime = new Timestamp(Long.parseLong(tokenizer.get(1)) + baseTime);
+                } else if (type.equals(CsvConstants.BATCH) || type.equals(CsvConstants.RETRY)) {
                     
-                    Batch batch = new Batch(batchType, Long.parseLong(tokens[1]), channelId, binaryEncoding, sourceNodeId, targetNodeId,
+                    Batch batch = new Batch(batchType, Long.parseLong(tokenizer.get(1)), channelId, binaryEncoding, sourceNodeId, targetNodeId,
                             false);
                     stats = stats != null ? stats : new DataReaderStatistics();
                     statistics.put(batch, stats);
                     
-                    if (tokens[0].equals(CsvConstants.RETRY) && !streamToFile) {
+                    if (type.equals(CsvConstants.RETRY) && !streamToFile) {
                         batch.setInvalidRetry(true);
                     }
                     
-                    tokens = null;
+                    pendingRecord = false;
                     return batch;
-                } else if (tokens[0].equals(CsvConstants.NO_BINARY_OLD_DATA)) {
-                    if (tokens.length > 1) {
-                        noBinaryOldData = Boolean.parseBoolean(tokens[1]);
+                } else if (type.equals(CsvConstants.NO_BINARY_OLD_DATA)) {
+                    if (tokenizer.getColumnCount() > 1) {
+                        noBinaryOldData = Boolean.parseBoolean(tokenizer.get(1));
                     }
 
-                } else if (tokens[0].equals(CsvConstants.NODEID)) {
-                    this.sourceNodeId = tokens[1];
+                } else if (type.equals(CsvConstants.NODEID)) {
+                    this.sourceNodeId = tokenizer.get(1);
 
-                } else if (tokens[0].equals(CsvConstants.BINARY)) {
-                    this.binaryEncoding = BinaryEncoding.valueOf(tokens[1]);
+                } else if (type.equals(CsvConstants.BINARY)) {
+                    this.binaryEncoding = BinaryEncoding.valueOf(tokenizer.get(1));
 
-                } else if (tokens[0].equals(CsvConstants.CHANNEL)) {
-                    this.channelId = tokens[1];
+                } else if (type.equals(CsvConstants.CHANNEL)) {
+                    this.channelId = tokenizer.get(1);
 
-                } else if (tokens[0].equals(CsvConstants.SCHEMA)) {
-                    schemaName = tokens.length == 1 || StringUtils.isBlank(tokens[1]) ? null : tokens[1];
+                } else if (type.equals(CsvConstants.SCHEMA)) {
+                    schemaName = tokenizer.getColumnCount() == 1 || StringUtils.isBlank(tokenizer.get(1)) ? null : tokenizer.get(1);
 
-                } else if (tokens[0].equals(CsvConstants.CATALOG)) {
-                    catalogName = tokens.length == 1 || StringUtils.isBlank(tokens[1]) ? null : tokens[1];
+                } else if (type.equals(CsvConstants.CATALOG)) {
+                    catalogName = tokenizer.getColumnCount() == 1 || StringUtils.isBlank(tokenizer.get(1)) ? null : tokenizer.get(1);
 
-                } else if (tokens[0].equals(CsvConstants.TABLE)) {
-                    tableName = tokens[1];
+                } else if (type.equals(CsvConstants.TABLE)) {
+                    tableName = tokenizer.get(1);
                     table = context.getParsedTables().get(Table.getFullyQualifiedTableName(catalogName, schemaName, tableName));
                     if (table != null) {
                         context.setLastParsedTable(table);
@@ -270,65 +277,65 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
                         context.setLastParsedTable(table);
                     }
 
-                } else if (tokens[0].equals(CsvConstants.KEYS)) {
+                } else if (type.equals(CsvConstants.KEYS)) {
                     if (keys == null) {
-                        keys = new HashSet<String>(tokens.length);
+                        keys = new HashSet<String>(tokenizer.getColumnCount());
                     }
-                    for (int i = 1; i < tokens.length; i++) {
-                        keys.add(tokens[i]);
+                    for (int i = 1; i < tokenizer.getColumnCount(); i++) {
+                        keys.add(tokenizer.get(i));
                     }
-                } else if (tokens[0].equals(CsvConstants.COLUMNS)) {
+                } else if (type.equals(CsvConstants.COLUMNS)) {
                     table.removeAllColumns();
-                    for (int i = 1; i < tokens.length; i++) {
-                        Column column = new Column(tokens[i], keys != null && keys.contains(tokens[i]));
+                    for (int i = 1; i < tokenizer.getColumnCount(); i++) {
+                        Column column = new Column(tokenizer.get(i), keys != null && keys.contains(tokenizer.get(i)));
                         table.addColumn(column);
                     }
                     context.getParsedTables().put(table.getFullyQualifiedTableName(), table);
-                } else if (tokens[0].equals(CsvConstants.COMMIT)) {
+                } else if (type.equals(CsvConstants.COMMIT)) {
                     if (batch != null) {
                         batch.setComplete(true);
                     }
-                    tokens = null;
+                    pendingRecord = false;
                     return null;
-                } else if (tokens[0].equals(CsvConstants.SQL)) {
+                } else if (type.equals(CsvConstants.SQL)) {
                     CsvData data = new CsvData();
                     data.setNoBinaryOldData(noBinaryOldData);
                     data.setDataEventType(DataEventType.SQL);
-                    data.putParsedData(CsvData.ROW_DATA, new String[] { tokens[1], tokens.length > 2 ? tokens[2] : "0" });
-                    tokens = null;
+                    data.putParsedData(CsvData.ROW_DATA, new String[] { tokenizer.get(1), tokenizer.getColumnCount() > 2 ? tokenizer.get(2) : "0" });
+                    pendingRecord = false;
                     return data;
-                } else if (tokens[0].equals(CsvConstants.BSH)) {
+                } else if (type.equals(CsvConstants.BSH)) {
                     CsvData data = new CsvData();
                     data.setNoBinaryOldData(noBinaryOldData);
                     data.setDataEventType(DataEventType.BSH);
-                    data.putParsedData(CsvData.ROW_DATA, new String[] { tokens[1] });
-                    tokens = null;
+                    data.putParsedData(CsvData.ROW_DATA, new String[] { tokenizer.get(1) });
+                    pendingRecord = false;
                     return data;
-                } else if (tokens[0].equals(CsvConstants.CREATE)) {
+                } else if (type.equals(CsvConstants.CREATE)) {
                     CsvData data = new CsvData();
                     data.setNoBinaryOldData(noBinaryOldData);
                     data.setDataEventType(DataEventType.CREATE);
-                    data.putParsedData(CsvData.ROW_DATA, new String[] { tokens[1] });
-                    tokens = null;
+                    data.putParsedData(CsvData.ROW_DATA, new String[] { tokenizer.get(1) });
+                    pendingRecord = false;
                     return data;
-                } else if (tokens[0].equals(CsvConstants.IGNORE)) {
+                } else if (type.equals(CsvConstants.IGNORE)) {
                     if (batch != null) {
                         batch.setIgnored(true);
                     }
-                } else if (tokens[0].equals(CsvConstants.STATS_COLUMNS)) {
-                    statsColumns = CollectionUtils.copyOfRange(tokens, 1, tokens.length);
-                } else if (tokens[0].equals(CsvConstants.STATS)) {
-                    statsValues = CollectionUtils.copyOfRange(tokens, 1, tokens.length);
+                } else if (type.equals(CsvConstants.STATS_COLUMNS)) {
+                    statsColumns = tokenizer.getValues(1, tokenizer.getColumnCount());
+                } else if (type.equals(CsvConstants.STATS)) {
+                    statsValues = tokenizer.getValues(1, tokenizer.getColumnCount());
                     stats = stats != null ? stats : new DataReaderStatistics();
                     putStats(stats, statsColumns, statsValues);
-                } else if (tokens[0].equals(CsvConstants.BASETIME)) {
-                    baseTime = Long.parseLong(tokens[1]);
+                } else if (type.equals(CsvConstants.BASETIME)) {
+                    baseTime = Long.parseLong(tokenizer.get(1));
                     createTime = new Timestamp(baseTime);
                 } else {
-                    log.info("Unable to handle unknown csv values: " + Arrays.toString(tokens));
+                    log.info("Unable to handle unknown csv values: " + Arrays.toString(tokenizer.getValues()));
                 }
 
-                tokens = null;
+                pendingRecord = false;
             }
         } catch (IOException ex) {
             throw new IoException(ex);
@@ -395,8 +402,11 @@ public class ProtocolDataReader extends AbstractDataReader implements IDataReade
     }
 
     public void close() {
-        if (csvReader != null) {
-            csvReader.close();
+        if (tokenizer != null) {
+            try {
+                tokenizer.close();
+            } catch (IOException e) {
+            }
         }
 
         if (stagedResource != null) {
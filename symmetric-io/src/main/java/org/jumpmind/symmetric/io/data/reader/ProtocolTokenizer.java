@@ -0,0 +1,506 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.reader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Tokenizes the SymmetricDS protocol faster than the generic
+ * {@link org.jumpmind.symmetric.csv.CsvReader}. It reads the stream in large
+ * blocks, scans each field for its delimiter or closing quote in a tight loop
+ * and remembers only where each value starts and ends. Strings are created
+ * when a value is asked for, and the offset arrays are reused from record to
+ * record.
+ * <p>
+ * It reads what the protocol writers produce the same way as a CsvReader
+ * configured by {@link org.jumpmind.symmetric.io.data.CsvUtils#getCsvReader(Reader)}:
+ * unquoted values are trimmed and an unquoted empty value is null, quoted
+ * values may span lines and use backslash escapes, anything between a closing
+ * quote and the next delimiter is ignored, and blank lines are skipped.
+ * <p>
+ * Values are only valid until the next call to {@link #readRecord()}.
+ */
+public class ProtocolTokenizer {
+
+    static final int INITIAL_BUFFER_SIZE = 65536;
+
+    static final int INITIAL_COLUMN_COUNT = 64;
+
+    private static final int RECORD = 0;
+
+    private static final int NEED_MORE = 1;
+
+    private static final int NO_RECORD = 2;
+
+    private static final int FIELD_START = 0;
+
+    private static final int UNQUOTED = 1;
+
+    private static final int QUOTED = 2;
+
+    private static final int AFTER_QUOTE = 3;
+
+    protected Reader reader;
+
+    protected char[] buffer;
+
+    protected int position;
+
+    protected int limit;
+
+    protected boolean endOfData;
+
+    protected int count;
+
+    protected int[] starts = new int[INITIAL_COLUMN_COUNT];
+
+    protected int[] ends = new int[INITIAL_COLUMN_COUNT];
+
+    protected String[] decoded = new String[INITIAL_COLUMN_COUNT];
+
+    protected StringBuilder scratch = new StringBuilder();
+
+    /* Where to continue parsing a record that ran past the data read so far */
+
+    protected boolean inRecord;
+
+    protected int scan;
+
+    protected int state;
+
+    protected int valueStart;
+
+    protected boolean escaped;
+
+    public ProtocolTokenizer(Reader reader) {
+        this(reader, INITIAL_BUFFER_SIZE);
+    }
+
+    public ProtocolTokenizer(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * Tokenizes data that is already in memory, such as a single row of CSV
+     * data. The data is scanned in place without reading it into blocks.
+     */
+    public ProtocolTokenizer(String data) {
+        this.buffer = data.toCharArray();
+        this.limit = buffer.length;
+        this.endOfData = true;
+    }
+
+    /**
+     * @return true if a record was read, false at the end of the data
+     */
+    public boolean readRecord() throws IOException {
+        while (true) {
+            int result = parseRecord();
+            if (result == RECORD) {
+                return true;
+            } else if (result == NO_RECORD) {
+                return false;
+            } else {
+                fill();
+            }
+        }
+    }
+
+    public int getColumnCount() {
+        return count;
+    }
+
+    public boolean isNull(int index) {
+        return starts[index] < 0 && decoded[index] == null;
+    }
+
+    /**
+     * @return the length of the value, or 0 if it is null
+     */
+    public int getLength(int index) {
+        if (decoded[index] != null) {
+            return decoded[index].length();
+        }
+        return starts[index] < 0 ? 0 : ends[index] - starts[index];
+    }
+
+    public String get(int index) {
+        if (index >= count) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        if (decoded[index] != null) {
+            return decoded[index];
+        } else if (starts[index] < 0) {
+            return null;
+        } else {
+            return new String(buffer, starts[index], ends[index] - starts[index]);
+        }
+    }
+
+    /**
+     * Compares a value to a string without creating a string for the value.
+     */
+    public boolean equals(int index, String value) {
+        if (index >= count) {
+            return false;
+        }
+        if (decoded[index] != null) {
+            return decoded[index].equals(value);
+        } else if (starts[index] < 0) {
+            return value == null;
+        } else if (value == null || value.length() != ends[index] - starts[index]) {
+            return false;
+        }
+        int start = starts[index];
+        for (int i = 0; i < value.length(); i++) {
+            if (buffer[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the candidate that is equal to the value, or null if there is
+     *         none
+     */
+    public String match(int index, String[] candidates) {
+        for (String candidate : candidates) {
+            if (equals(index, candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the values from the start index up to but not including the end
+     *         index as new strings
+     */
+    public String[] getValues(int from, int to) {
+        String[] values = new String[Math.max(0, to - from)];
+        for (int i = from; i < to; i++) {
+            values[i - from] = get(i);
+        }
+        return values;
+    }
+
+    public String[] getValues() {
+        return getValues(0, count);
+    }
+
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    protected void fill() throws IOException {
+        if (position > 0) {
+            int shift = position;
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= shift;
+            position = 0;
+            if (inRecord) {
+                for (int i = 0; i < count; i++) {
+                    if (starts[i] >= 0) {
+                        starts[i] -= shift;
+                        ends[i] -= shift;
+                    }
+                }
+                scan -= shift;
+                valueStart -= shift;
+            }
+        }
+        if (limit == buffer.length) {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfData = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * Parses the record that starts at the current position. If the record
+     * runs past the data that has been read and there is more to read, the
+     * position is left at the start of the record and where the scan stopped
+     * is saved, so parsing continues from there after the buffer is filled
+     * instead of scanning the record again.
+     */
+    protected int parseRecord() {
+        final char[] buf = buffer;
+        final int end = limit;
+        int p;
+        int field;
+        int start;
+        boolean escaped;
+
+        if (inRecord) {
+            p = scan;
+            field = state;
+            start = valueStart;
+            escaped = this.escaped;
+        } else {
+            p = position;
+            while (p < end && (buf[p] == '\n' || buf[p] == '\r')) {
+                p++;
+            }
+            position = p;
+            if (p == end) {
+                return endOfData ? NO_RECORD : NEED_MORE;
+            }
+            count = 0;
+            field = FIELD_START;
+            start = p;
+            escaped = false;
+        }
+
+        while (true) {
+            if (field == FIELD_START) {
+                while (p < end && (buf[p] == ' ' || buf[p] == '\t')) {
+                    p++;
+                }
+                if (p == end) {
+                    if (!endOfData) {
+                        return suspend(p, field, start, escaped);
+                    }
+                    addValue(-1, -1, null);
+                    break;
+                }
+                char c = buf[p];
+                if (c == '"') {
+                    start = ++p;
+                    escaped = false;
+                    field = QUOTED;
+                } else if (c == ',') {
+                    addValue(-1, -1, null);
+                    p++;
+                } else if (c == '\n' || c == '\r') {
+                    addValue(-1, -1, null);
+                    p++;
+                    break;
+                } else {
+                    start = p;
+                    field = UNQUOTED;
+                }
+            } else if (field == UNQUOTED) {
+                while (p < end && buf[p] != ',' && buf[p] != '\n' && buf[p] != '\r') {
+                    p++;
+                }
+                if (p == end && !endOfData) {
+                    return suspend(p, field, start, escaped);
+                }
+                int valueEnd = p;
+                while (valueEnd > start && (buf[valueEnd - 1] == ' ' || buf[valueEnd - 1] == '\t')) {
+                    valueEnd--;
+                }
+                addValue(start, valueEnd, null);
+                if (p == end || buf[p++] != ',') {
+                    break;
+                }
+                field = FIELD_START;
+            } else if (field == QUOTED) {
+                while (p < end && buf[p] != '"' && buf[p] != '\\') {
+                    p++;
+                }
+                if (p == end && !endOfData) {
+                    return suspend(p, field, start, escaped);
+                } else if (p < end && buf[p] == '\\') {
+                    if (!escaped) {
+                        scratch.setLength(0);
+                        escaped = true;
+                    }
+                    scratch.append(buf, start, p - start);
+                    start = p;
+                    int next = unescape(buf, p + 1, end);
+                    if (next >= 0) {
+                        p = next;
+                        start = p;
+                        continue;
+                    } else if (!endOfData) {
+                        /* Resume at the backslash once the rest of the escape is read */
+                        return suspend(p, field, start, escaped);
+                    }
+                    p = end;
+                    start = end;
+                }
+                if (escaped) {
+                    scratch.append(buf, start, p - start);
+                    addValue(-1, -1, scratch.toString());
+                } else {
+                    addValue(start, p, null);
+                }
+                if (p < end) {
+                    p++;
+                }
+                field = AFTER_QUOTE;
+            } else {
+                while (p < end && buf[p] != ',' && buf[p] != '\n' && buf[p] != '\r') {
+                    p++;
+                }
+                if (p == end) {
+                    if (!endOfData) {
+                        return suspend(p, field, start, escaped);
+                    }
+                    break;
+                } else if (buf[p++] != ',') {
+                    break;
+                }
+                field = FIELD_START;
+            }
+        }
+        inRecord = false;
+        position = p;
+        return RECORD;
+    }
+
+    private int suspend(int p, int field, int start, boolean escaped) {
+        this.inRecord = true;
+        this.scan = p;
+        this.state = field;
+        this.valueStart = start;
+        this.escaped = escaped;
+        return NEED_MORE;
+    }
+
+    /**
+     * Appends the character for the backslash escape that starts at the index
+     * to the scratch buffer.
+     * 
+     * @return the index after the escape, or -1 if the escape runs past the
+     *         end of the data that has been read
+     */
+    protected int unescape(char[] buf, int p, int end) {
+        if (p >= end) {
+            return -1;
+        }
+        char c = buf[p++];
+        int radix = 0;
+        int digits = 0;
+        int value = 0;
+        switch (c) {
+            case 'n':
+                scratch.append('\n');
+                return p;
+            case 'r':
+                scratch.append('\r');
+                return p;
+            case 't':
+                scratch.append('\t');
+                return p;
+            case 'b':
+                scratch.append('\b');
+                return p;
+            case 'f':
+                scratch.append('\f');
+                return p;
+            case 'e':
+                scratch.append('\u001B');
+                return p;
+            case 'v':
+                scratch.append('\u000B');
+                return p;
+            case 'a':
+                scratch.append('\u0007');
+                return p;
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+                radix = 8;
+                digits = 2;
+                value = c - '0';
+                break;
+            case 'u':
+            case 'U':
+                radix = 16;
+                digits = 4;
+                break;
+            case 'x':
+            case 'X':
+                radix = 16;
+                digits = 2;
+                break;
+            case 'o':
+            case 'O':
+                radix = 8;
+                digits = 3;
+                break;
+            case 'd':
+            case 'D':
+                radix = 10;
+                digits = 3;
+                break;
+            default:
+                scratch.append(c);
+                return p;
+        }
+        if (p + digits > end) {
+            return -1;
+        }
+        for (int i = 0; i < digits; i++) {
+            value = value * radix + (radix == 16 ? hexValue(buf[p++]) : buf[p++] - '0');
+        }
+        scratch.append((char) value);
+        return p;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= 'a') {
+            return c - 'a' + 10;
+        } else if (c >= 'A') {
+            return c - 'A' + 10;
+        } else {
+            return c - '0';
+        }
+    }
+
+    private void addValue(int start, int end, String value) {
+        if (count == starts.length) {
+            int length = starts.length * 2;
+            int[] newStarts = new int[length];
+            int[] newEnds = new int[length];
+            String[] newDecoded = new String[length];
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(ends, 0, newEnds, 0, count);
+            System.arraycopy(decoded, 0, newDecoded, 0, count);
+            starts = newStarts;
+            ends = newEnds;
+            decoded = newDecoded;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        decoded[count] = value;
+        count++;
+    }
+
+}
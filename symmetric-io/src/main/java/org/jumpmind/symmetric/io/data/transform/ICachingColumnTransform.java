@@ -0,0 +1,39 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.transform;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.symmetric.io.data.DataContext;
+
+/**
+ * A column transform that caches what it reads from the database. It is told
+ * about each row a load writes, so it can drop what the write made stale and
+ * avoid caching what the batch has not committed yet. It is told when the
+ * batch has been committed or rolled back, so it can drop what the batch
+ * changed.
+ */
+public interface ICachingColumnTransform {
+
+    public void tableModified(DataContext context, Table table);
+
+    public void batchEnded(DataContext context, boolean inError);
+
+}
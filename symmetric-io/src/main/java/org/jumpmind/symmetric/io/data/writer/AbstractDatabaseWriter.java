@@ -183,39 +183,7 @@ abstract public class AbstractDatabaseWriter implements IDataWriter {
                                 break;
                         }
 
-                        LoadStatus loadStatus = LoadStatus.SUCCESS;
-                        switch (data.getDataEventType()) {
-                            case UPDATE:
-                                loadStatus = update(data, writerSettings.isApplyChangesOnly(), true);
-                                break;
-                            case INSERT:
-                                loadStatus = insert(data);
-                                break;
-                            case DELETE:
-                                loadStatus = delete(data, true);
-                                break;
-                            case BSH:
-                                script(data);
-                                break;
-                            case SQL:
-                                sql(data);
-                                break;
-                            case CREATE:
-                                create(data);
-                                break;
-                            default:
-                                break;
-                        }
-
-                        if (loadStatus == LoadStatus.CONFLICT) {
-                            if (conflictResolver != null) {
-                                conflictResolver.needsResolved(this, data, loadStatus);
-                            } else {
-                                throw new ConflictException(data, targetTable, false,
-                                        writerSettings.pickConflict(targetTable, batch),
-                                        (Exception) context.get(AbstractDatabaseWriter.CONFLICT_ERROR));
-                            }
-                        }
+                        load(data);
 
                         uncommittedCount++;
 
@@ -231,31 +199,9 @@ abstract public class AbstractDatabaseWriter implements IDataWriter {
                     rollback();
                     throw ex;
                 } catch (RuntimeException ex) {
-                    Statistics batchStatistics = getStatistics().get(getBatch());
-                    long statementCount = batchStatistics.get(DataWriterStatisticConstants.ROWCOUNT);
-                    ResolvedData resolvedData = getWriterSettings().getResolvedData(statementCount);
-
-                    if (conflictResolver != null && conflictResolver.isIgnoreRow(this, data)) {
-                        statistics.get(batch).increment(DataWriterStatisticConstants.IGNOREROWCOUNT);
-                    } else if (conflictResolver != null && resolvedData != null) {
-                        Conflict conflict = new Conflict();
-                        conflict.setDetectType(DetectConflict.USE_PK_DATA);
-                        conflict.setResolveType(ResolveConflict.FALLBACK);
-                        conflictResolver.attemptToResolve(resolvedData, data, this, conflict);
-                    } else {
-                       if (filterError(data, ex)) {
-                            if (!(ex instanceof SqlException)) {
-                                /*
-                                 * SQL exceptions should have already been logged
-                                 */
-                                logFailureDetails(ex, data, false);
-                            }
-                            throw ex;
-                        } else {
-                            uncommittedCount++;
-                            statistics.get(batch).increment(DataWriterStatisticConstants.IGNORECOUNT);
-                            checkForEarlyCommit();
-                        }
+                    if (loadFailed(data, ex)) {
+                        uncommittedCount++;
+                        checkForEarlyCommit();
                     }
                 }
             } else {
@@ -271,6 +217,81 @@ abstract public class AbstractDatabaseWriter implements IDataWriter {
         }
     }
 
+    /**
+     * Apply a row to the target and hand it to the conflict resolver when it
+     * is in conflict.
+     */
+    protected void load(CsvData data) {
+        LoadStatus loadStatus = LoadStatus.SUCCESS;
+        switch (data.getDataEventType()) {
+            case UPDATE:
+                loadStatus = update(data, writerSettings.isApplyChangesOnly(), true);
+                break;
+            case INSERT:
+                loadStatus = insert(data);
+                break;
+            case DELETE:
+                loadStatus = delete(data, true);
+                break;
+            case BSH:
+                script(data);
+                break;
+            case SQL:
+                sql(data);
+                break;
+            case CREATE:
+                create(data);
+                break;
+            default:
+                break;
+        }
+
+        if (loadStatus == LoadStatus.CONFLICT) {
+            if (conflictResolver != null) {
+                conflictResolver.needsResolved(this, data, loadStatus);
+            } else {
+                throw new ConflictException(data, targetTable, false,
+                        writerSettings.pickConflict(targetTable, batch),
+                        (Exception) context.get(AbstractDatabaseWriter.CONFLICT_ERROR));
+            }
+        }
+    }
+
+    /**
+     * Handle a row that failed to load. The row is ignored, resolved or the
+     * failure is rethrown.
+     * 
+     * @return true if an error handler chose to ignore the failure
+     */
+    protected boolean loadFailed(CsvData data, RuntimeException ex) {
+        Statistics batchStatistics = getStatistics().get(getBatch());
+        long statementCount = batchStatistics.get(DataWriterStatisticConstants.ROWCOUNT);
+        ResolvedData resolvedData = getWriterSettings().getResolvedData(statementCount);
+
+        if (conflictResolver != null && conflictResolver.isIgnoreRow(this, data)) {
+            statistics.get(batch).increment(DataWriterStatisticConstants.IGNOREROWCOUNT);
+        } else if (conflictResolver != null && resolvedData != null) {
+            Conflict conflict = new Conflict();
+            conflict.setDetectType(DetectConflict.USE_PK_DATA);
+            conflict.setResolveType(ResolveConflict.FALLBACK);
+            conflictResolver.attemptToResolve(resolvedData, data, this, conflict);
+        } else {
+           if (filterError(data, ex)) {
+                if (!(ex instanceof SqlException)) {
+                    /*
+                     * SQL exceptions should have already been logged
+                     */
+                    logFailureDetails(ex, data, false);
+                }
+                throw ex;
+            } else {
+                statistics.get(batch).increment(DataWriterStatisticConstants.IGNORECOUNT);
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected void checkForEarlyCommit() {
         if (uncommittedCount >= writerSettings.getMaxRowsBeforeCommit()) {
             commit(true);
@@ -25,6 +25,8 @@ abstract public class DataWriterStatisticConstants {
     
     public static final String BYTECOUNT = "BYTECOUNT";
     public static final String TRANSFORMMILLIS = "TRANSFORMMILLIS";
+    public static final String TRANSFORMCACHEHITS = "TRANSFORMCACHEHITS";
+    public static final String TRANSFORMCACHEMISSES = "TRANSFORMCACHEMISSES";
     public static final String FILTERMILLIS = "FILTERMILLIS";
     public static final String LOADMILLIS = "LOADMILLIS";
     public static final String ROWCOUNT = "STATEMENTCOUNT";
@@ -33,6 +33,10 @@ public class DatabaseWriterSettings {
 
     protected long maxRowsBeforeCommit = 10000;
 
+    protected boolean useJdbcBatch = false;
+
+    protected int jdbcBatchSize = 100;
+
     // Milliseconds to sleep between commits.
     protected long commitSleepInterval = 5;
 
@@ -116,6 +120,22 @@ public class DatabaseWriterSettings {
         this.maxRowsBeforeCommit = maxRowsBeforeCommit;
     }
 
+    public boolean isUseJdbcBatch() {
+        return useJdbcBatch;
+    }
+
+    public void setUseJdbcBatch(boolean useJdbcBatch) {
+        this.useJdbcBatch = useJdbcBatch;
+    }
+
+    public int getJdbcBatchSize() {
+        return jdbcBatchSize;
+    }
+
+    public void setJdbcBatchSize(int jdbcBatchSize) {
+        this.jdbcBatchSize = jdbcBatchSize;
+    }
+
     public boolean isTreatDateTimeFieldsAsVarchar() {
         return treatDateTimeFieldsAsVarchar;
     }
@@ -23,7 +23,9 @@ package org.jumpmind.symmetric.io.data.writer;
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.Method;
+import java.sql.BatchUpdateException;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,10 +58,12 @@ import org.jumpmind.symmetric.io.data.Batch;
 import org.jumpmind.symmetric.io.data.CsvData;
 import org.jumpmind.symmetric.io.data.CsvUtils;
 import org.jumpmind.symmetric.io.data.DataContext;
+import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.writer.Conflict.DetectConflict;
 import org.jumpmind.symmetric.io.data.writer.Conflict.DetectExpressionKey;
 import org.jumpmind.util.CollectionUtils;
 import org.jumpmind.util.FormatUtils;
+import org.jumpmind.util.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -85,6 +89,19 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
     
     protected LogSqlBuilder logSqlBuilder = new LogSqlBuilder();
 
+    protected List<BatchedRow> batchedRows = new ArrayList<BatchedRow>();
+
+    protected ISqlTransaction batchedRowsTransaction;
+
+    protected boolean replayingBatchedRows;
+
+    /**
+     * Set once the driver runs a batched update or delete without reporting
+     * how many rows it changed. After that only inserts are batched, because
+     * an update or delete that found no row would look applied.
+     */
+    protected boolean batchUpdateCountsUnknown;
+
     public DefaultDatabaseWriter(IDatabasePlatform platform) {
         this(platform, null, null);
     }
@@ -131,6 +148,7 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
 
     @Override
     public boolean start(Table table) {
+        flushBatchedRows();
         this.currentDmlStatement = null;
         boolean process = super.start(table);
         if (process && targetTable != null) {
@@ -141,6 +159,7 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
 
     @Override
     public void end(Table table) {
+        flushBatchedRows();
         super.end(table);
         if (this.transaction.isAllowInsertIntoAutoIncrement()) {
             // SQL Server using JDBC Batch loading requires a flush before turning off the identity insert.
@@ -151,6 +170,9 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
 
     @Override
     public void end(Batch batch, boolean inError) {
+        if (!inError) {
+            flushBatchedRows();
+        }
         this.currentDmlStatement = null;
         if (inError) {
             allowInsertIntoAutoIncrementColumns(false, targetTable);
@@ -168,6 +190,7 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
 
     @Override
     protected void commit(boolean earlyCommit) {
+        flushBatchedRows();
         if (this.transaction != null) {
             try {
                 statistics.get(batch).startTimer(DataWriterStatisticConstants.LOADMILLIS);
@@ -186,6 +209,7 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
     }
     
     protected void commit(boolean earlyCommit, ISqlTransaction newTransaction) {
+        flushBatchedRows();
         if (this.transaction != null) {
             try {
                 statistics.get(batch).startTimer(DataWriterStatisticConstants.LOADMILLIS);
@@ -205,6 +229,7 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
 
     @Override
     protected void rollback() {
+        batchedRows.clear();
         if (this.transaction != null) {
             try {
                 statistics.get(batch).startTimer(DataWriterStatisticConstants.LOADMILLIS);
@@ -597,6 +622,7 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
     
     @Override
     protected boolean create(CsvData data) {
+        flushBatchedRows();
         String xml = null;
         try {
             // Placeholder to ensure target platform and transaction is returned.  SYM_* tables are not created through this process.
@@ -634,6 +660,7 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
 
     @Override
     protected boolean sql(CsvData data) {
+        flushBatchedRows();
         try {
             statistics.get(batch).startTimer(DataWriterStatisticConstants.LOADMILLIS);
             String[] parsedData = data.getParsedData(CsvData.ROW_DATA);
@@ -717,6 +744,10 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
                     detectType);
         }
 
+        if (requiresNew) {
+            flushBatchedRows();
+        }
+
         return requiresNew;
     }
 
@@ -758,6 +789,16 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
     
     @Override
     protected void targetTableWasChangedByFilter(Table oldTargetTable) {
+        if (batchedRows.size() > 0) {
+            // the batched rows belong to the table that was replaced
+            Table newTargetTable = targetTable;
+            targetTable = oldTargetTable;
+            try {
+                flushBatchedRows();
+            } finally {
+                targetTable = newTargetTable;
+            }
+        }
         // allow for auto increment columns to be inserted into if appropriate
         if (oldTargetTable!=null) {
             allowInsertIntoAutoIncrementColumns(false, oldTargetTable);            
@@ -1020,6 +1061,12 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
     }
     
     protected int execute(CsvData data, String[] values) {
+        ISqlTransaction transaction = getTransaction();
+        boolean batched = isUseJdbcBatch(data) && startBatchMode(transaction);
+        if (batched && (batchedRows.size() >= writerSettings.getJdbcBatchSize()
+                || transaction != batchedRowsTransaction)) {
+            flushBatchedRows();
+        }
         currentDmlValues = getPlatform().getObjectValues(batch.getBinaryEncoding(), values,
                 currentDmlStatement.getMetaData(), false, writerSettings.isFitToColumn());
         if (log.isDebugEnabled()) {
@@ -1027,7 +1074,222 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
                     dmlValuesToString(currentDmlValues, this.currentDmlStatement.getTypes()),
                     TypeMap.getJdbcTypeDescriptions(this.currentDmlStatement.getTypes()));
         }
-        return getTransaction().addRow(data, currentDmlValues, this.currentDmlStatement.getTypes());
+        if (batched) {
+            Statistics batchStatistics = statistics.get(batch);
+            BatchedRow row = new BatchedRow(data, targetTable.getName(),
+                    batchStatistics.get(DataWriterStatisticConstants.ROWCOUNT),
+                    batchStatistics.get(DataWriterStatisticConstants.LINENUMBER));
+            batchedRows.add(row);
+            batchedRowsTransaction = transaction;
+            transaction.addRow(row, currentDmlValues, this.currentDmlStatement.getTypes());
+            /*
+             * The row is counted as loaded until the batch is flushed. If it
+             * turns out it was not, it is replayed by itself.
+             */
+            return 1;
+        } else if (isUseJdbcBatch() && transaction.isInBatchMode()) {
+            flushBatchedRows();
+            transaction.setInBatchMode(false);
+            try {
+                return transaction.addRow(data, currentDmlValues, this.currentDmlStatement.getTypes());
+            } finally {
+                transaction.setInBatchMode(true);
+            }
+        } else {
+            return transaction.addRow(data, currentDmlValues, this.currentDmlStatement.getTypes());
+        }
+    }
+
+    /**
+     * @return true if inserts, updates and deletes should be sent to the
+     *         database in JDBC batches
+     */
+    protected boolean isUseJdbcBatch() {
+        return writerSettings.isUseJdbcBatch() && writerSettings.getJdbcBatchSize() > 1 && !replayingBatchedRows;
+    }
+
+    protected boolean isUseJdbcBatch(CsvData data) {
+        return isUseJdbcBatch() && (!batchUpdateCountsUnknown || data.getDataEventType() == DataEventType.INSERT);
+    }
+
+    protected boolean startBatchMode(ISqlTransaction transaction) {
+        if (!transaction.isInBatchMode()) {
+            transaction.setInBatchMode(true);
+            /*
+             * The writer flushes the batch itself so that it can check the
+             * update count of each row
+             */
+            transaction.setBatchSize(Integer.MAX_VALUE);
+        }
+        return transaction.isInBatchMode();
+    }
+
+    /**
+     * Send the batched rows to the database. Rows that failed or did not
+     * change the database are replayed one at a time, so conflict resolution
+     * and error handling see them just as they would without batching.
+     */
+    protected void flushBatchedRows() {
+        if (batchedRows.size() > 0) {
+            List<BatchedRow> rows = batchedRows;
+            batchedRows = new ArrayList<BatchedRow>();
+            ISqlTransaction transaction = batchedRowsTransaction;
+            boolean useSavepoint = getPlatform().getDatabaseInfo().isRequiresSavePointsInTransaction();
+            List<BatchedRow> rowsToReplay = new ArrayList<BatchedRow>();
+            if (useSavepoint) {
+                transaction.execute("savepoint sym");
+            }
+            try {
+                int[] updateCounts = transaction.flushWithUpdateCounts();
+                for (int i = 0; i < rows.size(); i++) {
+                    int updateCount = i < updateCounts.length ? updateCounts[i] : 0;
+                    if (updateCount == Statement.SUCCESS_NO_INFO) {
+                        /*
+                         * An insert either adds its row or fails, but an
+                         * update or delete might not have found its row
+                         */
+                        if (rows.get(i).data.getDataEventType() != DataEventType.INSERT) {
+                            batchUpdateCountsUnknown = true;
+                            rowsToReplay.add(rows.get(i));
+                        }
+                    } else if (updateCount <= 0) {
+                        rowsToReplay.add(rows.get(i));
+                    }
+                }
+            } catch (SqlException ex) {
+                List<BatchedRow> unflushedRows = transaction.getUnflushedMarkers(true);
+                if (useSavepoint) {
+                    transaction.execute("rollback to savepoint sym");
+                    rowsToReplay = rows;
+                } else {
+                    rowsToReplay = withoutAppliedInserts(rows, unflushedRows, getBatchUpdateCounts(ex));
+                }
+                log.debug("A batch of {} rows failed with: {}", rows.size(), ex.getMessage());
+            } finally {
+                if (useSavepoint) {
+                    transaction.execute("release savepoint sym");
+                }
+            }
+            if (rowsToReplay.size() > 0) {
+                log.debug("Replaying {} of {} batched rows one at a time", rowsToReplay.size(), rows.size());
+                replay(rowsToReplay);
+            }
+        }
+    }
+
+    /**
+     * Without a savepoint the rows of a failed batch that the driver ran are
+     * still applied, so an insert it ran without reporting a count must not
+     * be replayed, while an update or delete might not have found its row
+     */
+    protected List<BatchedRow> withoutAppliedInserts(List<BatchedRow> rows, List<BatchedRow> unflushedRows,
+            int[] updateCounts) {
+        if (updateCounts == null) {
+            return unflushedRows;
+        }
+        List<BatchedRow> appliedInserts = new ArrayList<BatchedRow>();
+        for (int i = 0; i < rows.size() && i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                if (rows.get(i).data.getDataEventType() == DataEventType.INSERT) {
+                    appliedInserts.add(rows.get(i));
+                } else {
+                    batchUpdateCountsUnknown = true;
+                }
+            }
+        }
+        List<BatchedRow> rowsToReplay = new ArrayList<BatchedRow>(unflushedRows.size());
+        for (BatchedRow row : unflushedRows) {
+            boolean applied = false;
+            for (BatchedRow appliedInsert : appliedInserts) {
+                if (appliedInsert == row) {
+                    applied = true;
+                    break;
+                }
+            }
+            if (!applied) {
+                rowsToReplay.add(row);
+            }
+        }
+        return rowsToReplay;
+    }
+
+    protected int[] getBatchUpdateCounts(Throwable ex) {
+        while (ex != null) {
+            if (ex instanceof BatchUpdateException) {
+                return ((BatchUpdateException) ex).getUpdateCounts();
+            }
+            ex = ex.getCause();
+        }
+        return null;
+    }
+
+    protected void replay(List<BatchedRow> rows) {
+        ISqlTransaction transaction = batchedRowsTransaction;
+        Statistics batchStatistics = statistics.get(batch);
+        long rowCount = batchStatistics.get(DataWriterStatisticConstants.ROWCOUNT);
+        long lineNumber = batchStatistics.get(DataWriterStatisticConstants.LINENUMBER);
+        CsvData currentData = context.getData();
+        DmlStatement dmlStatement = currentDmlStatement;
+        CsvData data = lastData;
+        boolean applyChangesOnly = lastApplyChangesOnly;
+        boolean useConflictDetection = lastUseConflictDetection;
+
+        replayingBatchedRows = true;
+        transaction.setInBatchMode(false);
+        try {
+            for (BatchedRow row : rows) {
+                String countName = getCountStatisticName(row.data);
+                if (countName != null) {
+                    batchStatistics.increment(countName, -1);
+                    batchStatistics.increment(String.format("%s %s", row.tableName, countName), -1);
+                }
+                /*
+                 * The row number, line number and data of the context
+                 * identify the failed row if the replay fails
+                 */
+                batchStatistics.set(DataWriterStatisticConstants.ROWCOUNT, row.rowNumber);
+                batchStatistics.set(DataWriterStatisticConstants.LINENUMBER, row.lineNumber);
+                context.setData(row.data);
+                context.put(CONFLICT_ERROR, null);
+                currentDmlStatement = null;
+                lastData = null;
+                try {
+                    load(row.data);
+                } catch (IgnoreBatchException ex) {
+                    throw ex;
+                } catch (RuntimeException ex) {
+                    loadFailed(row.data, ex);
+                }
+            }
+        } finally {
+            replayingBatchedRows = false;
+            transaction.setInBatchMode(true);
+        }
+
+        batchStatistics.set(DataWriterStatisticConstants.ROWCOUNT, rowCount);
+        batchStatistics.set(DataWriterStatisticConstants.LINENUMBER, lineNumber);
+        context.setData(currentData);
+        context.put(CONFLICT_ERROR, null);
+        lastData = data;
+        lastApplyChangesOnly = applyChangesOnly;
+        lastUseConflictDetection = useConflictDetection;
+        currentDmlStatement = dmlStatement;
+        if (currentDmlStatement != null) {
+            prepare();
+        }
+    }
+
+    protected String getCountStatisticName(CsvData data) {
+        DataEventType eventType = data.getDataEventType();
+        if (eventType == DataEventType.INSERT) {
+            return DataWriterStatisticConstants.INSERTCOUNT;
+        } else if (eventType == DataEventType.UPDATE) {
+            return DataWriterStatisticConstants.UPDATECOUNT;
+        } else if (eventType == DataEventType.DELETE) {
+            return DataWriterStatisticConstants.DELETECOUNT;
+        } else {
+            return null;
+        }
     }
 
     @Override
@@ -1142,6 +1404,12 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
 
     }
     
+    @Override
+    protected boolean script(CsvData data) {
+        flushBatchedRows();
+        return super.script(data);
+    }
+
     @Override
     protected void allowInsertIntoAutoIncrementColumns(boolean value, Table table) {
         DatabaseInfo dbInfo = getPlatform(table).getDatabaseInfo();
@@ -1151,4 +1419,27 @@ public class DefaultDatabaseWriter extends AbstractDatabaseWriter {
         getTransaction(table).allowInsertIntoAutoIncrementColumns(value, table, quote, catalogSeparator, schemaSeparator);
     }
     
+    /**
+     * A row that was added to a JDBC batch, along with what is needed to
+     * replay it by itself.
+     */
+    protected static class BatchedRow {
+
+        protected CsvData data;
+
+        protected String tableName;
+
+        protected long rowNumber;
+
+        protected long lineNumber;
+
+        public BatchedRow(CsvData data, String tableName, long rowNumber, long lineNumber) {
+            this.data = data;
+            this.tableName = tableName;
+            this.rowNumber = rowNumber;
+            this.lineNumber = lineNumber;
+        }
+
+    }
+
 }
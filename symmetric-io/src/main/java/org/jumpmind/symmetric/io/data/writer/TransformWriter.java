@@ -35,6 +35,7 @@ import org.jumpmind.symmetric.io.data.CsvData;
 import org.jumpmind.symmetric.io.data.DataContext;
 import org.jumpmind.symmetric.io.data.DataEventType;
 import org.jumpmind.symmetric.io.data.IDataWriter;
+import org.jumpmind.symmetric.io.data.transform.ICachingColumnTransform;
 import org.jumpmind.symmetric.io.data.transform.IColumnTransform;
 import org.jumpmind.symmetric.io.data.transform.IgnoreColumnException;
 import org.jumpmind.symmetric.io.data.transform.IgnoreRowException;
@@ -61,6 +62,7 @@ public class TransformWriter extends NestedDataWriter {
     protected List<TransformTable> activeTransforms;
     protected Batch batch;
     protected Map<String, IColumnTransform<?>> columnTransforms;
+    protected List<ICachingColumnTransform> cachingColumnTransforms;
     protected Table lastTransformedTable;
     
     public TransformWriter(IDatabasePlatform platform, TransformPoint transformPoint,
@@ -71,6 +73,14 @@ public class TransformWriter extends NestedDataWriter {
         this.platform = platform;
         this.transformPoint = transformPoint == null ? TransformPoint.LOAD : transformPoint;
         this.transformsBySourceTable = toMap(transforms);
+        this.cachingColumnTransforms = new ArrayList<ICachingColumnTransform>();
+        if (columnTransforms != null && this.transformPoint == TransformPoint.LOAD) {
+            for (IColumnTransform<?> columnTransform : columnTransforms.values()) {
+                if (columnTransform instanceof ICachingColumnTransform) {
+                    cachingColumnTransforms.add((ICachingColumnTransform) columnTransform);
+                }
+            }
+        }
     }
     
     protected Map<String, List<TransformTable>> toMap(TransformTable[] transforms) {
@@ -192,6 +202,7 @@ public class TransformWriter extends NestedDataWriter {
                     }
                     if (processData || !csvData.requiresTable()) {
                         this.nestedWriter.write(csvData);
+                        tableModified(transformedTable);
                     }
                 }
             }
@@ -200,6 +211,7 @@ public class TransformWriter extends NestedDataWriter {
                 super.start(sourceTable);
             }
             super.write(data);
+            tableModified(sourceTable != null ? sourceTable : context.getTable());
             if (sourceTable != null) {
                 super.end(sourceTable);
             }
@@ -207,6 +219,18 @@ public class TransformWriter extends NestedDataWriter {
 
     }
 
+    /**
+     * Let column transforms that cache what they read drop what a write to the
+     * table made stale
+     */
+    protected void tableModified(Table table) {
+        if (table != null) {
+            for (ICachingColumnTransform columnTransform : cachingColumnTransforms) {
+                columnTransform.tableModified(context, table);
+            }
+        }
+    }
+
     protected List<TransformedData> transform(DataEventType eventType, DataContext context,
             TransformTable transformation, Map<String, String> sourceKeyValues,
             Map<String, String> oldSourceValues, Map<String, String> sourceValues) {
@@ -471,4 +495,23 @@ public class TransformWriter extends NestedDataWriter {
 
     }
 
+    @Override
+    public void end(Batch batch, boolean inError) {
+        Statistics stats = this.nestedWriter.getStatistics().get(batch);
+        if (stats != null && log.isDebugEnabled()
+                && (stats.get(DataWriterStatisticConstants.TRANSFORMCACHEHITS) > 0
+                        || stats.get(DataWriterStatisticConstants.TRANSFORMCACHEMISSES) > 0)) {
+            log.debug("Transform cache for batch {} had {} hits and {} misses", new Object[] { batch.getNodeBatchId(),
+                    stats.get(DataWriterStatisticConstants.TRANSFORMCACHEHITS),
+                    stats.get(DataWriterStatisticConstants.TRANSFORMCACHEMISSES) });
+        }
+        try {
+            super.end(batch, inError);
+        } finally {
+            for (ICachingColumnTransform columnTransform : cachingColumnTransforms) {
+                columnTransform.batchEnded(context, inError);
+            }
+        }
+    }
+
 }
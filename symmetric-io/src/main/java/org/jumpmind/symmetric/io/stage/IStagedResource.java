@@ -46,11 +46,23 @@ public interface IStagedResource {
     public InputStream getInputStream();    
     
     public File getFile();
+
+    /**
+     * The gzip compressed copy of the file that is kept next to it, which may
+     * not exist. It is removed along with the resource.
+     */
+    public File getCompressedFile();
     
     public void close();
 
     public long getSize();
 
+    /**
+     * @return The number of bytes of memory held by the resource while it is
+     *         staged in memory
+     */
+    public long getMemorySize();
+
     public State getState();
     
     public String getPath();
@@ -71,6 +83,14 @@ public interface IStagedResource {
     
     public boolean isInUse();
 
+    /**
+     * @return true if the batch has been acknowledged, so the resource is the
+     *         first to be spilled from memory to disk
+     */
+    public boolean isAcknowledged();
+
+    public void setAcknowledged(boolean acknowledged);
+
     public void dereference();
 
     public void reference();
@@ -36,4 +36,32 @@ public interface IStagingManager {
 
     public StagingFileLock acquireFileLock(String serverInfo, Object... path);
 
+    /**
+     * @return The number of bytes of memory held or reserved by resources
+     *         that are staged in memory
+     */
+    public long getMemoryBufferSize();
+
+    /**
+     * @return The number of bytes that all resources together may stage in
+     *         memory, or 0 for no limit
+     */
+    public long getMemoryBudget();
+
+    /**
+     * @return The number of resources that were spilled from memory to disk
+     *         to stay within the memory budget
+     */
+    public long getMemorySpillCount();
+
+    /**
+     * @return The number of times a resource was read from memory
+     */
+    public long getMemoryHitCount();
+
+    /**
+     * @return The number of times a resource was read from disk
+     */
+    public long getMemoryMissCount();
+
 }
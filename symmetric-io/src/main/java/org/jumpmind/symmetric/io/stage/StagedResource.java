@@ -24,7 +24,6 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -33,8 +32,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
 import java.util.Map;
@@ -58,7 +55,11 @@ public class StagedResource implements IStagedResource {
 
     protected String path;
 
-    protected StringBuilder memoryBuffer;
+    /*
+     * Spilling to disk clears this from another thread, so readers that are
+     * not synchronized read it once into a local
+     */
+    protected volatile StagingBuffer memoryBuffer;
 
     protected long lastUpdateTime;
 
@@ -73,6 +74,10 @@ public class StagedResource implements IStagedResource {
     protected BufferedWriter writer;
     
     protected StagingManager stagingManager;
+
+    protected long reservedMemory;
+
+    protected boolean acknowledged;
     
     public StagedResource(File directory, String path, StagingManager stagingManager) {
         this.directory = directory;
@@ -126,12 +131,21 @@ public class StagedResource implements IStagedResource {
                 outputStream != null;
     }
     
+    public boolean isAcknowledged() {
+        return acknowledged;
+    }
+
+    public void setAcknowledged(boolean acknowledged) {
+        this.acknowledged = acknowledged;
+    }
+
     public boolean isFileResource() {     
         return file != null && file.exists();
     }
     
     public boolean isMemoryResource() {
-        return memoryBuffer != null && memoryBuffer.length() > 0;
+        StagingBuffer buffer = memoryBuffer;
+        return buffer != null && buffer.length() > 0;
     }
 
     protected File buildFile(State state) {
@@ -243,10 +257,12 @@ public class StagedResource implements IStagedResource {
                 } catch (IOException ex) {
                     throw new IoException(ex);
                 }
+                stagingManager.fileResourceRead(this);
             } else if (memoryBuffer != null && memoryBuffer.length() > 0) {
-                reader = new BufferedReader(new StringReader(memoryBuffer.toString()));
+                reader = memoryBuffer.getReader();
                 createReadersMap();
                 readers.put(thread, reader);
+                stagingManager.memoryResourceRead(this);
             } else {
                 throw new IllegalStateException(
                         "There is no content to read.  Memory buffer was empty and "
@@ -306,6 +322,11 @@ public class StagedResource implements IStagedResource {
                 writer.close();
             } catch(IOException e) { }
             writer = null;
+            if (reservedMemory > 0) {
+                long reserved = reservedMemory;
+                reservedMemory = 0;
+                stagingManager.memoryResourceWritten(this, reserved);
+            }
         }
         
         if (outputStream != null) {
@@ -361,10 +382,12 @@ public class StagedResource implements IStagedResource {
                 } catch (IOException ex) {
                     throw new IoException(ex);
                 }
+                stagingManager.fileResourceRead(this);
             } else if (memoryBuffer != null && memoryBuffer.length() > 0) {
-                reader = new ByteArrayInputStream(memoryBuffer.toString().getBytes(StandardCharsets.UTF_8));
+                reader = memoryBuffer.getInputStream();
                 createInputStreamsMap();
                 inputStreams.put(thread, reader);
+                stagingManager.memoryResourceRead(this);
             } else {
                 throw new IllegalStateException("There is no content to read. "
                         + file.getAbsolutePath() + " was not found.");
@@ -385,9 +408,16 @@ public class StagedResource implements IStagedResource {
                 file.delete();
             } else if (this.memoryBuffer != null) {
                 log.warn("We had to delete the memory buffer for {} because it already existed", getPath());
+                this.memoryBuffer.release();
                 this.memoryBuffer = null;
+                stagingManager.memoryResourceRemoved(this);
+            }
+            if (threshold > 0 && stagingManager.reserveMemory(threshold)) {
+                reservedMemory = threshold;
+            } else {
+                threshold = 0;
             }
-            this.memoryBuffer = threshold > 0 ? new StringBuilder() : null;
+            this.memoryBuffer = threshold > 0 ? new StagingBuffer(stagingManager.getMemoryBufferPool()) : null;
             writer = createWriter(threshold);
         }
         return writer;
@@ -397,18 +427,57 @@ public class StagedResource implements IStagedResource {
         return new BufferedWriter(new ThresholdFileWriter(threshold, this.memoryBuffer, file));        
     }
 
+    /**
+     * Move the content of a resource that is staged in memory to its file.
+     * 
+     * @return false if the resource is not in memory or is being written to
+     */
+    public synchronized boolean spillToFile() {
+        if (writer != null || outputStream != null || memoryBuffer == null || memoryBuffer.length() == 0) {
+            return false;
+        }
+        try {
+            file.getParentFile().mkdirs();
+            OutputStream out = createOutputStream();
+            try {
+                memoryBuffer.writeTo(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to spill staging resource {} to disk", path, ex);
+            FileUtils.deleteQuietly(file);
+            return false;
+        }
+        memoryBuffer.release();
+        memoryBuffer = null;
+        return true;
+    }
+
+    public long getMemorySize() {
+        StagingBuffer buffer = memoryBuffer;
+        return buffer != null ? buffer.getMemorySize() : 0;
+    }
+
+    /*
+     * The memory buffer is checked before the file because a spill writes the
+     * file before it releases the buffer
+     */
     public long getSize() {
-        if (file != null && file.exists()) {
+        StagingBuffer buffer = memoryBuffer;
+        long length = buffer != null ? buffer.length() : 0;
+        if (length > 0) {
+            return length;
+        } else if (file != null && file.exists()) {
             return file.length();
-        } else if (memoryBuffer != null) {
-            return memoryBuffer.length();
         } else {
             return 0;
         }
     }
 
     public boolean exists() {
-        return (file != null && file.exists() && file.length() > 0) || (memoryBuffer != null && memoryBuffer.length() > 0);
+        StagingBuffer buffer = memoryBuffer;
+        return (buffer != null && buffer.length() > 0) || (file != null && file.exists() && file.length() > 0);
     }
 
     public long getLastUpdateTime() {
@@ -427,10 +496,18 @@ public class StagedResource implements IStagedResource {
             deleted = !file.exists();
         }
 
-        if (memoryBuffer != null) {
+        File compressedFile = getCompressedFile();
+        if (compressedFile != null && compressedFile.exists()) {
+            FileUtils.deleteQuietly(compressedFile);
+        }
+
+        StagingBuffer buffer = memoryBuffer;
+        if (buffer != null) {
             memoryBuffer = null;
+            buffer.release();
             deleted = true;
         }
+        stagingManager.memoryResourceRemoved(this);
 
         stagingManager.removeResourcePath(path);
 
@@ -446,14 +523,19 @@ public class StagedResource implements IStagedResource {
         return file;
     }
 
+    public File getCompressedFile() {
+        return file != null ? new File(file.getPath() + ".gz") : null;
+    }
+
     public String getPath() {
         return path;
     }
 
     @Override
     public String toString() {
+        StagingBuffer buffer = memoryBuffer;
         return (file != null && file.exists()) ? file.getAbsolutePath() : String.format("%d bytes in memory",
-                memoryBuffer != null ? memoryBuffer.length() : 0);
+                buffer != null ? buffer.length() : 0);
     }
 
 }
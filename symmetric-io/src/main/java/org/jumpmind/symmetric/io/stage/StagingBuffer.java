@@ -0,0 +1,277 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in memory staging buffer that holds characters encoded as UTF-8 in
+ * segments from a {@link StagingBufferPool}. Input streams read the segments
+ * directly, so a buffer that is read many times is never copied.
+ */
+public class StagingBuffer {
+
+    protected StagingBufferPool pool;
+
+    protected List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+
+    protected ByteBuffer current;
+
+    protected long length;
+
+    /** A high surrogate that is waiting for the low surrogate of its pair */
+    protected char pendingHighSurrogate;
+
+    protected AtomicInteger openStreams = new AtomicInteger();
+
+    public StagingBuffer(StagingBufferPool pool) {
+        this.pool = pool;
+    }
+
+    public synchronized void write(char[] cbuf, int off, int len) {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            char c = cbuf[i];
+            if (pendingHighSurrogate != 0) {
+                char high = pendingHighSurrogate;
+                pendingHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    putCodePoint(Character.toCodePoint(high, c));
+                    continue;
+                }
+                put((byte) '?');
+            }
+            if (c < 0x80) {
+                put((byte) c);
+            } else if (c < 0x800) {
+                put((byte) (0xc0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c)) {
+                pendingHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                put((byte) '?');
+            } else {
+                put((byte) (0xe0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    public synchronized void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            if (current == null || !current.hasRemaining()) {
+                nextSegment();
+            }
+            int count = Math.min(len, current.remaining());
+            current.put(b, off, count);
+            off += count;
+            len -= count;
+            length += count;
+        }
+    }
+
+    protected void putCodePoint(int codePoint) {
+        put((byte) (0xf0 | (codePoint >> 18)));
+        put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+        put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+        put((byte) (0x80 | (codePoint & 0x3f)));
+    }
+
+    protected void put(byte b) {
+        if (current == null || !current.hasRemaining()) {
+            nextSegment();
+        }
+        current.put(b);
+        length++;
+    }
+
+    protected void nextSegment() {
+        current = pool.acquire();
+        segments.add(current);
+    }
+
+    /**
+     * @return A high surrogate that was written without its low surrogate,
+     *         or 0 if there is none
+     */
+    public synchronized char getPendingHighSurrogate() {
+        return pendingHighSurrogate;
+    }
+
+    /**
+     * @return The number of encoded bytes in the buffer
+     */
+    public synchronized long length() {
+        return length;
+    }
+
+    /**
+     * @return The number of bytes of memory held by the buffer
+     */
+    public synchronized long getMemorySize() {
+        return (long) segments.size() * pool.getSegmentSize();
+    }
+
+    /**
+     * @return A stream over the bytes that have been written so far
+     */
+    public synchronized InputStream getInputStream() {
+        ByteBuffer[] views = new ByteBuffer[segments.size()];
+        for (int i = 0; i < views.length; i++) {
+            views[i] = segments.get(i).duplicate();
+        }
+        openStreams.incrementAndGet();
+        return new SegmentInputStream(views, length);
+    }
+
+    public BufferedReader getReader() {
+        return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        long remaining = length;
+        byte[] copyBuffer = null;
+        for (ByteBuffer segment : segments) {
+            int count = (int) Math.min(remaining, segment.capacity());
+            if (segment.hasArray()) {
+                out.write(segment.array(), segment.arrayOffset(), count);
+            } else {
+                if (copyBuffer == null) {
+                    copyBuffer = new byte[pool.getSegmentSize()];
+                }
+                ByteBuffer view = segment.duplicate();
+                view.clear();
+                view.get(copyBuffer, 0, count);
+                out.write(copyBuffer, 0, count);
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Empty the buffer and give its segments back to the pool. Segments are
+     * only reused if no input streams are open on them.
+     */
+    public synchronized void release() {
+        boolean reuse = openStreams.get() == 0;
+        for (ByteBuffer segment : segments) {
+            pool.release(segment, reuse);
+        }
+        segments.clear();
+        current = null;
+        length = 0;
+        pendingHighSurrogate = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d bytes in memory", length());
+    }
+
+    class SegmentInputStream extends InputStream {
+
+        ByteBuffer[] views;
+
+        int index;
+
+        ByteBuffer view;
+
+        long remaining;
+
+        boolean closed;
+
+        SegmentInputStream(ByteBuffer[] views, long length) {
+            this.views = views;
+            this.remaining = length;
+        }
+
+        protected boolean nextView() {
+            while (view == null || !view.hasRemaining()) {
+                if (remaining <= 0 || index >= views.length) {
+                    return false;
+                }
+                view = views[index++];
+                view.limit((int) Math.min(view.capacity(), remaining));
+                view.position(0);
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextView()) {
+                return -1;
+            }
+            remaining--;
+            return view.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!nextView()) {
+                return -1;
+            }
+            int count = Math.min(len, view.remaining());
+            view.get(b, off, count);
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && nextView()) {
+                int count = (int) Math.min(n - skipped, view.remaining());
+                view.position(view.position() + count);
+                remaining -= count;
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                openStreams.decrementAndGet();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.stage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the fixed size segments that {@link StagingBuffer}s are made of.
+ * Released segments are kept for reuse up to a maximum number of bytes.
+ * Segments can be allocated outside of the heap.
+ */
+public class StagingBufferPool {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 8192;
+
+    public static final long DEFAULT_MAX_POOLED_BYTES = 16 * 1024 * 1024;
+
+    protected int segmentSize;
+
+    protected boolean direct;
+
+    protected long maxPooledBytes;
+
+    protected ConcurrentLinkedQueue<ByteBuffer> segments = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    protected AtomicLong pooledBytes = new AtomicLong();
+
+    protected AtomicLong allocatedBytes = new AtomicLong();
+
+    public StagingBufferPool() {
+        this(DEFAULT_SEGMENT_SIZE, false, DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    /**
+     * @param segmentSize The number of bytes in each segment
+     * @param direct Whether segments are allocated outside of the heap
+     * @param maxPooledBytes The number of bytes of released segments to keep for reuse
+     */
+    public StagingBufferPool(int segmentSize, boolean direct, long maxPooledBytes) {
+        this.segmentSize = segmentSize;
+        this.direct = direct;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer segment = segments.poll();
+        if (segment != null) {
+            pooledBytes.addAndGet(-segmentSize);
+            segment.clear();
+        } else {
+            segment = direct ? ByteBuffer.allocateDirect(segmentSize) : ByteBuffer.allocate(segmentSize);
+        }
+        allocatedBytes.addAndGet(segmentSize);
+        return segment;
+    }
+
+    /**
+     * @param segment A segment that was acquired from this pool
+     * @param reuse Whether the segment may be handed out again. Segments that
+     *            might still be read should not be reused.
+     */
+    public void release(ByteBuffer segment, boolean reuse) {
+        allocatedBytes.addAndGet(-segmentSize);
+        if (reuse && pooledBytes.get() + segmentSize <= maxPooledBytes) {
+            pooledBytes.addAndGet(segmentSize);
+            segments.offer(segment);
+        }
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * @return The number of bytes in segments that have been acquired and not
+     *         released
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * @return The number of bytes in released segments waiting to be reused
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+}
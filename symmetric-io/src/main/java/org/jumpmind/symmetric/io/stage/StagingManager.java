@@ -27,11 +27,15 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -42,7 +46,9 @@ import org.slf4j.LoggerFactory;
 
 public class StagingManager implements IStagingManager {
 
-    protected static final String LOCK_EXTENSION = ".lock";
+    protected static final String LOCK_EXTENSION = ".lock";
+
+    protected static final String COMPRESSED_TMP_EXTENSION = ".gz.tmp";
 
     protected static final Logger log = LoggerFactory.getLogger(StagingManager.class);
 
@@ -56,6 +62,26 @@ public class StagingManager implements IStagingManager {
     
     protected long lowFreeSpaceThresholdMegabytes;
 
+    protected StagingBufferPool memoryBufferPool = new StagingBufferPool();
+
+    protected long memoryBudgetBytes;
+
+    /**
+     * Resources that are staged in memory and the number of bytes they hold,
+     * from least to most recently used
+     */
+    protected LinkedHashMap<StagedResource, Long> memoryResources = new LinkedHashMap<StagedResource, Long>(16, 0.75f, true);
+
+    protected long memoryResourceBytes;
+
+    protected long memoryReservedBytes;
+
+    protected AtomicLong memorySpillCount = new AtomicLong();
+
+    protected AtomicLong memoryHitCount = new AtomicLong();
+
+    protected AtomicLong memoryMissCount = new AtomicLong();
+
     public StagingManager(String directory, boolean clusterEnabled, long lowFreeSpaceThresholdMegabytes) {
         log.info("The staging directory was initialized at the following location: " + directory);
         this.directory = new File(directory);
@@ -122,6 +148,8 @@ public class StagingManager implements IStagingManager {
         for (Path entry : stream) {
             if (Files.isDirectory(entry)) {
                 clean(entry, ttlInMs, context);
+            } else if (entry.getFileName().toString().endsWith(COMPRESSED_TMP_EXTENSION)) {
+                cleanCompressedTmp(entry, ttlInMs, context);
             } else {     
                 try {
                     String parentDirectory = "";
@@ -160,6 +188,21 @@ public class StagingManager implements IStagingManager {
         stream.close();
     }
     
+    /**
+     * Removes a compressed copy that was left half written, such as by a crash
+     * while compressing, once it is older than the time to live.
+     */
+    protected void cleanCompressedTmp(Path entry, long ttlInMs, StagingPurgeContext context) {
+        File file = entry.toFile();
+        if (System.currentTimeMillis() - file.lastModified() > ttlInMs) {
+            long size = file.length();
+            if (FileUtils.deleteQuietly(file)) {
+                context.incrementPurgedFileCount();
+                context.addPurgedFileBytes(size);
+            }
+        }
+    }
+
     protected void cleanInUseCache(long ttlInMs, StagingPurgeContext context) {
         long resourceCount = 0;
         long memoryBytes = 0;
@@ -169,12 +212,13 @@ public class StagingManager implements IStagingManager {
             IStagedResource resource = entry.getValue();
             if (shouldCleanInUseCache(resource, ttlInMs, context)) {
                 resourceCount++;
+                iter.remove();
                 if (resource.isMemoryResource()) {
                     memoryBytes += resource.getSize();
                     context.incrementPurgedMemoryCount();
                     context.addPurgedMemoryBytes(resource.getSize());
+                    resource.delete();
                 }
-                iter.remove();
             }
         }
         if (resourceCount > 0) {
@@ -267,6 +311,148 @@ public class StagingManager implements IStagingManager {
         return find(buildFilePath(path));
     }
 
+    /**
+     * Reserve memory for a resource that is about to be written to memory. If
+     * the memory budget would be exceeded, resources that are staged in memory
+     * are spilled to disk to make room.
+     * 
+     * @return false if the resource should be written straight to disk
+     */
+    public boolean reserveMemory(long threshold) {
+        if (memoryBudgetBytes > 0) {
+            spillToBudget(threshold);
+        }
+        synchronized (memoryResources) {
+            if (memoryBudgetBytes > 0 && memoryResourceBytes + memoryReservedBytes + threshold > memoryBudgetBytes) {
+                return false;
+            }
+            memoryReservedBytes += threshold;
+            return true;
+        }
+    }
+
+    /**
+     * Called when a resource that reserved memory is done writing. The
+     * reservation is replaced by the memory the resource actually holds.
+     */
+    public void memoryResourceWritten(StagedResource resource, long reservedBytes) {
+        long size = resource.isMemoryResource() ? resource.getMemorySize() : 0;
+        synchronized (memoryResources) {
+            memoryReservedBytes -= reservedBytes;
+            if (size > 0) {
+                Long previousSize = memoryResources.put(resource, size);
+                memoryResourceBytes += size - (previousSize != null ? previousSize : 0);
+            }
+        }
+        if (memoryBudgetBytes > 0) {
+            spillToBudget(0);
+        }
+    }
+
+    public void memoryResourceRemoved(StagedResource resource) {
+        synchronized (memoryResources) {
+            Long size = memoryResources.remove(resource);
+            if (size != null) {
+                memoryResourceBytes -= size;
+            }
+        }
+    }
+
+    public void memoryResourceRead(StagedResource resource) {
+        synchronized (memoryResources) {
+            memoryResources.get(resource);
+        }
+        memoryHitCount.incrementAndGet();
+    }
+
+    public void fileResourceRead(StagedResource resource) {
+        memoryMissCount.incrementAndGet();
+    }
+
+    /**
+     * Spill resources to disk until there is room for the number of bytes
+     * requested. Resources that have been acknowledged go first, then the
+     * least recently used.
+     */
+    protected void spillToBudget(long requestedBytes) {
+        List<StagedResource> resourcesToSpill = new ArrayList<StagedResource>();
+        synchronized (memoryResources) {
+            long excessBytes = memoryResourceBytes + memoryReservedBytes + requestedBytes - memoryBudgetBytes;
+            for (int pass = 0; pass < 2 && excessBytes > 0; pass++) {
+                Iterator<Map.Entry<StagedResource, Long>> iter = memoryResources.entrySet().iterator();
+                while (excessBytes > 0 && iter.hasNext()) {
+                    Map.Entry<StagedResource, Long> entry = iter.next();
+                    if (pass > 0 || entry.getKey().isAcknowledged()) {
+                        resourcesToSpill.add(entry.getKey());
+                        excessBytes -= entry.getValue();
+                        memoryResourceBytes -= entry.getValue();
+                        iter.remove();
+                    }
+                }
+            }
+        }
+        for (StagedResource resource : resourcesToSpill) {
+            spill(resource);
+        }
+    }
+
+    protected boolean spill(StagedResource resource) {
+        boolean spilled = resource.spillToFile();
+        if (spilled) {
+            memorySpillCount.incrementAndGet();
+            log.debug("Spilled staging resource {} to disk to stay within the memory budget", resource.getPath());
+        } else if (resource.isMemoryResource()) {
+            // keep accounting for a resource that could not be spilled
+            synchronized (memoryResources) {
+                Long previousSize = memoryResources.put(resource, resource.getMemorySize());
+                memoryResourceBytes += resource.getMemorySize() - (previousSize != null ? previousSize : 0);
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * @return The number of bytes of memory held or reserved by resources
+     *         that are staged in memory
+     */
+    public long getMemoryBufferSize() {
+        synchronized (memoryResources) {
+            return memoryResourceBytes + memoryReservedBytes;
+        }
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * @param memoryBudgetBytes The number of bytes that all resources together
+     *            may stage in memory, or 0 for no limit
+     */
+    public void setMemoryBudget(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public long getMemorySpillCount() {
+        return memorySpillCount.get();
+    }
+
+    public long getMemoryHitCount() {
+        return memoryHitCount.get();
+    }
+
+    public long getMemoryMissCount() {
+        return memoryMissCount.get();
+    }
+
+    public StagingBufferPool getMemoryBufferPool() {
+        return memoryBufferPool;
+    }
+
+    public void setMemoryBufferPool(StagingBufferPool memoryBufferPool) {
+        this.memoryBufferPool = memoryBufferPool;
+    }
+
     public void removeResourcePath(String path) {
         resourcePathsCache.remove(path);
         inUse.remove(path);
@@ -325,7 +511,8 @@ public class StagingManager implements IStagingManager {
             try {
                 boolean accept = Files.isDirectory(entry) ||
                     entry.getFileName().toString().endsWith(".create")
-                    || entry.getFileName().toString().endsWith(".done");
+                    || entry.getFileName().toString().endsWith(".done")
+                    || entry.getFileName().toString().endsWith(COMPRESSED_TMP_EXTENSION);
                 return accept;
             } catch (NullPointerException ex ) {
                 return false;
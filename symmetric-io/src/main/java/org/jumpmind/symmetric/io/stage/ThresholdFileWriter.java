@@ -20,6 +20,7 @@
  */
 package org.jumpmind.symmetric.io.stage;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -27,8 +28,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.StringReader;
 import java.io.Writer;
 
 import org.jumpmind.symmetric.io.IoConstants;
@@ -44,15 +45,16 @@ public class ThresholdFileWriter extends Writer {
 
     protected BufferedWriter fileWriter;
 
-    protected StringBuilder buffer;
+    protected StagingBuffer buffer;
 
     protected long threshhold;
 
     /**
      * @param threshold The number of bytes at which to start writing to a file
+     * @param buffer The UTF-8 buffer to write to until the threshold is reached
      * @param file The file to write to after the threshold has been reached
      */
-    public ThresholdFileWriter(long threshold, StringBuilder buffer, File file) {
+    public ThresholdFileWriter(long threshold, StagingBuffer buffer, File file) {
         this.file = file;
         this.buffer = buffer;
         this.threshhold = threshold;
@@ -86,29 +88,45 @@ public class ThresholdFileWriter extends Writer {
         if (fileWriter != null) {
             fileWriter.write(cbuf, off, len);
         } else if (buffer == null || len + buffer.length() > threshhold) {
-            file.getParentFile().mkdirs();
-            fileWriter = getWriter();
-            if (buffer != null) {
-                fileWriter.write(buffer.toString());
-                buffer.setLength(0);
-                buffer = null;
-            }
+            // every character is at least one byte, so the threshold is passed
+            switchToFile();
             fileWriter.write(cbuf, off, len);
             fileWriter.flush();            
         } else {
-            buffer.append(new String(cbuf), off, len);
+            buffer.write(cbuf, off, len);
+            if (buffer.length() > threshhold) {
+                switchToFile();
+                fileWriter.flush();
+            }
+        }
+    }
+
+    protected void switchToFile() throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = getOutputStream();
+        if (buffer != null) {
+            buffer.writeTo(out);
+        }
+        fileWriter = new BufferedWriter(new OutputStreamWriter(out, IoConstants.ENCODING));
+        if (buffer != null) {
+            char pendingHighSurrogate = buffer.getPendingHighSurrogate();
+            if (pendingHighSurrogate != 0) {
+                fileWriter.write(pendingHighSurrogate);
+            }
+            buffer.release();
+            buffer = null;
         }
     }
     
-    protected BufferedWriter getWriter() throws IOException {
-         return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), IoConstants.ENCODING));
+    protected OutputStream getOutputStream() throws IOException {
+         return new BufferedOutputStream(new FileOutputStream(file));
     }
 
     public BufferedReader getReader() throws IOException {
         if (file != null && file.exists()) {
             return new BufferedReader(new InputStreamReader(new FileInputStream(file), IoConstants.ENCODING));
         } else {
-            return new BufferedReader(new StringReader(buffer.toString()));
+            return buffer.getReader();
         }
     }
     
@@ -118,8 +136,7 @@ public class ThresholdFileWriter extends Writer {
         }
         file = null;
         if (buffer != null) {
-            buffer.setLength(0);
-            buffer.trimToSize();
+            buffer.release();
         }
     }
 
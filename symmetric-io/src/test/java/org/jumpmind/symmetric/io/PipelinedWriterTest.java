@@ -0,0 +1,183 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jumpmind.util.CustomizableThreadFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelinedWriterTest {
+
+    ThreadPoolExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new CustomizableThreadFactory("pipeline"));
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testWritesInOrder() throws Exception {
+        StringWriter target = new StringWriter();
+        PipelinedWriter pipelinedWriter = new PipelinedWriter(target, 2, executor);
+        BufferedWriter writer = new BufferedWriter(pipelinedWriter, 8);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = "insert," + i;
+            writer.write(line);
+            writer.newLine();
+            expected.append(line).append(System.getProperty("line.separator"));
+        }
+        writer.flush();
+        pipelinedWriter.finish();
+        assertEquals(expected.toString(), target.toString());
+    }
+
+    @Test
+    public void testFinishLeavesTargetOpen() throws Exception {
+        CloseTrackingWriter target = new CloseTrackingWriter();
+        PipelinedWriter pipelinedWriter = new PipelinedWriter(target, 2, executor);
+        pipelinedWriter.write("batch,1");
+        pipelinedWriter.finish();
+        assertFalse(target.closed);
+        assertEquals("batch,1", target.toString());
+        try {
+            pipelinedWriter.write("batch,2");
+            fail("Expected a write after finish to fail");
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void testTargetErrorIsThrownToWriter() throws Exception {
+        Writer target = new Writer() {
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        };
+        PipelinedWriter pipelinedWriter = new PipelinedWriter(target, 1, executor);
+        try {
+            for (int i = 0; i < 100; i++) {
+                pipelinedWriter.write("data");
+                Thread.sleep(1);
+            }
+            pipelinedWriter.finish();
+            fail("Expected the error from the target");
+        } catch (IOException e) {
+            assertEquals("Broken pipe", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testAbortDiscardsUnwrittenChunksAndFreesThread() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final StringWriter written = new StringWriter();
+        Writer target = new Writer() {
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                written.write(cbuf, off, len);
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        };
+        PipelinedWriter pipelinedWriter = new PipelinedWriter(target, 2, executor);
+        pipelinedWriter.write("first");
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        pipelinedWriter.write("second");
+        pipelinedWriter.write("third");
+        pipelinedWriter.abort();
+        release.countDown();
+        assertTrue(pipelinedWriter.done.await(10, TimeUnit.SECONDS));
+        assertEquals("first", written.toString());
+
+        StringWriter next = new StringWriter();
+        for (int i = 0; i < 100 && executor.getActiveCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        PipelinedWriter nextWriter = new PipelinedWriter(next, 2, executor);
+        nextWriter.write("next");
+        nextWriter.finish();
+        assertEquals("next", next.toString());
+    }
+
+    @Test
+    public void testBusyExecutorIsRejected() throws Exception {
+        StringWriter target = new StringWriter();
+        PipelinedWriter pipelinedWriter = new PipelinedWriter(target, 2, executor);
+        try {
+            new PipelinedWriter(new StringWriter(), 2, executor);
+            fail("Expected the executor to have no free thread");
+        } catch (RejectedExecutionException e) {
+        }
+        pipelinedWriter.write("batch,1");
+        pipelinedWriter.finish();
+        assertEquals("batch,1", target.toString());
+    }
+
+    static class CloseTrackingWriter extends StringWriter {
+
+        boolean closed;
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+}
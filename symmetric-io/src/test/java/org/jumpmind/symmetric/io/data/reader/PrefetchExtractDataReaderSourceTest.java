@@ -0,0 +1,204 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.jumpmind.db.model.Table;
+import org.jumpmind.symmetric.io.data.Batch;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.util.CustomizableThreadFactory;
+import org.junit.After;
+import org.junit.Test;
+
+public class PrefetchExtractDataReaderSourceTest {
+
+    ExecutorService executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("prefetch"));
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRowsKeepTheirTables() {
+        Table table1 = new Table("table1");
+        Table table2 = new Table("table2");
+        ListSource source = new ListSource();
+        source.add(table1, false);
+        source.add(table1, true);
+        source.add(table2, false);
+
+        PrefetchExtractDataReaderSource prefetch = new PrefetchExtractDataReaderSource(source, 1,
+                executor);
+        for (int i = 0; i < 3; i++) {
+            CsvData data = prefetch.next();
+            assertSame(source.rows.get(i), data);
+            assertSame(source.tables.get(i), prefetch.getTargetTable());
+            assertSame(source.tables.get(i), prefetch.getSourceTable());
+            assertEquals(source.lobs.get(i), prefetch.requiresLobsSelectedFromSource(data));
+        }
+        assertNull(prefetch.next());
+        assertNull(prefetch.next());
+        prefetch.close();
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void testErrorIsThrownToReader() {
+        ListSource source = new ListSource();
+        source.add(new Table("table1"), false);
+        source.error = new IllegalStateException("failed");
+
+        PrefetchExtractDataReaderSource prefetch = new PrefetchExtractDataReaderSource(source, 10,
+                executor);
+        assertSame(source.rows.get(0), prefetch.next());
+        try {
+            prefetch.next();
+            fail("Expected the error from the source");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        prefetch.close();
+    }
+
+    @Test
+    public void testCloseBeforeAllRowsAreRead() {
+        ListSource source = new ListSource();
+        for (int i = 0; i < 100; i++) {
+            source.add(new Table("table1"), false);
+        }
+
+        PrefetchExtractDataReaderSource prefetch = new PrefetchExtractDataReaderSource(source, 2,
+                executor);
+        prefetch.next();
+        prefetch.close();
+        assertTrue(source.closed);
+        assertTrue(source.index < 100);
+        assertNull(prefetch.done);
+    }
+
+    @Test
+    public void testRowsAreReadDirectlyWhenNoThreadIsFree() {
+        Table table1 = new Table("table1");
+        ListSource source = new ListSource();
+        source.add(table1, true);
+        source.add(table1, false);
+
+        PrefetchExtractDataReaderSource prefetch = new PrefetchExtractDataReaderSource(source, 1, new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        for (int i = 0; i < 2; i++) {
+            CsvData data = prefetch.next();
+            assertSame(source.rows.get(i), data);
+            assertSame(table1, prefetch.getTargetTable());
+            assertEquals(source.lobs.get(i), prefetch.requiresLobsSelectedFromSource(data));
+        }
+        assertNull(prefetch.next());
+        assertNull(prefetch.done);
+        prefetch.close();
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void testInterruptWhileWaitingForRow() {
+        ListSource source = new ListSource();
+        source.add(new Table("table1"), false);
+
+        /* the task never runs, so the reader waits until it is interrupted */
+        PrefetchExtractDataReaderSource prefetch = new PrefetchExtractDataReaderSource(source, 1, new Executor() {
+            public void execute(Runnable command) {
+            }
+        });
+        Thread.currentThread().interrupt();
+        try {
+            prefetch.next();
+            fail("Expected the reader to be interrupted");
+        } catch (org.jumpmind.exception.InterruptedException e) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    static class ListSource implements IExtractDataReaderSource {
+
+        List<CsvData> rows = new ArrayList<CsvData>();
+
+        List<Table> tables = new ArrayList<Table>();
+
+        List<Boolean> lobs = new ArrayList<Boolean>();
+
+        RuntimeException error;
+
+        volatile int index = -1;
+
+        volatile boolean closed;
+
+        void add(Table table, boolean lob) {
+            rows.add(new CsvData(DataEventType.INSERT, new String[] { Integer.toString(rows.size()) }));
+            tables.add(table);
+            lobs.add(lob);
+        }
+
+        public Batch getBatch() {
+            return null;
+        }
+
+        public Table getTargetTable() {
+            return tables.get(index);
+        }
+
+        public Table getSourceTable() {
+            return tables.get(index);
+        }
+
+        public CsvData next() {
+            if (index + 1 < rows.size()) {
+                return rows.get(++index);
+            } else if (error != null) {
+                throw error;
+            }
+            return null;
+        }
+
+        public boolean requiresLobsSelectedFromSource(CsvData data) {
+            return lobs.get(index);
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+
+}
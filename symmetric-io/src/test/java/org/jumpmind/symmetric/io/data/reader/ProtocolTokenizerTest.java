@@ -0,0 +1,170 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jumpmind.symmetric.csv.CsvReader;
+import org.jumpmind.symmetric.io.data.CsvUtils;
+import org.junit.Test;
+
+public class ProtocolTokenizerTest {
+
+    @Test
+    public void testNullsQuotesAndTrimming() throws IOException {
+        ProtocolTokenizer tokenizer = new ProtocolTokenizer(new StringReader(
+                "insert, a ,\"\",,\" b \"\n\n\r\nupdate,\"x\\\"y\\\\z\\n\",\"multi\nline\",\n"));
+        assertTrue(tokenizer.readRecord());
+        assertArrayEquals(new String[] { "insert", "a", "", null, " b " }, tokenizer.getValues());
+        assertTrue(tokenizer.equals(0, "insert"));
+        assertTrue(tokenizer.isNull(3));
+        assertFalse(tokenizer.isNull(2));
+        assertTrue(tokenizer.readRecord());
+        assertArrayEquals(new String[] { "update", "x\"y\\z\n", "multi\nline", null }, tokenizer.getValues());
+        assertFalse(tokenizer.readRecord());
+    }
+
+    @Test
+    public void testNumericEscapes() throws IOException {
+        ProtocolTokenizer tokenizer = new ProtocolTokenizer(new StringReader("\"\\u0041\\x42\\o103\\d068\\105\""));
+        assertTrue(tokenizer.readRecord());
+        assertEquals("ABCDE", tokenizer.get(0));
+    }
+
+    @Test
+    public void testMatchesCsvReader() throws IOException {
+        String[] samples = { "insert,\"1\",\"abc\"\n", "a,b,\n", "  \n", "\"unterminated", "a,\"b\"junk,c\r\nd",
+                "x,\"\\q\",  \"y\"  ,z", "," };
+        for (String sample : samples) {
+            assertSameTokens(sample, 16);
+        }
+    }
+
+    @Test
+    public void testMatchesCsvReaderAcrossBufferBoundaries() throws IOException {
+        Random random = new Random(42);
+        String alphabet = "ab ,\"\\\n\r\t\u00e9";
+        for (int i = 0; i < 200; i++) {
+            StringBuilder csv = new StringBuilder();
+            int recordCount = 1 + random.nextInt(5);
+            for (int j = 0; j < recordCount; j++) {
+                String[] row = new String[1 + random.nextInt(6)];
+                for (int k = 0; k < row.length; k++) {
+                    if (random.nextInt(5) > 0) {
+                        StringBuilder value = new StringBuilder();
+                        int length = random.nextInt(40);
+                        for (int l = 0; l < length; l++) {
+                            value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                        }
+                        row[k] = value.toString();
+                    }
+                }
+                csv.append(CsvUtils.escapeCsvData(row)).append(random.nextBoolean() ? "\n" : "\r\n");
+            }
+            assertSameTokens(csv.toString(), 16 + random.nextInt(32));
+            assertSameTokens(csv.toString(), 16 + random.nextInt(32), true);
+        }
+    }
+
+    @Test
+    public void testMatchesCsvReaderOneCharacterPerRead() throws IOException {
+        String[] samples = { "insert,\"1\",\"abc\"\n", "a,b,\n", "  \n", "\"unterminated", "a,\"b\"junk,c\r\nd",
+                "x,\"\\q\",  \"y\"  ,z", ",", "\"\\u0041\\x42\\o103\\d068\\105\",\"a\\nb\"\n", "\"\\u00" };
+        for (String sample : samples) {
+            assertSameTokens(sample, 16, true);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testLargeValueOneCharacterPerReadIsScannedOnce() throws IOException {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 500000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        String csv = "insert,\"" + value + "\"," + value + ",\"\\t" + value + "\"\n";
+        ProtocolTokenizer tokenizer = new ProtocolTokenizer(new OneCharacterReader(csv), 16);
+        assertTrue(tokenizer.readRecord());
+        assertEquals(4, tokenizer.getColumnCount());
+        assertEquals(value.toString(), tokenizer.get(1));
+        assertEquals(value.toString(), tokenizer.get(2));
+        assertEquals("\t" + value, tokenizer.get(3));
+        assertFalse(tokenizer.readRecord());
+    }
+
+    protected void assertSameTokens(String csv, int bufferSize) throws IOException {
+        assertSameTokens(csv, bufferSize, false);
+    }
+
+    protected void assertSameTokens(String csv, int bufferSize, boolean oneCharacterPerRead) throws IOException {
+        List<String[]> expected = new ArrayList<String[]>();
+        CsvReader csvReader = CsvUtils.getCsvReader(new StringReader(csv));
+        while (csvReader.readRecord()) {
+            expected.add(csvReader.getValues());
+        }
+        List<String[]> actual = new ArrayList<String[]>();
+        ProtocolTokenizer tokenizer = new ProtocolTokenizer(oneCharacterPerRead ? new OneCharacterReader(csv)
+                : new StringReader(csv), bufferSize);
+        while (tokenizer.readRecord()) {
+            actual.add(tokenizer.getValues());
+        }
+        assertEquals(csv, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(csv, expected.get(i), actual.get(i));
+        }
+    }
+
+    static class OneCharacterReader extends Reader {
+
+        String data;
+
+        int position;
+
+        OneCharacterReader(String data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (position == data.length()) {
+                return -1;
+            } else if (len == 0) {
+                return 0;
+            }
+            cbuf[off] = data.charAt(position++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
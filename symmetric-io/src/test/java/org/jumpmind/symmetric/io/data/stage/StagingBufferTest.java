@@ -0,0 +1,93 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.stage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.symmetric.io.stage.StagingBuffer;
+import org.jumpmind.symmetric.io.stage.StagingBufferPool;
+import org.junit.Test;
+
+public class StagingBufferTest {
+
+    final String TEST_STR = "id,name\n1,\"caf\u00e9 \u20ac \ud83d\ude00\"\n2,\"plain text that spans segments\"\n";
+
+    @Test
+    public void testEncodesUtf8AcrossSegments() throws Exception {
+        StagingBuffer buffer = new StagingBuffer(new StagingBufferPool(16, false, 1024));
+        char[] chars = TEST_STR.toCharArray();
+        // write one character at a time so the surrogate pair is split across writes
+        for (int i = 0; i < chars.length; i++) {
+            buffer.write(chars, i, 1);
+        }
+        byte[] expected = TEST_STR.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, buffer.length());
+        assertArrayEquals(expected, IOUtils.toByteArray(buffer.getInputStream()));
+        assertEquals(TEST_STR, IOUtils.toString(buffer.getReader()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    public void testOffHeapSegments() throws Exception {
+        StagingBuffer buffer = new StagingBuffer(new StagingBufferPool(16, true, 1024));
+        buffer.write(TEST_STR.toCharArray(), 0, TEST_STR.length());
+        assertEquals(TEST_STR, IOUtils.toString(buffer.getReader()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertEquals(TEST_STR, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testReleaseReturnsSegmentsToPool() throws Exception {
+        StagingBufferPool pool = new StagingBufferPool(16, false, 1024);
+        StagingBuffer buffer = new StagingBuffer(pool);
+        buffer.write(TEST_STR.toCharArray(), 0, TEST_STR.length());
+        long memorySize = buffer.getMemorySize();
+        assertEquals(memorySize, pool.getAllocatedBytes());
+        buffer.release();
+        assertEquals(0, buffer.length());
+        assertEquals(0, pool.getAllocatedBytes());
+        assertEquals(memorySize, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testSegmentsWithOpenStreamsAreNotReused() throws Exception {
+        StagingBufferPool pool = new StagingBufferPool(16, false, 1024);
+        StagingBuffer buffer = new StagingBuffer(pool);
+        buffer.write(TEST_STR.toCharArray(), 0, TEST_STR.length());
+        InputStream is = buffer.getInputStream();
+        buffer.release();
+        assertEquals(0, pool.getAllocatedBytes());
+        assertEquals(0, pool.getPooledBytes());
+        assertArrayEquals(TEST_STR.getBytes(StandardCharsets.UTF_8), IOUtils.toByteArray(is));
+        is.close();
+    }
+
+}
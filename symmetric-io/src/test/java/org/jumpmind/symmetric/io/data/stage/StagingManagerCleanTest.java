@@ -0,0 +1,60 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.stage;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.jumpmind.symmetric.io.stage.StagingManager;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StagingManagerCleanTest {
+
+    static final File DIR = new File("target/tmp/clean");
+
+    StagingManager stagingManager;
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteDirectory(DIR);
+        stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+    }
+
+    @Test
+    public void testLeftoverCompressedTmpIsCleaned() throws Exception {
+        File batchDir = new File(DIR, "outgoing/00001");
+        File old = new File(batchDir, "1.done.gz.tmp");
+        File fresh = new File(batchDir, "2.done.gz.tmp");
+        FileUtils.writeStringToFile(old, "partial", "UTF-8");
+        FileUtils.writeStringToFile(fresh, "partial", "UTF-8");
+        assertTrue(old.setLastModified(System.currentTimeMillis() - 120000));
+
+        stagingManager.clean(60000);
+
+        assertFalse(old.exists());
+        assertTrue(fresh.exists());
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.stage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jumpmind.symmetric.io.stage.IStagedResource;
+import org.jumpmind.symmetric.io.stage.IStagedResource.State;
+import org.jumpmind.symmetric.io.stage.StagingBufferPool;
+import org.jumpmind.symmetric.io.stage.StagingManager;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StagingManagerMemoryBudgetTest {
+
+    static final File DIR = new File("target/tmp/budget");
+
+    static final long THRESHOLD = 10000;
+
+    static final String TEST_STR = "The quick brown fox jumped over the lazy dog";
+
+    StagingManager stagingManager;
+
+    @Before
+    public void setup() throws Exception {
+        FileUtils.deleteDirectory(DIR);
+        stagingManager = new StagingManager(DIR.getAbsolutePath(), false);
+        // not quite enough room for two resources of one segment each plus a reservation
+        stagingManager.setMemoryBudget(2 * StagingBufferPool.DEFAULT_SEGMENT_SIZE + THRESHOLD - 1);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsSpilled() throws Exception {
+        IStagedResource first = write(1);
+        IStagedResource second = write(2);
+        assertTrue(first.isMemoryResource());
+        assertTrue(second.isMemoryResource());
+        assertEquals(2 * StagingBufferPool.DEFAULT_SEGMENT_SIZE, stagingManager.getMemoryBufferSize());
+
+        read(first);
+        IStagedResource third = write(3);
+        assertTrue(first.isMemoryResource());
+        assertFalse(second.isMemoryResource());
+        assertTrue(second.isFileResource());
+        assertTrue(third.isMemoryResource());
+        assertEquals(1, stagingManager.getMemorySpillCount());
+
+        assertEquals(TEST_STR, read(second));
+        assertEquals(1, stagingManager.getMemoryHitCount());
+        assertEquals(1, stagingManager.getMemoryMissCount());
+    }
+
+    @Test
+    public void testAcknowledgedIsSpilledFirst() throws Exception {
+        IStagedResource first = write(1);
+        IStagedResource second = write(2);
+        second.setAcknowledged(true);
+        write(3);
+        assertTrue(first.isMemoryResource());
+        assertTrue(second.isFileResource());
+    }
+
+    @Test
+    public void testDeleteReleasesMemory() throws Exception {
+        IStagedResource first = write(1);
+        first.delete();
+        assertEquals(0, stagingManager.getMemoryBufferSize());
+    }
+
+    @Test
+    public void testWriteToFileWhenBudgetIsTooSmall() throws Exception {
+        stagingManager.setMemoryBudget(THRESHOLD - 1);
+        IStagedResource resource = write(1);
+        assertFalse(resource.isMemoryResource());
+        assertTrue(resource.isFileResource());
+        assertEquals(0, stagingManager.getMemoryBufferSize());
+    }
+
+    protected IStagedResource write(long batchId) throws Exception {
+        IStagedResource resource = stagingManager.create("test", "aaa", batchId);
+        BufferedWriter writer = resource.getWriter(THRESHOLD);
+        writer.write(TEST_STR);
+        resource.close();
+        resource.setState(State.DONE);
+        return resource;
+    }
+
+    protected String read(IStagedResource resource) throws Exception {
+        String content = IOUtils.toString(resource.getReader());
+        resource.close();
+        return content;
+    }
+
+}
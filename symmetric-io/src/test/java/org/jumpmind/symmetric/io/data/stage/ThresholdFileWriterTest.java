@@ -24,6 +24,8 @@ import java.io.BufferedReader;
 import java.io.File;
 
 import org.apache.commons.io.IOUtils;
+import org.jumpmind.symmetric.io.stage.StagingBuffer;
+import org.jumpmind.symmetric.io.stage.StagingBufferPool;
 import org.jumpmind.symmetric.io.stage.ThresholdFileWriter;
 import static org.junit.Assert.*;
 import org.junit.Test;
@@ -35,7 +37,7 @@ public class ThresholdFileWriterTest {
     @Test
     public void testNoWriteToFile() throws Exception {
         File file = getTestFile();
-        ThresholdFileWriter writer = new ThresholdFileWriter(TEST_STR.length() + 1, new StringBuilder(), file);
+        ThresholdFileWriter writer = new ThresholdFileWriter(TEST_STR.length() + 1, new StagingBuffer(new StagingBufferPool()), file);
         writer.write(TEST_STR);
 
         // File does not exist since we did not meet the threshold
@@ -52,7 +54,7 @@ public class ThresholdFileWriterTest {
         File file = getTestFile();
         assertFalse(file.exists());
 
-        ThresholdFileWriter writer = new ThresholdFileWriter( TEST_STR.length() - 1, new StringBuilder(), file);
+        ThresholdFileWriter writer = new ThresholdFileWriter( TEST_STR.length() - 1, new StagingBuffer(new StagingBufferPool()), file);
         writer.write(TEST_STR);
         writer.close();
 
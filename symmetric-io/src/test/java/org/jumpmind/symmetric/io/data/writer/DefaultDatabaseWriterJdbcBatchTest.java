@@ -0,0 +1,261 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.io.data.writer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.jumpmind.db.model.Database;
+import org.jumpmind.db.model.Table;
+import org.jumpmind.db.platform.IDatabasePlatform;
+import org.jumpmind.db.platform.JdbcDatabasePlatformFactory;
+import org.jumpmind.db.sql.SqlTemplateSettings;
+import org.jumpmind.symmetric.io.AbstractWriterTest;
+import org.jumpmind.symmetric.io.data.CsvData;
+import org.jumpmind.symmetric.io.data.DataEventType;
+import org.jumpmind.symmetric.io.data.writer.Conflict.DetectConflict;
+import org.jumpmind.symmetric.io.data.writer.Conflict.ResolveConflict;
+import org.jumpmind.util.Statistics;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DefaultDatabaseWriterJdbcBatchTest extends AbstractWriterTest {
+
+    protected final static String BATCH_TABLE = "TEST_JDBC_BATCH";
+
+    protected final static String[] BATCH_KEYS = { "ID" };
+
+    protected final static String[] BATCH_COLUMNS = { "ID", "NAME" };
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:jdbcbatch");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        platform = JdbcDatabasePlatformFactory.createNewPlatformInstance(dataSource, new SqlTemplateSettings(),
+                true, false);
+        Table table = Table.buildTable(BATCH_TABLE, BATCH_KEYS, BATCH_COLUMNS);
+        table.getColumnWithName("ID").setMappedType("INTEGER");
+        table.getColumnWithName("NAME").setMappedType("VARCHAR");
+        table.getColumnWithName("NAME").setSize("50");
+        Database database = new Database();
+        database.addTable(table);
+        platform.createDatabase(database, true, false);
+        platform.resetCachedTableModel();
+    }
+
+    @AfterClass
+    public static void teardown() throws Exception {
+        platform.<BasicDataSource> getDataSource().close();
+        platform = null;
+    }
+
+    @Before
+    public void setupTest() {
+        platform.getSqlTemplate().update("delete from " + BATCH_TABLE);
+        writerSettings.setUseJdbcBatch(true);
+        writerSettings.setJdbcBatchSize(2);
+        Conflict conflict = new Conflict();
+        conflict.setDetectType(DetectConflict.USE_PK_DATA);
+        conflict.setResolveType(ResolveConflict.FALLBACK);
+        writerSettings.setDefaultConflictSetting(conflict);
+        setErrorExpected(false);
+    }
+
+    @Test
+    public void testInsertsAreBatched() {
+        Statistics statistics = write(insert("1", "a"), insert("2", "b"), insert("3", "c"), insert("4", "d"),
+                insert("5", "e"));
+        Assert.assertEquals(5, countRows(BATCH_TABLE));
+        Assert.assertEquals(5, statistics.get(DataWriterStatisticConstants.INSERTCOUNT));
+        Assert.assertEquals(5, statistics.get(DataWriterStatisticConstants.ROWCOUNT));
+    }
+
+    @Test
+    public void testFailedInsertIsReplayed() {
+        write(insert("1", "a"));
+        Statistics statistics = write(insert("2", "b"), insert("1", "changed"), insert("3", "c"));
+        Assert.assertEquals(3, countRows(BATCH_TABLE));
+        Assert.assertEquals("changed", getName("1"));
+        Assert.assertEquals(2, statistics.get(DataWriterStatisticConstants.INSERTCOUNT));
+        Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.FALLBACKUPDATECOUNT));
+    }
+
+    @Test
+    public void testMissingRowsAreReplayed() {
+        write(insert("1", "a"), insert("2", "b"));
+        Statistics statistics = write(update("1", "changed"), update("3", "new"), delete("2"), delete("4"));
+        Assert.assertEquals(2, countRows(BATCH_TABLE));
+        Assert.assertEquals("changed", getName("1"));
+        Assert.assertEquals("new", getName("3"));
+        Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.UPDATECOUNT));
+        Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.FALLBACKINSERTCOUNT));
+        Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.DELETECOUNT));
+        Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.MISSINGDELETECOUNT));
+    }
+
+    @Test
+    public void testMissingRowsAreReplayedWhenDriverDoesNotReportCounts() throws Exception {
+        write(insert("1", "a"), insert("2", "b"));
+        BasicDataSource dataSource = newNoInfoDataSource();
+        IDatabasePlatform noInfoPlatform = JdbcDatabasePlatformFactory.createNewPlatformInstance(dataSource,
+                new SqlTemplateSettings(), true, false);
+        try {
+            Statistics statistics = write(noInfoPlatform, update("1", "changed"), update("3", "new"), delete("2"),
+                    delete("4"), insert("5", "e"), insert("6", "f"));
+            Assert.assertEquals(4, countRows(BATCH_TABLE));
+            Assert.assertEquals("changed", getName("1"));
+            Assert.assertEquals("new", getName("3"));
+            Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.UPDATECOUNT));
+            Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.FALLBACKINSERTCOUNT));
+            Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.DELETECOUNT));
+            Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.MISSINGDELETECOUNT));
+            Assert.assertEquals(3, statistics.get(DataWriterStatisticConstants.INSERTCOUNT));
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testAppliedInsertsAreNotReplayedWhenFailedBatchDoesNotReportCounts() throws Exception {
+        write(insert("1", "a"));
+        BasicDataSource dataSource = newNoInfoDataSource();
+        IDatabasePlatform noInfoPlatform = JdbcDatabasePlatformFactory.createNewPlatformInstance(dataSource,
+                new SqlTemplateSettings(), true, false);
+        try {
+            Statistics statistics = write(noInfoPlatform, insert("2", "b"), insert("1", "changed"),
+                    insert("3", "c"));
+            Assert.assertEquals(3, countRows(BATCH_TABLE));
+            Assert.assertEquals("b", getName("2"));
+            Assert.assertEquals("changed", getName("1"));
+            Assert.assertEquals(2, statistics.get(DataWriterStatisticConstants.INSERTCOUNT));
+            Assert.assertEquals(1, statistics.get(DataWriterStatisticConstants.FALLBACKUPDATECOUNT));
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    protected BasicDataSource newNoInfoDataSource() {
+        BasicDataSource dataSource = new NoInfoDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:jdbcbatch");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+
+    protected Statistics write(CsvData... data) {
+        return write(platform, data);
+    }
+
+    protected Statistics write(IDatabasePlatform platform, CsvData... data) {
+        DefaultDatabaseWriter writer = new DefaultDatabaseWriter(platform, writerSettings);
+        writeData(writer, new TableCsvData(Table.buildTable(BATCH_TABLE, BATCH_KEYS, BATCH_COLUMNS), data));
+        return writer.getStatistics().values().iterator().next();
+    }
+
+    protected String getName(String id) {
+        return platform.getSqlTemplate().queryForString("select name from " + BATCH_TABLE + " where id=?",
+                Integer.valueOf(id));
+    }
+
+    protected CsvData insert(String id, String name) {
+        return new CsvData(DataEventType.INSERT, new String[] { id, name });
+    }
+
+    protected CsvData update(String id, String name) {
+        return new CsvData(DataEventType.UPDATE, new String[] { id }, new String[] { id, name });
+    }
+
+    protected CsvData delete(String id) {
+        return new CsvData(DataEventType.DELETE, new String[] { id }, null);
+    }
+
+    /**
+     * Acts like drivers that run a batch without reporting the number of rows
+     * each statement changed
+     */
+    static class NoInfoDataSource extends BasicDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                    new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object result = invokeTarget(connection, method, args);
+                            if (result instanceof PreparedStatement) {
+                                return noInfoStatement((PreparedStatement) result);
+                            }
+                            return result;
+                        }
+                    });
+        }
+
+        static PreparedStatement noInfoStatement(final PreparedStatement statement) {
+            return (PreparedStatement) Proxy.newProxyInstance(NoInfoDataSource.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            Object result = null;
+                            try {
+                                result = invokeTarget(statement, method, args);
+                            } catch (BatchUpdateException ex) {
+                                int[] counts = ex.getUpdateCounts();
+                                for (int i = 0; i < counts.length; i++) {
+                                    if (counts[i] != Statement.EXECUTE_FAILED) {
+                                        counts[i] = Statement.SUCCESS_NO_INFO;
+                                    }
+                                }
+                                throw new BatchUpdateException(ex.getMessage(), ex.getSQLState(),
+                                        ex.getErrorCode(), counts, ex);
+                            }
+                            if (method.getName().equals("executeBatch")) {
+                                int[] counts = (int[]) result;
+                                Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                            }
+                            return result;
+                        }
+                    });
+        }
+
+        static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+    }
+
+}
@@ -54,6 +54,8 @@ public class JdbcSqlReadCursor<T> implements ISqlReadCursor<T> {
     
     protected int rsColumnCount;
 
+    protected RowColumns rsColumns;
+
     protected IConnectionHandler connectionHandler;
     
     protected boolean returnLobObjects;
@@ -133,9 +135,10 @@ public class JdbcSqlReadCursor<T> implements ISqlReadCursor<T> {
                 if (rsMetaData == null) {
                     rsMetaData = rs.getMetaData();
                     rsColumnCount = rsMetaData.getColumnCount();
+                    rsColumns = getColumnsForRows(rsMetaData, rsColumnCount);
                 }
                 
-                Row row = getMapForRow(rs, rsMetaData, rsColumnCount, sqlTemplate.getSettings().isReadStringsAsBytes(), returnLobObjects);
+                Row row = getRow(rs, rsMetaData, rsColumns, rsColumnCount, sqlTemplate.getSettings().isReadStringsAsBytes(), returnLobObjects);
                 T value = mapper.mapRow(row);
                 if (value != null) {
                     return value;
@@ -147,6 +150,37 @@ public class JdbcSqlReadCursor<T> implements ISqlReadCursor<T> {
         }
     }
 
+    /**
+     * Build the column dictionary that is shared by every row read from a
+     * result set.
+     */
+    protected static RowColumns getColumnsForRows(ResultSetMetaData argResultSetMetaData, int columnCount)
+            throws SQLException {
+        String[] names = new String[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            names[i - 1] = JdbcSqlTemplate.lookupColumnName(argResultSetMetaData, i);
+        }
+        return new RowColumns(names);
+    }
+
+    /**
+     * Read the current row into an {@link ArrayRow} backed by the shared
+     * column dictionary. When the result set has columns that only differ by
+     * case, the row falls back to the map based {@link Row} so that the last
+     * column keeps winning as it always has.
+     */
+    protected static Row getRow(ResultSet rs, ResultSetMetaData argResultSetMetaData, RowColumns columns,
+            int columnCount, boolean readStringsAsBytes, boolean returnLobObjects) throws SQLException {
+        if (!columns.isUnique()) {
+            return getMapForRow(rs, argResultSetMetaData, columnCount, readStringsAsBytes, returnLobObjects);
+        }
+        Object[] values = new Object[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            values[i - 1] = JdbcSqlTemplate.getResultSetValue(rs, argResultSetMetaData, i, readStringsAsBytes, returnLobObjects);
+        }
+        return new ArrayRow(columns, values);
+    }
+
     protected static Row getMapForRow(ResultSet rs, ResultSetMetaData argResultSetMetaData, 
             int columnCount, boolean readStringsAsBytes, boolean returnLobObjects) throws SQLException {
         Row mapOfColValues = new Row(columnCount);
@@ -170,12 +170,17 @@ public class JdbcSqlTransaction implements ISqlTransaction {
 
     public int flush() {
         int rowsUpdated = 0;
+        for (int i : flushWithUpdateCounts()) {
+            rowsUpdated += normalizeUpdateCount(i);
+        }
+        return rowsUpdated;
+    }
+
+    public int[] flushWithUpdateCounts() {
+        int[] updates = new int[0];
         if (markers.size() > 0 && pstmt != null) {
             try {
-                int[] updates = pstmt.executeBatch();
-                for (int i : updates) {
-                    rowsUpdated += normalizeUpdateCount(i);
-                }
+                updates = pstmt.executeBatch();
                 markers.clear();
             } catch (BatchUpdateException ex) {
                 removeMarkersThatWereSuccessful(ex);
@@ -184,7 +189,7 @@ public class JdbcSqlTransaction implements ISqlTransaction {
                 throw jdbcSqlTemplate.translate(ex);
             }
         }
-        return rowsUpdated;
+        return updates;
     }
     
     @Override
@@ -279,8 +284,9 @@ public class JdbcSqlTransaction implements ISqlTransaction {
                     List<T> list = new ArrayList<T>();
                     ResultSetMetaData rsMetaData = rs.getMetaData();
                     int columnCount = rsMetaData.getColumnCount();
+                    RowColumns columns = JdbcSqlReadCursor.getColumnsForRows(rsMetaData, columnCount);
                     while (rs.next()) {
-                        Row row = JdbcSqlReadCursor.getMapForRow(rs, rsMetaData, columnCount, 
+                        Row row = JdbcSqlReadCursor.getRow(rs, rsMetaData, columns, columnCount, 
                                 jdbcSqlTemplate.getSettings().isReadStringsAsBytes(), false);
                         T value = mapper.mapRow(row);
                         list.add(value);
@@ -419,7 +425,11 @@ public class JdbcSqlTransaction implements ISqlTransaction {
         int index = 0;
         while (it.hasNext()) {
             it.next();
-            if (updateCounts.length > index && normalizeUpdateCount(updateCounts[index]) > 0) {
+            /*
+             * A row the driver ran without reporting a count is left with
+             * the unflushed markers, since it might not have changed a row
+             */
+            if (updateCounts.length > index && updateCounts[index] > 0) {
                 it.remove();
             }
             index++;
@@ -50,6 +50,7 @@ abstract public class AbstractCompressionUriHandler extends AbstractUriHandler {
             log.debug("@doFilter");
 
             boolean supportCompression = false;
+            boolean supportGzipMembers = false;
             log.debug("requestURI= {}", req.getRequestURI());
 
             // Are we allowed to compress ?
@@ -61,12 +62,13 @@ abstract public class AbstractCompressionUriHandler extends AbstractUriHandler {
             }
 
             @SuppressWarnings("rawtypes")
-            Enumeration e = req.getHeaders("Accept-Encoding");
+            Enumeration e = req.getHeaders(WebConstants.HEADER_ACCEPT_ENCODING);
             while (e.hasMoreElements()) {
                 String name = (String) e.nextElement();
                 if (name.indexOf("gzip") != -1) {
                     log.debug("Supports compression.");
                     supportCompression = true;
+                    supportGzipMembers |= name.indexOf(WebConstants.ENCODING_GZIP_MEMBERS) != -1;
                 } else {
                     log.debug("Does not support compression.");
                 }
@@ -78,7 +80,7 @@ abstract public class AbstractCompressionUriHandler extends AbstractUriHandler {
                 return;
             } else {
                 CompressionServletResponseWrapper wrappedResponse = new CompressionServletResponseWrapper(
-                        res, compressionLevel, compressionStrategy);
+                        res, compressionLevel, compressionStrategy, supportGzipMembers);
                 log.debug("doFilter gets called with compression");
                 try {
                     handleWithCompression(req, wrappedResponse);
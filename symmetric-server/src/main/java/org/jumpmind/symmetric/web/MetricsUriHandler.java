@@ -0,0 +1,59 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.web;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jumpmind.symmetric.common.ParameterConstants;
+import org.jumpmind.symmetric.service.IParameterService;
+import org.jumpmind.symmetric.statistic.IStatisticManager;
+
+/**
+ * Serves the engine metrics in the Prometheus text format so they can be
+ * scraped. Returns a 404 unless metrics.http.enabled is set. Requests are
+ * authenticated like the other sync URLs unless metrics.http.auth is off.
+ */
+public class MetricsUriHandler extends AbstractUriHandler {
+
+    private IStatisticManager statisticManager;
+
+    public MetricsUriHandler(IParameterService parameterService, IStatisticManager statisticManager,
+            IInterceptor[] interceptors) {
+        super("/metrics/*", parameterService, interceptors);
+        this.statisticManager = statisticManager;
+    }
+
+    public void handle(HttpServletRequest req, HttpServletResponse res) throws IOException,
+            ServletException {
+        if (!parameterService.is(ParameterConstants.METRICS_HTTP_ENABLED, false)) {
+            res.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        res.setContentType("text/plain; version=0.0.4");
+        res.setCharacterEncoding("UTF-8");
+        statisticManager.getMetrics().writePrometheusText(res.getWriter());
+    }
+
+}
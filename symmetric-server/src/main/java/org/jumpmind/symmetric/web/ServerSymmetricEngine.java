@@ -93,6 +93,9 @@ public class ServerSymmetricEngine extends ClientSymmetricEngine {
         this.uriHandlers.add(new PingUriHandler(parameterService, customInterceptors));
         this.uriHandlers
                 .add(new InfoUriHandler(parameterService, nodeService, configurationService, customInterceptors));
+        this.uriHandlers.add(new MetricsUriHandler(parameterService, statisticManager,
+                parameterService.is(ParameterConstants.METRICS_HTTP_AUTH, true) ? add(customInterceptors, authInterceptor)
+                        : customInterceptors));
         this.uriHandlers.add(new BandwidthSamplerUriHandler(parameterService, add(customInterceptors, authInterceptor, concurrencyInterceptor)));
         this.uriHandlers.add(new PullUriHandler(parameterService, nodeService,
                 configurationService, dataExtractorService, registrationService, statisticManager, outgoingBatchService,
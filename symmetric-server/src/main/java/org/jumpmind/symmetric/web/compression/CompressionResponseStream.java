@@ -72,7 +72,15 @@ public class CompressionResponseStream extends ServletOutputStream {
         this.closed = false;
         this.response = response;
         response.addHeader("Content-Encoding", "gzip");
-        gzipstream = new GZIPOutputStream(response.getOutputStream()) {
+        gzipstream = createGzipStream(response.getOutputStream(), compressionLevel, compressionStrategy);
+    }
+
+    /**
+     * Create the gzip output stream that compresses to the response.
+     */
+    protected OutputStream createGzipStream(OutputStream out, final int compressionLevel, final int compressionStrategy)
+            throws IOException {
+        return new GZIPOutputStream(out) {
             {
                 this.def.setLevel(compressionLevel);
                 this.def.setStrategy(compressionStrategy);
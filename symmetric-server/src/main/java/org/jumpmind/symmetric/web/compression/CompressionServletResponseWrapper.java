@@ -54,14 +54,27 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
 
     int compressionStrategy = Deflater.DEFAULT_STRATEGY;
 
+    boolean gzipMembers;
+
     /**
      * Calls the parent constructor which creates a ServletResponse adaptor
      * wrapping the given response object.
      */
     public CompressionServletResponseWrapper(HttpServletResponse response, int compressionLevel, int compressionStrategy) {
+        this(response, compressionLevel, compressionStrategy, false);
+    }
+
+    /**
+     * @param gzipMembers
+     *                The client reads every member of a gzip response made of
+     *                concatenated members
+     */
+    public CompressionServletResponseWrapper(HttpServletResponse response, int compressionLevel, int compressionStrategy,
+            boolean gzipMembers) {
         super(response);
         this.compressionLevel = compressionLevel;
         this.compressionStrategy = compressionStrategy;
+        this.gzipMembers = gzipMembers;
         origResponse = response;
         log.debug("CompressionServletResponseWrapper constructor gets called");
     }
@@ -117,8 +130,8 @@ public class CompressionServletResponseWrapper extends HttpServletResponseWrappe
      */
     public ServletOutputStream createOutputStream() throws IOException {
         log.debug("createOutputStream gets called");
-        CompressionResponseStream stream = new CompressionResponseStream(origResponse, compressionLevel,
-                compressionStrategy);
+        CompressionResponseStream stream = gzipMembers ? new GzipMemberResponseStream(origResponse, compressionLevel,
+                compressionStrategy) : new CompressionResponseStream(origResponse, compressionLevel, compressionStrategy);
         return stream;
 
     }
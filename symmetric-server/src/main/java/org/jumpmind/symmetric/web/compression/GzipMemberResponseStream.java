@@ -0,0 +1,58 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.symmetric.web.compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.jumpmind.symmetric.transport.GzipMemberOutputStream;
+import org.jumpmind.symmetric.transport.IGzipMemberOutputStream;
+
+/**
+ * A response stream for a client that reads every member of a gzip response,
+ * so staged batches that are already compressed are sent without compressing
+ * them again.
+ */
+public class GzipMemberResponseStream extends CompressionResponseStream implements IGzipMemberOutputStream {
+
+    public GzipMemberResponseStream(HttpServletResponse response, int compressionLevel, int compressionStrategy)
+            throws IOException {
+        super(response, compressionLevel, compressionStrategy);
+    }
+
+    @Override
+    protected OutputStream createGzipStream(OutputStream out, int compressionLevel, int compressionStrategy)
+            throws IOException {
+        return new GzipMemberOutputStream(out, compressionLevel, compressionStrategy, false);
+    }
+
+    @Override
+    public void writeGzipMembers(File file) throws IOException {
+        if (closed) {
+            throw new IOException("The response stream is closed");
+        }
+        ((GzipMemberOutputStream) gzipstream).writeGzipMembers(file);
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache that evicts the least recently used entry once it is full
+ * and treats entries older than the time to live as missing. Hits and misses
+ * are counted so callers can report how well the cache is working.
+ */
+public class ExpiringLruCache<K, V> {
+
+    protected final int maxEntries;
+
+    protected final long timeToLiveMs;
+
+    protected final LinkedHashMap<K, Entry<V>> entries;
+
+    protected long hitCount;
+
+    protected long missCount;
+
+    protected long evictionCount;
+
+    /**
+     * @param maxEntries
+     *            the number of entries to keep before the least recently used
+     *            one is evicted
+     * @param timeToLiveMs
+     *            how long an entry is valid after it is put. Zero or less
+     *            means entries do not expire.
+     */
+    public ExpiringLruCache(int maxEntries, long timeToLiveMs) {
+        this.maxEntries = maxEntries;
+        this.timeToLiveMs = timeToLiveMs;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringLruCache.this.maxEntries) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = getEntry(key);
+        if (entry != null) {
+            hitCount++;
+            return entry.value;
+        } else {
+            missCount++;
+            return null;
+        }
+    }
+
+    /**
+     * Check for a live entry without counting a hit or a miss
+     */
+    public synchronized boolean containsKey(K key) {
+        return getEntry(key) != null;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<V>(value, System.currentTimeMillis()));
+    }
+
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Drop every entry that has outlived the time to live
+     */
+    public synchronized void removeExpired() {
+        if (timeToLiveMs > 0) {
+            long now = System.currentTimeMillis();
+            Iterator<Entry<V>> i = entries.values().iterator();
+            while (i.hasNext()) {
+                if (now - i.next().createTime > timeToLiveMs) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getTimeToLiveMs() {
+        return timeToLiveMs;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    protected Entry<V> getEntry(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && timeToLiveMs > 0 && System.currentTimeMillis() - entry.createTime > timeToLiveMs) {
+            entries.remove(key);
+            entry = null;
+        }
+        return entry;
+    }
+
+    protected static class Entry<V> {
+        V value;
+        long createTime;
+
+        Entry(V value, long createTime) {
+            this.value = value;
+            this.createTime = createTime;
+        }
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to JumpMind Inc under one or more contributor
+ * license agreements.  See the NOTICE file distributed
+ * with this work for additional information regarding
+ * copyright ownership.  JumpMind Inc licenses this file
+ * to you under the GNU General Public License, version 3.0 (GPLv3)
+ * (the "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * You should have received a copy of the GNU General Public License,
+ * version 3.0 (GPLv3) along with this library; if not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.jumpmind.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ExpiringLruCacheTest {
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(2, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(10, 20);
+        cache.put("a", "1");
+        assertTrue(cache.containsKey("a"));
+        Thread.sleep(50);
+        assertFalse(cache.containsKey("a"));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testRemoveExpired() throws Exception {
+        ExpiringLruCache<String, String> cache = new ExpiringLruCache<String, String>(10, 20);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Thread.sleep(50);
+        cache.put("c", "3");
+        cache.removeExpired();
+        assertEquals(1, cache.size());
+        assertEquals("3", cache.get("c"));
+    }
+
+}